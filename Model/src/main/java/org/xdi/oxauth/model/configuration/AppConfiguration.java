@@ -146,6 +146,45 @@ public class AppConfiguration  {
     private Boolean updateUserLastLogonTime;
     private Boolean updateClientAccessTime;
 
+    private int sectorIdentifierCacheLifetime = 600; // 10 minutes
+    private int sectorIdentifierCacheStaleIfErrorLifetime = 86400; // 1 day
+    private int sectorIdentifierCacheRefreshInterval = 60; // 1 minute
+    private int sectorIdentifierCacheIdleLifetime = 86400; // 1 day
+    private int requestUriCacheLifetime = 60; // 1 minute
+    private int requestUriCacheMaxLifetime = 3600; // 1 hour
+    private int requestUriCacheMaxSize = 1000;
+    private int requestUriJwksLifetime = 60; // 1 minute
+    private int attributeCacheRefreshInterval = 300; // 5 minutes
+    private int scopeCacheRefreshInterval = 300; // 5 minutes
+    private int discoveryCacheLifetime = 60; // max-age of well-known documents, seconds
+    private int jwksCacheLifetime = 3600; // upper bound of JWKS max-age, seconds
+    private int umaRptPermissionCacheLifetime = 10; // 10 seconds
+    private int umaRptStatusCacheLifetime = 30; // 30 seconds
+    private Boolean umaPermissionTicketsInCache = false;
+    private int umaPolicyEvaluationThreads = 8;
+    private int umaPolicyEvaluationTimeout = 3000; // 3 seconds
+    private int umaPolicyEvaluationQueueSize = 100;
+    private int umaPolicyDecisionCacheMaxLifetime = 60; // 1 minute
+    private int umaScopeCacheRefreshInterval = 300; // 5 minutes
+    private int umaScopeNegativeCacheLifetime = 30; // 30 seconds
+    private Boolean u2fRequestsInCache = false;
+    private int u2fRequestExpiration = 90; // 90 seconds
+    private int u2fDeviceCacheLifetime = 300; // 5 minutes
+    private int authenticationFiltersCacheLifetime = 10; // 10 seconds
+    private int auditLogQueueSize = 10000;
+    private int auditLogBatchSize = 100;
+    private Boolean auditLogBlockOnOverflow = false;
+    private String auditLogFilePath;
+    private int auditLogFileMaxSize = 10485760; // 10 MB
+    private int httpClientMaxConnections = 200;
+    private int httpClientMaxConnectionsPerRoute = 20;
+    private int httpClientConnectTimeout = 5000; // 5 seconds
+    private int httpClientReadTimeout = 10000; // 10 seconds
+    private int httpClientRequestTimeout = 15000; // 15 seconds
+    private int httpClientCircuitBreakerFailureThreshold = 5;
+    private int httpClientCircuitBreakerOpenInterval = 30; // 30 seconds
+    private Integer inumNodeId;
+
     public Boolean getFrontChannelLogoutSessionSupported() {
         return frontChannelLogoutSessionSupported;
     }
@@ -1164,4 +1203,307 @@ public class AppConfiguration  {
         this.loggingLevel = loggingLevel;
     }
 
-}
\ No newline at end of file
+    public int getSectorIdentifierCacheLifetime() {
+        return sectorIdentifierCacheLifetime;
+    }
+
+    public void setSectorIdentifierCacheLifetime(int sectorIdentifierCacheLifetime) {
+        this.sectorIdentifierCacheLifetime = sectorIdentifierCacheLifetime;
+    }
+
+    public int getSectorIdentifierCacheStaleIfErrorLifetime() {
+        return sectorIdentifierCacheStaleIfErrorLifetime;
+    }
+
+    public void setSectorIdentifierCacheStaleIfErrorLifetime(int sectorIdentifierCacheStaleIfErrorLifetime) {
+        this.sectorIdentifierCacheStaleIfErrorLifetime = sectorIdentifierCacheStaleIfErrorLifetime;
+    }
+
+    public int getSectorIdentifierCacheRefreshInterval() {
+        return sectorIdentifierCacheRefreshInterval;
+    }
+
+    public void setSectorIdentifierCacheRefreshInterval(int sectorIdentifierCacheRefreshInterval) {
+        this.sectorIdentifierCacheRefreshInterval = sectorIdentifierCacheRefreshInterval;
+    }
+
+    public int getSectorIdentifierCacheIdleLifetime() {
+        return sectorIdentifierCacheIdleLifetime;
+    }
+
+    public void setSectorIdentifierCacheIdleLifetime(int sectorIdentifierCacheIdleLifetime) {
+        this.sectorIdentifierCacheIdleLifetime = sectorIdentifierCacheIdleLifetime;
+    }
+
+    public int getRequestUriCacheLifetime() {
+        return requestUriCacheLifetime;
+    }
+
+    public void setRequestUriCacheLifetime(int requestUriCacheLifetime) {
+        this.requestUriCacheLifetime = requestUriCacheLifetime;
+    }
+
+    public int getRequestUriCacheMaxLifetime() {
+        return requestUriCacheMaxLifetime;
+    }
+
+    public void setRequestUriCacheMaxLifetime(int requestUriCacheMaxLifetime) {
+        this.requestUriCacheMaxLifetime = requestUriCacheMaxLifetime;
+    }
+
+    public int getRequestUriCacheMaxSize() {
+        return requestUriCacheMaxSize;
+    }
+
+    public void setRequestUriCacheMaxSize(int requestUriCacheMaxSize) {
+        this.requestUriCacheMaxSize = requestUriCacheMaxSize;
+    }
+
+    public int getRequestUriJwksLifetime() {
+        return requestUriJwksLifetime;
+    }
+
+    public void setRequestUriJwksLifetime(int requestUriJwksLifetime) {
+        this.requestUriJwksLifetime = requestUriJwksLifetime;
+    }
+
+    public int getAttributeCacheRefreshInterval() {
+        return attributeCacheRefreshInterval;
+    }
+
+    public void setAttributeCacheRefreshInterval(int attributeCacheRefreshInterval) {
+        this.attributeCacheRefreshInterval = attributeCacheRefreshInterval;
+    }
+
+    public int getScopeCacheRefreshInterval() {
+        return scopeCacheRefreshInterval;
+    }
+
+    public void setScopeCacheRefreshInterval(int scopeCacheRefreshInterval) {
+        this.scopeCacheRefreshInterval = scopeCacheRefreshInterval;
+    }
+
+    public int getDiscoveryCacheLifetime() {
+        return discoveryCacheLifetime;
+    }
+
+    public void setDiscoveryCacheLifetime(int discoveryCacheLifetime) {
+        this.discoveryCacheLifetime = discoveryCacheLifetime;
+    }
+
+    public int getJwksCacheLifetime() {
+        return jwksCacheLifetime;
+    }
+
+    public void setJwksCacheLifetime(int jwksCacheLifetime) {
+        this.jwksCacheLifetime = jwksCacheLifetime;
+    }
+
+    public int getUmaRptPermissionCacheLifetime() {
+        return umaRptPermissionCacheLifetime;
+    }
+
+    public void setUmaRptPermissionCacheLifetime(int umaRptPermissionCacheLifetime) {
+        this.umaRptPermissionCacheLifetime = umaRptPermissionCacheLifetime;
+    }
+
+    public int getUmaRptStatusCacheLifetime() {
+        return umaRptStatusCacheLifetime;
+    }
+
+    public void setUmaRptStatusCacheLifetime(int umaRptStatusCacheLifetime) {
+        this.umaRptStatusCacheLifetime = umaRptStatusCacheLifetime;
+    }
+
+    public Boolean getUmaPermissionTicketsInCache() {
+        return umaPermissionTicketsInCache;
+    }
+
+    public void setUmaPermissionTicketsInCache(Boolean umaPermissionTicketsInCache) {
+        this.umaPermissionTicketsInCache = umaPermissionTicketsInCache;
+    }
+
+    public int getUmaPolicyEvaluationThreads() {
+        return umaPolicyEvaluationThreads;
+    }
+
+    public void setUmaPolicyEvaluationThreads(int umaPolicyEvaluationThreads) {
+        this.umaPolicyEvaluationThreads = umaPolicyEvaluationThreads;
+    }
+
+    public int getUmaPolicyEvaluationTimeout() {
+        return umaPolicyEvaluationTimeout;
+    }
+
+    public void setUmaPolicyEvaluationTimeout(int umaPolicyEvaluationTimeout) {
+        this.umaPolicyEvaluationTimeout = umaPolicyEvaluationTimeout;
+    }
+
+    public int getUmaPolicyEvaluationQueueSize() {
+        return umaPolicyEvaluationQueueSize;
+    }
+
+    public void setUmaPolicyEvaluationQueueSize(int umaPolicyEvaluationQueueSize) {
+        this.umaPolicyEvaluationQueueSize = umaPolicyEvaluationQueueSize;
+    }
+
+    public int getUmaPolicyDecisionCacheMaxLifetime() {
+        return umaPolicyDecisionCacheMaxLifetime;
+    }
+
+    public void setUmaPolicyDecisionCacheMaxLifetime(int umaPolicyDecisionCacheMaxLifetime) {
+        this.umaPolicyDecisionCacheMaxLifetime = umaPolicyDecisionCacheMaxLifetime;
+    }
+
+    public int getUmaScopeCacheRefreshInterval() {
+        return umaScopeCacheRefreshInterval;
+    }
+
+    public void setUmaScopeCacheRefreshInterval(int umaScopeCacheRefreshInterval) {
+        this.umaScopeCacheRefreshInterval = umaScopeCacheRefreshInterval;
+    }
+
+    public int getUmaScopeNegativeCacheLifetime() {
+        return umaScopeNegativeCacheLifetime;
+    }
+
+    public void setUmaScopeNegativeCacheLifetime(int umaScopeNegativeCacheLifetime) {
+        this.umaScopeNegativeCacheLifetime = umaScopeNegativeCacheLifetime;
+    }
+
+    public Boolean getU2fRequestsInCache() {
+        return u2fRequestsInCache;
+    }
+
+    public void setU2fRequestsInCache(Boolean u2fRequestsInCache) {
+        this.u2fRequestsInCache = u2fRequestsInCache;
+    }
+
+    public int getU2fRequestExpiration() {
+        return u2fRequestExpiration;
+    }
+
+    public void setU2fRequestExpiration(int u2fRequestExpiration) {
+        this.u2fRequestExpiration = u2fRequestExpiration;
+    }
+
+    public int getU2fDeviceCacheLifetime() {
+        return u2fDeviceCacheLifetime;
+    }
+
+    public void setU2fDeviceCacheLifetime(int u2fDeviceCacheLifetime) {
+        this.u2fDeviceCacheLifetime = u2fDeviceCacheLifetime;
+    }
+
+    public int getAuthenticationFiltersCacheLifetime() {
+        return authenticationFiltersCacheLifetime;
+    }
+
+    public void setAuthenticationFiltersCacheLifetime(int authenticationFiltersCacheLifetime) {
+        this.authenticationFiltersCacheLifetime = authenticationFiltersCacheLifetime;
+    }
+
+    public int getAuditLogQueueSize() {
+        return auditLogQueueSize;
+    }
+
+    public void setAuditLogQueueSize(int auditLogQueueSize) {
+        this.auditLogQueueSize = auditLogQueueSize;
+    }
+
+    public int getAuditLogBatchSize() {
+        return auditLogBatchSize;
+    }
+
+    public void setAuditLogBatchSize(int auditLogBatchSize) {
+        this.auditLogBatchSize = auditLogBatchSize;
+    }
+
+    public Boolean getAuditLogBlockOnOverflow() {
+        return auditLogBlockOnOverflow;
+    }
+
+    public void setAuditLogBlockOnOverflow(Boolean auditLogBlockOnOverflow) {
+        this.auditLogBlockOnOverflow = auditLogBlockOnOverflow;
+    }
+
+    public String getAuditLogFilePath() {
+        return auditLogFilePath;
+    }
+
+    public void setAuditLogFilePath(String auditLogFilePath) {
+        this.auditLogFilePath = auditLogFilePath;
+    }
+
+    public int getAuditLogFileMaxSize() {
+        return auditLogFileMaxSize;
+    }
+
+    public void setAuditLogFileMaxSize(int auditLogFileMaxSize) {
+        this.auditLogFileMaxSize = auditLogFileMaxSize;
+    }
+
+    public int getHttpClientMaxConnections() {
+        return httpClientMaxConnections;
+    }
+
+    public void setHttpClientMaxConnections(int httpClientMaxConnections) {
+        this.httpClientMaxConnections = httpClientMaxConnections;
+    }
+
+    public int getHttpClientMaxConnectionsPerRoute() {
+        return httpClientMaxConnectionsPerRoute;
+    }
+
+    public void setHttpClientMaxConnectionsPerRoute(int httpClientMaxConnectionsPerRoute) {
+        this.httpClientMaxConnectionsPerRoute = httpClientMaxConnectionsPerRoute;
+    }
+
+    public int getHttpClientConnectTimeout() {
+        return httpClientConnectTimeout;
+    }
+
+    public void setHttpClientConnectTimeout(int httpClientConnectTimeout) {
+        this.httpClientConnectTimeout = httpClientConnectTimeout;
+    }
+
+    public int getHttpClientReadTimeout() {
+        return httpClientReadTimeout;
+    }
+
+    public void setHttpClientReadTimeout(int httpClientReadTimeout) {
+        this.httpClientReadTimeout = httpClientReadTimeout;
+    }
+
+    public int getHttpClientRequestTimeout() {
+        return httpClientRequestTimeout;
+    }
+
+    public void setHttpClientRequestTimeout(int httpClientRequestTimeout) {
+        this.httpClientRequestTimeout = httpClientRequestTimeout;
+    }
+
+    public int getHttpClientCircuitBreakerFailureThreshold() {
+        return httpClientCircuitBreakerFailureThreshold;
+    }
+
+    public void setHttpClientCircuitBreakerFailureThreshold(int httpClientCircuitBreakerFailureThreshold) {
+        this.httpClientCircuitBreakerFailureThreshold = httpClientCircuitBreakerFailureThreshold;
+    }
+
+    public int getHttpClientCircuitBreakerOpenInterval() {
+        return httpClientCircuitBreakerOpenInterval;
+    }
+
+    public void setHttpClientCircuitBreakerOpenInterval(int httpClientCircuitBreakerOpenInterval) {
+        this.httpClientCircuitBreakerOpenInterval = httpClientCircuitBreakerOpenInterval;
+    }
+
+    public Integer getInumNodeId() {
+        return inumNodeId;
+    }
+
+    public void setInumNodeId(Integer inumNodeId) {
+        this.inumNodeId = inumNodeId;
+    }
+}
@@ -6,12 +6,33 @@
 
 package org.xdi.oxauth.model.crypto;
 
+import static org.gluu.oxeleven.model.SignResponseParam.SIGNATURE;
+import static org.gluu.oxeleven.model.VerifySignatureResponseParam.VERIFIED;
+
+import java.io.IOException;
+
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jettison.json.JSONObject;
 import org.gluu.oxeleven.client.*;
+import org.gluu.oxeleven.model.SignRequestParam;
+import org.gluu.oxeleven.model.VerifySignatureRequestParam;
 import org.xdi.oxauth.model.crypto.signature.SignatureAlgorithm;
 
 /**
+ * Sign and verify requests are sent over pooled keep-alive connections shared by all instances, so
+ * signing doesn't pay TCP and TLS setup to oxEleven on every call. Pool is released by {@link #closeConnections()}.
+ *
  * @author Javier Rojas Blum
  * @version June 15, 2016
  */
@@ -48,44 +69,39 @@ public class OxElevenCryptoProvider extends AbstractCryptoProvider {
 
     @Override
     public String sign(String signingInput, String keyId, String shardSecret, SignatureAlgorithm signatureAlgorithm) throws Exception {
-        SignRequest request = new SignRequest();
-        request.getSignRequestParam().setSigningInput(signingInput);
-        request.getSignRequestParam().setAlias(keyId);
-        request.getSignRequestParam().setSharedSecret(shardSecret);
-        request.getSignRequestParam().setSignatureAlgorithm(signatureAlgorithm.getName());
-
-        SignClient client = new SignClient(signEndpoint);
-        client.setRequest(request);
+        SignRequestParam request = new SignRequestParam();
+        request.setSigningInput(signingInput);
+        request.setAlias(keyId);
+        request.setSharedSecret(shardSecret);
+        request.setSignatureAlgorithm(signatureAlgorithm.getName());
 
-        SignResponse response = client.exec();
-        if (response.getStatus() == HttpStatus.SC_OK && response.getSignature() != null) {
-            return response.getSignature();
-        } else {
-            throw new Exception(response.getEntity());
+        JSONObject response = post(signEndpoint, request);
+        String signature = response.optString(SIGNATURE, null);
+        if (signature == null) {
+            throw new Exception(response.toString());
         }
+
+        return signature;
     }
 
     @Override
     public boolean verifySignature(String signingInput, String encodedSignature, String keyId, JSONObject jwks, String sharedSecret, SignatureAlgorithm signatureAlgorithm) throws Exception {
-        VerifySignatureRequest request = new VerifySignatureRequest();
-        request.getVerifySignatureRequestParam().setSigningInput(signingInput);
-        request.getVerifySignatureRequestParam().setSignature(encodedSignature);
-        request.getVerifySignatureRequestParam().setAlias(keyId);
-        request.getVerifySignatureRequestParam().setSharedSecret(sharedSecret);
-        request.getVerifySignatureRequestParam().setSignatureAlgorithm(signatureAlgorithm.getName());
+        VerifySignatureRequestParam request = new VerifySignatureRequestParam();
+        request.setSigningInput(signingInput);
+        request.setSignature(encodedSignature);
+        request.setAlias(keyId);
+        request.setSharedSecret(sharedSecret);
+        request.setSignatureAlgorithm(signatureAlgorithm.getName());
         if (jwks != null) {
-            request.getVerifySignatureRequestParam().setJwksRequestParam(getJwksRequestParam(jwks));
+            request.setJwksRequestParam(getJwksRequestParam(jwks));
         }
 
-        VerifySignatureClient client = new VerifySignatureClient(verifySignatureEndpoint);
-        client.setRequest(request);
-
-        VerifySignatureResponse response = client.exec();
-        if (response.getStatus() == HttpStatus.SC_OK) {
-            return response.isVerified();
-        } else {
-            throw new Exception(response.getEntity());
+        JSONObject response = post(verifySignatureEndpoint, request);
+        if (!response.has(VERIFIED)) {
+            throw new Exception(response.toString());
         }
+
+        return response.getBoolean(VERIFIED);
     }
 
     @Override
@@ -103,4 +119,91 @@ public class OxElevenCryptoProvider extends AbstractCryptoProvider {
             throw new Exception(response.getEntity());
         }
     }
+
+    private static JSONObject post(String endpoint, Object requestParam) throws Exception {
+        HttpPost httpPost = new HttpPost(endpoint);
+        httpPost.setEntity(new StringEntity(PooledClient.MAPPER.writeValueAsString(requestParam), ContentType.APPLICATION_JSON));
+
+        try {
+            HttpResponse httpResponse = PooledClient.getHttpClient().execute(httpPost);
+            String entity = httpResponse.getEntity() == null ? null : EntityUtils.toString(httpResponse.getEntity(), Consts.UTF_8);
+            if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                throw new Exception(entity);
+            }
+
+            return new JSONObject(entity);
+        } finally {
+            httpPost.releaseConnection();
+        }
+    }
+
+    /**
+     * Closes pooled connections to oxEleven. It should be called on application shutdown, pool is created
+     * again on next request.
+     */
+    public static void closeConnections() {
+        PooledClient.close();
+    }
+
+    /**
+     * Keep-alive connections to oxEleven shared by all providers
+     */
+    private static class PooledClient {
+
+        private static final int MAX_CONNECTIONS = 100;
+        private static final int CONNECT_TIMEOUT = 5000;
+        private static final int SOCKET_TIMEOUT = 30000;
+
+        static final ObjectMapper MAPPER = new ObjectMapper();
+
+        private static volatile CloseableHttpClient httpClient;
+
+        static CloseableHttpClient getHttpClient() {
+            CloseableHttpClient client = httpClient;
+            if (client != null) {
+                return client;
+            }
+
+            synchronized (PooledClient.class) {
+                if (httpClient == null) {
+                    httpClient = createHttpClient();
+                }
+
+                return httpClient;
+            }
+        }
+
+        static synchronized void close() {
+            if (httpClient == null) {
+                return;
+            }
+
+            try {
+                httpClient.close();
+            } catch (IOException ex) {
+                // Connections are released anyway
+            } finally {
+                httpClient = null;
+            }
+        }
+
+        private static CloseableHttpClient createHttpClient() {
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(MAX_CONNECTIONS);
+            connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+
+            RequestConfig requestConfig = RequestConfig.custom()
+                    .setConnectTimeout(CONNECT_TIMEOUT)
+                    .setSocketTimeout(SOCKET_TIMEOUT)
+                    .setConnectionRequestTimeout(SOCKET_TIMEOUT)
+                    .build();
+
+            return HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(requestConfig)
+                    .disableCookieManagement()
+                    .useSystemProperties()
+                    .build();
+        }
+    }
 }
@@ -6,6 +6,8 @@
 
 package org.xdi.oxauth.model.jwt;
 
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
@@ -13,6 +15,8 @@ import org.xdi.oxauth.model.exception.InvalidJwtException;
 import org.xdi.oxauth.model.util.Base64Util;
 import org.xdi.oxauth.model.util.Util;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.util.*;
@@ -23,6 +27,8 @@ import java.util.*;
  */
 public abstract class JwtClaimSet {
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private Map<String, Object> claims;
 
     public JwtClaimSet() {
@@ -220,11 +226,80 @@ public abstract class JwtClaimSet {
     }
 
     public String toJsonString() throws InvalidJwtException {
-        JSONObject jsonObject = toJsonObject();
-        String jsonObjectString = jsonObject.toString();
-        jsonObjectString = jsonObjectString.replace("\\/", "/");
+        StringWriter writer = new StringWriter(256);
+
+        try {
+            JsonGenerator generator = JSON_FACTORY.createJsonGenerator(writer);
+            writeJson(generator);
+            generator.close();
+        } catch (IOException e) {
+            throw new InvalidJwtException(e);
+        } catch (JSONException e) {
+            throw new InvalidJwtException(e);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * Writes claims directly to generator, the same way as {@link #toJsonObject()} builds them, but without
+     * intermediate JSON tree.
+     */
+    public void writeJson(JsonGenerator generator) throws IOException, JSONException {
+        // Resolve field names first: sub claim object is put by its own name and may replace another claim
+        Map<String, Object> fields = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Object> claim : claims.entrySet()) {
+            Object value = claim.getValue();
+            String name = value instanceof JwtSubClaimObject ? ((JwtSubClaimObject) value).getName() : claim.getKey();
+            if (value == null) {
+                // JSONObject removes field on null value
+                fields.remove(name);
+            } else {
+                fields.put(name, value);
+            }
+        }
+
+        generator.writeStartObject();
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            generator.writeFieldName(field.getKey());
+            writeJsonValue(generator, field.getValue());
+        }
+        generator.writeEndObject();
+    }
 
-        return jsonObjectString;
+    private static void writeJsonValue(JsonGenerator generator, Object value) throws IOException, JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            generator.writeNull();
+        } else if (value instanceof JwtClaimSet) {
+            ((JwtClaimSet) value).writeJson(generator);
+        } else if (value instanceof Date) {
+            generator.writeNumber(((Date) value).getTime() / 1000);
+        } else if (value instanceof String || value instanceof Character) {
+            generator.writeString(value.toString());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeRawValue(JSONObject.numberToString((Number) value));
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+            for (Object item : (Collection<?>) value) {
+                writeJsonValue(generator, item);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeJsonValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof JSONObject || value instanceof JSONArray) {
+            generator.writeRawValue(value.toString().replace("\\/", "/"));
+        } else {
+            generator.writeString(value.toString());
+        }
     }
 
     public Map<String, List<String>> toMap() throws InvalidJwtException {
@@ -6,6 +6,7 @@
 
 package org.xdi.oxauth.model.uma.persistence;
 
+import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
 
@@ -24,7 +25,9 @@ import org.xdi.oxauth.model.uma.UmaPermission;
  */
 @LdapEntry
 @LdapObjectClass(values = {"top", "oxAuthUmaResourceSetPermission"})
-public class ResourceSetPermission {
+public class ResourceSetPermission implements Serializable {
+
+    private static final long serialVersionUID = -6258428318468745946L;
 
     @LdapDN
     private String dn;
@@ -0,0 +1,186 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.crypto;
+
+import static org.gluu.oxeleven.model.SignResponseParam.SIGNATURE;
+import static org.gluu.oxeleven.model.VerifySignatureResponseParam.VERIFIED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.crypto.signature.SignatureAlgorithm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs oxEleven crypto provider against local stub of oxEleven REST API
+ */
+public class OxElevenCryptoProviderTest {
+
+    private HttpServer server;
+    private String baseUri;
+
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    private volatile JSONObject lastRequest;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/sign", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                lastRequest = readRequest(exchange);
+                send(exchange, 200, "{\"" + SIGNATURE + "\":\"c2lnbmF0dXJl\"}");
+            }
+        });
+        server.createContext("/verifySignature", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                lastRequest = readRequest(exchange);
+                send(exchange, 200, "{\"" + VERIFIED + "\":true}");
+            }
+        });
+        server.createContext("/emptyVerifySignature", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, "{\"status\":\"unknown\"}");
+            }
+        });
+        server.createContext("/failing", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 500, "{\"error\":\"HSM is not available\"}");
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        baseUri = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        OxElevenCryptoProvider.closeConnections();
+        server.stop(0);
+    }
+
+    @Test
+    public void connectionsAreReused() throws Exception {
+        OxElevenCryptoProvider cryptoProvider = provider("/sign");
+
+        clientPorts.clear();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(cryptoProvider.sign("input" + i, "key1", null, SignatureAlgorithm.RS256), "c2lnbmF0dXJl");
+        }
+
+        assertEquals(clientPorts.size(), 1);
+    }
+
+    @Test
+    public void signRequestHasOxElevenFields() throws Exception {
+        OxElevenCryptoProvider cryptoProvider = provider("/sign");
+
+        assertEquals(cryptoProvider.sign("input", "key1", null, SignatureAlgorithm.RS256), "c2lnbmF0dXJl");
+
+        JSONObject request = lastRequest;
+        assertEquals(request.getString("signingInput"), "input");
+        assertEquals(request.getString("alias"), "key1");
+        assertEquals(request.getString("signatureAlgorithm"), "RS256");
+        assertTrue(request.isNull("sharedSecret"));
+    }
+
+    @Test
+    public void verifySignature() throws Exception {
+        OxElevenCryptoProvider cryptoProvider = provider("/sign");
+
+        assertTrue(cryptoProvider.verifySignature("input", "c2lnbmF0dXJl", "key1", null, null, SignatureAlgorithm.RS256));
+
+        JSONObject request = lastRequest;
+        assertEquals(request.getString("signingInput"), "input");
+        assertEquals(request.getString("signature"), "c2lnbmF0dXJl");
+        assertEquals(request.getString("alias"), "key1");
+        assertEquals(request.getString("signatureAlgorithm"), "RS256");
+        assertTrue(request.isNull("sharedSecret"));
+        assertTrue(request.isNull("jwksRequestParam"));
+    }
+
+    @Test
+    public void verifyResponseWithoutResultIsRejected() throws Exception {
+        OxElevenCryptoProvider cryptoProvider = new OxElevenCryptoProvider(baseUri + "/generateKey", baseUri + "/sign",
+                baseUri + "/emptyVerifySignature", baseUri + "/deleteKey");
+
+        try {
+            cryptoProvider.verifySignature("input", "c2lnbmF0dXJl", "key1", null, null, SignatureAlgorithm.RS256);
+            fail("Verification should fail");
+        } catch (Exception ex) {
+            assertTrue(ex.getMessage().contains("status"));
+        }
+    }
+
+    @Test
+    public void connectionsAreReopenedAfterClose() throws Exception {
+        OxElevenCryptoProvider cryptoProvider = provider("/sign");
+
+        assertEquals(cryptoProvider.sign("input", "key1", null, SignatureAlgorithm.RS256), "c2lnbmF0dXJl");
+        OxElevenCryptoProvider.closeConnections();
+        assertEquals(cryptoProvider.sign("input", "key1", null, SignatureAlgorithm.RS256), "c2lnbmF0dXJl");
+    }
+
+    @Test
+    public void errorResponseIsThrown() throws Exception {
+        OxElevenCryptoProvider cryptoProvider = provider("/failing");
+
+        try {
+            cryptoProvider.sign("input", "key1", null, SignatureAlgorithm.RS256);
+            fail("Sign should fail");
+        } catch (Exception ex) {
+            assertTrue(ex.getMessage().contains("HSM is not available"));
+        }
+    }
+
+    private OxElevenCryptoProvider provider(String signPath) {
+        return new OxElevenCryptoProvider(baseUri + "/generateKey", baseUri + signPath, baseUri + "/verifySignature", baseUri + "/deleteKey");
+    }
+
+    private static JSONObject readRequest(HttpExchange exchange) throws IOException {
+        assertEquals(exchange.getRequestMethod(), "POST");
+        assertTrue(exchange.getRequestHeaders().getFirst("Content-Type").startsWith("application/json"));
+
+        InputStream is = exchange.getRequestBody();
+        try {
+            return new JSONObject(IOUtils.toString(is, "UTF-8"));
+        } catch (JSONException ex) {
+            throw new IOException(ex);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(bytes);
+        os.close();
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.jwt;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+
+public class JwtClaimSetTest {
+
+    @Test
+    public void claimsAreWrittenInOrder() throws Exception {
+        JwtClaims claims = new JwtClaims();
+        claims.setIssuer("https://localhost/oxauth");
+        claims.setClaim("exp", new Date(1500000000000L));
+        claims.setClaim("aud", Arrays.asList("a", "b"));
+        claims.setClaim("email_verified", true);
+
+        assertEquals(claims.toJsonString(), "{\"iss\":\"https://localhost/oxauth\",\"exp\":1500000000,\"aud\":[\"a\",\"b\"],\"email_verified\":true}");
+    }
+
+    @Test
+    public void jsonNullIsWrittenAsNull() throws Exception {
+        JwtClaims claims = new JwtClaims(new JSONObject("{\"nickname\":null,\"roles\":[\"admin\",null]}"));
+
+        assertEquals(claims.toJsonString(), "{\"nickname\":null,\"roles\":[\"admin\",null]}");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mapIsWrittenAsObject() throws Exception {
+        Map<String, Object> address = new LinkedHashMap<String, Object>();
+        address.put("country", "US");
+        address.put("postal_code", 12345);
+
+        List addresses = new ArrayList();
+        addresses.add(address);
+
+        JwtClaims claims = new JwtClaims();
+        claims.setClaim("addresses", addresses);
+
+        assertEquals(claims.toJsonString(), "{\"addresses\":[{\"country\":\"US\",\"postal_code\":12345}]}");
+    }
+
+    @Test
+    public void subClaimObjectReplacesClaimWithSameName() throws Exception {
+        JwtSubClaimObject address = new JwtSubClaimObject();
+        address.setName("address");
+        address.setClaim("country", "US");
+
+        JwtClaims claims = new JwtClaims();
+        claims.setClaim("address", "Unknown");
+        claims.setClaim("sub", "1234");
+        claims.setClaim("address_claim", address);
+
+        assertEquals(claims.toJsonString(), "{\"address\":{\"country\":\"US\"},\"sub\":\"1234\"}");
+    }
+
+    @Test
+    public void nullClaimRemovesField() throws Exception {
+        JwtClaims claims = new JwtClaims();
+        claims.setClaim("sub", "1234");
+        claims.setNullClaim("nickname");
+
+        assertEquals(claims.toJsonString(), "{\"sub\":\"1234\"}");
+    }
+
+}
@@ -58,12 +58,27 @@ class PersonAuthentication(PersonAuthenticationType):
             crl_max_response_size = StringHelper.toInteger(configurationAttributes.get("crl_max_response_size").getValue2(), crl_max_response_size)
             print "Cert. Initialization. CRL max response size is '%d'" % crl_max_response_size
 
+        crl_store_dir = None
+        if configurationAttributes.containsKey("crl_store_dir"):
+            crl_store_dir = configurationAttributes.get("crl_store_dir").getValue2()
+            print "Cert. Initialization. CRL store directory is '%s'" % crl_store_dir
+
+        ocsp_soft_fail_window = 0
+        if configurationAttributes.containsKey("ocsp_soft_fail_window"):
+            ocsp_soft_fail_window = StringHelper.toInteger(configurationAttributes.get("ocsp_soft_fail_window").getValue2(), ocsp_soft_fail_window)
+            print "Cert. Initialization. OCSP soft fail window is '%d' seconds" % ocsp_soft_fail_window
+
+        path_cache_lifetime = 3600
+        if configurationAttributes.containsKey("path_cache_lifetime"):
+            path_cache_lifetime = StringHelper.toInteger(configurationAttributes.get("path_cache_lifetime").getValue2(), path_cache_lifetime)
+            print "Cert. Initialization. Path validation cache lifetime is '%d' seconds" % path_cache_lifetime
+
         # Define array to order methods correctly
         self.validator_types = [ 'generic', 'path', 'ocsp', 'crl']
         self.validators = { 'generic' : [GenericCertificateVerifier(), False],
-                            'path' : [PathCertificateVerifier(False), False],
-                            'ocsp' : [OCSPCertificateVerifier(), False],
-                            'crl' : [CRLCertificateVerifier(crl_max_response_size), False] }
+                            'path' : [PathCertificateVerifier(False, path_cache_lifetime), False],
+                            'ocsp' : [OCSPCertificateVerifier(ocsp_soft_fail_window), False],
+                            'crl' : [self.createCrlCertificateVerifier(crl_max_response_size, crl_store_dir), False] }
 
         for type in self.validator_types:
             validator_param_name = "use_%s_validator" % type
@@ -83,6 +98,12 @@ class PersonAuthentication(PersonAuthenticationType):
 
         return True   
 
+    def createCrlCertificateVerifier(self, crl_max_response_size, crl_store_dir):
+        if StringHelper.isEmpty(crl_store_dir):
+            return CRLCertificateVerifier(crl_max_response_size)
+
+        return CRLCertificateVerifier(crl_max_response_size, crl_store_dir)
+
     def destroy(self, configurationAttributes):
         print "Cert. Destroy"
 
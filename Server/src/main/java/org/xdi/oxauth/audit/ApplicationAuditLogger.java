@@ -2,28 +2,19 @@ package org.xdi.oxauth.audit;
 
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import javax.ejb.Asynchronous;
 import javax.ejb.DependsOn;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.jms.JMSException;
-import javax.jms.MessageProducer;
-import javax.jms.QueueConnection;
-import javax.jms.QueueSession;
-import javax.jms.Session;
-import javax.jms.TextMessage;
-
-import org.apache.activemq.ActiveMQConnectionFactory;
-import org.apache.activemq.pool.PooledConnectionFactory;
+
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.BooleanUtils;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.xdi.oxauth.model.audit.OAuth2AuditLog;
 import org.xdi.oxauth.model.config.StaticConfiguration;
@@ -32,40 +23,39 @@ import org.xdi.oxauth.util.ServerUtil;
 
 import com.google.common.base.Objects;
 
+/**
+ * Sends audit events asynchronously. Events are serialized on caller thread and put into bounded queue,
+ * dedicated thread delivers them in batches to JMS queue or local file.
+ */
 @Named
 @ApplicationScoped
 @DependsOn("appInitializer")
 public class ApplicationAuditLogger {
 
-	private static final String APPLICATION_AUDIT_LOGGER_REFRESH_TIMER = "applicationAuditLoggerRefreshTimer";
+	private static final long STOP_TIMEOUT = 10000; // 10 seconds
 
 	@Inject
 	private Logger log;
 
-	private final String BROKER_URL_PREFIX = "failover:(";
-	private final String BROKER_URL_SUFFIX = ")?timeout=5000&jms.useAsyncSend=true";
-	private final int ACK_MODE = Session.AUTO_ACKNOWLEDGE;
-	private final String CLIENT_QUEUE_NAME = "oauth2.audit.logging";
-	private final boolean transacted = false;
-
-	private volatile PooledConnectionFactory pooledConnectionFactory;
+	private volatile AuditLogPipeline pipeline;
+	private final LoggerAuditSink loggerAuditSink = new LoggerAuditSink();
 
 	private Set<String> jmsBrokerURISet;
 	private String jmsUserName;
 	private String jmsPassword;
+	private String filePath;
 
 	@Inject
 	private AppConfiguration appConfiguration;
 
 	private final ReentrantLock lock = new ReentrantLock();
 
-	private boolean updateState;
-	private Boolean enabledOAuthAuditnLogging;
-
     // TODO: CDI: Fix
 //	@Observer( ConfigurationFactory.CONFIGURATION_UPDATE_EVENT )
 	public void updateConfiguration(AppConfiguration appConfiguration, StaticConfiguration staticConfiguration) {
-		this.updateState = true;
+		if (BooleanUtils.isNotTrue(isEnabledOAuthAuditnLogging())) {
+			destroy();
+		}
 	}
 
     @PostConstruct
@@ -74,130 +64,127 @@ public class ApplicationAuditLogger {
 			return;
 		}
 
-		tryToEstablishJMSConnection();
+		getPipeline();
 	}
 
-	@Asynchronous
 	public void sendMessage(OAuth2AuditLog oAuth2AuditLog) {
 		if (BooleanUtils.isNotTrue(isEnabledOAuthAuditnLogging())) {
 			return;
 		}
 
-		if ((this.pooledConnectionFactory == null) || isJmsConfigChanged()) {
-			if (tryToEstablishJMSConnection())
-				loggingThroughJMS(oAuth2AuditLog);
-			else
-				loggingThroughFile(oAuth2AuditLog);
-		} else {
-			loggingThroughJMS(oAuth2AuditLog);
+		final String message;
+		try {
+			message = ServerUtil.asJson(oAuth2AuditLog);
+		} catch (IOException e) {
+			log.error("Can't serialize the audit log", e);
+			return;
+		}
+
+		if (!getPipeline().offer(message)) {
+			log.trace("Audit log queue is full, event is dropped");
 		}
 	}
 
-	@PreDestroy
-	public void destroy() {
-		if (this.pooledConnectionFactory == null)
-			return;
-		this.pooledConnectionFactory.clear();
-		this.pooledConnectionFactory = null;
+	/**
+	 * @return count of events dropped because queue was full
+	 */
+	public long getDroppedCount() {
+		final AuditLogPipeline pipeline = this.pipeline;
+		return pipeline != null ? pipeline.getDroppedCount() : 0;
 	}
 
-	private boolean tryToEstablishJMSConnection() {
+	@PreDestroy
+	public void destroy() {
+		final AuditLogPipeline oldPipeline;
 		lock.lock();
 		try {
-			// Check if another thread init JMS pool already
-			if ((this.pooledConnectionFactory != null) && !isJmsConfigChanged()) {
-				return tryToEstablishJMSConnectionImpl();
-			}
-
-	        return true;
+			oldPipeline = this.pipeline;
+			this.pipeline = null;
 		} finally {
 			lock.unlock();
 		}
-	}
-
-	private boolean tryToEstablishJMSConnectionImpl() {
-		destroy();
-
-		Set<String> jmsBrokerURISet = getJmsBrokerURISet();
-		if (BooleanUtils.isNotTrue(isEnabledOAuthAuditnLogging()) || CollectionUtils.isEmpty(jmsBrokerURISet))
-			return false;
-
-		this.jmsBrokerURISet = new HashSet<String>(jmsBrokerURISet);
-		this.jmsUserName = getJmsUserName();
-		this.jmsPassword = getJmsPassword();
 
-		Iterator<String> jmsBrokerURIIterator = jmsBrokerURISet.iterator();
+		stop(oldPipeline);
+	}
 
-		StringBuilder uriBuilder = new StringBuilder();
-		while (jmsBrokerURIIterator.hasNext()) {
-			String jmsBrokerURI = jmsBrokerURIIterator.next();
-			uriBuilder.append("tcp://");
-			uriBuilder.append(jmsBrokerURI);
-			if (jmsBrokerURIIterator.hasNext())
-				uriBuilder.append(",");
+	private AuditLogPipeline getPipeline() {
+		AuditLogPipeline pipeline = this.pipeline;
+		if ((pipeline != null) && !isConfigChanged()) {
+			return pipeline;
 		}
 
-		String brokerUrl = BROKER_URL_PREFIX + uriBuilder + BROKER_URL_SUFFIX;
-
-		ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(this.jmsUserName, this.jmsPassword,
-				brokerUrl);
-		this.pooledConnectionFactory = new PooledConnectionFactory(connectionFactory);
+		AuditLogPipeline oldPipeline = null;
+		lock.lock();
+		try {
+			// Check if another thread created pipeline already
+			pipeline = this.pipeline;
+			if ((pipeline == null) || isConfigChanged()) {
+				oldPipeline = pipeline;
+				pipeline = createPipeline();
+				this.pipeline = pipeline;
+			}
+		} finally {
+			lock.unlock();
+		}
 
-		pooledConnectionFactory.setIdleTimeout(5000);
-		pooledConnectionFactory.setMaxConnections(10);
-		pooledConnectionFactory.start();
+		// Old pipeline delivers queued events without blocking producers which use new one
+		stopInBackground(oldPipeline);
 
-		return true;
+		return pipeline;
 	}
 
-	private void loggingThroughJMS(OAuth2AuditLog oAuth2AuditLog) {
-		QueueConnection connection = null;
-		try {
-			connection = pooledConnectionFactory.createQueueConnection();
-			connection.start();
+	private void stop(AuditLogPipeline pipeline) {
+		if (pipeline != null) {
+			pipeline.stop(STOP_TIMEOUT);
+		}
+	}
 
-			QueueSession session = connection.createQueueSession(transacted, ACK_MODE);
-			MessageProducer producer = session.createProducer(session.createQueue(CLIENT_QUEUE_NAME));
+	/**
+	 * Stops pipeline without making request thread wait for delivery of queued events
+	 */
+	private void stopInBackground(final AuditLogPipeline pipeline) {
+		if (pipeline == null) {
+			return;
+		}
 
-			TextMessage txtMessage = session.createTextMessage();
-			txtMessage.setText(ServerUtil.asPrettyJson(oAuth2AuditLog));
-			producer.send(txtMessage);
-		} catch (JMSException e) {
-			log.error("Can't send message", e);
-		} catch (IOException e) {
-			log.error("Can't serialize the audit log", e);
-		} catch (Exception e) {
-			log.error("Can't send message, please check your activeMQ configuration.", e);
-		} finally {
-			if (connection == null)
-				return;
-			try {
-				connection.close();
-			} catch (JMSException e) {
-				log.error("Can't close connection.");
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				stop(pipeline);
 			}
-		}
+		}, "audit-log-stop");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
-	private void loggingThroughFile(OAuth2AuditLog oAuth2AuditLog) {
-		try {
-			log.info(ServerUtil.asPrettyJson(oAuth2AuditLog));
-		} catch (IOException e) {
-			log.error("Can't serialize the audit log", e);
+	private AuditLogPipeline createPipeline() {
+		Set<String> jmsBrokerURISet = getJmsBrokerURISet();
+		this.jmsBrokerURISet = jmsBrokerURISet != null ? new HashSet<String>(jmsBrokerURISet) : null;
+		this.jmsUserName = getJmsUserName();
+		this.jmsPassword = getJmsPassword();
+		this.filePath = getFilePath();
+
+		AuditSink sink;
+		if (StringUtils.isNotBlank(this.filePath)) {
+			sink = new FileAuditSink(this.filePath, appConfiguration.getAuditLogFileMaxSize());
+		} else if (CollectionUtils.isNotEmpty(this.jmsBrokerURISet)) {
+			sink = new JmsAuditSink(this.jmsBrokerURISet, this.jmsUserName, this.jmsPassword);
+		} else {
+			sink = loggerAuditSink;
 		}
+
+		log.debug("Audit log sink: {}", sink.getClass().getSimpleName());
+
+		return new AuditLogPipeline(sink, loggerAuditSink, appConfiguration.getAuditLogQueueSize(), appConfiguration.getAuditLogBatchSize(),
+				BooleanUtils.isTrue(appConfiguration.getAuditLogBlockOnOverflow()));
 	}
 
-	private boolean isJmsConfigChanged() {
+	private boolean isConfigChanged() {
 		return !Objects.equal(this.jmsUserName, getJmsUserName()) || !Objects.equal(this.jmsPassword, getJmsPassword())
-				|| !Objects.equal(this.jmsBrokerURISet, getJmsBrokerURISet());
+				|| !Objects.equal(this.jmsBrokerURISet, getJmsBrokerURISet()) || !Objects.equal(this.filePath, getFilePath());
 	}
 
 	private Boolean isEnabledOAuthAuditnLogging() {
-		if (this.updateState) {
-			this.enabledOAuthAuditnLogging = appConfiguration.getEnabledOAuthAuditLogging();
-		}
-
-		return this.enabledOAuthAuditnLogging;
+		return appConfiguration.getEnabledOAuthAuditLogging();
 	}
 
 	private Set<String> getJmsBrokerURISet() {
@@ -211,4 +198,8 @@ public class ApplicationAuditLogger {
 	private String getJmsPassword() {
 		return appConfiguration.getJmsPassword();
 	}
-}
\ No newline at end of file
+
+	private String getFilePath() {
+		return appConfiguration.getAuditLogFilePath();
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of serialized audit events which is drained by dedicated thread into sink in batches.
+ * <p/>
+ * Producers never take locks. If queue is full event is dropped and counted, or producer waits for free
+ * space up to overflow timeout if pipeline blocks on overflow. Batch which sink fails to deliver goes to
+ * fallback sink. Sink is closed by drain thread after last batch.
+ */
+public class AuditLogPipeline {
+
+	private static final Logger log = LoggerFactory.getLogger(AuditLogPipeline.class);
+
+	private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long OVERFLOW_WAIT = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long DEFAULT_OVERFLOW_TIMEOUT = 1000; // 1 second
+
+	private final AuditSink sink;
+	private final AuditSink fallbackSink;
+	private final int capacity;
+	private final int batchSize;
+	private final boolean blockOnOverflow;
+	private final long overflowTimeout;
+
+	private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<String>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final Thread drainThread;
+	private volatile boolean running = true;
+
+	public AuditLogPipeline(AuditSink sink, AuditSink fallbackSink, int capacity, int batchSize, boolean blockOnOverflow) {
+		this(sink, fallbackSink, capacity, batchSize, blockOnOverflow, DEFAULT_OVERFLOW_TIMEOUT);
+	}
+
+	/**
+	 * @param overflowTimeoutMillis max time producer waits for free space if pipeline blocks on overflow
+	 */
+	AuditLogPipeline(AuditSink sink, AuditSink fallbackSink, int capacity, int batchSize, boolean blockOnOverflow, long overflowTimeoutMillis) {
+		this.sink = sink;
+		this.fallbackSink = fallbackSink;
+		this.capacity = Math.max(1, capacity);
+		this.batchSize = Math.max(1, batchSize);
+		this.blockOnOverflow = blockOnOverflow;
+		this.overflowTimeout = TimeUnit.MILLISECONDS.toNanos(overflowTimeoutMillis);
+
+		this.drainThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					drain();
+				} finally {
+					sink.close();
+				}
+			}
+		}, "audit-log-drain");
+		this.drainThread.setDaemon(true);
+		this.drainThread.start();
+	}
+
+	/**
+	 * @return false if event was dropped
+	 */
+	public boolean offer(String message) {
+		long overflowDeadline = 0;
+		int current;
+		while (true) {
+			if (!running) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+
+			current = size.get();
+			if (current < capacity) {
+				if (size.compareAndSet(current, current + 1)) {
+					break;
+				}
+				continue;
+			}
+
+			if (!blockOnOverflow) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+
+			final long now = System.nanoTime();
+			if (overflowDeadline == 0) {
+				overflowDeadline = now + overflowTimeout;
+			} else if (now - overflowDeadline >= 0) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+
+			LockSupport.unpark(drainThread);
+			LockSupport.parkNanos(this, OVERFLOW_WAIT);
+		}
+
+		queue.offer(message);
+
+		// Pipeline could be stopped after check above and drain thread could exit before event was queued.
+		// Event which drain thread didn't take is dropped then instead of being lost silently
+		if (!running && queue.remove(message)) {
+			size.decrementAndGet();
+			droppedCount.incrementAndGet();
+			return false;
+		}
+
+		// Wake up idle drain thread on first event and on full batch
+		if ((current == 0) || (current + 1 == batchSize)) {
+			LockSupport.unpark(drainThread);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stops accepting events and waits while queued events are delivered. If timeout expires, drain thread
+	 * keeps delivering remaining events and closes sink when it's done.
+	 */
+	public void stop(long timeoutMillis) {
+		running = false;
+		LockSupport.unpark(drainThread);
+
+		try {
+			drainThread.join(timeoutMillis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (drainThread.isAlive()) {
+			log.warn("Audit log pipeline was stopped with '" + size.get() + "' undelivered events");
+		}
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public int getSize() {
+		return size.get();
+	}
+
+	private void drain() {
+		final List<String> batch = new ArrayList<String>(batchSize);
+		while (running || (size.get() > 0)) {
+			String message;
+			while ((batch.size() < batchSize) && ((message = queue.poll()) != null)) {
+				batch.add(message);
+			}
+
+			if (batch.isEmpty()) {
+				LockSupport.parkNanos(this, IDLE_WAIT);
+				continue;
+			}
+
+			size.addAndGet(-batch.size());
+			deliver(batch);
+			batch.clear();
+		}
+	}
+
+	private void deliver(List<String> batch) {
+		try {
+			sink.send(batch);
+			return;
+		} catch (Exception ex) {
+			log.error("Can't send audit log batch of '" + batch.size() + "' events", ex);
+		}
+
+		try {
+			fallbackSink.send(batch);
+		} catch (Exception ex) {
+			log.error("Can't write audit log batch to fallback sink", ex);
+		}
+	}
+
+}
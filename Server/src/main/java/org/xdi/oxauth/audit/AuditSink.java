@@ -0,0 +1,25 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.audit;
+
+import java.util.List;
+
+/**
+ * Destination of serialized audit events
+ */
+public interface AuditSink {
+
+	/**
+	 * Delivers batch of audit events. Method is called only from drain thread of pipeline.
+	 *
+	 * @throws Exception if batch wasn't delivered
+	 */
+	void send(List<String> messages) throws Exception;
+
+	void close();
+
+}
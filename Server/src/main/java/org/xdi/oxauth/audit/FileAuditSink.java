@@ -0,0 +1,143 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.audit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xdi.oxauth.model.util.Util;
+
+/**
+ * Writes audit events to local file, one event per line. File is rolled over when it reaches max size,
+ * last {@link #MAX_BACKUP_FILES} files are kept as file.1 ... file.N.
+ * <p/>
+ * Batch is written entirely or not at all: on write failure file is truncated to its size before batch,
+ * so fallback sink doesn't duplicate events which were already written.
+ */
+public class FileAuditSink implements AuditSink {
+
+	private static final Logger log = LoggerFactory.getLogger(FileAuditSink.class);
+
+	public static final int MAX_BACKUP_FILES = 5;
+
+	private final File file;
+	private final long maxSize;
+
+	private FileOutputStream outputStream;
+	private Writer writer;
+	private long size;
+
+	/**
+	 * @param maxSize max size of file in bytes before rollover
+	 */
+	public FileAuditSink(String filePath, long maxSize) {
+		this.file = new File(filePath);
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public void send(List<String> messages) throws IOException {
+		final Writer writer = getWriter();
+		final long batchStart = size;
+		try {
+			long batchSize = 0;
+			for (String message : messages) {
+				writer.write(message);
+				writer.write('\n');
+				batchSize += message.getBytes(Util.UTF8_STRING_ENCODING).length + 1;
+			}
+			writer.flush();
+			size += batchSize;
+		} catch (IOException ex) {
+			discardBatch(batchStart);
+			throw ex;
+		}
+
+		if (size >= maxSize) {
+			rollOver();
+		}
+	}
+
+	@Override
+	public void close() {
+		IOUtils.closeQuietly(writer);
+		writer = null;
+		outputStream = null;
+	}
+
+	/**
+	 * Drops buffered data without flushing it and removes part of batch which reached the file
+	 */
+	private void discardBatch(long batchStart) {
+		IOUtils.closeQuietly(outputStream);
+		outputStream = null;
+		writer = null;
+
+		if (file.length() <= batchStart) {
+			return;
+		}
+
+		RandomAccessFile randomAccessFile = null;
+		try {
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			randomAccessFile.setLength(batchStart);
+		} catch (IOException ex) {
+			log.error("Failed to remove partially written audit log batch from file: " + file, ex);
+		} finally {
+			IOUtils.closeQuietly(randomAccessFile);
+		}
+	}
+
+	private Writer getWriter() throws IOException {
+		if (writer == null) {
+			final File parent = file.getAbsoluteFile().getParentFile();
+			if ((parent != null) && !parent.exists() && !parent.mkdirs()) {
+				throw new IOException("Failed to create audit log directory: " + parent);
+			}
+
+			outputStream = new FileOutputStream(file, true);
+			writer = new BufferedWriter(new OutputStreamWriter(outputStream, Util.UTF8_STRING_ENCODING));
+			size = file.length();
+		}
+
+		return writer;
+	}
+
+	private void rollOver() {
+		close();
+
+		final File oldest = getBackupFile(MAX_BACKUP_FILES);
+		if (oldest.exists() && !oldest.delete()) {
+			log.warn("Failed to delete audit log file: " + oldest);
+		}
+
+		for (int i = MAX_BACKUP_FILES - 1; i >= 1; i--) {
+			final File backup = getBackupFile(i);
+			if (backup.exists() && !backup.renameTo(getBackupFile(i + 1))) {
+				log.warn("Failed to rename audit log file: " + backup);
+			}
+		}
+
+		if (!file.renameTo(getBackupFile(1))) {
+			log.warn("Failed to roll over audit log file: " + file);
+		}
+	}
+
+	private File getBackupFile(int index) {
+		return new File(file.getPath() + "." + index);
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.audit;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.pool.PooledConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends audit events to ActiveMQ queue. Connection, session and producer are kept open between batches,
+ * each batch is sent in one transaction.
+ */
+public class JmsAuditSink implements AuditSink {
+
+	private static final Logger log = LoggerFactory.getLogger(JmsAuditSink.class);
+
+	private static final String BROKER_URL_PREFIX = "failover:(";
+	private static final String BROKER_URL_SUFFIX = ")?timeout=5000&jms.useAsyncSend=true";
+	private static final String CLIENT_QUEUE_NAME = "oauth2.audit.logging";
+
+	private final PooledConnectionFactory pooledConnectionFactory;
+
+	private QueueConnection connection;
+	private QueueSession session;
+	private MessageProducer producer;
+
+	public JmsAuditSink(Set<String> jmsBrokerURISet, String jmsUserName, String jmsPassword) {
+		Iterator<String> jmsBrokerURIIterator = jmsBrokerURISet.iterator();
+
+		StringBuilder uriBuilder = new StringBuilder();
+		while (jmsBrokerURIIterator.hasNext()) {
+			String jmsBrokerURI = jmsBrokerURIIterator.next();
+			uriBuilder.append("tcp://");
+			uriBuilder.append(jmsBrokerURI);
+			if (jmsBrokerURIIterator.hasNext())
+				uriBuilder.append(",");
+		}
+
+		String brokerUrl = BROKER_URL_PREFIX + uriBuilder + BROKER_URL_SUFFIX;
+
+		ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(jmsUserName, jmsPassword, brokerUrl);
+		this.pooledConnectionFactory = new PooledConnectionFactory(connectionFactory);
+
+		pooledConnectionFactory.setIdleTimeout(5000);
+		pooledConnectionFactory.setMaxConnections(10);
+		pooledConnectionFactory.start();
+	}
+
+	@Override
+	public void send(List<String> messages) throws JMSException {
+		try {
+			if (producer == null) {
+				openSession();
+			}
+
+			for (String message : messages) {
+				producer.send(session.createTextMessage(message));
+			}
+			session.commit();
+		} catch (JMSException ex) {
+			// Session is reopened for next batch, uncommitted messages are discarded by broker
+			closeSession();
+			throw ex;
+		}
+	}
+
+	@Override
+	public void close() {
+		closeSession();
+
+		pooledConnectionFactory.clear();
+		pooledConnectionFactory.stop();
+	}
+
+	private void openSession() throws JMSException {
+		connection = pooledConnectionFactory.createQueueConnection();
+		connection.start();
+
+		session = connection.createQueueSession(true, Session.SESSION_TRANSACTED);
+		producer = session.createProducer(session.createQueue(CLIENT_QUEUE_NAME));
+	}
+
+	private void closeSession() {
+		producer = null;
+		session = null;
+
+		if (connection == null) {
+			return;
+		}
+
+		try {
+			connection.close();
+		} catch (JMSException e) {
+			log.error("Can't close connection.");
+		}
+		connection = null;
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.audit;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes audit events to server log. It's used if no other sink is configured or if sink fails.
+ */
+public class LoggerAuditSink implements AuditSink {
+
+	private static final Logger log = LoggerFactory.getLogger(ApplicationAuditLogger.class);
+
+	@Override
+	public void send(List<String> messages) {
+		for (String message : messages) {
+			log.info(message);
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
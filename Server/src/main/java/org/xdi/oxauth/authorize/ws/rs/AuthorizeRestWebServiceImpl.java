@@ -8,10 +8,6 @@ package org.xdi.oxauth.authorize.ws.rs;
 
 import static org.xdi.oxauth.model.util.StringUtils.implode;
 
-import java.net.ConnectException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.UnknownHostException;
 import java.security.SignatureException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,8 +37,6 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.gluu.site.ldap.persistence.exception.EntryPersistenceException;
-import org.jboss.resteasy.client.ClientRequest;
-import org.jboss.resteasy.client.ClientResponse;
 import org.slf4j.Logger;
 import org.xdi.oxauth.audit.ApplicationAuditLogger;
 import org.xdi.oxauth.auth.Authenticator;
@@ -73,8 +67,6 @@ import org.xdi.oxauth.model.exception.InvalidJwtException;
 import org.xdi.oxauth.model.jwt.JwtClaimName;
 import org.xdi.oxauth.model.ldap.ClientAuthorizations;
 import org.xdi.oxauth.model.registration.Client;
-import org.xdi.oxauth.model.util.Base64Util;
-import org.xdi.oxauth.model.util.JwtUtil;
 import org.xdi.oxauth.model.util.Util;
 import org.xdi.oxauth.security.Identity;
 import org.xdi.oxauth.service.AuthenticationFilterService;
@@ -82,6 +74,7 @@ import org.xdi.oxauth.service.AuthenticationService;
 import org.xdi.oxauth.service.ClientAuthorizationsService;
 import org.xdi.oxauth.service.ClientService;
 import org.xdi.oxauth.service.RedirectionUriService;
+import org.xdi.oxauth.service.RequestObjectService;
 import org.xdi.oxauth.service.SessionStateService;
 import org.xdi.oxauth.service.UserService;
 import org.xdi.oxauth.util.QueryStringDecoder;
@@ -116,6 +109,9 @@ public class AuthorizeRestWebServiceImpl implements AuthorizeRestWebService {
     @Inject
     private RedirectionUriService redirectionUriService;
 
+    @Inject
+    private RequestObjectService requestObjectService;
+
     @Inject
     private AuthorizationGrantList authorizationGrantList;
 
@@ -279,56 +275,28 @@ public class AuthorizeRestWebServiceImpl implements AuthorizeRestWebService {
                                 }
                             }
 
+                            String fetchedRequestUri = null;
                             if (StringUtils.isNotBlank(requestUri)) {
-                                boolean validRequestUri = false;
-                                try {
-                                    URI reqUri = new URI(requestUri);
-                                    String reqUriHash = reqUri.getFragment();
-                                    String reqUriWithoutFragment = reqUri.getScheme() + ":" + reqUri.getSchemeSpecificPart();
-
-                                    ClientRequest clientRequest = new ClientRequest(reqUriWithoutFragment);
-                                    clientRequest.setHttpMethod(HttpMethod.GET);
-
-                                    ClientResponse<String> clientResponse = clientRequest.get(String.class);
-                                    int status = clientResponse.getStatus();
-
-                                    if (status == 200) {
-                                        request = clientResponse.getEntity(String.class);
-
-                                        if (StringUtils.isBlank(reqUriHash)) {
-                                            validRequestUri = true;
-                                        } else {
-                                            String hash = Base64Util.base64urlencode(JwtUtil.getMessageDigestSHA256(request));
-                                            validRequestUri = StringUtils.equals(reqUriHash, hash);
-                                        }
-                                    }
-
-                                    if (validRequestUri) {
-                                        requestUri = null;
-                                    } else {
-                                        RedirectUri redirectUriResponse = new RedirectUri(redirectUri, responseTypes, responseMode);
-                                        redirectUriResponse.parseQueryString(errorResponseFactory.getErrorAsQueryString(
-                                                AuthorizeErrorResponseType.INVALID_REQUEST_URI, state));
+                                String requestObject = requestObjectService.getRequestObject(requestUri);
+                                if (requestObject != null) {
+                                    request = requestObject;
+                                    fetchedRequestUri = requestUri;
+                                    requestUri = null;
+                                } else {
+                                    RedirectUri redirectUriResponse = new RedirectUri(redirectUri, responseTypes, responseMode);
+                                    redirectUriResponse.parseQueryString(errorResponseFactory.getErrorAsQueryString(
+                                            AuthorizeErrorResponseType.INVALID_REQUEST_URI, state));
 
-                                        builder = RedirectUtil.getRedirectResponseBuilder(redirectUriResponse, httpRequest);
-                                        applicationAuditLogger.sendMessage(oAuth2AuditLog);
-                                        return builder.build();
-                                    }
-                                } catch (URISyntaxException e) {
-                                    log.error(e.getMessage(), e);
-                                } catch (UnknownHostException e) {
-                                    log.error(e.getMessage(), e);
-                                } catch (ConnectException e) {
-                                    log.error(e.getMessage(), e);
-                                } catch (Exception e) {
-                                    log.error(e.getMessage(), e);
+                                    builder = RedirectUtil.getRedirectResponseBuilder(redirectUriResponse, httpRequest);
+                                    applicationAuditLogger.sendMessage(oAuth2AuditLog);
+                                    return builder.build();
                                 }
                             }
 
                             boolean invalidOpenidRequestObject = false;
                             if (StringUtils.isNotBlank(request)) {
                                 try {
-                                    jwtAuthorizationRequest = new JwtAuthorizationRequest(appConfiguration, request, client);
+                                    jwtAuthorizationRequest = requestObjectService.getJwtAuthorizationRequest(request, fetchedRequestUri, client);
 
                                     if (!jwtAuthorizationRequest.getResponseTypes().containsAll(responseTypes)
                                             || !responseTypes.containsAll(jwtAuthorizationRequest.getResponseTypes())) {
@@ -6,56 +6,26 @@
 
 package org.xdi.oxauth.cert.validation;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigInteger;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.security.NoSuchProviderException;
 import java.security.Principal;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.BoundedInputStream;
-import org.bouncycastle.asn1.ASN1InputStream;
-import org.bouncycastle.asn1.ASN1OctetString;
-import org.bouncycastle.asn1.ASN1Primitive;
-import org.bouncycastle.asn1.ASN1TaggedObject;
-import org.bouncycastle.asn1.DERIA5String;
-import org.bouncycastle.asn1.DERInteger;
-import org.bouncycastle.asn1.DEROctetString;
-import org.bouncycastle.asn1.x509.CRLDistPoint;
-import org.bouncycastle.asn1.x509.DistributionPoint;
-import org.bouncycastle.asn1.x509.DistributionPointName;
+
 import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.asn1.x509.GeneralName;
-import org.bouncycastle.asn1.x509.GeneralNames;
-import org.bouncycastle.asn1.x509.X509Extensions;
-import org.bouncycastle.x509.NoSuchParserException;
-import org.bouncycastle.x509.util.StreamParsingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xdi.oxauth.cert.validation.CRLStore.CRLEntry;
 import org.xdi.oxauth.cert.validation.model.ValidationStatus;
 import org.xdi.oxauth.cert.validation.model.ValidationStatus.CertificateValidity;
 import org.xdi.oxauth.cert.validation.model.ValidationStatus.ValidatorSourceType;
 import org.xdi.oxauth.model.util.SecurityProviderUtility;
 
-import com.google.common.base.Preconditions;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
 /**
  * Certificate verifier based on CRL
  * 
@@ -66,25 +36,22 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 
 	private static final Logger log = LoggerFactory.getLogger(CRLCertificateVerifier.class);
 
-	private int maxCrlSize;
-
-	private LoadingCache<String, X509CRL> crlCache;
+	private CRLStore crlStore;
 
+	/**
+	 * CRLs are kept in memory only
+	 */
 	public CRLCertificateVerifier(final int maxCrlSize) {
-		SecurityProviderUtility.installBCProvider(true);
-
-		this.maxCrlSize = maxCrlSize;
-		
-		CacheLoader<String, X509CRL> checkedLoader = new CacheLoader<String, X509CRL>() {
-			public X509CRL load(String crlURL) throws CertificateException, CRLException, NoSuchProviderException, NoSuchParserException, StreamParsingException, MalformedURLException, IOException, ExecutionException {
-				X509CRL result = requestCRL(crlURL);
-				Preconditions.checkNotNull(result);
+		this(maxCrlSize, null);
+	}
 
-				return result;
-			}
-		};
+	/**
+	 * @param crlStoreDir directory where last good CRLs are kept to survive restarts, null to keep them in memory only
+	 */
+	public CRLCertificateVerifier(final int maxCrlSize, final String crlStoreDir) {
+		SecurityProviderUtility.installBCProvider(true);
 
-		this.crlCache = CacheBuilder.newBuilder().maximumSize(10).expireAfterWrite(60, TimeUnit.MINUTES).build(checkedLoader);
+		this.crlStore = new CRLStore(maxCrlSize, (crlStoreDir == null) ? null : new File(crlStoreDir));
 	}
 
 	@Override
@@ -103,25 +70,25 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 
 			log.debug("CRL's URL for '" + subjectX500Principal + "' is '" + crlURL + "'");
 
-			X509CRL x509crl = getCrl(crlURL);
-			if (!validateCRL(x509crl, certificate, issuer, validationDate)) {
+			CRLEntry crlEntry = getCrl(crlURL);
+			if (!validateCRL(crlEntry, certificate, issuer, validationDate)) {
 				log.error("The CRL is not valid!");
 				status.setValidity(CertificateValidity.INVALID);
 				return status;
 			}
 
-			X509CRLEntry crlEntry = x509crl.getRevokedCertificate(certificate.getSerialNumber());
-			if (crlEntry == null) {
+			Date revocationDate = crlEntry.getRevocationDate(certificate.getSerialNumber());
+			if (revocationDate == null) {
 				log.debug("CRL status is valid for '" + subjectX500Principal + "'");
 				status.setValidity(CertificateValidity.VALID);
-			} else if (crlEntry.getRevocationDate().after(validationDate)) {
+			} else if (revocationDate.after(validationDate)) {
 				log.warn("CRL revocation time after the validation date, the certificate '" + subjectX500Principal + "' was valid at " + validationDate);
-				status.setRevocationObjectIssuingTime(x509crl.getThisUpdate());
+				status.setRevocationObjectIssuingTime(crlEntry.getThisUpdate());
 				status.setValidity(CertificateValidity.VALID);
 			} else {
-				log.info("CRL for certificate '" + subjectX500Principal + "' is revoked since " + crlEntry.getRevocationDate());
-				status.setRevocationObjectIssuingTime(x509crl.getThisUpdate());
-				status.setRevocationDate(crlEntry.getRevocationDate());
+				log.info("CRL for certificate '" + subjectX500Principal + "' is revoked since " + revocationDate);
+				status.setRevocationObjectIssuingTime(crlEntry.getThisUpdate());
+				status.setRevocationDate(revocationDate);
 				status.setValidity(CertificateValidity.REVOKED);
 			}
 		} catch (Exception ex) {
@@ -131,14 +98,16 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 		return status;
 	}
 
-	private boolean validateCRL(X509CRL x509crl, X509Certificate certificate, X509Certificate issuerCertificate, Date validationDate) {
+	private boolean validateCRL(CRLEntry crlEntry, X509Certificate certificate, X509Certificate issuerCertificate, Date validationDate) {
 		Principal subjectX500Principal = certificate.getSubjectX500Principal();
 
-		if (x509crl == null) {
+		if (crlEntry == null) {
 			log.error("No CRL found for certificate '" + subjectX500Principal + "'");
 			return false;
 		}
 
+		X509CRL x509crl = crlEntry.getBase();
+
 		if (log.isTraceEnabled()) {
 			try {
 				log.trace("CRL number: " + getCrlNumber(x509crl));
@@ -153,10 +122,7 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 			return false;
 		}
 
-		try {
-			x509crl.verify(issuerCertificate.getPublicKey());
-		} catch (Exception ex) {
-			log.error("The signature verification for CRL cannot be performed", ex);
+		if (!crlEntry.verify(issuerCertificate.getPublicKey())) {
 			return false;
 		}
 
@@ -183,119 +149,35 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 
 	}
 
-	private X509CRL getCrl(String url) throws CertificateException, CRLException, NoSuchProviderException, NoSuchParserException, StreamParsingException,
-			MalformedURLException, IOException, ExecutionException {
+	private CRLEntry getCrl(String url) throws CertificateException, CRLException, IOException {
 		if (!(url.startsWith("http://") || url.startsWith("https://"))) {
 			log.error("It's possbiel to downloid CRL via HTTP and HTTPS only");
 			return null;
 		}
-		
-		String cacheKey = url.toLowerCase();
-		X509CRL crl = crlCache.get(cacheKey);
 
-		return crl;
+		return crlStore.getCrl(url);
 	}
 
-	public X509CRL requestCRL(String url) throws IOException, MalformedURLException, CertificateException, CRLException {
-		HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
-		try {
-			con.setUseCaches(false);
-
-			InputStream in = new BoundedInputStream(con.getInputStream(), maxCrlSize);
-			try {
-				CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
-				X509CRL crl = (X509CRL) certificateFactory.generateCRL(in);
-				log.debug("CRL size: " + crl.getEncoded().length + " bytes");
-
-				return crl;
-			} finally {
-				IOUtils.closeQuietly(in);
-			}
-		} catch (IOException ex) {
-			log.error("Failed to download CRL from '" + url + "'", ex);
-		} finally {
-			if (con != null) {
-				con.disconnect();
-			}
-		}
-		
-		return null;
+	public X509CRL requestCRL(String url) throws IOException, CertificateException, CRLException {
+		return crlStore.requestCRL(url);
 	}
 
-	@SuppressWarnings({ "deprecation", "resource" })
 	private BigInteger getCrlNumber(X509CRL crl) throws IOException {
-		byte[] crlNumberExtensionValue = crl.getExtensionValue(X509Extensions.CRLNumber.getId());
-		if (crlNumberExtensionValue == null) {
-			return null;
-		}
-
-		DEROctetString octetString = (DEROctetString) (new ASN1InputStream(new ByteArrayInputStream(crlNumberExtensionValue)).readObject());
-		byte[] octets = octetString.getOctets();
-		DERInteger integer = (DERInteger) new ASN1InputStream(octets).readObject();
-		BigInteger crlNumber = integer.getPositiveValue();
-
-		return crlNumber;
+		return CRLStore.getCrlNumber(crl);
 	}
 
 	public String getCrlUri(X509Certificate certificate) throws IOException {
-		ASN1Primitive obj;
 		try {
-			obj = getExtensionValue(certificate, Extension.cRLDistributionPoints.getId());
+			return CRLStore.getDistributionPointUri(certificate, Extension.cRLDistributionPoints.getId());
 		} catch (IOException ex) {
 			log.error("Failed to get CRL URL", ex);
 			return null;
 		}
-
-		if (obj == null) {
-			return null;
-		}
-
-		CRLDistPoint distPoint = CRLDistPoint.getInstance(obj);
-
-		DistributionPoint[] distributionPoints = distPoint.getDistributionPoints();
-		for (DistributionPoint distributionPoint : distributionPoints) {
-			DistributionPointName distributionPointName = distributionPoint.getDistributionPoint();
-			if (DistributionPointName.FULL_NAME != distributionPointName.getType()) {
-				continue;
-			}
-
-			GeneralNames generalNames = (GeneralNames) distributionPointName.getName();
-			GeneralName[] names = generalNames.getNames();
-			for (GeneralName name : names) {
-				if (name.getTagNo() != GeneralName.uniformResourceIdentifier) {
-					continue;
-				}
-
-				DERIA5String derStr = DERIA5String.getInstance((ASN1TaggedObject) name.toASN1Primitive(), false);
-				return derStr.getString();
-			}
-		}
-
-		return null;
-	}
-
-	/**
-	 * @param certificate
-	 *            the certificate from which we need the ExtensionValue
-	 * @param oid
-	 *            the Object Identifier value for the extension.
-	 * @return the extension value as an ASN1Primitive object
-	 * @throws IOException
-	 */
-	private static ASN1Primitive getExtensionValue(X509Certificate certificate, String oid) throws IOException {
-		byte[] bytes = certificate.getExtensionValue(oid);
-		if (bytes == null) {
-			return null;
-		}
-		ASN1InputStream aIn = new ASN1InputStream(new ByteArrayInputStream(bytes));
-		ASN1OctetString octs = (ASN1OctetString) aIn.readObject();
-		aIn = new ASN1InputStream(new ByteArrayInputStream(octs.getOctets()));
-		return aIn.readObject();
 	}
 
 	@Override
 	public void destroy() {
-		crlCache.cleanUp();
+		crlStore.destroy();
 	}
 
 }
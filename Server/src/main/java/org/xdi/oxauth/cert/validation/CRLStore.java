@@ -0,0 +1,712 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.cert.validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.PublicKey;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Extension;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.bouncycastle.asn1.ASN1Enumerated;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.DERIA5String;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Store of CRLs used by {@link CRLCertificateVerifier}
+ * <p/>
+ * CRL is downloaded on request thread only when there is no copy in memory or on disk. After that CRL and its
+ * delta CRL are refreshed in background ahead of their nextUpdate. If download fails last good CRL is used.
+ * CRLs which were not used for a day are not refreshed anymore. When store is full least recently used CRL
+ * is evicted.
+ */
+public class CRLStore {
+
+	private static final Logger log = LoggerFactory.getLogger(CRLStore.class);
+
+	private static final long MAX_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(60);
+	private static final long MIN_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+	private static final long RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+	private static final long IDLE_TIMEOUT = TimeUnit.HOURS.toMillis(24);
+	private static final int CONNECT_TIMEOUT = 10000; // 10 seconds
+	private static final int READ_TIMEOUT = 60000; // 1 minute
+	private static final int MAX_CRLS = 100;
+
+	private final int maxCrlSize;
+	private final File storeDir;
+	private final int maxCrls;
+
+	private final ConcurrentMap<String, CRLEntry> entries = new ConcurrentHashMap<String, CRLEntry>();
+	private final ConcurrentMap<String, Long> lastAccess = new ConcurrentHashMap<String, Long>();
+	private final ConcurrentMap<String, FutureTask<CRLEntry>> loading = new ConcurrentHashMap<String, FutureTask<CRLEntry>>();
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * @param storeDir directory where last good CRLs are kept, null to keep them in memory only. Directory which
+	 *            doesn't exist is created readable by owner only.
+	 */
+	public CRLStore(int maxCrlSize, File storeDir) {
+		this(maxCrlSize, storeDir, MAX_CRLS);
+	}
+
+	CRLStore(int maxCrlSize, File storeDir, int maxCrls) {
+		this.maxCrlSize = maxCrlSize;
+		this.storeDir = storeDir;
+		this.maxCrls = maxCrls;
+
+		if ((storeDir != null) && !storeDir.isDirectory()) {
+			if (storeDir.mkdirs()) {
+				restrictToOwner(storeDir);
+			} else {
+				log.error("Failed to create CRL store directory '" + storeDir + "', CRLs will be kept in memory only");
+			}
+		}
+
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "crl-store-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return CRL with its delta CRL or null if CRL is not available
+	 */
+	public CRLEntry getCrl(final String url) throws IOException, CertificateException, CRLException {
+		final String key = url.toLowerCase();
+		lastAccess.put(key, System.currentTimeMillis());
+
+		CRLEntry entry = entries.get(key);
+		if (entry != null) {
+			return entry;
+		}
+
+		// Only one thread downloads CRL, other threads which need the same CRL wait for it
+		FutureTask<CRLEntry> task = new FutureTask<CRLEntry>(new Callable<CRLEntry>() {
+			public CRLEntry call() throws Exception {
+				return load(url, key);
+			}
+		});
+
+		FutureTask<CRLEntry> existingTask = loading.putIfAbsent(key, task);
+		if (existingTask == null) {
+			try {
+				task.run();
+			} finally {
+				loading.remove(key, task);
+			}
+		} else {
+			task = existingTask;
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for CRL from '" + url + "'", ex);
+		} catch (ExecutionException ex) {
+			final Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof CertificateException) {
+				throw (CertificateException) cause;
+			}
+			if (cause instanceof CRLException) {
+				throw (CRLException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException("Failed to load CRL from '" + url + "'", cause);
+		}
+	}
+
+	private CRLEntry load(String url, String key) throws IOException, CertificateException, CRLException {
+		CRLEntry entry = entries.get(key);
+		if (entry != null) {
+			return entry;
+		}
+
+		entry = loadFromDisk(url);
+		if ((entry == null) || entry.isExpired(new Date())) {
+			CRLEntry downloaded = download(url, entry);
+			if (downloaded != null) {
+				entry = downloaded;
+				saveToDisk(url, entry);
+			}
+		}
+
+		if (entry == null) {
+			return null;
+		}
+
+		while (entries.size() >= maxCrls) {
+			if (!evictLeastRecentlyUsed()) {
+				break;
+			}
+		}
+
+		entries.put(key, entry);
+		scheduleRefresh(url, entry);
+
+		return entry;
+	}
+
+	private boolean evictLeastRecentlyUsed() {
+		String eldestKey = null;
+		long eldestAccess = Long.MAX_VALUE;
+		for (String key : entries.keySet()) {
+			final Long accessed = lastAccess.get(key);
+			final long time = (accessed == null) ? 0 : accessed;
+			if (time < eldestAccess) {
+				eldestKey = key;
+				eldestAccess = time;
+			}
+		}
+
+		if ((eldestKey == null) || (entries.remove(eldestKey) == null)) {
+			return false;
+		}
+
+		lastAccess.remove(eldestKey);
+		log.debug("CRL store is full, CRL from '" + eldestKey + "' is evicted");
+
+		return true;
+	}
+
+	boolean contains(String url) {
+		return entries.containsKey(url.toLowerCase());
+	}
+
+	public X509CRL requestCRL(String url) throws IOException, CertificateException, CRLException {
+		return requestCRL(url, 0).crl;
+	}
+
+	public void destroy() {
+		scheduler.shutdownNow();
+		entries.clear();
+		lastAccess.clear();
+	}
+
+	private void scheduleRefresh(String url, CRLEntry entry) {
+		schedule(url, entry, getRefreshDelay(entry, System.currentTimeMillis()));
+	}
+
+	/**
+	 * CRL is refreshed when 80% of its validity period passed. If CA didn't publish new CRL by then it's checked
+	 * again at nextUpdate, but at least hourly. Expired CRL is checked again after retry interval.
+	 */
+	static long getRefreshDelay(CRLEntry entry, long now) {
+		long refreshTime = entry.getRefreshTime();
+		if (refreshTime <= now) {
+			refreshTime = entry.getNextUpdateTime();
+		}
+
+		if (refreshTime <= now) {
+			return RETRY_INTERVAL;
+		}
+
+		return Math.max(Math.min(refreshTime - now, MAX_REFRESH_INTERVAL), MIN_REFRESH_INTERVAL);
+	}
+
+	/**
+	 * Refresh is bound to cached entry, so there is only one scheduled refresh per CRL
+	 */
+	private void schedule(final String url, final CRLEntry entry, long delay) {
+		try {
+			scheduler.schedule(new Runnable() {
+				public void run() {
+					refresh(url, entry);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RuntimeException ex) {
+			// Store is destroyed
+			log.debug("CRL refresh is not scheduled: " + ex.getMessage());
+		}
+	}
+
+	private void refresh(String url, CRLEntry current) {
+		final String key = url.toLowerCase();
+		if (entries.get(key) != current) {
+			// Evicted or replaced
+			return;
+		}
+
+		final Long accessed = lastAccess.get(key);
+		if ((accessed == null) || (System.currentTimeMillis() - accessed > IDLE_TIMEOUT)) {
+			log.debug("CRL from '" + url + "' is not used anymore, stop refreshing it");
+			if (entries.remove(key, current)) {
+				lastAccess.remove(key);
+			}
+			return;
+		}
+
+		try {
+			CRLEntry refreshed = download(url, current);
+			if (refreshed != null) {
+				if (refreshed != current) {
+					if (!entries.replace(key, current, refreshed)) {
+						return;
+					}
+					saveToDisk(url, refreshed);
+				}
+				scheduleRefresh(url, refreshed);
+				return;
+			}
+		} catch (Exception ex) {
+			log.error("Failed to refresh CRL from '" + url + "'", ex);
+		}
+
+		// Keep last good CRL and try again later
+		schedule(url, current, RETRY_INTERVAL);
+	}
+
+	/**
+	 * @param current previous CRL, it's returned as is if server reports that CRL is not modified
+	 */
+	private CRLEntry download(String url, CRLEntry current) throws IOException, CertificateException, CRLException {
+		final long ifModifiedSince = (current != null) ? current.lastModified : 0;
+		final Download base = requestCRL(url, ifModifiedSince);
+
+		X509CRL baseCrl;
+		long lastModified;
+		if (base.notModified) {
+			baseCrl = current.base;
+			lastModified = current.lastModified;
+		} else if (base.crl != null) {
+			baseCrl = base.crl;
+			lastModified = base.lastModified;
+		} else {
+			return null;
+		}
+
+		X509CRL deltaCrl = null;
+		final String deltaUrl = getDistributionPointUri(baseCrl, Extension.freshestCRL.getId());
+		if (deltaUrl != null) {
+			try {
+				deltaCrl = requestCRL(deltaUrl, 0).crl;
+			} catch (Exception ex) {
+				log.error("Failed to download delta CRL from '" + deltaUrl + "'", ex);
+			}
+			if ((deltaCrl == null) && (current != null) && (current.base == baseCrl)) {
+				deltaCrl = current.delta;
+			}
+		}
+
+		if (base.notModified && (deltaCrl == current.delta)) {
+			return current;
+		}
+
+		return new CRLEntry(baseCrl, deltaCrl, lastModified);
+	}
+
+	Download requestCRL(String url, long ifModifiedSince) throws IOException, CertificateException, CRLException {
+		if (!(url.startsWith("http://") || url.startsWith("https://"))) {
+			log.error("It's possible to download CRL via HTTP and HTTPS only");
+			return new Download(null, 0, false);
+		}
+
+		HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+		try {
+			con.setUseCaches(false);
+			con.setConnectTimeout(CONNECT_TIMEOUT);
+			con.setReadTimeout(READ_TIMEOUT);
+			if (ifModifiedSince > 0) {
+				con.setIfModifiedSince(ifModifiedSince);
+			}
+
+			if (con.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				log.debug("CRL from '" + url + "' is not modified");
+				return new Download(null, ifModifiedSince, true);
+			}
+
+			InputStream in = new BoundedInputStream(con.getInputStream(), maxCrlSize);
+			try {
+				X509CRL crl = parseCrl(in);
+				log.debug("CRL size: " + crl.getEncoded().length + " bytes");
+
+				return new Download(crl, con.getLastModified(), false);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+		} catch (IOException ex) {
+			log.error("Failed to download CRL from '" + url + "'", ex);
+		} finally {
+			con.disconnect();
+		}
+
+		return new Download(null, 0, false);
+	}
+
+	private CRLEntry loadFromDisk(String url) {
+		if ((storeDir == null) || !storeDir.isDirectory()) {
+			return null;
+		}
+
+		try {
+			X509CRL base = readCrl(getFile(url, ".crl"));
+			if (base == null) {
+				return null;
+			}
+
+			X509CRL delta = readCrl(getFile(url, ".delta.crl"));
+			log.debug("Loaded CRL for '" + url + "' from disk");
+
+			return new CRLEntry(base, delta, 0);
+		} catch (Exception ex) {
+			log.error("Failed to load CRL for '" + url + "' from disk", ex);
+		}
+
+		return null;
+	}
+
+	private void saveToDisk(String url, CRLEntry entry) {
+		if ((storeDir == null) || !storeDir.isDirectory()) {
+			return;
+		}
+
+		try {
+			writeCrl(getFile(url, ".crl"), entry.base);
+
+			File deltaFile = getFile(url, ".delta.crl");
+			if (entry.delta != null) {
+				writeCrl(deltaFile, entry.delta);
+			} else if (deltaFile.exists() && !deltaFile.delete()) {
+				log.warn("Failed to delete outdated delta CRL file '" + deltaFile + "'");
+			}
+		} catch (Exception ex) {
+			log.error("Failed to save CRL for '" + url + "' to disk", ex);
+		}
+	}
+
+	private File getFile(String url, String suffix) {
+		return new File(storeDir, DigestUtils.sha256Hex(url.toLowerCase()) + suffix);
+	}
+
+	private X509CRL readCrl(File file) throws IOException, CertificateException, CRLException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		InputStream in = new FileInputStream(file);
+		try {
+			return parseCrl(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private void writeCrl(File file, X509CRL crl) throws IOException, CRLException {
+		// Write to temporary file first, so partially written CRL never replaces last good one
+		File tmpFile = new File(file.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmpFile);
+		try {
+			out.write(crl.getEncoded());
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		restrictToOwner(tmpFile);
+
+		if (!tmpFile.renameTo(file)) {
+			file.delete();
+			if (!tmpFile.renameTo(file)) {
+				throw new IOException("Failed to rename '" + tmpFile + "' to '" + file + "'");
+			}
+		}
+	}
+
+	private static void restrictToOwner(File file) {
+		final boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+				&& file.setWritable(false, false) && file.setWritable(true, true)
+				&& (!file.isDirectory() || (file.setExecutable(false, false) && file.setExecutable(true, true)));
+		if (!restricted) {
+			log.warn("Failed to restrict access to '" + file + "' to owner");
+		}
+	}
+
+	private static X509CRL parseCrl(InputStream in) throws CertificateException, CRLException {
+		CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+		return (X509CRL) certificateFactory.generateCRL(in);
+	}
+
+	public static BigInteger getCrlNumber(X509CRL crl) throws IOException {
+		return getIntegerExtension(crl, Extension.cRLNumber.getId());
+	}
+
+	public static BigInteger getBaseCrlNumber(X509CRL deltaCrl) throws IOException {
+		return getIntegerExtension(deltaCrl, Extension.deltaCRLIndicator.getId());
+	}
+
+	/**
+	 * @return CRL entry reason code or -1 if there is no reason code extension
+	 */
+	public static int getReasonCode(X509Extension crlEntry) {
+		try {
+			ASN1Primitive obj = getExtensionValue(crlEntry, Extension.reasonCode.getId());
+			if (obj == null) {
+				return -1;
+			}
+
+			return ASN1Enumerated.getInstance(obj).getValue().intValue();
+		} catch (Exception ex) {
+			log.error("Failed to get CRL entry reason code", ex);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return first HTTP URI from CRL distribution points extension
+	 */
+	public static String getDistributionPointUri(X509Extension extension, String oid) throws IOException {
+		ASN1Primitive obj = getExtensionValue(extension, oid);
+		if (obj == null) {
+			return null;
+		}
+
+		CRLDistPoint distPoint = CRLDistPoint.getInstance(obj);
+
+		DistributionPoint[] distributionPoints = distPoint.getDistributionPoints();
+		for (DistributionPoint distributionPoint : distributionPoints) {
+			DistributionPointName distributionPointName = distributionPoint.getDistributionPoint();
+			if ((distributionPointName == null) || (DistributionPointName.FULL_NAME != distributionPointName.getType())) {
+				continue;
+			}
+
+			GeneralNames generalNames = (GeneralNames) distributionPointName.getName();
+			GeneralName[] names = generalNames.getNames();
+			for (GeneralName name : names) {
+				if (name.getTagNo() != GeneralName.uniformResourceIdentifier) {
+					continue;
+				}
+
+				DERIA5String derStr = DERIA5String.getInstance((ASN1TaggedObject) name.toASN1Primitive(), false);
+				return derStr.getString();
+			}
+		}
+
+		return null;
+	}
+
+	private static BigInteger getIntegerExtension(X509Extension extension, String oid) throws IOException {
+		ASN1Primitive obj = getExtensionValue(extension, oid);
+		if (obj == null) {
+			return null;
+		}
+
+		return ASN1Integer.getInstance(obj).getPositiveValue();
+	}
+
+	/**
+	 * @return the extension value as an ASN1Primitive object
+	 */
+	@SuppressWarnings("resource")
+	static ASN1Primitive getExtensionValue(X509Extension extension, String oid) throws IOException {
+		byte[] bytes = extension.getExtensionValue(oid);
+		if (bytes == null) {
+			return null;
+		}
+		ASN1InputStream aIn = new ASN1InputStream(new ByteArrayInputStream(bytes));
+		ASN1OctetString octs = (ASN1OctetString) aIn.readObject();
+		aIn = new ASN1InputStream(new ByteArrayInputStream(octs.getOctets()));
+		return aIn.readObject();
+	}
+
+	/**
+	 * Base CRL with optional delta CRL and index of their revoked serial numbers
+	 */
+	public static class CRLEntry {
+
+		private final X509CRL base;
+		private final X509CRL delta;
+		private final RevokedSerials baseSerials;
+		private final RevokedSerials deltaSerials;
+		private final long lastModified;
+		private final Set<PublicKey> verifiedKeys = Collections.newSetFromMap(new ConcurrentHashMap<PublicKey, Boolean>());
+
+		CRLEntry(X509CRL base, X509CRL delta, long lastModified) {
+			this.base = base;
+			this.delta = isApplicableDelta(base, delta) ? delta : null;
+			this.baseSerials = RevokedSerials.build(base);
+			this.deltaSerials = (this.delta != null) ? RevokedSerials.build(this.delta) : null;
+			this.lastModified = lastModified;
+		}
+
+		public X509CRL getBase() {
+			return base;
+		}
+
+		public X509CRL getDelta() {
+			return delta;
+		}
+
+		/**
+		 * @return issuing time of the newest CRL
+		 */
+		public Date getThisUpdate() {
+			return (delta != null) ? delta.getThisUpdate() : base.getThisUpdate();
+		}
+
+		/**
+		 * @return revocation date or null if certificate is not revoked
+		 */
+		public Date getRevocationDate(BigInteger serialNumber) {
+			if ((deltaSerials != null) && !delta.getNextUpdate().before(new Date())) {
+				RevokedSerials.Revocation revocation = deltaSerials.find(serialNumber);
+				if (revocation != null) {
+					return revocation.isRemovedFromCrl() ? null : revocation.getRevocationDate();
+				}
+			}
+
+			RevokedSerials.Revocation revocation = baseSerials.find(serialNumber);
+			if ((revocation == null) || revocation.isRemovedFromCrl()) {
+				return null;
+			}
+
+			return revocation.getRevocationDate();
+		}
+
+		/**
+		 * Verifies signatures of CRL and delta CRL. Result is remembered per issuer key.
+		 */
+		public boolean verify(PublicKey issuerPublicKey) {
+			if (verifiedKeys.contains(issuerPublicKey)) {
+				return true;
+			}
+
+			try {
+				base.verify(issuerPublicKey);
+				if (delta != null) {
+					delta.verify(issuerPublicKey);
+				}
+			} catch (Exception ex) {
+				log.error("The signature verification for CRL cannot be performed", ex);
+				return false;
+			}
+
+			verifiedKeys.add(issuerPublicKey);
+			return true;
+		}
+
+		boolean isExpired(Date date) {
+			return (base.getNextUpdate() != null) && date.after(base.getNextUpdate());
+		}
+
+		long getRefreshTime() {
+			long refreshTime = getRefreshTime(base);
+			if (delta != null) {
+				refreshTime = Math.min(refreshTime, getRefreshTime(delta));
+			}
+
+			return refreshTime;
+		}
+
+		long getNextUpdateTime() {
+			long nextUpdateTime = getNextUpdateTime(base);
+			if (delta != null) {
+				nextUpdateTime = Math.min(nextUpdateTime, getNextUpdateTime(delta));
+			}
+
+			return nextUpdateTime;
+		}
+
+		private static long getNextUpdateTime(X509CRL crl) {
+			return (crl.getNextUpdate() == null) ? Long.MAX_VALUE : crl.getNextUpdate().getTime();
+		}
+
+		private static long getRefreshTime(X509CRL crl) {
+			if (crl.getNextUpdate() == null) {
+				return Long.MAX_VALUE;
+			}
+
+			// Refresh when 80% of CRL validity period passed
+			long thisUpdate = crl.getThisUpdate().getTime();
+			return thisUpdate + (crl.getNextUpdate().getTime() - thisUpdate) * 4 / 5;
+		}
+
+		private static boolean isApplicableDelta(X509CRL base, X509CRL delta) {
+			if (delta == null) {
+				return false;
+			}
+
+			if (!delta.getIssuerX500Principal().equals(base.getIssuerX500Principal()) || (delta.getNextUpdate() == null)) {
+				log.error("Delta CRL is not applicable to CRL issued by '" + base.getIssuerX500Principal() + "'");
+				return false;
+			}
+
+			try {
+				BigInteger baseNumber = getCrlNumber(base);
+				BigInteger deltaBaseNumber = getBaseCrlNumber(delta);
+				if ((baseNumber == null) || (deltaBaseNumber == null) || (deltaBaseNumber.compareTo(baseNumber) > 0)) {
+					log.debug("Delta CRL requires newer CRL, delta is ignored until CRL is refreshed");
+					return false;
+				}
+			} catch (IOException ex) {
+				log.error("Failed to get CRL numbers", ex);
+				return false;
+			}
+
+			return true;
+		}
+
+	}
+
+	static class Download {
+		private final X509CRL crl;
+		private final long lastModified;
+		private final boolean notModified;
+
+		Download(X509CRL crl, long lastModified, boolean notModified) {
+			this.crl = crl;
+			this.lastModified = lastModified;
+			this.notModified = notModified;
+		}
+	}
+
+}
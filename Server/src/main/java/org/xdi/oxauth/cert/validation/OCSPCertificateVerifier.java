@@ -17,6 +17,7 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.bouncycastle.asn1.ASN1InputStream;
@@ -24,11 +25,15 @@ import org.bouncycastle.asn1.ASN1OctetString;
 import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.ASN1TaggedObject;
 import org.bouncycastle.asn1.DERIA5String;
+import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AccessDescription;
 import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
 import org.bouncycastle.asn1.x509.X509ObjectIdentifiers;
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.CertificateID;
@@ -42,9 +47,11 @@ import org.bouncycastle.cert.ocsp.RevokedStatus;
 import org.bouncycastle.cert.ocsp.SingleResp;
 import org.bouncycastle.operator.DigestCalculator;
 import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xdi.oxauth.cert.validation.OCSPResponseCache.CachedResponse;
 import org.xdi.oxauth.cert.validation.model.ValidationStatus;
 import org.xdi.oxauth.cert.validation.model.ValidationStatus.CertificateValidity;
 import org.xdi.oxauth.cert.validation.model.ValidationStatus.ValidatorSourceType;
@@ -60,8 +67,27 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 
 	private static final Logger log = LoggerFactory.getLogger(OCSPCertificateVerifier.class);
 
+	private static final int DEFAULT_MAX_AGE = 300; // 5 minutes
+	private static final int CONNECT_TIMEOUT = 10000; // 10 seconds
+	private static final int READ_TIMEOUT = 10000; // 10 seconds
+
+	private OCSPResponseCache responseCache;
+
 	public OCSPCertificateVerifier() {
+		this(0);
+	}
+
+	/**
+	 * @param softFailWindow time in seconds after expiration of cached response during which it's used if OCSP responder fails
+	 */
+	public OCSPCertificateVerifier(int softFailWindow) {
 		SecurityProviderUtility.installBCProvider(true);
+
+		this.responseCache = new OCSPResponseCache(new OCSPResponseCache.ResponseLoader() {
+			public CachedResponse load(String ocspUrl, CertificateID certificateId, X509Certificate issuer) throws Exception {
+				return loadOCSPResponse(ocspUrl, certificateId, issuer);
+			}
+		}, TimeUnit.SECONDS.toMillis(DEFAULT_MAX_AGE), TimeUnit.SECONDS.toMillis(Math.max(0, softFailWindow)));
 	}
 
 	@Override
@@ -81,60 +107,37 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 			log.debug("OCSP URL for '" + subjectX500Principal + "' is '" + ocspUrl + "'");
 
 			DigestCalculator digestCalculator = new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1);
-			CertificateID certificateId = new CertificateID(digestCalculator, new JcaX509CertificateHolder(certificate), certificate.getSerialNumber());
-
-			// Generate OCSP request
-			OCSPReq ocspReq = generateOCSPRequest(certificateId);
+			CertificateID certificateId = new CertificateID(digestCalculator, new JcaX509CertificateHolder(issuer), certificate.getSerialNumber());
 
-			// Get OCSP response from server
-			OCSPResp ocspResp = requestOCSPResponse(ocspUrl, ocspReq);
-			if (ocspResp.getStatus() != OCSPRespBuilder.SUCCESSFUL) {
+			CachedResponse ocspResponse = responseCache.get(ocspUrl, certificateId, issuer);
+			if (ocspResponse == null) {
 				log.error("OCSP response is invalid!");
 				status.setValidity(CertificateValidity.INVALID);
 				return status;
 			}
 
-			boolean foundResponse = false;
-			BasicOCSPResp basicOCSPResp = (BasicOCSPResp) ocspResp.getResponseObject();
-			SingleResp[] singleResps = basicOCSPResp.getResponses();
-			for (SingleResp singleResp : singleResps) {
-				CertificateID responseCertificateId = singleResp.getCertID();
-				if (!certificateId.equals(responseCertificateId)) {
-					continue;
-				}
-
-				foundResponse = true;
-
-				log.debug("OCSP validationDate: " + validationDate);
-				log.debug("OCSP thisUpdate: " + singleResp.getThisUpdate());
-				log.debug("OCSP nextUpdate: " + singleResp.getNextUpdate());
+			log.debug("OCSP validationDate: " + validationDate);
+			log.debug("OCSP thisUpdate: " + ocspResponse.getThisUpdate());
+			log.debug("OCSP nextUpdate: " + ocspResponse.getNextUpdate());
 
-				status.setRevocationObjectIssuingTime(basicOCSPResp.getProducedAt());
+			status.setRevocationObjectIssuingTime(ocspResponse.getProducedAt());
 
-				Object certStatus = singleResp.getCertStatus();
-				if (certStatus == CertificateStatus.GOOD) {
-					log.debug("OCSP status is valid for '" + certificate.getSubjectX500Principal() + "'");
+			if (ocspResponse.isGood()) {
+				log.debug("OCSP status is valid for '" + certificate.getSubjectX500Principal() + "'");
+				status.setValidity(CertificateValidity.VALID);
+			} else if (ocspResponse.isRevoked()) {
+				log.warn("OCSP status is revoked for: " + subjectX500Principal);
+				if (validationDate.before(ocspResponse.getRevocationTime())) {
+					log.warn("OCSP revocation time after the validation date, the certificate '" + subjectX500Principal + "' was valid at " + validationDate);
 					status.setValidity(CertificateValidity.VALID);
 				} else {
-					if (singleResp.getCertStatus() instanceof RevokedStatus) {
-						log.warn("OCSP status is revoked for: " + subjectX500Principal);
-						if (validationDate.before(((RevokedStatus) singleResp.getCertStatus()).getRevocationTime())) {
-							log.warn("OCSP revocation time after the validation date, the certificate '" + subjectX500Principal + "' was valid at " + validationDate);
-							status.setValidity(CertificateValidity.VALID);
-						} else {
-							Date revocationDate = ((RevokedStatus) singleResp.getCertStatus()).getRevocationTime();
-							log.info("OCSP for certificate '" + subjectX500Principal + "' is revoked since " + revocationDate);
-							status.setRevocationDate(revocationDate);
-							status.setRevocationObjectIssuingTime(singleResp.getThisUpdate());
-							status.setValidity(CertificateValidity.REVOKED);
-						}
-					}
+					Date revocationDate = ocspResponse.getRevocationTime();
+					log.info("OCSP for certificate '" + subjectX500Principal + "' is revoked since " + revocationDate);
+					status.setRevocationDate(revocationDate);
+					status.setRevocationObjectIssuingTime(ocspResponse.getThisUpdate());
+					status.setValidity(CertificateValidity.REVOKED);
 				}
 			}
-
-			if (!foundResponse) {
-				log.error("There is no matching OCSP response entries");
-			}
 		} catch (Exception ex) {
 			log.error("OCSP exception: ", ex);
 		}
@@ -142,6 +145,79 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 		return status;
 	}
 
+	/**
+	 * Requests status of certificate from OCSP responder. Request has no nonce, so response can be reused until its nextUpdate.
+	 *
+	 * @return status of certificate or null if responder didn't return successful response signed by issuer or its delegated responder
+	 */
+	private CachedResponse loadOCSPResponse(String ocspUrl, CertificateID certificateId, X509Certificate issuer) throws Exception {
+		// Generate OCSP request
+		OCSPReq ocspReq = generateOCSPRequest(certificateId);
+
+		// Get OCSP response from server
+		OCSPResp ocspResp = requestOCSPResponse(ocspUrl, ocspReq);
+		if (ocspResp.getStatus() != OCSPRespBuilder.SUCCESSFUL) {
+			log.error("OCSP responder '" + ocspUrl + "' returned status: " + ocspResp.getStatus());
+			return null;
+		}
+
+		BasicOCSPResp basicOCSPResp = (BasicOCSPResp) ocspResp.getResponseObject();
+		if (!isSignatureValid(basicOCSPResp, issuer)) {
+			log.error("OCSP response from '" + ocspUrl + "' is not signed by issuer '" + issuer.getSubjectX500Principal() + "' or its OCSP responder");
+			return null;
+		}
+
+		SingleResp[] singleResps = basicOCSPResp.getResponses();
+		for (SingleResp singleResp : singleResps) {
+			CertificateID responseCertificateId = singleResp.getCertID();
+			if (!certificateId.equals(responseCertificateId)) {
+				continue;
+			}
+
+			Object certStatus = singleResp.getCertStatus();
+			Date revocationTime = (certStatus instanceof RevokedStatus) ? ((RevokedStatus) certStatus).getRevocationTime() : null;
+
+			return new CachedResponse(certStatus == CertificateStatus.GOOD, revocationTime, singleResp.getThisUpdate(),
+					singleResp.getNextUpdate(), basicOCSPResp.getProducedAt());
+		}
+
+		throw new OCSPException("There is no matching OCSP response entries");
+	}
+
+	/**
+	 * Response should be signed by issuer itself or by responder with certificate issued by issuer for OCSP signing (RFC 6960, 4.2.2.2)
+	 */
+	boolean isSignatureValid(BasicOCSPResp basicOCSPResp, X509Certificate issuer) {
+		try {
+			JcaContentVerifierProviderBuilder verifierProviderBuilder = new JcaContentVerifierProviderBuilder().setProvider("BC");
+			if (basicOCSPResp.isSignatureValid(verifierProviderBuilder.build(issuer.getPublicKey()))) {
+				return true;
+			}
+
+			X500Name issuerName = X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded());
+			Date now = new Date();
+			for (X509CertificateHolder responderCertificate : basicOCSPResp.getCerts()) {
+				if (!issuerName.equals(responderCertificate.getIssuer()) || !responderCertificate.isValidOn(now)) {
+					continue;
+				}
+
+				ExtendedKeyUsage extendedKeyUsage = ExtendedKeyUsage.fromExtensions(responderCertificate.getExtensions());
+				if ((extendedKeyUsage == null) || !extendedKeyUsage.hasKeyPurposeId(KeyPurposeId.id_kp_OCSPSigning)) {
+					continue;
+				}
+
+				if (responderCertificate.isSignatureValid(verifierProviderBuilder.build(issuer.getPublicKey()))
+						&& basicOCSPResp.isSignatureValid(verifierProviderBuilder.build(responderCertificate))) {
+					return true;
+				}
+			}
+		} catch (Exception ex) {
+			log.error("Failed to verify OCSP response signature", ex);
+		}
+
+		return false;
+	}
+
 	private OCSPReq generateOCSPRequest(CertificateID certificateId) throws OCSPException, OperatorCreationException, CertificateEncodingException {
 		OCSPReqBuilder ocspReqGenerator = new OCSPReqBuilder();
 
@@ -198,6 +274,8 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 			con.setDoInput(true);
 			con.setDoOutput(true);
 			con.setUseCaches(false);
+			con.setConnectTimeout(CONNECT_TIMEOUT);
+			con.setReadTimeout(READ_TIMEOUT);
 
 			OutputStream out = con.getOutputStream();
 			try {
@@ -239,6 +317,7 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 
 	@Override
 	public void destroy() {
+		responseCache.destroy();
 	}
 
 }
@@ -0,0 +1,315 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.cert.validation;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of OCSP responses keyed by issuer key hash and certificate serial number
+ * <p/>
+ * Response is used until its nextUpdate, or during default max age if responder doesn't set nextUpdate.
+ * Response which is already expired when it's received is used for a minute, so responder is not asked
+ * on every request. Responses which are still in use are prefetched in background before they expire.
+ * If responder is not available expired response is used during soft-fail window and responder is asked
+ * again after a minute.
+ * <p/>
+ * Concurrent requests for the same certificate share one call to responder.
+ */
+public class OCSPResponseCache {
+
+	private static final Logger log = LoggerFactory.getLogger(OCSPResponseCache.class);
+
+	private static final long MIN_PREFETCH_DELAY = TimeUnit.SECONDS.toMillis(10);
+	private static final long RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+	private static final long IDLE_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+	private static final int MAX_SIZE = 10000;
+
+	public interface ResponseLoader {
+
+		/**
+		 * @return response for certificate or null if responder didn't return successful valid response
+		 */
+		CachedResponse load(String ocspUrl, CertificateID certificateId, X509Certificate issuer) throws Exception;
+	}
+
+	private final ResponseLoader loader;
+	private final long defaultMaxAge;
+	private final long softFailWindow;
+
+	private final ConcurrentMap<String, CachedResponse> responses = new ConcurrentHashMap<String, CachedResponse>();
+	private final ConcurrentMap<String, Long> lastAccess = new ConcurrentHashMap<String, Long>();
+	private final ConcurrentMap<String, FutureTask<CachedResponse>> loading = new ConcurrentHashMap<String, FutureTask<CachedResponse>>();
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * @param defaultMaxAge max age in milliseconds of response without nextUpdate
+	 * @param softFailWindow time in milliseconds after expiration during which response is used if responder fails
+	 */
+	public OCSPResponseCache(ResponseLoader loader, long defaultMaxAge, long softFailWindow) {
+		this.loader = loader;
+		this.defaultMaxAge = defaultMaxAge;
+		this.softFailWindow = softFailWindow;
+
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ocsp-prefetch");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return fresh response, expired response within soft-fail window if responder failed, or null
+	 */
+	public CachedResponse get(String ocspUrl, CertificateID certificateId, X509Certificate issuer) throws Exception {
+		final String key = getKey(certificateId);
+		final long now = currentTimeMillis();
+		lastAccess.put(key, now);
+
+		final CachedResponse cached = responses.get(key);
+		if ((cached != null) && !cached.isExpired(now)) {
+			return cached;
+		}
+
+		// Responder failed recently, don't ask it again on every request
+		if (isSoftFail(cached, now) && (now < cached.retryAt)) {
+			return cached;
+		}
+
+		CachedResponse loaded = null;
+		try {
+			loaded = load(key, ocspUrl, certificateId, issuer);
+		} catch (Exception ex) {
+			if (isSoftFail(cached, now)) {
+				log.warn("Failed to get OCSP response from '" + ocspUrl + "', expired response is used: " + ex.getMessage());
+				cached.retryAt = now + RETRY_INTERVAL;
+				return cached;
+			}
+			throw ex;
+		}
+
+		if (loaded == null) {
+			if (isSoftFail(cached, now)) {
+				log.warn("OCSP responder '" + ocspUrl + "' returned unsuccessful response, expired response is used");
+				cached.retryAt = now + RETRY_INTERVAL;
+				return cached;
+			}
+			return null;
+		}
+
+		return loaded;
+	}
+
+	public void destroy() {
+		scheduler.shutdownNow();
+		responses.clear();
+		lastAccess.clear();
+	}
+
+	/**
+	 * @return expiration time in milliseconds for response received at given time
+	 */
+	long getExpiresAt(CachedResponse response, long receivedAt) {
+		if (response.getNextUpdate() != null) {
+			return Math.max(response.getNextUpdate().getTime(), receivedAt + RETRY_INTERVAL);
+		}
+
+		return receivedAt + defaultMaxAge;
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Only one thread calls responder for certificate, other threads wait for its result
+	 */
+	private CachedResponse load(final String key, final String ocspUrl, final CertificateID certificateId, final X509Certificate issuer) throws Exception {
+		FutureTask<CachedResponse> task = new FutureTask<CachedResponse>(new Callable<CachedResponse>() {
+			public CachedResponse call() throws Exception {
+				CachedResponse loaded = loader.load(ocspUrl, certificateId, issuer);
+				if (loaded != null) {
+					put(key, loaded, ocspUrl, certificateId, issuer);
+				}
+
+				return loaded;
+			}
+		});
+
+		FutureTask<CachedResponse> existingTask = loading.putIfAbsent(key, task);
+		if (existingTask == null) {
+			try {
+				task.run();
+			} finally {
+				loading.remove(key, task);
+			}
+		} else {
+			task = existingTask;
+		}
+
+		try {
+			return task.get();
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof Exception) {
+				throw (Exception) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	private boolean isSoftFail(CachedResponse cached, long now) {
+		return (cached != null) && (softFailWindow > 0) && (now < cached.expiresAt + softFailWindow);
+	}
+
+	private void put(String key, CachedResponse response, String ocspUrl, CertificateID certificateId, X509Certificate issuer) {
+		final long now = currentTimeMillis();
+		response.expiresAt = getExpiresAt(response, now);
+
+		if (responses.size() >= MAX_SIZE && !responses.containsKey(key)) {
+			for (Iterator<CachedResponse> it = responses.values().iterator(); it.hasNext(); ) {
+				if (!isSoftFail(it.next(), now)) {
+					it.remove();
+				}
+			}
+
+			if (responses.size() >= MAX_SIZE) {
+				log.warn("OCSP response cache is full, response is not cached");
+				return;
+			}
+		}
+
+		responses.put(key, response);
+
+		// Prefetch when 80% of response lifetime passed
+		long delay = (response.expiresAt - now) * 4 / 5;
+		schedulePrefetch(key, response, ocspUrl, certificateId, issuer, Math.max(delay, MIN_PREFETCH_DELAY));
+	}
+
+	/**
+	 * Prefetch is bound to cached response, so there is only one scheduled prefetch per certificate
+	 */
+	private void schedulePrefetch(final String key, final CachedResponse response, final String ocspUrl, final CertificateID certificateId,
+			final X509Certificate issuer, long delay) {
+		try {
+			scheduler.schedule(new Runnable() {
+				public void run() {
+					prefetch(key, response, ocspUrl, certificateId, issuer);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RuntimeException ex) {
+			// Cache is destroyed
+			log.debug("OCSP prefetch is not scheduled: " + ex.getMessage());
+		}
+	}
+
+	private void prefetch(String key, CachedResponse cached, String ocspUrl, CertificateID certificateId, X509Certificate issuer) {
+		if (responses.get(key) != cached) {
+			// Replaced or removed
+			return;
+		}
+
+		final long now = currentTimeMillis();
+		final Long accessed = lastAccess.get(key);
+		if ((accessed == null) || (now - accessed > IDLE_TIMEOUT)) {
+			if (responses.remove(key, cached)) {
+				lastAccess.remove(key);
+			}
+			return;
+		}
+
+		try {
+			// Successful load replaces cached response and schedules next prefetch
+			if (load(key, ocspUrl, certificateId, issuer) != null) {
+				return;
+			}
+		} catch (Exception ex) {
+			log.error("Failed to prefetch OCSP response from '" + ocspUrl + "'", ex);
+		}
+
+		// Keep trying while cached response can still be used
+		if ((responses.get(key) == cached) && (now < cached.expiresAt + softFailWindow)) {
+			schedulePrefetch(key, cached, ocspUrl, certificateId, issuer, RETRY_INTERVAL);
+		}
+	}
+
+	static String getKey(CertificateID certificateId) {
+		return Hex.toHexString(certificateId.getIssuerKeyHash()) + ":" + certificateId.getSerialNumber().toString(16);
+	}
+
+	/**
+	 * Status of certificate from OCSP response
+	 */
+	public static class CachedResponse {
+
+		private final boolean good;
+		private final Date revocationTime;
+		private final Date thisUpdate;
+		private final Date nextUpdate;
+		private final Date producedAt;
+		private volatile long expiresAt;
+		private volatile long retryAt;
+
+		/**
+		 * @param good true if status is good
+		 * @param revocationTime revocation time if status is revoked, null otherwise
+		 */
+		public CachedResponse(boolean good, Date revocationTime, Date thisUpdate, Date nextUpdate, Date producedAt) {
+			this.good = good;
+			this.revocationTime = revocationTime;
+			this.thisUpdate = thisUpdate;
+			this.nextUpdate = nextUpdate;
+			this.producedAt = producedAt;
+		}
+
+		public boolean isGood() {
+			return good;
+		}
+
+		public boolean isRevoked() {
+			return revocationTime != null;
+		}
+
+		public Date getRevocationTime() {
+			return revocationTime;
+		}
+
+		public Date getThisUpdate() {
+			return thisUpdate;
+		}
+
+		public Date getNextUpdate() {
+			return nextUpdate;
+		}
+
+		public Date getProducedAt() {
+			return producedAt;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
+	}
+
+}
@@ -19,20 +19,26 @@ import java.security.cert.CertPathBuilderException;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertStore;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CollectionCertStoreParameters;
 import java.security.cert.PKIXBuilderParameters;
 import java.security.cert.PKIXCertPathBuilderResult;
-import java.security.cert.PKIXCertPathValidatorResult;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +49,11 @@ import org.xdi.oxauth.model.util.SecurityProviderUtility;
 
 /**
  * Chain certificate verifier
+ * <p/>
+ * Trust anchors and intermediate certificate store are prepared once per set of chain certificates.
+ * Results of path building are cached by certificate fingerprint and revision of chain certificates. Cached
+ * result never outlives certificates in path. Revocation isn't checked here, CRL and OCSP verifiers keep
+ * their own refresh policy.
  * 
  * @author Yuriy Movchan
  * @version March 11, 2016
@@ -51,12 +62,29 @@ public class PathCertificateVerifier implements CertificateVerifier {
 
 	private static final Logger log = LoggerFactory.getLogger(PathCertificateVerifier.class);
 
+	private static final int DEFAULT_CACHE_LIFETIME = 3600; // 1 hour
+	private static final long NEGATIVE_CACHE_LIFETIME = TimeUnit.MINUTES.toMillis(5);
+	private static final int MAX_CACHE_SIZE = 10000;
+	private static final int MAX_TRUST_STORES = 16;
+
 	private boolean verifySelfSignedCertificate;
+	private long cacheLifetime;
+
+	private final ConcurrentMap<List<X509Certificate>, TrustStore> trustStores = new ConcurrentHashMap<List<X509Certificate>, TrustStore>();
+	private final ConcurrentMap<String, CachedResult> results = new ConcurrentHashMap<String, CachedResult>();
 
 	public PathCertificateVerifier(boolean verifySelfSignedCert) {
+		this(verifySelfSignedCert, DEFAULT_CACHE_LIFETIME);
+	}
+
+	/**
+	 * @param cacheLifetime max time in seconds to keep result of path validation, 0 disables cache
+	 */
+	public PathCertificateVerifier(boolean verifySelfSignedCert, int cacheLifetime) {
 		SecurityProviderUtility.installBCProvider(true);
 
 		this.verifySelfSignedCertificate = verifySelfSignedCert;
+		this.cacheLifetime = TimeUnit.SECONDS.toMillis(Math.max(0, cacheLifetime));
 	}
 
 	@Override
@@ -89,42 +117,36 @@ public class PathCertificateVerifier implements CertificateVerifier {
 
 	public PKIXCertPathBuilderResult verifyCertificate(X509Certificate certificate, List<X509Certificate> additionalCerts) {
 		try {
-			// Check for self-signed certificate
-			if (!verifySelfSignedCertificate && isSelfSigned(certificate)) {
-				log.error("The certificate is self-signed!");
-
-				return null;
-			}
-
-			// Prepare a set of trusted root CA certificates and a set of
-			// intermediate certificates
-			Set<X509Certificate> trustedRootCerts = new HashSet<X509Certificate>();
-			Set<X509Certificate> intermediateCerts = new HashSet<X509Certificate>();
+			// Trust store is prepared for chain certificates without the certificate itself, so it's shared by
+			// all certificates issued by the same chain
+			List<X509Certificate> chainCerts = new ArrayList<X509Certificate>(additionalCerts.size());
 			for (X509Certificate additionalCert : additionalCerts) {
-				if (isSelfSigned(additionalCert)) {
-					trustedRootCerts.add(additionalCert);
-				} else {
-					intermediateCerts.add(additionalCert);
+				if (!additionalCert.equals(certificate)) {
+					chainCerts.add(additionalCert);
 				}
 			}
 
-			// Attempt to build the certification chain and verify it
-			PKIXCertPathBuilderResult certPathBuilderResult = verifyCertificate(certificate, trustedRootCerts, intermediateCerts);
+			TrustStore store = getTrustStore(chainCerts);
 
-			// Check that first certificate is an EE certificate
-			CertPath certPath = certPathBuilderResult.getCertPath();
-			List<? extends Certificate> certList = certPath.getCertificates();
-			X509Certificate cert = (X509Certificate) certList.get(0);
-			if (cert.getBasicConstraints() != -1) {
-				log.error("Target certificate is not an EE certificate!");
+			final long now = System.currentTimeMillis();
+			final String key = store.revision + ":" + getFingerprint(certificate);
+			if (cacheLifetime > 0) {
+				CachedResult cached = results.get(key);
+				if ((cached != null) && !cached.isExpired(now)) {
+					return cached.result;
+				}
+			}
 
-				return null;
+			PKIXCertPathBuilderResult certPathBuilderResult = null;
+			try {
+				certPathBuilderResult = buildCertificatePath(certificate, store);
+			} catch (CertPathBuilderException ex) {
+				log.error("Failed to build certificate path", ex);
 			}
 
-			// The chain is verified. Return it as a result
+			putResult(key, certificate, certPathBuilderResult, now);
+
 			return certPathBuilderResult;
-		} catch (CertPathBuilderException ex) {
-			log.error("Failed to build certificate path", ex);
 		} catch (GeneralSecurityException ex) {
 			log.error("Failed to build certificate path", ex);
 		}
@@ -132,6 +154,36 @@ public class PathCertificateVerifier implements CertificateVerifier {
 		return null;
 	}
 
+	private PKIXCertPathBuilderResult buildCertificatePath(X509Certificate certificate, TrustStore store) throws GeneralSecurityException {
+		// Check for self-signed certificate
+		if (isSelfSigned(certificate)) {
+			if (!verifySelfSignedCertificate) {
+				log.error("The certificate is self-signed!");
+
+				return null;
+			}
+
+			// Self-signed certificate is trust anchor for itself
+			store = store.withTrustAnchor(certificate);
+		}
+
+		// Attempt to build the certification chain and verify it
+		PKIXCertPathBuilderResult certPathBuilderResult = verifyCertificate(certificate, store);
+
+		// Check that first certificate is an EE certificate
+		CertPath certPath = certPathBuilderResult.getCertPath();
+		List<? extends Certificate> certList = certPath.getCertificates();
+		X509Certificate cert = (X509Certificate) certList.get(0);
+		if (cert.getBasicConstraints() != -1) {
+			log.error("Target certificate is not an EE certificate!");
+
+			return null;
+		}
+
+		// The chain is verified. Return it as a result
+		return certPathBuilderResult;
+	}
+
 	public static boolean isSelfSigned(X509Certificate certificate) throws CertificateException, NoSuchAlgorithmException, NoSuchProviderException {
 		try {
 			// Try to verify certificate signature with its own public key
@@ -153,29 +205,22 @@ public class PathCertificateVerifier implements CertificateVerifier {
 	 * it. Relies on a set of root CA certificates (trust anchors) and a set of
 	 * intermediate certificates (to be used as part of the chain).
 	 */
-	private PKIXCertPathBuilderResult verifyCertificate(X509Certificate certificate, Set<X509Certificate> trustedRootCerts, Set<X509Certificate> intermediateCerts)
-			throws GeneralSecurityException {
+	private PKIXCertPathBuilderResult verifyCertificate(X509Certificate certificate, TrustStore store) throws GeneralSecurityException {
 
 		// Create the selector that specifies the starting certificate
 		X509CertSelector selector = new X509CertSelector();
 		selector.setBasicConstraints(-2);
 		selector.setCertificate(certificate);
 
-		// Create the trust anchors (set of root CA certificates)
-		Set<TrustAnchor> trustAnchors = new HashSet<TrustAnchor>();
-		for (X509Certificate trustedRootCert : trustedRootCerts) {
-			trustAnchors.add(new TrustAnchor(trustedRootCert, null));
-		}
-
 		// Configure the PKIX certificate builder algorithm parameters
-		PKIXBuilderParameters pkixParams = new PKIXBuilderParameters(trustAnchors, selector);
+		PKIXBuilderParameters pkixParams = new PKIXBuilderParameters(store.trustAnchors, selector);
 
 		// Turn off default revocation-checking mechanism
 		pkixParams.setRevocationEnabled(false);
 
-		// Specify a list of intermediate certificates
-		CertStore intermediateCertStore = CertStore.getInstance("Collection", new CollectionCertStoreParameters(intermediateCerts));
-		pkixParams.addCertStore(intermediateCertStore);
+		// Specify a list of intermediate certificates and the certificate itself, builder looks for it in cert stores
+		pkixParams.addCertStore(store.intermediateCertStore);
+		pkixParams.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(Collections.singleton(certificate))));
 
 		// Build and verify the certification chain
 		CertPathBuilder builder = CertPathBuilder.getInstance("PKIX", BouncyCastleProvider.PROVIDER_NAME);
@@ -183,13 +228,134 @@ public class PathCertificateVerifier implements CertificateVerifier {
 
 		// Additional check to Verify cert path
 		CertPathValidator certPathValidator = CertPathValidator.getInstance("PKIX", BouncyCastleProvider.PROVIDER_NAME);
-		PKIXCertPathValidatorResult certPathValidationResult = (PKIXCertPathValidatorResult) certPathValidator.validate(certPathBuilderResult.getCertPath(), pkixParams);
+		certPathValidator.validate(certPathBuilderResult.getCertPath(), pkixParams);
 
 		return certPathBuilderResult;
 	}
 
+	/**
+	 * Returns trust anchors and intermediate certificates store for given chain certificates. Stores of recently
+	 * used sets of chain certificates are kept, so store is built only when new set of chain certificates appears.
+	 */
+	private TrustStore getTrustStore(List<X509Certificate> chainCerts) throws GeneralSecurityException {
+		TrustStore store = trustStores.get(chainCerts);
+		if (store != null) {
+			return store;
+		}
+
+		StringBuilder fingerprints = new StringBuilder();
+		for (X509Certificate chainCert : chainCerts) {
+			fingerprints.append(getFingerprint(chainCert)).append(';');
+		}
+		String revision = DigestUtils.sha256Hex(fingerprints.toString());
+
+		// Prepare a set of trusted root CA certificates and a set of
+		// intermediate certificates
+		Set<TrustAnchor> trustAnchors = new HashSet<TrustAnchor>();
+		Set<X509Certificate> intermediateCerts = new HashSet<X509Certificate>();
+		for (X509Certificate chainCert : chainCerts) {
+			if (isSelfSigned(chainCert)) {
+				trustAnchors.add(new TrustAnchor(chainCert, null));
+			} else {
+				intermediateCerts.add(chainCert);
+			}
+		}
+
+		CertStore intermediateCertStore = CertStore.getInstance("Collection", new CollectionCertStoreParameters(intermediateCerts));
+
+		log.debug("Loaded '" + trustAnchors.size() + "' trust anchors and '" + intermediateCerts.size() + "' intermediate certificates");
+
+		if (trustStores.size() >= MAX_TRUST_STORES) {
+			trustStores.clear();
+		}
+
+		store = new TrustStore(revision, trustAnchors, intermediateCertStore);
+		trustStores.put(new ArrayList<X509Certificate>(chainCerts), store);
+
+		return store;
+	}
+
+	private void putResult(String key, X509Certificate certificate, PKIXCertPathBuilderResult certPathBuilderResult, long now) {
+		if (cacheLifetime <= 0) {
+			return;
+		}
+
+		long expiresAt;
+		if (certPathBuilderResult == null) {
+			expiresAt = Math.min(now + Math.min(cacheLifetime, NEGATIVE_CACHE_LIFETIME), certificate.getNotAfter().getTime());
+		} else {
+			// Result is valid while all certificates in path are valid
+			expiresAt = Math.min(now + cacheLifetime, certificate.getNotAfter().getTime());
+			for (Certificate pathCert : certPathBuilderResult.getCertPath().getCertificates()) {
+				expiresAt = Math.min(expiresAt, ((X509Certificate) pathCert).getNotAfter().getTime());
+			}
+
+			X509Certificate trustedCert = certPathBuilderResult.getTrustAnchor().getTrustedCert();
+			if (trustedCert != null) {
+				expiresAt = Math.min(expiresAt, trustedCert.getNotAfter().getTime());
+			}
+		}
+
+		if (expiresAt <= now) {
+			return;
+		}
+
+		if (results.size() >= MAX_CACHE_SIZE) {
+			for (Iterator<CachedResult> it = results.values().iterator(); it.hasNext(); ) {
+				if (it.next().isExpired(now)) {
+					it.remove();
+				}
+			}
+
+			if (results.size() >= MAX_CACHE_SIZE) {
+				return;
+			}
+		}
+
+		results.put(key, new CachedResult(certPathBuilderResult, expiresAt));
+	}
+
+	private static String getFingerprint(X509Certificate certificate) throws CertificateEncodingException {
+		return DigestUtils.sha256Hex(certificate.getEncoded());
+	}
+
 	@Override
 	public void destroy() {
+		results.clear();
+		trustStores.clear();
+	}
+
+	private static class TrustStore {
+		private final String revision;
+		private final Set<TrustAnchor> trustAnchors;
+		private final CertStore intermediateCertStore;
+
+		TrustStore(String revision, Set<TrustAnchor> trustAnchors, CertStore intermediateCertStore) {
+			this.revision = revision;
+			this.trustAnchors = trustAnchors;
+			this.intermediateCertStore = intermediateCertStore;
+		}
+
+		TrustStore withTrustAnchor(X509Certificate certificate) {
+			Set<TrustAnchor> extendedTrustAnchors = new HashSet<TrustAnchor>(trustAnchors);
+			extendedTrustAnchors.add(new TrustAnchor(certificate, null));
+
+			return new TrustStore(revision, extendedTrustAnchors, intermediateCertStore);
+		}
+	}
+
+	private static class CachedResult {
+		private final PKIXCertPathBuilderResult result;
+		private final long expiresAt;
+
+		CachedResult(PKIXCertPathBuilderResult result, long expiresAt) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
 	}
 
 }
@@ -0,0 +1,136 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.cert.validation;
+
+import java.math.BigInteger;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compact index of revoked serial numbers from CRL. Serial numbers which fit into long are kept in sorted
+ * primitive array, longer ones in sorted array of BigInteger. Lookup is binary search.
+ */
+public final class RevokedSerials {
+
+	private static final int REMOVE_FROM_CRL_REASON = 8;
+
+	private final long[] serials;
+	private final Revocation[] revocations;
+	private final BigInteger[] bigSerials;
+	private final Revocation[] bigRevocations;
+
+	private RevokedSerials(long[] serials, Revocation[] revocations, BigInteger[] bigSerials, Revocation[] bigRevocations) {
+		this.serials = serials;
+		this.revocations = revocations;
+		this.bigSerials = bigSerials;
+		this.bigRevocations = bigRevocations;
+	}
+
+	public static RevokedSerials build(X509CRL crl) {
+		final List<Revoked> small = new ArrayList<Revoked>();
+		final List<Revoked> big = new ArrayList<Revoked>();
+
+		final Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+		if (entries != null) {
+			for (X509CRLEntry entry : entries) {
+				final BigInteger serial = entry.getSerialNumber();
+				final boolean removedFromCrl = CRLStore.getReasonCode(entry) == REMOVE_FROM_CRL_REASON;
+				final Revocation revocation = new Revocation(entry.getRevocationDate().getTime(), removedFromCrl);
+				if (serial.bitLength() < 64) {
+					small.add(new Revoked(serial, revocation));
+				} else {
+					big.add(new Revoked(serial, revocation));
+				}
+			}
+		}
+
+		Collections.sort(small);
+		Collections.sort(big);
+
+		final long[] serials = new long[small.size()];
+		final Revocation[] revocations = new Revocation[small.size()];
+		for (int i = 0; i < serials.length; i++) {
+			serials[i] = small.get(i).serial.longValue();
+			revocations[i] = small.get(i).revocation;
+		}
+
+		final BigInteger[] bigSerials = new BigInteger[big.size()];
+		final Revocation[] bigRevocations = new Revocation[big.size()];
+		for (int i = 0; i < bigSerials.length; i++) {
+			bigSerials[i] = big.get(i).serial;
+			bigRevocations[i] = big.get(i).revocation;
+		}
+
+		return new RevokedSerials(serials, revocations, bigSerials, bigRevocations);
+	}
+
+	/**
+	 * @return CRL entry of serial number or null if serial number is not in CRL
+	 */
+	public Revocation find(BigInteger serial) {
+		if (serial.bitLength() < 64) {
+			final int index = Arrays.binarySearch(serials, serial.longValue());
+			return index >= 0 ? revocations[index] : null;
+		}
+
+		final int index = Arrays.binarySearch(bigSerials, serial, BIG_INTEGER_COMPARATOR);
+		return index >= 0 ? bigRevocations[index] : null;
+	}
+
+	public int size() {
+		return serials.length + bigSerials.length;
+	}
+
+	private static final Comparator<BigInteger> BIG_INTEGER_COMPARATOR = new Comparator<BigInteger>() {
+		public int compare(BigInteger o1, BigInteger o2) {
+			return o1.compareTo(o2);
+		}
+	};
+
+	/**
+	 * Revocation of serial number or, in delta CRL, removal of serial number from base CRL
+	 */
+	public static final class Revocation {
+		private final long revocationTime;
+		private final boolean removedFromCrl;
+
+		Revocation(long revocationTime, boolean removedFromCrl) {
+			this.revocationTime = revocationTime;
+			this.removedFromCrl = removedFromCrl;
+		}
+
+		public Date getRevocationDate() {
+			return new Date(revocationTime);
+		}
+
+		public boolean isRemovedFromCrl() {
+			return removedFromCrl;
+		}
+	}
+
+	private static class Revoked implements Comparable<Revoked> {
+		private final BigInteger serial;
+		private final Revocation revocation;
+
+		Revoked(BigInteger serial, Revocation revocation) {
+			this.serial = serial;
+			this.revocation = revocation;
+		}
+
+		public int compareTo(Revoked other) {
+			return serial.compareTo(other.serial);
+		}
+	}
+
+}
@@ -26,6 +26,10 @@ import org.xdi.oxauth.model.exception.SignatureException;
 @Named
 public class SHA256withECDSASignatureVerification implements SignatureVerification {
 
+    // Curve parameters are immutable, build them once
+    private static final X9ECParameters CURVE = SECNamedCurves.getByName("secp256r1");
+    private static final ECParameterSpec CURVE_SPEC = new ECParameterSpec(CURVE.getCurve(), CURVE.getG(), CURVE.getN(), CURVE.getH());
+
     @Override
     public boolean checkSignature(X509Certificate certificate, byte[] signedBytes, byte[] signature) throws SignatureException {
         return checkSignature(certificate.getPublicKey(), signedBytes, signature);
@@ -49,20 +53,10 @@ public class SHA256withECDSASignatureVerification implements SignatureVerificati
 
     @Override
     public PublicKey decodePublicKey(byte[] encodedPublicKey) throws SignatureException {
-            X9ECParameters curve = SECNamedCurves.getByName("secp256r1");
-            ECPoint point = curve.getCurve().decodePoint(encodedPublicKey);
+            ECPoint point = CURVE.getCurve().decodePoint(encodedPublicKey);
 
             try {
-				return KeyFactory.getInstance("ECDSA").generatePublic(
-				        new ECPublicKeySpec(point,
-				                new ECParameterSpec(
-				                        curve.getCurve(),
-				                        curve.getG(),
-				                        curve.getN(),
-				                        curve.getH()
-				                )
-				        )
-				);
+				return KeyFactory.getInstance("ECDSA").generatePublic(new ECPublicKeySpec(point, CURVE_SPEC));
 			} catch (GeneralSecurityException ex) {
 				throw new SignatureException(ex);
 			}
@@ -6,6 +6,7 @@
 
 package org.xdi.oxauth.gluu.ws.rs;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,10 +14,13 @@ import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.lang.StringUtils;
@@ -25,10 +29,12 @@ import org.xdi.model.GluuAttribute;
 import org.xdi.model.custom.script.conf.CustomScriptConfiguration;
 import org.xdi.oxauth.model.common.Scope;
 import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.discovery.DiscoveryDocument;
 import org.xdi.oxauth.model.error.ErrorResponseFactory;
 import org.xdi.oxauth.model.gluu.GluuConfiguration;
 import org.xdi.oxauth.model.gluu.GluuErrorResponseType;
 import org.xdi.oxauth.service.AttributeService;
+import org.xdi.oxauth.service.DiscoveryDocumentService;
 import org.xdi.oxauth.service.ScopeService;
 import org.xdi.oxauth.service.external.ExternalAuthenticationService;
 import org.xdi.oxauth.util.ServerUtil;
@@ -47,6 +53,8 @@ import com.wordnik.swagger.annotations.ApiResponses;
 @Api(value = "/.well-known/gluu-configuration", description = "Endpoint for non-standard OpenID Connect discovery configuration data in a JSON [RFC4627] document that resides in at /.well-known/gluu-configuration directory at its hostmeta [hostmeta] location. The configuration data documents conformance options and endpoints supported by the Gluu server.")
 public class GluuConfigurationWS {
 
+    private static final String DOCUMENT_KEY = "gluu-configuration";
+
     @Inject
     private Logger log;
 
@@ -65,25 +73,24 @@ public class GluuConfigurationWS {
     @Inject
     private ExternalAuthenticationService externalAuthenticationService;
 
+    @Inject
+    private DiscoveryDocumentService discoveryDocumentService;
+
     @GET
     @Produces({"application/json"})
     @ApiOperation(value = "Provides configuration data as json document. It contains non-standard OpenID Connect discovery metadata supported by the Gluu server.", response = GluuConfiguration.class)
     @ApiResponses(value = {@ApiResponse(code = 500, message = "Failed to build gluu configuration json object.")})
-    public Response getConfiguration() {
+    public void getConfiguration(@Context HttpServletRequest httpRequest, @Context HttpServletResponse httpResponse) {
         try {
-            final GluuConfiguration conf = new GluuConfiguration();
-
-            conf.setIdGenerationEndpoint(appConfiguration.getIdGenerationEndpoint());
-            conf.setIntrospectionEndpoint(appConfiguration.getIntrospectionEndpoint());
-            conf.setAuthLevelMapping(createAuthLevelMapping());
-            conf.setScopeToClaimsMapping(createScopeToClaimsMapping());
-
-            // convert manually to avoid possible conflicts between resteasy
-            // providers, e.g. jettison, jackson
-            final String entity = ServerUtil.asPrettyJson(conf);
-            log.trace("Gluu configuration: {}", entity);
+            DiscoveryDocument document = discoveryDocumentService.getDocument(DOCUMENT_KEY, new DiscoveryDocumentService.DocumentBuilder() {
+                @Override
+                public String build() throws IOException {
+                    return buildDocument();
+                }
+            });
 
-            return Response.ok(entity).build();
+            // written directly to servlet response, so pre-gzipped variant is served without compressing again
+            discoveryDocumentService.write(document, httpRequest, httpResponse, "application/json");
         } catch (Throwable ex) {
             log.error(ex.getMessage(), ex);
             throw new WebApplicationException(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -91,6 +98,22 @@ public class GluuConfigurationWS {
         }
     }
 
+    private String buildDocument() throws IOException {
+        final GluuConfiguration conf = new GluuConfiguration();
+
+        conf.setIdGenerationEndpoint(appConfiguration.getIdGenerationEndpoint());
+        conf.setIntrospectionEndpoint(appConfiguration.getIntrospectionEndpoint());
+        conf.setAuthLevelMapping(createAuthLevelMapping());
+        conf.setScopeToClaimsMapping(createScopeToClaimsMapping());
+
+        // convert manually to avoid possible conflicts between resteasy
+        // providers, e.g. jettison, jackson
+        final String entity = ServerUtil.asPrettyJson(conf);
+        log.trace("Gluu configuration: {}", entity);
+
+        return entity;
+    }
+
     public Map<Integer, Set<String>> createAuthLevelMapping() {
         Map<Integer, Set<String>> map = Maps.newHashMap();
         try {
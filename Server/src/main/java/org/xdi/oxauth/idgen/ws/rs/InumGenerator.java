@@ -12,14 +12,14 @@ import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.lang.StringUtils;
 import org.gluu.site.ldap.persistence.LdapEntryManager;
 import org.slf4j.Logger;
 import org.xdi.ldap.model.LdapDummyEntry;
 import org.xdi.oxauth.model.common.IdType;
 import org.xdi.oxauth.model.config.BaseDnConfiguration;
 import org.xdi.oxauth.model.config.StaticConfiguration;
-import org.xdi.util.INumGenerator;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.util.ThreadLocalSecureRandom;
 
 import com.unboundid.ldap.sdk.DN;
 import com.unboundid.ldap.sdk.Filter;
@@ -27,7 +27,7 @@ import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.RDN;
 
 /**
- * Inum ID generator. Generates inum: e.g. @!1111!0001!1234.
+ * Inum ID generator. Generates inum: e.g. @!1111!0008!0A1F.5F3C.8B20.0001.
  *
  * @author Yuriy Zabrovarnyy
  * @version 0.9, 26/06/2013
@@ -40,6 +40,9 @@ public class InumGenerator implements IdGenerator {
 
     private static final int MAX = 100;
 
+    private static volatile boolean checkUniqueness;
+    private static volatile InumSequence sequence;
+
     @Inject
     private Logger log;
     @Inject
@@ -48,6 +51,9 @@ public class InumGenerator implements IdGenerator {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private AppConfiguration appConfiguration;
+
     @Override
     public String generateId(String p_idType, String p_idPrefix) {
         final IdType idType = IdType.fromString(p_idType);
@@ -60,46 +66,59 @@ public class InumGenerator implements IdGenerator {
     }
 
     public String generateId(IdType p_idType, String p_idPrefix) {
+        final InumSequence inumSequence = getSequence();
+
         String inum;
         int counter = 0;
+        while (true) {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(p_idPrefix).
+                    append(InumGenerator.SEPARATOR).
+                    append(p_idType.getInum()).
+                    append(InumGenerator.SEPARATOR).
+                    append(inumSequence.nextInum());
+
+            inum = sb.toString();
+
+            // Suffix is unique by construction if node id is configured, random node id may be used by another node
+            if (!checkUniqueness || !contains(inum, p_idType)) {
+                break;
+            }
 
-        try {
-            while (true) {
-                final StringBuilder sb = new StringBuilder();
-                sb.append(p_idPrefix).
-                        append(InumGenerator.SEPARATOR).
-                        append(p_idType.getInum()).
-                        append(InumGenerator.SEPARATOR);
-
-                if ((IdType.CLIENTS == p_idType) || (IdType.PEOPLE == p_idType)) { 
-                	sb.append(INumGenerator.generate(4));
-                } else {
-                	sb.append(INumGenerator.generate(2));
-                }
-
-                inum = sb.toString();
-                if (StringUtils.isBlank(inum)) {
-                    log.error("Unable to generate inum: {}", inum);
-                    break;
-                }
+            /* Just to make sure it doesn't get into an infinite loop */
+            if (counter > MAX) {
+                log.error("Infinite loop problem while generating new inum");
+                return "";
+            }
+            counter++;
+        }
 
-                if (!contains(inum, p_idType)) {
-                    break;
-                }
+        log.trace("Generated inum: {}", inum);
+        return inum;
+    }
 
-                /* Just to make sure it doesn't get into an infinite loop */
-                if (counter > MAX) {
-                    log.error("Infinite loop problem while generating new inum");
-                    return "";
+    private InumSequence getSequence() {
+        InumSequence result = sequence;
+        if (result == null) {
+            synchronized (InumGenerator.class) {
+                result = sequence;
+                if (result == null) {
+                    final Integer nodeId = appConfiguration.getInumNodeId();
+                    if (nodeId != null) {
+                        result = new InumSequence(nodeId);
+                    } else {
+                        final int randomNodeId = ThreadLocalSecureRandom.current().nextInt(0x10000);
+                        log.warn("inumNodeId is not set, using random node id: {} and checking that every generated inum is not used yet. " +
+                                "Set unique inumNodeId on every node of cluster to skip this check", randomNodeId);
+                        result = new InumSequence(randomNodeId);
+                        checkUniqueness = true;
+                    }
+                    sequence = result;
                 }
-                counter++;
             }
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            inum = e.getMessage();
         }
-        log.trace("Generated inum: {}", inum);
-        return inum;
+
+        return result;
     }
 
     public boolean contains(String inum, IdType type) {
@@ -0,0 +1,78 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.idgen.ws.rs;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique 64 bit values without coordination: 16 bits node id, 32 bits time in seconds and
+ * 16 bits counter. If more than 65536 values are requested in one second, sequence borrows time of next
+ * seconds. New sequence starts from the second after its creation, so restarted node doesn't repeat values
+ * of previous run as long as its clock doesn't go back across restart.
+ * <p/>
+ * Values are sequential and reveal time of creation, they must not be used where unpredictable id is needed.
+ */
+public class InumSequence {
+
+    private static final int COUNTER_BITS = 16;
+    private static final int NODE_SHIFT = 48;
+    private static final long TIME_AND_COUNTER_MASK = (1L << NODE_SHIFT) - 1;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final long node;
+    private final AtomicLong last;
+
+    /**
+     * @param nodeId id of server node, only lower 16 bits are used. It must be unique in cluster.
+     */
+    public InumSequence(int nodeId) {
+        this(nodeId, System.currentTimeMillis() / 1000L);
+    }
+
+    InumSequence(int nodeId, long startTimeSeconds) {
+        this.node = ((long) (nodeId & 0xFFFF)) << NODE_SHIFT;
+        this.last = new AtomicLong(((startTimeSeconds + 1) << COUNTER_BITS) - 1);
+    }
+
+    public long next() {
+        final long now = currentTimeSeconds() << COUNTER_BITS;
+        while (true) {
+            final long previous = last.get();
+            final long next = Math.max(previous + 1, now);
+            if (last.compareAndSet(previous, next)) {
+                return node | (next & TIME_AND_COUNTER_MASK);
+            }
+        }
+    }
+
+    long currentTimeSeconds() {
+        return System.currentTimeMillis() / 1000L;
+    }
+
+    /**
+     * @return next value formatted as inum suffix, e.g. 0A1F.5F3C.8B20.0001
+     */
+    public String nextInum() {
+        return format(next());
+    }
+
+    public static String format(long value) {
+        final char[] chars = new char[19];
+        int position = chars.length;
+        for (int i = 0; i < 16; i++) {
+            if (i > 0 && i % 4 == 0) {
+                chars[--position] = '.';
+            }
+            chars[--position] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+
+        return new String(chars);
+    }
+
+}
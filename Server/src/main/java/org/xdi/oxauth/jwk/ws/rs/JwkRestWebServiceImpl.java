@@ -8,11 +8,16 @@ package org.xdi.oxauth.jwk.ws.rs;
 
 import javax.inject.Inject;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 
 import org.slf4j.Logger;
+import org.xdi.oxauth.model.config.ConfigurationFactory;
 import org.xdi.oxauth.model.config.WebKeysConfiguration;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.discovery.DiscoveryDocument;
+import org.xdi.oxauth.service.DiscoveryDocumentService;
 
 /**
  * Provides interface for JWK REST web services
@@ -23,24 +28,65 @@ import org.xdi.oxauth.model.config.WebKeysConfiguration;
 @Path("/oxauth")
 public class JwkRestWebServiceImpl implements JwkRestWebService {
 
+    private static final String DOCUMENT_KEY = "jwks";
+
     @Inject
     private Logger log;
 
     @Inject
     private WebKeysConfiguration webKeysConfiguration;
 
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private ConfigurationFactory configurationFactory;
+
+    @Inject
+    private DiscoveryDocumentService discoveryDocumentService;
+
+    public JwkRestWebServiceImpl() {
+    }
+
+    JwkRestWebServiceImpl(Logger log, WebKeysConfiguration webKeysConfiguration, AppConfiguration appConfiguration,
+                          ConfigurationFactory configurationFactory, DiscoveryDocumentService discoveryDocumentService) {
+        this.log = log;
+        this.webKeysConfiguration = webKeysConfiguration;
+        this.appConfiguration = appConfiguration;
+        this.configurationFactory = configurationFactory;
+        this.discoveryDocumentService = discoveryDocumentService;
+    }
+
     @Override
-    public Response requestJwk(SecurityContext sec) {
+    public Response requestJwk(SecurityContext sec, Request request) {
         log.debug("Attempting to request JWK, Is Secure = {}", sec.isSecure());
-        Response.ResponseBuilder builder = Response.ok();
 
         try {
-            builder.entity(webKeysConfiguration.toString());
+            // Keys are changed only together with configuration revision
+            DiscoveryDocument document = discoveryDocumentService.getDocument(DOCUMENT_KEY,
+                    String.valueOf(configurationFactory.getLoadedRevision()), new DiscoveryDocumentService.DocumentBuilder() {
+                        @Override
+                        public String build() {
+                            return webKeysConfiguration.toString();
+                        }
+                    });
+
+            return discoveryDocumentService.getResponse(document, request, getMaxAge());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            builder = Response.status(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()); // 500
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()).build(); // 500
+        }
+    }
+
+    /**
+     * New keys are generated every keyRegenerationInterval hours, keep clients refreshing several times per interval.
+     */
+    private int getMaxAge() {
+        int maxAge = Math.max(0, appConfiguration.getJwksCacheLifetime());
+        if (Boolean.TRUE.equals(appConfiguration.getKeyRegenerationEnabled()) && appConfiguration.getKeyRegenerationInterval() > 0) {
+            maxAge = Math.min(maxAge, appConfiguration.getKeyRegenerationInterval() * 3600 / 10);
         }
 
-        return builder.build();
+        return maxAge;
     }
-}
\ No newline at end of file
+}
@@ -33,9 +33,9 @@ import org.xdi.oxauth.model.jwt.JwtHeader;
 import org.xdi.oxauth.model.jwt.JwtHeaderName;
 import org.xdi.oxauth.model.registration.Client;
 import org.xdi.oxauth.model.util.Base64Util;
-import org.xdi.oxauth.model.util.JwtUtil;
 import org.xdi.oxauth.model.util.Util;
 import org.xdi.oxauth.service.ClientService;
+import org.xdi.oxauth.service.net.OutboundHttpService;
 import org.xdi.oxauth.util.ServerUtil;
 import org.xdi.util.security.StringEncrypter;
 
@@ -66,6 +66,10 @@ public class JwtAuthorizationRequest {
     private IdTokenMember idTokenMember;
 
     private String encodedJwt;
+
+    // Decrypted and verified header and payload
+    private String header;
+    private String payload;
     
     private AppConfiguration appConfiguration;
 
@@ -121,6 +125,8 @@ public class JwtAuthorizationRequest {
                     String payload = new String(Base64Util.base64urldecode(encodedClaim), Util.UTF8_STRING_ENCODING);
                     payload = payload.replace("\\", "");
 
+                    this.header = header;
+                    this.payload = payload;
                     loadHeader(header);
                     loadPayload(payload);
                 } else if (parts.length == 2 || parts.length == 3) {
@@ -151,67 +157,9 @@ public class JwtAuthorizationRequest {
                     SignatureAlgorithm sigAlg = SignatureAlgorithm.fromString(algorithm);
                     if (sigAlg != null) {
                         if (validateSignature(sigAlg, client, signingInput, encodedSignature)) {
-                            JSONObject jsonPayload = new JSONObject(payload);
-
-                            if (jsonPayload.has("response_type")) {
-                                JSONArray responseTypeJsonArray = jsonPayload.optJSONArray("response_type");
-                                if (responseTypeJsonArray != null) {
-                                    for (int i = 0; i < responseTypeJsonArray.length(); i++) {
-                                        ResponseType responseType = ResponseType.fromString(responseTypeJsonArray.getString(i));
-                                        responseTypes.add(responseType);
-                                    }
-                                } else {
-                                    responseTypes.addAll(ResponseType.fromString(jsonPayload.getString("response_type"), " "));
-                                }
-                            }
-                            if (jsonPayload.has("client_id")) {
-                                clientId = jsonPayload.getString("client_id");
-                            }
-                            if (jsonPayload.has("scope")) {
-                                JSONArray scopesJsonArray = jsonPayload.optJSONArray("scope");
-                                if (scopesJsonArray != null) {
-                                    for (int i = 0; i < scopesJsonArray.length(); i++) {
-                                        String scope = scopesJsonArray.getString(i);
-                                        scopes.add(scope);
-                                    }
-                                } else {
-                                    String scopeStringList = jsonPayload.getString("scope");
-                                    scopes.addAll(Util.splittedStringAsList(scopeStringList, " "));
-                                }
-                            }
-                            if (jsonPayload.has("redirect_uri")) {
-                                redirectUri = URLDecoder.decode(jsonPayload.getString("redirect_uri"), "UTF-8");
-                            }
-                            if (jsonPayload.has("nonce")) {
-                                nonce = jsonPayload.getString("nonce");
-                            }
-                            if (jsonPayload.has("state")) {
-                                state = jsonPayload.getString("state");
-                            }
-                            if (jsonPayload.has("display")) {
-                                display = Display.fromString(jsonPayload.getString("display"));
-                            }
-                            if (jsonPayload.has("prompt")) {
-                                JSONArray promptJsonArray = jsonPayload.optJSONArray("prompt");
-                                if (promptJsonArray != null) {
-                                    for (int i = 0; i < promptJsonArray.length(); i++) {
-                                        Prompt prompt = Prompt.fromString(promptJsonArray.getString(i));
-                                        prompts.add(prompt);
-                                    }
-                                } else {
-                                    prompts.addAll(Prompt.fromString(jsonPayload.getString("prompt"), " "));
-                                }
-                            }
-                            if (jsonPayload.has("claims")) {
-                                JSONObject claimsJsonObject = jsonPayload.getJSONObject("claims");
-
-                                if (claimsJsonObject.has("userinfo")) {
-                                    userInfoMember = new UserInfoMember(claimsJsonObject.getJSONObject("userinfo"));
-                                }
-                                if (claimsJsonObject.has("id_token")) {
-                                    idTokenMember = new IdTokenMember(claimsJsonObject.getJSONObject("id_token"));
-                                }
-                            }
+                            this.header = header;
+                            this.payload = payload;
+                            loadPayload(payload);
                         } else {
                             throw new InvalidJwtException("The JWT signature is not valid");
                         }
@@ -235,6 +183,37 @@ public class JwtAuthorizationRequest {
         }
     }
 
+    /**
+     * Creates new instance from header and payload of already verified request object. Mutable members of the copy
+     * are not shared with the given instance.
+     */
+    public JwtAuthorizationRequest(JwtAuthorizationRequest verified) throws InvalidJwtException {
+        this(verified.appConfiguration, verified.encodedJwt, verified.header, verified.payload);
+    }
+
+    /**
+     * Parses header and payload without decryption and signature validation, they must come from verified request
+     * object.
+     */
+    protected JwtAuthorizationRequest(AppConfiguration appConfiguration, String encodedJwt, String header, String payload) throws InvalidJwtException {
+        try {
+            this.appConfiguration = appConfiguration;
+            this.responseTypes = new ArrayList<ResponseType>();
+            this.scopes = new ArrayList<String>();
+            this.prompts = new ArrayList<Prompt>();
+            this.encodedJwt = encodedJwt;
+            this.header = header;
+            this.payload = payload;
+
+            loadHeader(header);
+            loadPayload(payload);
+        } catch (JSONException e) {
+            throw new InvalidJwtException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new InvalidJwtException(e);
+        }
+    }
+
     public String getEncodedJwt() {
         return encodedJwt;
     }
@@ -324,7 +303,7 @@ public class JwtAuthorizationRequest {
         ClientService clientService = ServerUtil.bean(ClientService.class); 
         String sharedSecret = clientService.decryptSecret(client.getClientSecret());
         JSONObject jwks = Strings.isNullOrEmpty(client.getJwks()) ?
-                JwtUtil.getJSONWebKeys(client.getJwksUri()) :
+                ServerUtil.bean(OutboundHttpService.class).getJSONWebKeys(client.getJwksUri()) :
                 new JSONObject(client.getJwks());
         AbstractCryptoProvider cryptoProvider = CryptoProviderFactory.getCryptoProvider(
         		appConfiguration);
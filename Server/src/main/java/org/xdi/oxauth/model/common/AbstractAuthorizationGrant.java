@@ -11,7 +11,6 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -23,6 +22,7 @@ import org.xdi.oxauth.model.authorize.ScopeChecker;
 import org.xdi.oxauth.model.configuration.AppConfiguration;
 import org.xdi.oxauth.model.ldap.TokenLdap;
 import org.xdi.oxauth.model.registration.Client;
+import org.xdi.oxauth.model.token.HandleTokenFactory;
 import org.xdi.oxauth.util.ServerUtil;
 import org.xdi.oxauth.util.TokenHashUtil;
 
@@ -68,7 +68,7 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
         this.client = client;
         this.appConfiguration = appConfiguration;
         this.scopes = new CopyOnWriteArraySet<String>();
-        this.grantId = UUID.randomUUID().toString();
+        this.grantId = HandleTokenFactory.generateHandleToken();
     }
 
     @Override
@@ -12,6 +12,7 @@ import java.util.Date;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
 import javax.inject.Named;
 
@@ -25,7 +26,9 @@ import org.xdi.oxauth.model.registration.Client;
 import org.xdi.oxauth.model.util.Util;
 import org.xdi.oxauth.service.ClientService;
 import org.xdi.oxauth.service.GrantService;
+import org.xdi.oxauth.service.RequestIdentityContext;
 import org.xdi.oxauth.service.UserService;
+import org.xdi.oxauth.util.TokenHashUtil;
 import org.xdi.service.CacheService;
 
 import com.unboundid.ldap.sdk.DN;
@@ -59,6 +62,12 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
     @Inject
     private CacheService cacheService;
 
+    @Inject
+    private BeanManager beanManager;
+
+    @Inject
+    private RequestIdentityContext identityContext;
+
     @Override
     public void removeAuthorizationGrants(List<AuthorizationGrant> authorizationGrants) {
         if (authorizationGrants != null && !authorizationGrants.isEmpty()) {
@@ -134,22 +143,60 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
 
     @Override
     public AuthorizationGrant getAuthorizationGrantByAccessToken(String accessToken) {
-        final TokenLdap tokenLdap = grantService.getGrantsByCode(accessToken);
+        final TokenLdap tokenLdap = getTokenByCode(accessToken);
         if (tokenLdap != null && (tokenLdap.getTokenTypeEnum() == org.xdi.oxauth.model.ldap.TokenType.ACCESS_TOKEN || tokenLdap.getTokenTypeEnum() == org.xdi.oxauth.model.ldap.TokenType.LONG_LIVED_ACCESS_TOKEN)) {
-            return asGrant(tokenLdap);
+            return asGrant(accessToken, tokenLdap);
         }
         return null;
     }
 
     @Override
     public AuthorizationGrant getAuthorizationGrantByIdToken(String idToken) {
-        TokenLdap tokenLdap = grantService.getGrantsByCode(idToken);
+        TokenLdap tokenLdap = getTokenByCode(idToken);
         if (tokenLdap != null && (tokenLdap.getTokenTypeEnum() == org.xdi.oxauth.model.ldap.TokenType.ID_TOKEN)) {
-            return asGrant(tokenLdap);
+            return asGrant(idToken, tokenLdap);
         }
         return null;
     }
 
+    /**
+     * Token which was already resolved to grant during current request is taken from request context
+     */
+    private TokenLdap getTokenByCode(String code) {
+        final RequestIdentityContext context = getIdentityContext();
+        if ((context == null) || StringUtils.isBlank(code)) {
+            return grantService.getGrantsByCode(code);
+        }
+
+        final AuthorizationGrant grant = context.getGrant(TokenHashUtil.getHashedToken(code));
+        if (grant != null) {
+            return grant.getTokenLdap();
+        }
+
+        context.incrementBackendCallCount();
+        return grantService.getGrantsByCode(code);
+    }
+
+    private AuthorizationGrant asGrant(String code, TokenLdap tokenLdap) {
+        final RequestIdentityContext context = getIdentityContext();
+        if (context == null) {
+            return asGrant(tokenLdap);
+        }
+
+        final String hashedCode = TokenHashUtil.getHashedToken(code);
+        AuthorizationGrant grant = context.getGrant(hashedCode);
+        if (grant == null) {
+            grant = asGrant(tokenLdap);
+            context.putGrant(hashedCode, grant);
+        }
+
+        return grant;
+    }
+
+    private RequestIdentityContext getIdentityContext() {
+        return RequestIdentityContext.isActive(beanManager) ? identityContext : null;
+    }
+
     public AuthorizationGrant load(String clientId, String p_code) {
         return asGrant(grantService.getGrantsByCodeAndClient(p_code, clientId));
     }
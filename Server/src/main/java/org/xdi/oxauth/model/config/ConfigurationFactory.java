@@ -224,6 +224,13 @@ public class ConfigurationFactory {
         return cryptoConfigurationSalt;
     }
 
+    /**
+     * @return revision of configuration loaded from LDAP or -1 if configuration was loaded from files
+     */
+    public long getLoadedRevision() {
+        return loadedRevision;
+    }
+
     private boolean createFromFile() {
         boolean result = reloadConfFromFile() && reloadErrorsFromFile() && reloadStaticConfFromFile() && reloadWebkeyFromFile();
 
@@ -373,7 +380,7 @@ public class ConfigurationFactory {
     }
 
     public void initJwksFromString(String p_webKeys) throws IOException, JsonParseException, JsonMappingException {
-        final WebKeysConfiguration k = ServerUtil.createJsonMapper().readValue(p_webKeys, WebKeysConfiguration.class);
+        final WebKeysConfiguration k = ServerUtil.jsonReader(WebKeysConfiguration.class).readValue(p_webKeys);
         if (k != null) {
             jwks = k;
         }
@@ -381,7 +388,7 @@ public class ConfigurationFactory {
 
     private void initStaticConfigurationFromJson(String p_statics) {
         try {
-            final StaticConfiguration c = ServerUtil.createJsonMapper().readValue(p_statics, StaticConfiguration.class);
+            final StaticConfiguration c = ServerUtil.jsonReader(StaticConfiguration.class).readValue(p_statics);
             if (c != null) {
                 staticConf = c;
             }
@@ -392,7 +399,7 @@ public class ConfigurationFactory {
 
     private void initConfigurationFromJson(String p_configurationJson) {
         try {
-            final AppConfiguration c = ServerUtil.createJsonMapper().readValue(p_configurationJson, AppConfiguration.class);
+            final AppConfiguration c = ServerUtil.jsonReader(AppConfiguration.class).readValue(p_configurationJson);
             if (c != null) {
                 conf = c;
             }
@@ -403,7 +410,7 @@ public class ConfigurationFactory {
 
     private void initErrorsFromJson(String p_errosAsJson) {
         try {
-            final ErrorMessages errorMessages = ServerUtil.createJsonMapper().readValue(p_errosAsJson, ErrorMessages.class);
+            final ErrorMessages errorMessages = ServerUtil.jsonReader(ErrorMessages.class).readValue(p_errosAsJson);
             if (errorMessages != null) {
                 errorResponseFactory = new ErrorResponseFactory(errorMessages);
             }
@@ -441,7 +448,7 @@ public class ConfigurationFactory {
 
     private AppConfiguration loadConfFromFile() {
         try {
-            return ServerUtil.createJsonMapper().readValue(new File(configFilePath), AppConfiguration.class);
+            return ServerUtil.jsonReader(AppConfiguration.class).readValue(new File(configFilePath));
         } catch (Exception e) {
             log.warn(e.getMessage(), e);
         }
@@ -450,7 +457,7 @@ public class ConfigurationFactory {
 
     private ErrorMessages loadErrorsFromFile() {
         try {
-            return ServerUtil.createJsonMapper().readValue(new File(errorsFilePath), ErrorMessages.class);
+            return ServerUtil.jsonReader(ErrorMessages.class).readValue(new File(errorsFilePath));
         } catch (Exception e) {
             log.warn(e.getMessage(), e);
         }
@@ -459,7 +466,7 @@ public class ConfigurationFactory {
 
     private StaticConfiguration loadStaticConfFromFile() {
         try {
-            return ServerUtil.createJsonMapper().readValue(new File(staticConfFilePath), StaticConfiguration.class);
+            return ServerUtil.jsonReader(StaticConfiguration.class).readValue(new File(staticConfFilePath));
         } catch (Exception e) {
             log.warn(e.getMessage(), e);
         }
@@ -468,7 +475,7 @@ public class ConfigurationFactory {
 
     private WebKeysConfiguration loadWebKeysFromFile() {
         try {
-            return ServerUtil.createJsonMapper().readValue(new File(webKeysFilePath), WebKeysConfiguration.class);
+            return ServerUtil.jsonReader(WebKeysConfiguration.class).readValue(new File(webKeysFilePath));
         } catch (Exception e) {
             log.warn(e.getMessage(), e);
         }
@@ -0,0 +1,123 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.discovery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.xdi.oxauth.model.util.Util;
+
+/**
+ * Immutable serialized well-known document. Identity and gzip variants have different strong ETags, gzip variant
+ * is compressed on first use.
+ */
+public class DiscoveryDocument {
+
+    private final String version;
+    private final byte[] content;
+    private volatile byte[] gzippedContent;
+    private final String etag;
+    private final String gzipEtag;
+    private final long lastModified;
+
+    public DiscoveryDocument(String version, String content) throws IOException {
+        this.version = version;
+        this.content = content.getBytes(Util.UTF8_STRING_ENCODING);
+        final String hash = DigestUtils.sha256Hex(this.content);
+        this.etag = "\"" + hash + "\"";
+        this.gzipEtag = "\"" + hash + "-gzip\"";
+        // HTTP dates have second precision
+        this.lastModified = System.currentTimeMillis() / 1000L * 1000L;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public byte[] getGzippedContent() throws IOException {
+        byte[] result = gzippedContent;
+        if (result == null) {
+            result = gzip(content);
+            gzippedContent = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return quoted strong entity tag of identity variant
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return quoted strong entity tag of given variant
+     */
+    public String getEtag(boolean gzipped) {
+        return gzipped ? gzipEtag : etag;
+    }
+
+    /**
+     * @return entity tag without quotes
+     */
+    public String getEtagValue() {
+        return etag.substring(1, etag.length() - 1);
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @param ifNoneMatch value of If-None-Match request header
+     * @param gzipped true if gzip variant is going to be sent
+     * @return true if one of entity tags in header matches selected variant of this document
+     */
+    public boolean matches(String ifNoneMatch, boolean gzipped) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+
+        final String selectedEtag = getEtag(gzipped);
+        for (String tag : StringUtils.split(ifNoneMatch, ',')) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(selectedEtag) || tag.equals("W/" + selectedEtag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param ifModifiedSince value of If-Modified-Since request header in milliseconds, -1 if absent
+     */
+    public boolean isNotModifiedSince(long ifModifiedSince) {
+        return ifModifiedSince >= lastModified;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 4 + 64);
+        GZIPOutputStream gos = new GZIPOutputStream(bos);
+        try {
+            gos.write(content);
+        } finally {
+            gos.close();
+        }
+
+        return bos.toByteArray();
+    }
+
+}
@@ -7,7 +7,14 @@
 package org.xdi.oxauth.model.error;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.enterprise.inject.Vetoed;
 import javax.inject.Inject;
@@ -15,6 +22,8 @@ import javax.inject.Named;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.io.JsonStringEncoder;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
@@ -30,10 +39,14 @@ import org.xdi.oxauth.model.uma.UmaErrorResponse;
 import org.xdi.oxauth.model.uma.UmaErrorResponseType;
 import org.xdi.oxauth.model.userinfo.UserInfoErrorResponseType;
 import org.xdi.oxauth.util.ServerUtil;
+import org.xdi.oxauth.model.util.Util;
 import org.xdi.util.StringHelper;
 
 /**
  * Provides an easy way to get Error responses based in an error response type
+ * <p/>
+ * Bodies of all configured errors are rendered when error messages are set, so serving error doesn't serialize
+ * anything. Factory is recreated on reload of errors configuration.
  *
  * @author Yuriy Zabrovarnyy
  * @author Javier Rojas Blum
@@ -46,10 +59,13 @@ public class ErrorResponseFactory {
 
     private ErrorMessages messages;
 
+    private volatile Map<Class<?>, EnumMap<?, RenderedError>> renderedErrors = Collections.emptyMap();
+
     public ErrorResponseFactory() {}
 
 	public ErrorResponseFactory(ErrorMessages messages) {
     	this.messages = messages;
+    	renderErrors();
 	}
 
 	public ErrorMessages getMessages() {
@@ -58,6 +74,7 @@ public class ErrorResponseFactory {
 
     public void setMessages(ErrorMessages p_messages) {
         messages = p_messages;
+        renderErrors();
     }
 
     /**
@@ -84,6 +101,11 @@ public class ErrorResponseFactory {
     }
 
     public String getErrorAsJson(IErrorType p_type) {
+        final RenderedError renderedError = getRenderedError(p_type);
+        if (renderedError != null) {
+            return renderedError.json;
+        }
+
         return getErrorResponse(p_type).toJSonString();
     }
 
@@ -96,7 +118,10 @@ public class ErrorResponseFactory {
     }
 
     public void throwWebApplicationException(Response.Status status, IErrorType type) throws WebApplicationException {
-        final Response response = Response.status(status).entity(getErrorAsJson(type)).build();
+        final RenderedError renderedError = getRenderedError(type);
+        final Object entity = renderedError != null ? renderedError.jsonBytes : getErrorAsJson(type);
+
+        final Response response = Response.status(status).entity(entity).build();
         throw new WebApplicationException(response);
     }
 
@@ -109,15 +134,39 @@ public class ErrorResponseFactory {
     }
 
     public void throwUmaWebApplicationException(Response.Status status, IErrorType type) throws WebApplicationException {
-        final Response response = Response.status(status).entity(getUmaJsonErrorResponse(type)).build();
+        final RenderedError renderedError = getRenderedError(type);
+        final Object entity = (renderedError != null) && (renderedError.umaJsonBytes != null) ? renderedError.umaJsonBytes : getUmaJsonErrorResponse(type);
+
+        final Response response = Response.status(status).entity(entity).build();
         throw new WebApplicationException(response);
     }
 
     public String getErrorAsJson(IErrorType p_type, String p_state) {
+        final RenderedError renderedError = getRenderedError(p_type);
+        if (renderedError != null) {
+            if (StringHelper.isEmpty(p_state)) {
+                return renderedError.json;
+            }
+
+            return new StringBuilder(renderedError.json.length() + p_state.length() + 12)
+                    .append(renderedError.json, 0, renderedError.json.length() - 1)
+                    .append(",\"state\":\"").append(JsonStringEncoder.getInstance().quoteAsString(p_state)).append("\"}")
+                    .toString();
+        }
+
         return getErrorResponse(p_type, p_state).toJSonString();
     }
 
     public String getErrorAsQueryString(IErrorType p_type, String p_state) {
+        final RenderedError renderedError = getRenderedError(p_type);
+        if ((renderedError != null) && (renderedError.queryString != null)) {
+            if (StringHelper.isEmpty(p_state)) {
+                return renderedError.queryString;
+            }
+
+            return renderedError.queryString + "&state=" + p_state;
+        }
+
         return getErrorResponse(p_type, p_state).toQueryString();
     }
 
@@ -131,28 +180,16 @@ public class ErrorResponseFactory {
         final DefaultErrorResponse response = new DefaultErrorResponse();
         response.setType(type);
 
-        if (type != null && messages != null) {
-            List<ErrorMessage> list = null;
-            if (type instanceof AuthorizeErrorResponseType) {
-                list = messages.getAuthorize();
-            } else if (type instanceof ClientInfoErrorResponseType) {
-                list = messages.getClientInfo();
-            } else if (type instanceof EndSessionErrorResponseType) {
-                list = messages.getEndSession();
-            } else if (type instanceof RegisterErrorResponseType) {
-                list = messages.getRegister();
-            } else if (type instanceof TokenErrorResponseType) {
-                list = messages.getToken();
-            } else if (type instanceof UmaErrorResponseType) {
-                list = messages.getUma();
-            } else if (type instanceof UserInfoErrorResponseType) {
-                list = messages.getUserInfo();
-            } else if (type instanceof ValidateTokenErrorResponseType) {
-                list = messages.getValidateToken();
-            } else if (type instanceof U2fErrorResponseType) {
-                list = messages.getFido();
-            }
+        final RenderedError renderedError = getRenderedError(type);
+        if (renderedError != null) {
+            response.setErrorDescription(renderedError.errorDescription);
+            response.setErrorUri(renderedError.errorUri);
 
+            return response;
+        }
+
+        if (type != null && messages != null) {
+            List<ErrorMessage> list = getErrorList(type);
             if (list != null) {
                 final ErrorMessage m = getError(list, type);
                 response.setErrorDescription(m.getDescription());
@@ -163,6 +200,31 @@ public class ErrorResponseFactory {
         return response;
     }
 
+    private List<ErrorMessage> getErrorList(IErrorType type) {
+        List<ErrorMessage> list = null;
+        if (type instanceof AuthorizeErrorResponseType) {
+            list = messages.getAuthorize();
+        } else if (type instanceof ClientInfoErrorResponseType) {
+            list = messages.getClientInfo();
+        } else if (type instanceof EndSessionErrorResponseType) {
+            list = messages.getEndSession();
+        } else if (type instanceof RegisterErrorResponseType) {
+            list = messages.getRegister();
+        } else if (type instanceof TokenErrorResponseType) {
+            list = messages.getToken();
+        } else if (type instanceof UmaErrorResponseType) {
+            list = messages.getUma();
+        } else if (type instanceof UserInfoErrorResponseType) {
+            list = messages.getUserInfo();
+        } else if (type instanceof ValidateTokenErrorResponseType) {
+            list = messages.getValidateToken();
+        } else if (type instanceof U2fErrorResponseType) {
+            list = messages.getFido();
+        }
+
+        return list;
+    }
+
     public UmaErrorResponse getUmaErrorResponse(IErrorType type) {
         final UmaErrorResponse response = new UmaErrorResponse();
 
@@ -175,8 +237,15 @@ public class ErrorResponseFactory {
     }
 
     public String getUmaJsonErrorResponse(IErrorType type) {
-        final UmaErrorResponse response = getUmaErrorResponse(type);
+        final RenderedError renderedError = getRenderedError(type);
+        if ((renderedError != null) && (renderedError.umaJson != null)) {
+            return renderedError.umaJson;
+        }
 
+        return renderUmaJsonErrorResponse(getUmaErrorResponse(type));
+    }
+
+    private static String renderUmaJsonErrorResponse(UmaErrorResponse response) {
         JSONObject jsonObj = new JSONObject();
 
         try {
@@ -204,6 +273,11 @@ public class ErrorResponseFactory {
 
 
     public String getJsonErrorResponse(IErrorType type) {
+        final RenderedError renderedError = getRenderedError(type);
+        if ((renderedError != null) && (renderedError.jsonErrorResponse != null)) {
+            return renderedError.jsonErrorResponse;
+        }
+
         final DefaultErrorResponse response = getErrorResponse(type);
         
         JsonErrorResponse jsonErrorResponse = new JsonErrorResponse(response);
@@ -216,4 +290,127 @@ public class ErrorResponseFactory {
 		}
     }
 
-}
\ No newline at end of file
+    private RenderedError getRenderedError(IErrorType type) {
+        if (!(type instanceof Enum)) {
+            return null;
+        }
+
+        final EnumMap<?, RenderedError> errors = renderedErrors.get(((Enum<?>) type).getDeclaringClass());
+        if (errors == null) {
+            return null;
+        }
+
+        return errors.get(type);
+    }
+
+    private void renderErrors() {
+        final Map<Class<?>, EnumMap<?, RenderedError>> errors = new HashMap<Class<?>, EnumMap<?, RenderedError>>();
+
+        if (messages != null) {
+            renderErrors(errors, AuthorizeErrorResponseType.class, messages.getAuthorize());
+            renderErrors(errors, ClientInfoErrorResponseType.class, messages.getClientInfo());
+            renderErrors(errors, EndSessionErrorResponseType.class, messages.getEndSession());
+            renderErrors(errors, RegisterErrorResponseType.class, messages.getRegister());
+            renderErrors(errors, TokenErrorResponseType.class, messages.getToken());
+            renderErrors(errors, UmaErrorResponseType.class, messages.getUma());
+            renderErrors(errors, UserInfoErrorResponseType.class, messages.getUserInfo());
+            renderErrors(errors, ValidateTokenErrorResponseType.class, messages.getValidateToken());
+            renderErrors(errors, U2fErrorResponseType.class, messages.getFido());
+        }
+
+        this.renderedErrors = errors;
+    }
+
+    private <T extends Enum<T> & IErrorType> void renderErrors(Map<Class<?>, EnumMap<?, RenderedError>> errors, Class<T> typeClass, List<ErrorMessage> list) {
+        final EnumMap<T, RenderedError> rendered = new EnumMap<T, RenderedError>(typeClass);
+        for (T type : typeClass.getEnumConstants()) {
+            try {
+                rendered.put(type, new RenderedError(type, getError(list, type), UmaErrorResponseType.class.equals(typeClass)));
+            } catch (IOException ex) {
+                log.error("Failed to render error response: " + type, ex);
+            }
+        }
+
+        errors.put(typeClass, rendered);
+    }
+
+    /**
+     * Error bodies rendered once
+     */
+    private static class RenderedError {
+        private final String errorDescription;
+        private final String errorUri;
+
+        private final String json;
+        private final byte[] jsonBytes;
+        private final String queryString;
+        private final String jsonErrorResponse;
+        private final String umaJson;
+        private final byte[] umaJsonBytes;
+
+        RenderedError(IErrorType type, ErrorMessage message, boolean uma) throws IOException {
+            // Error without configured message has no description
+            this.errorDescription = message != null ? message.getDescription() : null;
+            this.errorUri = message != null ? message.getUri() : null;
+
+            final String errorCode = type.toString();
+
+            final StringWriter writer = new StringWriter();
+            final JsonGenerator generator = ServerUtil.createJsonGenerator(writer);
+            generator.writeStartObject();
+            generator.writeStringField("error", errorCode);
+            if (StringHelper.isNotEmpty(errorDescription)) {
+                generator.writeStringField("error_description", errorDescription);
+            }
+            if (StringHelper.isNotEmpty(errorUri)) {
+                generator.writeStringField("error_uri", errorUri);
+            }
+            generator.writeEndObject();
+            generator.close();
+
+            this.json = writer.toString();
+            this.jsonBytes = json.getBytes(Util.UTF8_STRING_ENCODING);
+            this.queryString = renderQueryString(errorCode, errorDescription, errorUri);
+
+            final DefaultErrorResponse response = new DefaultErrorResponse();
+            response.setType(type);
+            response.setErrorDescription(errorDescription);
+            response.setErrorUri(errorUri);
+            this.jsonErrorResponse = ServerUtil.asJson(new JsonErrorResponse(response));
+
+            if (uma && (message != null)) {
+                final UmaErrorResponse umaErrorResponse = new UmaErrorResponse();
+                umaErrorResponse.setError(message.getId());
+                umaErrorResponse.setErrorDescription(message.getDescription());
+                umaErrorResponse.setErrorUri(message.getUri());
+
+                this.umaJson = renderUmaJsonErrorResponse(umaErrorResponse);
+                this.umaJsonBytes = umaJson != null ? umaJson.getBytes(Util.UTF8_STRING_ENCODING) : null;
+            } else {
+                this.umaJson = null;
+                this.umaJsonBytes = null;
+            }
+        }
+
+        private static String renderQueryString(String errorCode, String errorDescription, String errorUri) {
+            try {
+                final StringBuilder queryStringBuilder = new StringBuilder();
+                queryStringBuilder.append("error=").append(errorCode);
+
+                if (StringHelper.isNotEmpty(errorDescription)) {
+                    queryStringBuilder.append("&error_description=").append(URLEncoder.encode(errorDescription, Util.UTF8_STRING_ENCODING));
+                }
+
+                if (StringHelper.isNotEmpty(errorUri)) {
+                    queryStringBuilder.append("&error_uri=").append(URLEncoder.encode(errorUri, Util.UTF8_STRING_ENCODING));
+                }
+
+                return queryStringBuilder.toString();
+            } catch (UnsupportedEncodingException ex) {
+                log.error(ex.getMessage(), ex);
+                return null;
+            }
+        }
+    }
+
+}
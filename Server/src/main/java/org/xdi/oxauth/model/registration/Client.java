@@ -163,6 +163,9 @@ public class Client implements Serializable {
     @LdapAttribute(name = "oxLastLogonTime")
     private Date lastLogonTime;
 
+    @LdapAttribute(name = "modifyTimestamp", ignoreDuringUpdate = true)
+    private Date modifyTimestamp;
+
     @LdapAttribute(name = "oxPersistClientAuthorizations")
     private boolean persistClientAuthorizations;
 
@@ -1004,6 +1007,17 @@ public class Client implements Serializable {
         this.lastLogonTime = lastLogonTime;
     }
 
+    /**
+     * @return time of last modification of entry, it's set by LDAP server
+     */
+    public Date getModifyTimestamp() {
+        return modifyTimestamp;
+    }
+
+    public void setModifyTimestamp(Date modifyTimestamp) {
+        this.modifyTimestamp = modifyTimestamp;
+    }
+
     public boolean getPersistClientAuthorizations() {
         return persistClientAuthorizations;
     }
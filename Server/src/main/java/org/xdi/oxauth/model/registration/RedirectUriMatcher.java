@@ -0,0 +1,286 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.registration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.xdi.oxauth.client.QueryStringDecoder;
+
+/**
+ * Redirect URI matcher compiled once from the registered redirect URIs.
+ * <p/>
+ * Rules are the same as in the former linear comparison:
+ * <ul>
+ * <li>complete uri is equal to one of registered uris;</li>
+ * <li>uri without query is equal to registered uri without query and none of them has parameters;</li>
+ * <li>uri without query is equal to registered uri without query and parameters of both are equal.</li>
+ * </ul>
+ * Uris without query are looked up by hash of the uri region before '?', query parameters are compared in place
+ * with the same rules as {@link QueryStringDecoder#decode(String)} uses. Matching doesn't allocate objects.
+ */
+public class RedirectUriMatcher {
+
+    private final String[] source;
+    private final Set<String> exactUris;
+    private final BaseUri[] baseUris;
+    private final int mask;
+
+    public RedirectUriMatcher(String[] redirectUris) {
+        this.source = redirectUris;
+        this.exactUris = new HashSet<String>();
+
+        Map<String, BaseUri> bases = new LinkedHashMap<String, BaseUri>();
+        if (redirectUris != null) {
+            for (String uri : redirectUris) {
+                if (uri == null) {
+                    continue;
+                }
+
+                exactUris.add(uri);
+
+                final int paramsIndex = uri.indexOf('?');
+                final String baseUri = paramsIndex == -1 ? uri : uri.substring(0, paramsIndex);
+                BaseUri base = bases.get(baseUri);
+                if (base == null) {
+                    base = new BaseUri(baseUri);
+                    bases.put(baseUri, base);
+                }
+
+                final Map<String, String> params = paramsIndex == -1 ? null : QueryStringDecoder.decode(uri.substring(paramsIndex + 1));
+                if (params == null || params.isEmpty()) {
+                    base.withoutParams = true;
+                } else {
+                    base.addParams(new Params(params));
+                }
+            }
+        }
+
+        int capacity = 2;
+        while (capacity < bases.size() * 2) {
+            capacity <<= 1;
+        }
+        this.baseUris = new BaseUri[capacity];
+        this.mask = capacity - 1;
+        for (BaseUri base : bases.values()) {
+            int i = base.hash & mask;
+            while (baseUris[i] != null) {
+                i = (i + 1) & mask;
+            }
+            baseUris[i] = base;
+        }
+    }
+
+    /**
+     * @return redirect uris this matcher was compiled from
+     */
+    public String[] getSource() {
+        return source;
+    }
+
+    public int size() {
+        return exactUris.size();
+    }
+
+    public boolean isCompiledFrom(String[] redirectUris) {
+        if (source == redirectUris) {
+            return true;
+        }
+
+        return Arrays.equals(source, redirectUris);
+    }
+
+    public boolean matches(String redirectionUri) {
+        if (StringUtils.isBlank(redirectionUri)) {
+            return false;
+        }
+
+        if (exactUris.contains(redirectionUri)) { // compare complete uri
+            return true;
+        }
+
+        final int paramsIndex = redirectionUri.indexOf('?');
+        final BaseUri base = findBaseUri(redirectionUri, paramsIndex == -1 ? redirectionUri.length() : paramsIndex);
+        if (base == null) {
+            return false;
+        }
+
+        if (paramsIndex == -1 || !hasParams(redirectionUri, paramsIndex + 1)) {
+            return base.withoutParams;
+        }
+
+        for (Params params : base.params) {
+            if (params.matches(redirectionUri, paramsIndex + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private BaseUri findBaseUri(String uri, int end) {
+        final int hash = hash(uri, end);
+        int i = hash & mask;
+        BaseUri base;
+        while ((base = baseUris[i]) != null) {
+            if (base.hash == hash && base.uri.length() == end && uri.regionMatches(0, base.uri, 0, end)) {
+                return base;
+            }
+            i = (i + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Same value as {@link String#hashCode()} of uri.substring(0, end)
+     */
+    private static int hash(String uri, int end) {
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + uri.charAt(i);
+        }
+
+        return hash;
+    }
+
+    private static boolean hasParams(String uri, int from) {
+        int start = from;
+        while (start <= uri.length()) {
+            final int end = segmentEnd(uri, start);
+            if (!isBlank(uri, start, nameEnd(uri, start, end))) {
+                return true;
+            }
+            start = end + 1;
+        }
+
+        return false;
+    }
+
+    private static int segmentEnd(String uri, int start) {
+        final int end = uri.indexOf('&', start);
+        return end == -1 ? uri.length() : end;
+    }
+
+    private static int nameEnd(String uri, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (uri.charAt(i) == '=') {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    private static boolean isBlank(String uri, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(uri.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean regionEquals(String uri, int start, int end, String value) {
+        return value.length() == end - start && uri.regionMatches(start, value, 0, value.length());
+    }
+
+    private static class BaseUri {
+        private final String uri;
+        private final int hash;
+        private boolean withoutParams;
+        private Params[] params = new Params[0];
+
+        BaseUri(String uri) {
+            this.uri = uri;
+            this.hash = uri.hashCode();
+        }
+
+        void addParams(Params p) {
+            params = Arrays.copyOf(params, params.length + 1);
+            params[params.length - 1] = p;
+        }
+    }
+
+    /**
+     * Registered query parameters
+     */
+    private static class Params {
+        private final String[] names;
+        private final String[] values;
+
+        Params(Map<String, String> params) {
+            List<String> nameList = new ArrayList<String>(params.keySet());
+            this.names = nameList.toArray(new String[nameList.size()]);
+            this.values = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                values[i] = params.get(names[i]);
+            }
+        }
+
+        /**
+         * Compares parameters of query starting at given index. As in decoded map the last of repeated parameters wins,
+         * empty names are skipped and value ends at the next '='.
+         */
+        boolean matches(String uri, int from) {
+            int matched = 0;
+            int start = from;
+            while (start <= uri.length()) {
+                final int end = segmentEnd(uri, start);
+                final int nameEnd = nameEnd(uri, start, end);
+                if (!isBlank(uri, start, nameEnd) && !isRepeated(uri, start, nameEnd, end + 1)) {
+                    final int index = indexOfName(uri, start, nameEnd);
+                    if (index == -1) {
+                        return false;
+                    }
+
+                    final int valueStart = nameEnd == end ? end : nameEnd + 1;
+                    final int valueEnd = nameEnd(uri, valueStart, end);
+                    if (!regionEquals(uri, valueStart, valueEnd, values[index])) {
+                        return false;
+                    }
+                    matched++;
+                }
+                start = end + 1;
+            }
+
+            return matched == names.length;
+        }
+
+        private int indexOfName(String uri, int start, int end) {
+            for (int i = 0; i < names.length; i++) {
+                if (regionEquals(uri, start, end, names[i])) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private static boolean isRepeated(String uri, int nameStart, int nameEnd, int from) {
+            int start = from;
+            while (start <= uri.length()) {
+                final int end = segmentEnd(uri, start);
+                final int otherNameEnd = nameEnd(uri, start, end);
+                if (otherNameEnd - start == nameEnd - nameStart && uri.regionMatches(start, uri, nameStart, nameEnd - nameStart)) {
+                    return true;
+                }
+                start = end + 1;
+            }
+
+            return false;
+        }
+    }
+
+}
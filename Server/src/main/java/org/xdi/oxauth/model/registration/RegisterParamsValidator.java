@@ -6,10 +6,8 @@
 
 package org.xdi.oxauth.model.registration;
 
-import java.net.ConnectException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.UnknownHostException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -17,15 +15,10 @@ import java.util.Set;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.ws.rs.HttpMethod;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.lang.StringUtils;
-import org.codehaus.jettison.json.JSONArray;
-import org.codehaus.jettison.json.JSONException;
-import org.jboss.resteasy.client.ClientRequest;
-import org.jboss.resteasy.client.ClientResponse;
 import org.slf4j.Logger;
 import org.xdi.oxauth.model.common.SubjectType;
 import org.xdi.oxauth.model.configuration.AppConfiguration;
@@ -34,6 +27,7 @@ import org.xdi.oxauth.model.register.ApplicationType;
 import org.xdi.oxauth.model.register.RegisterErrorResponseType;
 import org.xdi.oxauth.model.util.URLPatternList;
 import org.xdi.oxauth.model.util.Util;
+import org.xdi.oxauth.service.SectorIdentifierDocumentService;
 import org.xdi.oxauth.util.ServerUtil;
 
 /**
@@ -52,10 +46,22 @@ public class RegisterParamsValidator {
 	@Inject
     private AppConfiguration appConfiguration;
 
+	@Inject
+    private SectorIdentifierDocumentService sectorIdentifierDocumentService;
+
     //private static final String HTTP = "http";
     private static final String HTTPS = "https";
     private static final String LOCALHOST = "localhost";
 
+    public RegisterParamsValidator() {
+    }
+
+    RegisterParamsValidator(Logger log, AppConfiguration appConfiguration, SectorIdentifierDocumentService sectorIdentifierDocumentService) {
+        this.log = log;
+        this.appConfiguration = appConfiguration;
+        this.sectorIdentifierDocumentService = sectorIdentifierDocumentService;
+    }
+
     /**
      * Validates the parameters for a register request.
      *
@@ -161,32 +167,14 @@ public class RegisterParamsValidator {
                 URI uri = new URI(sectorIdentifierUrl);
                 if (!HTTPS.equalsIgnoreCase(uri.getScheme())) {
                     valid = false;
-                }
-
-                ClientRequest clientRequest = new ClientRequest(sectorIdentifierUrl);
-                clientRequest.setHttpMethod(HttpMethod.GET);
-
-                ClientResponse<String> clientResponse = clientRequest.get(String.class);
-                int status = clientResponse.getStatus();
-
-                if (status == 200) {
-                    String entity = clientResponse.getEntity(String.class);
-
-                    JSONArray sectorIdentifierJsonArray = new JSONArray(entity);
-                    valid = Util.asList(sectorIdentifierJsonArray).containsAll(redirectUris);
+                } else {
+                    // Stale copy of cached document is accepted if the RP server is not available
+                    SectorIdentifierDocument sectorIdentifierDocument = sectorIdentifierDocumentService.getDocument(sectorIdentifierUrl, true);
+                    valid = sectorIdentifierDocument != null && sectorIdentifierDocument.containsAll(redirectUris);
                 }
             } catch (URISyntaxException e) {
                 log.trace(e.getMessage(), e);
                 valid = false;
-            } catch (UnknownHostException e) {
-                log.trace(e.getMessage(), e);
-                valid = false;
-            } catch (ConnectException e) {
-                log.trace(e.getMessage(), e);
-                valid = false;
-            } catch (JSONException e) {
-                log.trace(e.getMessage(), e);
-                valid = false;
             } catch (Exception e) {
                 log.trace(e.getMessage(), e);
                 valid = false;
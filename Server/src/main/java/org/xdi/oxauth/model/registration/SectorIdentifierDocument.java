@@ -0,0 +1,111 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.registration;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parsed content of a sector_identifier_uri document together with the
+ * HTTP validators needed to revalidate it.
+ */
+public class SectorIdentifierDocument {
+
+    private final String sectorIdentifierUri;
+    private final Set<String> redirectUris;
+    private final String[] redirectUrisArray;
+    private final RedirectUriMatcher redirectUriMatcher;
+    private final String etag;
+    private final String lastModified;
+    private final long fetchedAt;
+    private final long expiresAt;
+
+    public SectorIdentifierDocument(String sectorIdentifierUri, List<String> redirectUris, String etag, String lastModified,
+                                    long fetchedAt, long expiresAt) {
+        this.sectorIdentifierUri = sectorIdentifierUri;
+        this.redirectUris = Collections.unmodifiableSet(new LinkedHashSet<String>(redirectUris));
+        this.redirectUrisArray = this.redirectUris.toArray(new String[this.redirectUris.size()]);
+        this.redirectUriMatcher = new RedirectUriMatcher(this.redirectUrisArray);
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.fetchedAt = fetchedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns copy of this document with new expiration time (used when server answers 304 Not Modified).
+     */
+    public SectorIdentifierDocument revalidated(long fetchedAt, long expiresAt) {
+        return new SectorIdentifierDocument(sectorIdentifierUri, redirectUris, redirectUrisArray, redirectUriMatcher, etag, lastModified, fetchedAt, expiresAt);
+    }
+
+    private SectorIdentifierDocument(String sectorIdentifierUri, Set<String> redirectUris, String[] redirectUrisArray,
+                                     RedirectUriMatcher redirectUriMatcher, String etag, String lastModified,
+                                     long fetchedAt, long expiresAt) {
+        this.sectorIdentifierUri = sectorIdentifierUri;
+        this.redirectUris = redirectUris;
+        this.redirectUrisArray = redirectUrisArray;
+        this.redirectUriMatcher = redirectUriMatcher;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.fetchedAt = fetchedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSectorIdentifierUri() {
+        return sectorIdentifierUri;
+    }
+
+    public Set<String> getRedirectUris() {
+        return redirectUris;
+    }
+
+    public String[] getRedirectUrisArray() {
+        return redirectUrisArray.clone();
+    }
+
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        return redirectUriMatcher;
+    }
+
+    public boolean containsAll(List<String> uris) {
+        return uris != null && redirectUris.containsAll(uris);
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "SectorIdentifierDocument{" +
+                "sectorIdentifierUri='" + sectorIdentifierUri + '\'' +
+                ", redirectUris=" + redirectUris +
+                ", etag='" + etag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
@@ -22,8 +22,8 @@ import org.xdi.oxauth.model.jwt.JwtClaimName;
 import org.xdi.oxauth.model.jwt.JwtHeaderName;
 import org.xdi.oxauth.model.jwt.JwtType;
 import org.xdi.oxauth.model.registration.Client;
-import org.xdi.oxauth.model.util.JwtUtil;
 import org.xdi.oxauth.service.ClientService;
+import org.xdi.oxauth.service.net.OutboundHttpService;
 import org.xdi.oxauth.util.ServerUtil;
 import org.xdi.util.security.StringEncrypter;
 
@@ -108,7 +108,7 @@ public class ClientAssertion {
                                     // Validate the crypto segment
                                     String keyId = jwt.getHeader().getKeyId();
                                     JSONObject jwks = Strings.isNullOrEmpty(client.getJwks()) ?
-                                            JwtUtil.getJSONWebKeys(client.getJwksUri()) :
+                                            ServerUtil.bean(OutboundHttpService.class).getJSONWebKeys(client.getJwksUri()) :
                                             new JSONObject(client.getJwks());
                                     String sharedSecret = clientService.decryptSecret(client.getClientSecret());
                                     AbstractCryptoProvider cryptoProvider = CryptoProviderFactory.getCryptoProvider(
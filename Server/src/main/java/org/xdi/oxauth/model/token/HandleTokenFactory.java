@@ -8,6 +8,8 @@ package org.xdi.oxauth.model.token;
 
 import java.util.UUID;
 
+import org.xdi.oxauth.util.ThreadLocalSecureRandom;
+
 /**
  * Handle (or artifact) a reference to some internal data structure within the
  * authorization server, the internal data structure contains the attributes of
@@ -39,6 +41,23 @@ public class HandleTokenFactory {
 	 * @return The generated handle token.
 	 */
 	public static String generateHandleToken() {
-		return UUID.randomUUID().toString();
+		// Same format as UUID.randomUUID() but random bytes come from SecureRandom of current thread
+		final byte[] random = new byte[16];
+		ThreadLocalSecureRandom.current().nextBytes(random);
+		random[6] &= 0x0f; /* clear version */
+		random[6] |= 0x40; /* set to version 4 */
+		random[8] &= 0x3f; /* clear variant */
+		random[8] |= 0x80; /* set to IETF variant */
+
+		long msb = 0;
+		long lsb = 0;
+		for (int i = 0; i < 8; i++) {
+			msb = (msb << 8) | (random[i] & 0xff);
+		}
+		for (int i = 8; i < 16; i++) {
+			lsb = (lsb << 8) | (random[i] & 0xff);
+		}
+
+		return new UUID(msb, lsb).toString();
 	}
 }
\ No newline at end of file
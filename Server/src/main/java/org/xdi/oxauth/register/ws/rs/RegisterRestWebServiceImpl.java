@@ -94,6 +94,7 @@ import org.xdi.oxauth.model.util.Util;
 import org.xdi.oxauth.service.ClientService;
 import org.xdi.oxauth.service.InumService;
 import org.xdi.oxauth.service.MetricService;
+import org.xdi.oxauth.service.RequestObjectService;
 import org.xdi.oxauth.service.ScopeService;
 import org.xdi.oxauth.service.external.ExternalDynamicClientRegistrationService;
 import org.xdi.oxauth.service.token.TokenService;
@@ -125,6 +126,8 @@ public class RegisterRestWebServiceImpl implements RegisterRestWebService {
     @Inject
     private ClientService clientService;
     @Inject
+    private RequestObjectService requestObjectService;
+    @Inject
     private TokenService tokenService;
 
     @Inject
@@ -233,6 +236,7 @@ public class RegisterRestWebServiceImpl implements RegisterRestWebService {
 	                            client.setPersistClientAuthorizations(persistClientAuthorizations != null ? persistClientAuthorizations : false);
 	
 	                            clientService.persist(client);
+	                            requestObjectService.prefetch(client);
 	
 	                            JSONObject jsonObject = getJSONObject(client);
 	                            builder.entity(jsonObject.toString(4).replace("\\/", "/"));
@@ -463,6 +467,7 @@ public class RegisterRestWebServiceImpl implements RegisterRestWebService {
                         if (client != null) {
                             updateClientFromRequestObject(client, request);
                             clientService.merge(client);
+                            requestObjectService.prefetch(client);
 
                             oAuth2AuditLog.setScope(clientScopesToString(client));
                             oAuth2AuditLog.setSuccess(true);
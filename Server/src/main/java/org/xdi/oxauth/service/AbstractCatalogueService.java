@@ -0,0 +1,159 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xdi.oxauth.model.config.ConfigurationFactory;
+
+/**
+ * Base class of services which keep immutable in-memory snapshot of LDAP entries.
+ * <p/>
+ * Snapshot is reloaded when refresh interval elapses or configuration revision changes. Reload is done
+ * by one thread, others keep using previous snapshot until new one is swapped in. Loaded snapshots and copies
+ * made by {@link #replaceSnapshot} are swapped in under the same lock, so neither overwrites the other.
+ */
+public abstract class AbstractCatalogueService<S extends AbstractCatalogueService.Snapshot> {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractCatalogueService.class);
+
+    private static final int DEFAULT_INTERVAL = 300; // 5 minutes
+
+    @Inject
+    private ConfigurationFactory configurationFactory;
+
+    private volatile S snapshot;
+
+    private final AtomicBoolean isLoading = new AtomicBoolean(false);
+
+    private final Object swapLock = new Object();
+
+    /**
+     * Forces reload of snapshot on next access.
+     */
+    public void invalidate() {
+        this.snapshot = null;
+    }
+
+    /**
+     * Loads new snapshot from LDAP
+     */
+    protected abstract S load(long revision);
+
+    /**
+     * @return refresh interval in seconds
+     */
+    protected abstract int getRefreshInterval();
+
+    protected long getLoadedRevision() {
+        return configurationFactory.getLoadedRevision();
+    }
+
+    /**
+     * Called after outdated snapshot was replaced with new one.
+     */
+    protected void onReload(S snapshot) {
+    }
+
+    /**
+     * Called under swap lock before loaded snapshot replaces current one. Services which add entries by copy on
+     * write put back entries which load could have missed.
+     */
+    protected S merge(S loaded) {
+        return loaded;
+    }
+
+    protected S getSnapshot() {
+        S current = this.snapshot;
+        if (current != null && !isOutdated(current)) {
+            return current;
+        }
+
+        if (current != null && !isLoading.compareAndSet(false, true)) {
+            // Other thread is loading new snapshot
+            return current;
+        }
+
+        if (current == null) {
+            synchronized (this) {
+                current = this.snapshot;
+                if (current != null) {
+                    return current;
+                }
+
+                return swap(load(getLoadedRevision()));
+            }
+        }
+
+        try {
+            onReload(swap(load(getLoadedRevision())));
+        } catch (RuntimeException ex) {
+            log.error("Failed to reload " + getClass().getSimpleName() + " snapshot, previous snapshot is used", ex);
+        } finally {
+            isLoading.set(false);
+        }
+
+        return this.snapshot;
+    }
+
+    private S swap(S loaded) {
+        synchronized (swapLock) {
+            this.snapshot = merge(loaded);
+            return this.snapshot;
+        }
+    }
+
+    /**
+     * Replaces snapshot with copy which has additional entries.
+     *
+     * @return false if snapshot was reloaded or replaced after expected one was read, copy is not used then
+     */
+    protected boolean replaceSnapshot(S expected, S copy) {
+        synchronized (swapLock) {
+            if (this.snapshot != expected) {
+                return false;
+            }
+
+            this.snapshot = copy;
+            return true;
+        }
+    }
+
+    private boolean isOutdated(S current) {
+        int interval = getRefreshInterval();
+        if (interval <= 0) {
+            interval = DEFAULT_INTERVAL;
+        }
+
+        return current.getRevision() != getLoadedRevision()
+                || System.currentTimeMillis() - current.getLoadedAt() > interval * 1000L;
+    }
+
+    public abstract static class Snapshot {
+
+        private final long revision;
+        private final long loadedAt;
+
+        protected Snapshot(long revision, long loadedAt) {
+            this.revision = revision;
+            this.loadedAt = loadedAt;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+    }
+
+}
@@ -40,6 +40,7 @@ import org.xdi.oxauth.model.config.ConfigurationFactory;
 import org.xdi.oxauth.model.config.StaticConfiguration;
 import org.xdi.oxauth.model.config.oxIDPAuthConf;
 import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.crypto.OxElevenCryptoProvider;
 import org.xdi.oxauth.model.util.SecurityProviderUtility;
 import org.xdi.oxauth.service.job.quartz.JobShedule;
 import org.xdi.oxauth.service.job.quartz.QuartzSchedulerManager;
@@ -95,6 +96,9 @@ public class AppInitializer {
 	@Inject
 	private CleanerTimer cleanerTimer;
 
+	@Inject
+	private SectorIdentifierDocumentService sectorIdentifierDocumentService;
+
 	@Inject
 	private BeanManager beanManager;
 	
@@ -141,6 +145,9 @@ public class AppInitializer {
     	// Schedule quartz jobs
     	JobShedule cleanerJobShedule = cleanerTimer.getJobShedule();
     	quartzSchedulerManager.schedule(cleanerJobShedule);
+
+    	JobShedule sectorIdentifierJobShedule = sectorIdentifierDocumentService.getJobShedule();
+    	quartzSchedulerManager.schedule(sectorIdentifierJobShedule);
 	}
 
     @Produces @ApplicationScoped
@@ -170,6 +177,8 @@ public class AppInitializer {
 //    }
 
     public void destoy(@Observes @BeforeDestroyed(ApplicationScoped.class) ServletContext init) {
+    	OxElevenCryptoProvider.closeConnections();
+
     	// TODO:
     	// Close connection here
     	// Clean up caches, etc...
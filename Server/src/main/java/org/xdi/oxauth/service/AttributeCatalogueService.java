@@ -0,0 +1,124 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.gluu.site.ldap.persistence.LdapEntryManager;
+import org.slf4j.Logger;
+import org.xdi.model.GluuAttribute;
+import org.xdi.oxauth.model.config.StaticConfiguration;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.util.StringHelper;
+
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Immutable in-memory snapshot of attributes under ou=attributes indexed by DN, LDAP name and claim name.
+ */
+@ApplicationScoped
+@Named
+public class AttributeCatalogueService extends AbstractCatalogueService<AttributeCatalogueService.Snapshot> {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private LdapEntryManager ldapEntryManager;
+
+    @Inject
+    private StaticConfiguration staticConfiguration;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    public GluuAttribute getAttributeByDn(String dn) {
+        return getSnapshot().byDn.get(StringHelper.toLowerCase(dn));
+    }
+
+    public GluuAttribute getByLdapName(String name) {
+        return getSnapshot().byLdapName.get(name);
+    }
+
+    public GluuAttribute getByClaimName(String name) {
+        return getSnapshot().byClaimName.get(name);
+    }
+
+    public List<GluuAttribute> getAllAttributes() {
+        return getSnapshot().attributes;
+    }
+
+    /**
+     * @return hash of attribute fields published in discovery documents, the same while reloads find the same attributes
+     */
+    public String getContentHash() {
+        return getSnapshot().contentHash;
+    }
+
+    @Override
+    protected int getRefreshInterval() {
+        return appConfiguration.getAttributeCacheRefreshInterval();
+    }
+
+    @Override
+    protected Snapshot load(long revision) {
+        final String attributesDn = staticConfiguration.getBaseDn().getAttributes();
+
+        List<GluuAttribute> attributes = ldapEntryManager.findEntries(attributesDn, GluuAttribute.class, Filter.createPresenceFilter("inum"));
+        log.debug("Loaded {} attributes", attributes.size());
+
+        return new Snapshot(attributes, revision);
+    }
+
+    static class Snapshot extends AbstractCatalogueService.Snapshot {
+
+        private final List<GluuAttribute> attributes;
+        private final Map<String, GluuAttribute> byDn;
+        private final Map<String, GluuAttribute> byLdapName;
+        private final Map<String, GluuAttribute> byClaimName;
+        private final String contentHash;
+
+        Snapshot(List<GluuAttribute> attributes, long revision) {
+            super(revision, System.currentTimeMillis());
+
+            Map<String, GluuAttribute> byDn = new HashMap<String, GluuAttribute>();
+            Map<String, GluuAttribute> byLdapName = new HashMap<String, GluuAttribute>();
+            Map<String, GluuAttribute> byClaimName = new HashMap<String, GluuAttribute>();
+            StringBuilder content = new StringBuilder();
+
+            for (GluuAttribute attribute : attributes) {
+                content.append(attribute.getDn()).append('\u0000').append(attribute.getStatus()).append('\u0000')
+                        .append(attribute.getOxAuthClaimName()).append('\n');
+                if (attribute.getDn() != null) {
+                    byDn.put(StringHelper.toLowerCase(attribute.getDn()), attribute);
+                }
+                // First entry wins, the same as it was with LDAP search
+                if (attribute.getName() != null && !byLdapName.containsKey(attribute.getName())) {
+                    byLdapName.put(attribute.getName(), attribute);
+                }
+                if (attribute.getOxAuthClaimName() != null && !byClaimName.containsKey(attribute.getOxAuthClaimName())) {
+                    byClaimName.put(attribute.getOxAuthClaimName(), attribute);
+                }
+            }
+
+            this.attributes = Collections.unmodifiableList(attributes);
+            this.byDn = byDn;
+            this.byLdapName = byLdapName;
+            this.byClaimName = byClaimName;
+            this.contentHash = DigestUtils.sha256Hex(content.toString());
+        }
+    }
+
+}
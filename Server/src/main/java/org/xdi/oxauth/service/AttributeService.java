@@ -37,13 +37,21 @@ public class AttributeService extends org.xdi.service.AttributeService {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private AttributeCatalogueService attributeCatalogueService;
+
     /**
      * returns GluuAttribute by Dn
      *
      * @return GluuAttribute
      */
     public GluuAttribute getAttributeByDn(String dn) {
-        GluuAttribute gluuAttribute = (GluuAttribute) cacheService.get(CACHE_ATTRIBUTE, dn);
+        GluuAttribute gluuAttribute = attributeCatalogueService.getAttributeByDn(dn);
+        if (gluuAttribute != null) {
+            return gluuAttribute;
+        }
+
+        gluuAttribute = (GluuAttribute) cacheService.get(CACHE_ATTRIBUTE, dn);
 
         if (gluuAttribute == null) {
             gluuAttribute = ldapEntryManager.find(GluuAttribute.class, dn);
@@ -56,33 +64,15 @@ public class AttributeService extends org.xdi.service.AttributeService {
     }
 
     public GluuAttribute getByLdapName(String name) {
-        List<GluuAttribute> gluuAttributes = getAttributesByAttribute("gluuAttributeName", name, staticConfiguration.getBaseDn().getAttributes());
-        if (gluuAttributes.size() > 0) {
-            for (GluuAttribute gluuAttribute : gluuAttributes) {
-                if (gluuAttribute.getName() != null && gluuAttribute.getName().equals(name)) {
-                    return gluuAttribute;
-                }
-            }
-        }
-
-        return null;
+        return attributeCatalogueService.getByLdapName(name);
     }
 
     public GluuAttribute getByClaimName(String name) {
-        List<GluuAttribute> gluuAttributes = getAttributesByAttribute("oxAuthClaimName", name, staticConfiguration.getBaseDn().getAttributes());
-        if (gluuAttributes.size() > 0) {
-            for (GluuAttribute gluuAttribute : gluuAttributes) {
-                if (gluuAttribute.getOxAuthClaimName() != null && gluuAttribute.getOxAuthClaimName().equals(name)) {
-                    return gluuAttribute;
-                }
-            }
-        }
-
-        return null;
+        return attributeCatalogueService.getByClaimName(name);
     }
 
     public List<GluuAttribute> getAllAttributes() {
-        return getAllAttributes(staticConfiguration.getBaseDn().getAttributes());
+        return attributeCatalogueService.getAllAttributes();
     }
 
 	public String getDnForAttribute(String inum) {
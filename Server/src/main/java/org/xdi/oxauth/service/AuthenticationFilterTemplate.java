@@ -0,0 +1,261 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * Authentication filter parsed once into LDAP filter tree. Parameters like {0} are substituted directly into
+ * assertion values of the tree, so values are never parsed as filter text and don't need escaping.
+ */
+public class AuthenticationFilterTemplate {
+
+    private static final Pattern PARAM_INDEX_PATTERN = Pattern.compile("\\{[\\s]*[\\d]+[\\s]*\\}");
+
+    private final Node root;
+
+    private AuthenticationFilterTemplate(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @param paramNames normalized attribute names by parameter index as it's specified in filter, e.g. "{0}"
+     */
+    public static AuthenticationFilterTemplate compile(String filter, Map<String, String> paramNames) throws LDAPException {
+        return new AuthenticationFilterTemplate(compile(Filter.create(filter), paramNames));
+    }
+
+    /**
+     * Builds LDAP filter. Parameter without value is left in filter as is.
+     */
+    public Filter build(Map<String, String> normalizedAttributeValues) throws LDAPException {
+        return root.build(normalizedAttributeValues);
+    }
+
+    private interface Node {
+        Filter build(Map<String, String> values) throws LDAPException;
+    }
+
+    private static class ConstantNode implements Node {
+        private final Filter filter;
+
+        ConstantNode(Filter filter) {
+            this.filter = filter;
+        }
+
+        public Filter build(Map<String, String> values) {
+            return filter;
+        }
+    }
+
+    private static Node compile(final Filter filter, final Map<String, String> paramNames) {
+        final byte filterType = filter.getFilterType();
+        final String attributeName = filter.getAttributeName();
+
+        switch (filterType) {
+            case Filter.FILTER_TYPE_AND:
+            case Filter.FILTER_TYPE_OR: {
+                final Filter[] components = filter.getComponents();
+                final Node[] nodes = new Node[components.length];
+                boolean constant = true;
+                for (int i = 0; i < components.length; i++) {
+                    nodes[i] = compile(components[i], paramNames);
+                    constant &= nodes[i] instanceof ConstantNode;
+                }
+                if (constant) {
+                    return new ConstantNode(filter);
+                }
+
+                return new Node() {
+                    public Filter build(Map<String, String> values) throws LDAPException {
+                        final Filter[] built = new Filter[nodes.length];
+                        for (int i = 0; i < nodes.length; i++) {
+                            built[i] = nodes[i].build(values);
+                        }
+                        return filterType == Filter.FILTER_TYPE_AND ? Filter.createANDFilter(built) : Filter.createORFilter(built);
+                    }
+                };
+            }
+            case Filter.FILTER_TYPE_NOT: {
+                final Node node = compile(filter.getNOTComponent(), paramNames);
+                if (node instanceof ConstantNode) {
+                    return new ConstantNode(filter);
+                }
+
+                return new Node() {
+                    public Filter build(Map<String, String> values) throws LDAPException {
+                        return Filter.createNOTFilter(node.build(values));
+                    }
+                };
+            }
+            case Filter.FILTER_TYPE_EQUALITY:
+            case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+            case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+            case Filter.FILTER_TYPE_APPROXIMATE_MATCH: {
+                final Value value = Value.compile(filter.getAssertionValue(), paramNames);
+                if (value == null) {
+                    return new ConstantNode(filter);
+                }
+
+                return new Node() {
+                    public Filter build(Map<String, String> values) {
+                        final String assertionValue = value.build(values);
+                        switch (filterType) {
+                            case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+                                return Filter.createGreaterOrEqualFilter(attributeName, assertionValue);
+                            case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+                                return Filter.createLessOrEqualFilter(attributeName, assertionValue);
+                            case Filter.FILTER_TYPE_APPROXIMATE_MATCH:
+                                return Filter.createApproximateMatchFilter(attributeName, assertionValue);
+                            default:
+                                return Filter.createEqualityFilter(attributeName, assertionValue);
+                        }
+                    }
+                };
+            }
+            case Filter.FILTER_TYPE_SUBSTRING: {
+                final Value subInitial = Value.compileOrLiteral(filter.getSubInitialString(), paramNames);
+                final Value subFinal = Value.compileOrLiteral(filter.getSubFinalString(), paramNames);
+                final String[] subAnyStrings = filter.getSubAnyStrings();
+                final Value[] subAny = new Value[subAnyStrings.length];
+                boolean constant = subInitial.isLiteral() && subFinal.isLiteral();
+                for (int i = 0; i < subAnyStrings.length; i++) {
+                    subAny[i] = Value.compileOrLiteral(subAnyStrings[i], paramNames);
+                    constant &= subAny[i].isLiteral();
+                }
+                if (constant) {
+                    return new ConstantNode(filter);
+                }
+
+                return new Node() {
+                    public Filter build(Map<String, String> values) throws LDAPException {
+                        final String initial = subInitial.build(values);
+                        final String fin = subFinal.build(values);
+                        final List<String> any = new ArrayList<String>(subAny.length);
+                        for (Value value : subAny) {
+                            final String anyValue = value.build(values);
+                            if ((anyValue != null) && (anyValue.length() > 0)) {
+                                any.add(anyValue);
+                            }
+                        }
+
+                        final String initialValue = (initial == null) || (initial.length() == 0) ? null : initial;
+                        final String finalValue = (fin == null) || (fin.length() == 0) ? null : fin;
+                        if ((initialValue == null) && any.isEmpty() && (finalValue == null)) {
+                            throw new LDAPException(ResultCode.FILTER_ERROR, "Substring filter for attribute '" + attributeName + "' has no components");
+                        }
+
+                        return Filter.createSubstringFilter(attributeName, initialValue, any.toArray(new String[any.size()]), finalValue);
+                    }
+                };
+            }
+            case Filter.FILTER_TYPE_EXTENSIBLE_MATCH: {
+                final Value value = Value.compile(filter.getAssertionValue(), paramNames);
+                if (value == null) {
+                    return new ConstantNode(filter);
+                }
+
+                final String matchingRuleId = filter.getMatchingRuleID();
+                final boolean dnAttributes = filter.getDNAttributes();
+                return new Node() {
+                    public Filter build(Map<String, String> values) {
+                        return Filter.createExtensibleMatchFilter(attributeName, matchingRuleId, dnAttributes, value.build(values));
+                    }
+                };
+            }
+            default:
+                return new ConstantNode(filter);
+        }
+    }
+
+    /**
+     * Assertion value split into literal parts and parameters
+     */
+    private static class Value {
+        private final String[] parts;
+        private final String[] paramNames;
+
+        private Value(String[] parts, String[] paramNames) {
+            this.parts = parts;
+            this.paramNames = paramNames;
+        }
+
+        /**
+         * @return value or null if value has no parameters
+         */
+        static Value compile(String value, Map<String, String> paramNames) {
+            if (value == null) {
+                return null;
+            }
+
+            final List<String> parts = new ArrayList<String>();
+            final List<String> names = new ArrayList<String>();
+            int start = 0;
+            final Matcher matcher = PARAM_INDEX_PATTERN.matcher(value);
+            while (matcher.find()) {
+                final String paramName = paramNames.get(matcher.group());
+                if (paramName == null) {
+                    continue;
+                }
+
+                if (matcher.start() > start) {
+                    parts.add(value.substring(start, matcher.start()));
+                    names.add(null);
+                }
+                parts.add(matcher.group());
+                names.add(paramName);
+                start = matcher.end();
+            }
+
+            if (parts.isEmpty()) {
+                return null;
+            }
+            if (start < value.length()) {
+                parts.add(value.substring(start));
+                names.add(null);
+            }
+
+            return new Value(parts.toArray(new String[parts.size()]), names.toArray(new String[names.size()]));
+        }
+
+        static Value compileOrLiteral(String value, Map<String, String> paramNames) {
+            final Value compiled = compile(value, paramNames);
+            if (compiled != null) {
+                return compiled;
+            }
+
+            return new Value(new String[] {value}, new String[] {null});
+        }
+
+        boolean isLiteral() {
+            return (paramNames.length == 1) && (paramNames[0] == null);
+        }
+
+        String build(Map<String, String> values) {
+            if (isLiteral()) {
+                return parts[0];
+            }
+
+            final StringBuilder result = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                String value = paramNames[i] == null ? null : values.get(paramNames[i]);
+                result.append(value != null ? value : parts[i]);
+            }
+
+            return result.toString();
+        }
+    }
+
+}
@@ -10,9 +10,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,16 +45,22 @@ public abstract class BaseAuthFilterService {
 
     public static final Pattern PARAM_VALUE_PATTERN = Pattern.compile("([\\w]+)[\\s]*\\=[\\*\\s]*(\\{[\\s]*[\\d]+[\\s]*\\})[\\*\\s]*");
 
+    private static final int MAX_ENTRY_DN_CACHE_SIZE = 10000;
+
     private boolean enabled;
     private boolean filterAttributes = true;
+    private int entryDnCacheLifetime;
 
     private List<AuthenticationFilterWithParameters> filterWithParameters;
 
+    private final ConcurrentMap<String, CachedEntryDN> entryDnCache = new ConcurrentHashMap<String, CachedEntryDN>();
+
     public static class AuthenticationFilterWithParameters {
 
         private BaseFilter authenticationFilter;
         private List<String> variableNames;
         private List<AuthenticationFilterService.IndexedParameter> indexedVariables;
+        private AuthenticationFilterTemplate filterTemplate;
 
         public AuthenticationFilterWithParameters(BaseFilter authenticationFilter, List<String> variableNames, List<AuthenticationFilterService.IndexedParameter> indexedVariables) {
             this.authenticationFilter = authenticationFilter;
@@ -83,6 +92,17 @@ public abstract class BaseAuthFilterService {
             this.indexedVariables = indexedVariables;
         }
 
+        /**
+         * @return precompiled filter or null if filter can't be parsed before parameters substitution
+         */
+        public AuthenticationFilterTemplate getFilterTemplate() {
+            return filterTemplate;
+        }
+
+        public void setFilterTemplate(AuthenticationFilterTemplate filterTemplate) {
+            this.filterTemplate = filterTemplate;
+        }
+
         public String toString() {
             return String.format("AutheticationFilterWithParameters [authenticationFilter=%s, variableNames=%s, indexedVariables=%s]",
                     authenticationFilter, variableNames, indexedVariables);
@@ -122,9 +142,18 @@ public abstract class BaseAuthFilterService {
     }
 
     public void init(List<? extends BaseFilter> p_filterList, boolean p_enabled, boolean p_filterAttributes) {
+        init(p_filterList, p_enabled, p_filterAttributes, 0);
+    }
+
+    /**
+     * @param p_entryDnCacheLifetime time in seconds to keep DN found by filter, 0 disables cache
+     */
+    public void init(List<? extends BaseFilter> p_filterList, boolean p_enabled, boolean p_filterAttributes, int p_entryDnCacheLifetime) {
         this.enabled = p_enabled;
         this.filterWithParameters = prepareAuthenticationFilterWithParameters(p_filterList);
         this.filterAttributes = p_filterAttributes;
+        this.entryDnCacheLifetime = p_entryDnCacheLifetime;
+        this.entryDnCache.clear();
     }
 
     private List<AuthenticationFilterWithParameters> prepareAuthenticationFilterWithParameters(List<? extends BaseFilter> p_filterList) {
@@ -142,6 +171,7 @@ public abstract class BaseAuthFilterService {
 
             List<String> variableNames = new ArrayList<String>();
             List<BaseAuthFilterService.IndexedParameter> indexedParameters = new ArrayList<BaseAuthFilterService.IndexedParameter>();
+            Map<String, String> paramNames = new HashMap<String, String>();
 
             Matcher matcher = BaseAuthFilterService.PARAM_VALUE_PATTERN.matcher(authenticationFilter.getFilter());
             while (matcher.find()) {
@@ -150,9 +180,15 @@ public abstract class BaseAuthFilterService {
 
                 variableNames.add(paramName);
                 indexedParameters.add(new BaseAuthFilterService.IndexedParameter(paramName, paramIndex));
+                paramNames.put(paramIndex, paramName);
             }
 
             AuthenticationFilterWithParameters tmpAutheticationFilterWithParameter = new AuthenticationFilterWithParameters(authenticationFilter, variableNames, indexedParameters);
+            try {
+                tmpAutheticationFilterWithParameter.setFilterTemplate(AuthenticationFilterTemplate.compile(authenticationFilter.getFilter(), paramNames));
+            } catch (LDAPException ex) {
+                log.warn("Failed to precompile authentication filter: '{}', it will be parsed on each request", authenticationFilter.getFilter());
+            }
             tmpAuthenticationFilterWithParameters.add(tmpAutheticationFilterWithParameter);
 
             log.debug("Authentication filter with parameters: '{}'. ", tmpAutheticationFilterWithParameter);
@@ -215,18 +251,35 @@ public abstract class BaseAuthFilterService {
         return filter;
     }
 
-    public String loadEntryDN(LdapEntryManager p_manager, AuthenticationFilterWithParameters authenticationFilterWithParameters, Map<String, String> normalizedAttributeValues) {
-        final String filter = buildFilter(authenticationFilterWithParameters, normalizedAttributeValues);
+    /**
+     * Builds LDAP filter from precompiled template. Falls back to parsing of filter text if filter wasn't precompiled.
+     */
+    public static Filter buildLdapFilter(AuthenticationFilterWithParameters authenticationFilterWithParameters, Map<String, String> p_normalizedAttributeValues) throws LDAPException {
+        AuthenticationFilterTemplate filterTemplate = authenticationFilterWithParameters.getFilterTemplate();
+        if (filterTemplate != null) {
+            return filterTemplate.build(p_normalizedAttributeValues);
+        }
 
+        return Filter.create(buildFilter(authenticationFilterWithParameters, p_normalizedAttributeValues));
+    }
+
+    public String loadEntryDN(LdapEntryManager p_manager, AuthenticationFilterWithParameters authenticationFilterWithParameters, Map<String, String> normalizedAttributeValues) {
         Filter ldapFilter;
         try {
-            ldapFilter = Filter.create(filter);
+            ldapFilter = buildLdapFilter(authenticationFilterWithParameters, normalizedAttributeValues);
         } catch (LDAPException ex) {
-            log.error("Failed to create Ldap filter: '{}'", ex, filter);
+            log.error("Failed to create Ldap filter: '{}'", ex, authenticationFilterWithParameters.getAuthenticationFilter().getFilter());
             return null;
         }
 
-        List<LdapDummyEntry> foundEntries = p_manager.findEntries(authenticationFilterWithParameters.getAuthenticationFilter().getBaseDn(), LdapDummyEntry.class, new String[0], ldapFilter);
+        final String baseDn = authenticationFilterWithParameters.getAuthenticationFilter().getBaseDn();
+        final String cacheKey = baseDn + "|" + ldapFilter.toString();
+        final String cachedDn = getCachedEntryDN(cacheKey);
+        if (cachedDn != null) {
+            return cachedDn;
+        }
+
+        List<LdapDummyEntry> foundEntries = p_manager.findEntries(baseDn, LdapDummyEntry.class, new String[0], ldapFilter);
 
         if (foundEntries.size() > 1) {
             log.error("Found more than one entry by filter: '{}'. Entries:\n", ldapFilter, foundEntries);
@@ -237,7 +290,49 @@ public abstract class BaseAuthFilterService {
             return null;
         }
 
-        return foundEntries.get(0).getDn();
+        final String dn = foundEntries.get(0).getDn();
+        putCachedEntryDN(cacheKey, dn);
+
+        return dn;
+    }
+
+    private String getCachedEntryDN(String key) {
+        if (entryDnCacheLifetime <= 0) {
+            return null;
+        }
+
+        CachedEntryDN entry = entryDnCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entryDnCache.remove(key, entry);
+            return null;
+        }
+
+        return entry.dn;
+    }
+
+    private void putCachedEntryDN(String key, String dn) {
+        if (entryDnCacheLifetime <= 0 || StringHelper.isEmpty(dn)) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (entryDnCache.size() >= MAX_ENTRY_DN_CACHE_SIZE) {
+            for (Iterator<CachedEntryDN> it = entryDnCache.values().iterator(); it.hasNext(); ) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                }
+            }
+
+            if (entryDnCache.size() >= MAX_ENTRY_DN_CACHE_SIZE) {
+                return;
+            }
+        }
+
+        entryDnCache.put(key, new CachedEntryDN(dn, now + entryDnCacheLifetime * 1000L));
     }
 
     public String processAuthenticationFilters(Map<?, ?> attributeValues) {
@@ -284,4 +379,18 @@ public abstract class BaseAuthFilterService {
     public static String normalizeAttributeName(String attributeName) {
         return StringHelper.toLowerCase(attributeName.trim());
     }
+
+    private static class CachedEntryDN {
+        private final String dn;
+        private final long expiresAt;
+
+        CachedEntryDN(String dn, long expiresAt) {
+            this.dn = dn;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
 }
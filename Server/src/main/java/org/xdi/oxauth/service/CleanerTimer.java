@@ -41,7 +41,7 @@ import org.xdi.oxauth.model.registration.Client;
 import org.xdi.oxauth.service.fido.u2f.DeviceRegistrationService;
 import org.xdi.oxauth.service.fido.u2f.RequestService;
 import org.xdi.oxauth.service.job.quartz.JobShedule;
-import org.xdi.oxauth.service.uma.ResourceSetPermissionManager;
+import org.xdi.oxauth.service.uma.ResourceSetPermissionManagerProvider;
 import org.xdi.oxauth.service.uma.RptManager;
 
 /**
@@ -77,7 +77,7 @@ public class CleanerTimer implements Job {
     private RptManager rptManager;
 
     @Inject
-    private ResourceSetPermissionManager resourceSetPermissionManager;
+    private ResourceSetPermissionManagerProvider resourceSetPermissionManagerProvider;
 
     @Inject
     private SessionStateService sessionStateService;
@@ -141,7 +141,7 @@ public class CleanerTimer implements Job {
 
             Date now = new Date();
             this.rptManager.cleanupRPTs(now);
-            this.resourceSetPermissionManager.cleanupResourceSetPermissions(now);
+            this.resourceSetPermissionManagerProvider.getResourceSetPermissionManager().cleanupResourceSetPermissions(now);
 
             processU2fRequests();
             processU2fDeviceRegistrations();
@@ -197,8 +197,13 @@ public class CleanerTimer implements Job {
     private void processU2fRequests() {
         log.debug("Start U2F request clean up");
 
+        int requestExpiration = appConfiguration.getU2fRequestExpiration();
+        if (requestExpiration <= 0) {
+            requestExpiration = 90;
+        }
+
         Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
-        calendar.add(Calendar.SECOND, -90);
+        calendar.add(Calendar.SECOND, -requestExpiration);
         final Date expirationDate = calendar.getTime();
 
         BatchOperation<RequestMessageLdap> requestMessageLdapBatchService = new BatchOperation<RequestMessageLdap>(ldapEntryManager) {
@@ -36,7 +36,8 @@ public class ClientFilterService extends BaseAuthFilterService {
 
     @PostConstruct
     public void init() {
-        super.init(appConfiguration.getClientAuthenticationFilters(), Boolean.TRUE.equals(appConfiguration.getClientAuthenticationFiltersEnabled()), false);
+        super.init(appConfiguration.getClientAuthenticationFilters(), Boolean.TRUE.equals(appConfiguration.getClientAuthenticationFiltersEnabled()), false,
+                appConfiguration.getAuthenticationFiltersCacheLifetime());
     }
 
     public String processAuthenticationFilter(AuthenticationFilterWithParameters authenticationFilterWithParameters, Map<?, ?> attributeValues) {
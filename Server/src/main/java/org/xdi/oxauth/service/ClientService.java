@@ -14,6 +14,7 @@ import java.util.Set;
 import java.util.TimeZone;
 
 import javax.ejb.Stateless;
+import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
 import javax.inject.Named;
 
@@ -80,6 +81,15 @@ public class ClientService {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private RedirectUriMatcherService redirectUriMatcherService;
+
+    @Inject
+    private BeanManager beanManager;
+
+    @Inject
+    private RequestIdentityContext identityContext;
+
     private static String getClientIdCacheKey(String clientId) {
         return "client_id_" + StringHelper.toLowerCase(clientId);
     }
@@ -95,6 +105,11 @@ public class ClientService {
     public void merge(Client client) {
         ldapEntryManager.merge(client);
         removeFromCache(client);
+
+        RequestIdentityContext context = getIdentityContext();
+        if (context != null) {
+            context.putClient(client);
+        }
     }
 
     /**
@@ -191,6 +206,15 @@ public class ClientService {
      * @return Client
      */
     public Client getClientByDn(String dn) {
+        final RequestIdentityContext context = getIdentityContext();
+        if (context != null) {
+            Client client = context.getClient(dn);
+            if (client != null) {
+                return client;
+            }
+            context.incrementBackendCallCount();
+        }
+
         Client client = fromCache(dn);
         if (client == null) {
             try {
@@ -203,9 +227,17 @@ public class ClientService {
             log.trace("Get client from cache by Dn '{}'", dn);
         }
 
+        if (context != null) {
+            context.putClient(client);
+        }
+
         return client;
     }
 
+    private RequestIdentityContext getIdentityContext() {
+        return RequestIdentityContext.isActive(beanManager) ? identityContext : null;
+    }
+
     private void putInCache(Client client) {
     	if (client == null) {
     		return;
@@ -293,6 +325,13 @@ public class ClientService {
             String clientId = client.getClientId();
             String clientDn = client.getDn();
 
+            redirectUriMatcherService.remove(clientDn);
+
+            RequestIdentityContext context = getIdentityContext();
+            if (context != null) {
+                context.removeClient(clientDn);
+            }
+
             cacheService.remove(CACHE_CLIENT_FILTER_NAME, getClientIdCacheKey(clientId));
             cacheService.remove(CACHE_CLIENT_NAME, getClientDnCacheKey(clientDn));
         } catch (Exception e) {
@@ -310,6 +349,8 @@ public class ClientService {
     public void clearClientCache() {
         log.debug("Clearing up clients cache");
 
+        redirectUriMatcherService.clear();
+
         try {
             cacheService.removeAll(CACHE_CLIENT_NAME);
             cacheService.removeAll(CACHE_CLIENT_FILTER_NAME);
@@ -0,0 +1,273 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.config.ConfigurationFactory;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.discovery.DiscoveryDocument;
+import org.xdi.oxauth.service.external.ExternalAuthenticationService;
+
+/**
+ * Keeps serialized well-known documents (openid-configuration, webfinger, gluu-configuration).
+ * <p/>
+ * Document is rebuilt only when its version changes. Version is composed of configuration revision,
+ * hashes of published scope and attribute fields and authentication scripts revision, so periodic reload which
+ * finds the same entries doesn't change ETag and Last-Modified. WebFinger documents are kept in own cache,
+ * so requests for arbitrary resources don't evict other documents. Least recently used documents are evicted
+ * when cache is full.
+ */
+@ApplicationScoped
+@Named
+public class DiscoveryDocumentService {
+
+    private static final int MAX_DOCUMENTS = 100;
+    private static final int MAX_WEBFINGER_DOCUMENTS = 1000;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private ConfigurationFactory configurationFactory;
+
+    @Inject
+    private ScopeCatalogueService scopeCatalogueService;
+
+    @Inject
+    private AttributeCatalogueService attributeCatalogueService;
+
+    @Inject
+    private ExternalAuthenticationService externalAuthenticationService;
+
+    private final Map<String, DiscoveryDocument> documents;
+    private final Map<String, DiscoveryDocument> webFingerDocuments;
+
+    public interface DocumentBuilder {
+
+        /**
+         * @return serialized document or null if there is nothing to serve
+         */
+        String build() throws Exception;
+    }
+
+    public DiscoveryDocumentService() {
+        this(MAX_DOCUMENTS, MAX_WEBFINGER_DOCUMENTS);
+    }
+
+    DiscoveryDocumentService(int maxDocuments, int maxWebFingerDocuments) {
+        this.documents = createCache(maxDocuments);
+        this.webFingerDocuments = createCache(maxWebFingerDocuments);
+    }
+
+    private static Map<String, DiscoveryDocument> createCache(final int maxSize) {
+        return new LinkedHashMap<String, DiscoveryDocument>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DiscoveryDocument> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public String getVersion() {
+        return configurationFactory.getLoadedRevision()
+                + "-" + scopeCatalogueService.getContentHash()
+                + "-" + attributeCatalogueService.getContentHash()
+                + "-" + externalAuthenticationService.getRevision();
+    }
+
+    public DiscoveryDocument getDocument(String key, DocumentBuilder builder) throws Exception {
+        return getDocument(key, getVersion(), builder);
+    }
+
+    /**
+     * Returns document built for given version, builds new one if cached document has different version.
+     */
+    public DiscoveryDocument getDocument(String key, String version, DocumentBuilder builder) throws Exception {
+        return getDocument(documents, key, version, builder);
+    }
+
+    /**
+     * Returns WebFinger document of resource, it's kept in separate cache from other documents.
+     */
+    public DiscoveryDocument getWebFingerDocument(String resource, String version, DocumentBuilder builder) throws Exception {
+        return getDocument(webFingerDocuments, resource, version, builder);
+    }
+
+    private DiscoveryDocument getDocument(Map<String, DiscoveryDocument> documents, String key, String version,
+                                          DocumentBuilder builder) throws Exception {
+        DiscoveryDocument document;
+        synchronized (documents) {
+            document = documents.get(key);
+        }
+        if (document != null && StringUtils.equals(version, document.getVersion())) {
+            return document;
+        }
+
+        String content = builder.build();
+        document = content != null ? new DiscoveryDocument(version, content) : null;
+        synchronized (documents) {
+            if (document == null) {
+                documents.remove(key);
+            } else {
+                documents.put(key, document);
+            }
+        }
+
+        return document;
+    }
+
+    public void invalidate() {
+        synchronized (documents) {
+            documents.clear();
+        }
+        synchronized (webFingerDocuments) {
+            webFingerDocuments.clear();
+        }
+    }
+
+    /**
+     * Writes document to servlet response honoring If-None-Match, If-Modified-Since and Accept-Encoding.
+     * Response is always committed, so it can be used from JAX-RS resources too.
+     */
+    public void write(DiscoveryDocument document, HttpServletRequest request, HttpServletResponse response, String contentType) throws IOException {
+        response.setContentType(contentType);
+        response.setCharacterEncoding("UTF-8");
+        final boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        response.setHeader(HttpHeaders.ETAG, document.getEtag(gzip));
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, document.getLastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + getMaxAge());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (isNotModified(document, request, gzip)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.flushBuffer();
+            return;
+        }
+
+        byte[] body = document.getContent();
+        if (gzip) {
+            body = document.getGzippedContent();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        response.setContentLength(body.length);
+        if ("HEAD".equals(request.getMethod())) {
+            response.flushBuffer();
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Builds JAX-RS response for document. Compression is left to the container here, identity body is used.
+     */
+    public Response getResponse(DiscoveryDocument document, Request request) {
+        return getResponse(document, request, getMaxAge());
+    }
+
+    public Response getResponse(DiscoveryDocument document, Request request, int maxAge) {
+        EntityTag entityTag = new EntityTag(document.getEtagValue());
+        Date lastModified = new Date(document.getLastModified());
+
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(maxAge);
+
+        Response.ResponseBuilder builder = request.evaluatePreconditions(lastModified, entityTag);
+        if (builder == null) {
+            builder = Response.ok(document.getContent());
+        }
+
+        return builder.tag(entityTag).lastModified(lastModified).cacheControl(cacheControl).build();
+    }
+
+    private boolean isNotModified(DiscoveryDocument document, HttpServletRequest request, boolean gzip) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return document.matches(ifNoneMatch, gzip);
+        }
+
+        try {
+            return document.isNotModifiedSince(request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE));
+        } catch (IllegalArgumentException e) {
+            log.trace("Invalid If-Modified-Since header: {}", request.getHeader(HttpHeaders.IF_MODIFIED_SINCE));
+            return false;
+        }
+    }
+
+    /**
+     * @param acceptEncoding value of Accept-Encoding request header
+     * @return true if gzip coding is acceptable, codings with q=0 are not acceptable
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return false;
+        }
+
+        float gzipQuality = -1;
+        float anyQuality = -1;
+        for (String coding : StringUtils.split(acceptEncoding, ',')) {
+            String[] params = StringUtils.split(coding, ';');
+            if (params.length == 0) {
+                continue;
+            }
+
+            final String name = params[0].trim().toLowerCase();
+            float quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                final String param = params[i].trim().toLowerCase();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            } else if (name.equals("*")) {
+                anyQuality = Math.max(anyQuality, quality);
+            }
+        }
+
+        // Explicit gzip coding takes precedence over "*"
+        return gzipQuality >= 0 ? gzipQuality > 0 : anyQuality > 0;
+    }
+
+    private int getMaxAge() {
+        return Math.max(0, appConfiguration.getDiscoveryCacheLifetime());
+    }
+
+}
@@ -11,9 +11,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.UUID;
 
 import javax.ejb.Stateless;
+import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
 import javax.inject.Named;
 
@@ -30,6 +30,7 @@ import org.xdi.oxauth.model.common.MemcachedGrant;
 import org.xdi.oxauth.model.config.StaticConfiguration;
 import org.xdi.oxauth.model.ldap.Grant;
 import org.xdi.oxauth.model.ldap.TokenLdap;
+import org.xdi.oxauth.model.token.HandleTokenFactory;
 import org.xdi.oxauth.util.TokenHashUtil;
 import org.xdi.service.CacheService;
 
@@ -64,8 +65,14 @@ public class GrantService {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private BeanManager beanManager;
+
+    @Inject
+    private RequestIdentityContext identityContext;
+
     public static String generateGrantId() {
-        return UUID.randomUUID().toString();
+        return HandleTokenFactory.generateHandleToken();
     }
 
     public String buildDn(String p_uniqueIdentifier, String p_grantId, String p_clientId) {
@@ -99,11 +106,17 @@ public class GrantService {
 
     public void remove(Grant grant) {
         ldapEntryManager.remove(grant);
+        if (RequestIdentityContext.isActive(beanManager)) {
+            identityContext.removeGrantsById(grant.getId());
+        }
         log.trace("Removed grant, id: " + grant.getId());
     }
 
     public void remove(TokenLdap p_token) {
         ldapEntryManager.remove(p_token);
+        if (RequestIdentityContext.isActive(beanManager)) {
+            identityContext.removeGrant(p_token.getTokenCode());
+        }
         log.trace("Removed token, code: " + p_token.getTokenCode());
     }
 
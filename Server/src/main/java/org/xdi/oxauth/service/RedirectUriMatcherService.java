@@ -0,0 +1,75 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+
+import org.xdi.oxauth.model.registration.Client;
+import org.xdi.oxauth.model.registration.RedirectUriMatcher;
+
+/**
+ * Keeps redirect uri matchers compiled per client.
+ * <p/>
+ * Matchers are invalidated by client DN when client is merged or removed. Because clients may be changed by other
+ * nodes, matcher is also recompiled when modification time of client entry differs from the one matcher was built for.
+ */
+@ApplicationScoped
+@Named
+public class RedirectUriMatcherService {
+
+    private final ConcurrentMap<String, CompiledMatcher> matchers = new ConcurrentHashMap<String, CompiledMatcher>();
+
+    public RedirectUriMatcher getRedirectUriMatcher(Client client) {
+        if (client.getDn() == null) {
+            return new RedirectUriMatcher(client.getRedirectUris());
+        }
+
+        CompiledMatcher compiled = matchers.get(client.getDn());
+        if (compiled == null || !compiled.isCompiledFrom(client)) {
+            compiled = new CompiledMatcher(client);
+            matchers.put(client.getDn(), compiled);
+        }
+
+        return compiled.matcher;
+    }
+
+    public void remove(String clientDn) {
+        if (clientDn != null) {
+            matchers.remove(clientDn);
+        }
+    }
+
+    public void clear() {
+        matchers.clear();
+    }
+
+    private static class CompiledMatcher {
+        private final RedirectUriMatcher matcher;
+        private final Date modifyTimestamp;
+
+        CompiledMatcher(Client client) {
+            this.matcher = new RedirectUriMatcher(client.getRedirectUris());
+            this.modifyTimestamp = client.getModifyTimestamp();
+        }
+
+        boolean isCompiledFrom(Client client) {
+            final Date clientModifyTimestamp = client.getModifyTimestamp();
+            if (clientModifyTimestamp != null) {
+                return clientModifyTimestamp.equals(modifyTimestamp);
+            }
+
+            // LDAP server didn't return modification time
+            return modifyTimestamp == null && matcher.isCompiledFrom(client.getRedirectUris());
+        }
+    }
+
+}
@@ -6,24 +6,19 @@
 
 package org.xdi.oxauth.service;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.ws.rs.HttpMethod;
 
 import org.apache.commons.lang.StringUtils;
-import org.codehaus.jettison.json.JSONArray;
-import org.jboss.resteasy.client.ClientRequest;
-import org.jboss.resteasy.client.ClientResponse;
 import org.slf4j.Logger;
-import org.xdi.oxauth.client.QueryStringDecoder;
 import org.xdi.oxauth.model.common.SessionState;
 import org.xdi.oxauth.model.error.ErrorResponseFactory;
 import org.xdi.oxauth.model.registration.Client;
+import org.xdi.oxauth.model.registration.RedirectUriMatcher;
+import org.xdi.oxauth.model.registration.SectorIdentifierDocument;
 import org.xdi.oxauth.model.session.EndSessionErrorResponseType;
 import org.xdi.oxauth.model.util.Util;
 
@@ -44,6 +39,12 @@ public class RedirectionUriService {
     @Inject
     private ClientService clientService;
 
+    @Inject
+    private SectorIdentifierDocumentService sectorIdentifierDocumentService;
+
+    @Inject
+    private RedirectUriMatcherService redirectUriMatcherService;
+
     @Inject
     private ErrorResponseFactory errorResponseFactory;
 
@@ -53,49 +54,29 @@ public class RedirectionUriService {
 
             if (client != null) {
                 String sectorIdentifierUri = client.getSectorIdentifierUri();
-                String[] redirectUris = client.getRedirectUris();
+                RedirectUriMatcher redirectUriMatcher;
 
                 if (StringUtils.isNotBlank(sectorIdentifierUri)) {
-                    ClientRequest clientRequest = new ClientRequest(sectorIdentifierUri);
-                    clientRequest.setHttpMethod(HttpMethod.GET);
-
-                    ClientResponse<String> clientResponse = clientRequest.get(String.class);
-                    int status = clientResponse.getStatus();
-
-                    if (status == 200) {
-                        String entity = clientResponse.getEntity(String.class);
-                        JSONArray sectorIdentifierJsonArray = new JSONArray(entity);
-                        redirectUris = new String[sectorIdentifierJsonArray.length()];
-                        for (int i = 0; i < sectorIdentifierJsonArray.length(); i++) {
-                            redirectUris[i] = sectorIdentifierJsonArray.getString(i);
-                        }
-                    } else {
+                    SectorIdentifierDocument sectorIdentifierDocument = sectorIdentifierDocumentService.getDocument(sectorIdentifierUri);
+                    if (sectorIdentifierDocument == null) {
                         return null;
                     }
+
+                    redirectUriMatcher = sectorIdentifierDocument.getRedirectUriMatcher();
+                } else {
+                    redirectUriMatcher = redirectUriMatcherService.getRedirectUriMatcher(client);
                 }
 
                 if (StringUtils.isNotBlank(redirectionUri)) {
                     log.debug("Validating redirection URI: clientIdentifier = {}, redirectionUri = {}, found = {}",
-                            clientIdentifier, redirectionUri, redirectUris.length);
+                            clientIdentifier, redirectionUri, redirectUriMatcher.size());
 
-                    final String redirectUriWithoutParams = uriWithoutParams(redirectionUri);
-
-                    for (String uri : redirectUris) {
-                        log.debug("Comparing {} == {}", uri, redirectionUri);
-                        if (uri.equals(redirectionUri)) { // compare complete uri
-                            return redirectionUri;
-                        }
-
-                        String uriWithoutParams = uriWithoutParams(uri);
-                        final Map<String, String> params = getParams(uri);
-
-                        if ((uriWithoutParams.equals(redirectUriWithoutParams) && params.size() == 0 && getParams(redirectionUri).size() == 0) ||
-                                uriWithoutParams.equals(redirectUriWithoutParams) && params.size() > 0 && compareParams(redirectionUri, uri)) {
-                            return redirectionUri;
-                        }
+                    if (redirectUriMatcher.matches(redirectionUri)) {
+                        return redirectionUri;
                     }
                 } else {
                     // Accept Request Without redirect_uri when One Registered
+                    String[] redirectUris = redirectUriMatcher.getSource();
                     if (redirectUris != null && redirectUris.length == 1) {
                         return redirectUris[0];
                     }
@@ -171,38 +152,4 @@ public class RedirectionUriService {
         errorResponseFactory.throwBadRequestException(EndSessionErrorResponseType.INVALID_REQUEST);
         return null;
 	}
-
-    private Map<String, String> getParams(String uri) {
-        Map<String, String> params = new HashMap<String, String>();
-
-        if (uri != null) {
-            int paramsIndex = uri.indexOf("?");
-            if (paramsIndex != -1) {
-                String queryString = uri.substring(paramsIndex + 1);
-                params = QueryStringDecoder.decode(queryString);
-            }
-        }
-        return params;
-    }
-
-    private String uriWithoutParams(String uri) {
-        if (uri != null) {
-            int paramsIndex = uri.indexOf("?");
-            if (paramsIndex != -1) {
-                return uri.substring(0, paramsIndex);
-            }
-        }
-        return uri;
-    }
-
-    private boolean compareParams(String uri1, String uri2) {
-        if (StringUtils.isBlank(uri1) || StringUtils.isBlank(uri2)) {
-            return false;
-        }
-
-        Map<String, String> params1 = getParams(uri1);
-        Map<String, String> params2 = getParams(uri2);
-
-        return params1.equals(params2);
-    }
 }
\ No newline at end of file
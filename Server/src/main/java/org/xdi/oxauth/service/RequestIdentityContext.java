@@ -0,0 +1,181 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.inject.Named;
+
+import org.xdi.oxauth.model.common.AuthorizationGrant;
+import org.xdi.oxauth.model.common.User;
+import org.xdi.oxauth.model.registration.Client;
+import org.xdi.util.StringHelper;
+
+/**
+ * Clients, users and grants loaded during current request.
+ * <p/>
+ * Services look up entries here before they go to cache or LDAP, so the same entry is loaded at most once per
+ * request. Counter of backend calls allows to verify how many lookups request really made.
+ */
+@RequestScoped
+@Named
+public class RequestIdentityContext {
+
+    private static final String FULL_ENTRY = "";
+
+    private final Map<String, Client> clients = new HashMap<String, Client>();
+    private final Map<String, User> users = new HashMap<String, User>();
+    private final Map<String, AuthorizationGrant> grants = new HashMap<String, AuthorizationGrant>();
+
+    private int backendCallCount;
+
+    /**
+     * @return true if request context is active, e.g. false in timer jobs
+     */
+    public static boolean isActive(BeanManager beanManager) {
+        try {
+            return beanManager.getContext(RequestScoped.class).isActive();
+        } catch (ContextNotActiveException e) {
+            return false;
+        }
+    }
+
+    public Client getClient(String dn) {
+        return clients.get(normalize(dn));
+    }
+
+    public void putClient(Client client) {
+        if ((client != null) && (client.getDn() != null)) {
+            clients.put(normalize(client.getDn()), client);
+        }
+    }
+
+    public void removeClient(String dn) {
+        clients.remove(normalize(dn));
+    }
+
+    /**
+     * @return user loaded by DN with the same attributes, or with all attributes
+     */
+    public User getUserByDn(String dn, String... returnAttributes) {
+        return getUser(userDnKey(dn), returnAttributes);
+    }
+
+    public User getUserByUid(String uid, String... returnAttributes) {
+        return getUser(userUidKey(uid), returnAttributes);
+    }
+
+    public void putUser(User user, String... returnAttributes) {
+        if (user == null) {
+            return;
+        }
+
+        final String attributes = attributesKey(returnAttributes);
+        if (user.getDn() != null) {
+            users.put(userDnKey(user.getDn()) + attributes, user);
+        }
+        if (attributes.equals(FULL_ENTRY) && (user.getUserId() != null)) {
+            users.put(userUidKey(user.getUserId()), user);
+        }
+    }
+
+    /**
+     * Removes all copies of user, including copies loaded with different attributes
+     */
+    public void removeUser(User user) {
+        final String dnKey = user.getDn() != null ? userDnKey(user.getDn()) : null;
+        final String uidKey = user.getUserId() != null ? userUidKey(user.getUserId()) : null;
+        for (Iterator<Map.Entry<String, User>> it = users.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<String, User> entry = it.next();
+            final String key = entry.getKey();
+            if ((entry.getValue() == user) || key.equals(uidKey)
+                    || ((dnKey != null) && (key.equals(dnKey) || key.startsWith(dnKey + "|")))) {
+                it.remove();
+            }
+        }
+    }
+
+    public AuthorizationGrant getGrant(String code) {
+        return grants.get(code);
+    }
+
+    public void putGrant(String code, AuthorizationGrant grant) {
+        if ((code != null) && (grant != null)) {
+            grants.put(code, grant);
+        }
+    }
+
+    public void removeGrant(String code) {
+        grants.remove(code);
+    }
+
+    /**
+     * Removes all tokens of grant, e.g. when grant entry is removed with its subtree
+     */
+    public void removeGrantsById(String grantId) {
+        if (grantId == null) {
+            return;
+        }
+
+        for (Iterator<AuthorizationGrant> it = grants.values().iterator(); it.hasNext(); ) {
+            if (grantId.equals(it.next().getGrantId())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Called by services when entry is not found in context and they go to cache or LDAP
+     */
+    public void incrementBackendCallCount() {
+        backendCallCount++;
+    }
+
+    /**
+     * @return number of client, user and grant lookups which went to cache or LDAP during current request
+     */
+    public int getBackendCallCount() {
+        return backendCallCount;
+    }
+
+    private User getUser(String key, String... returnAttributes) {
+        final String attributes = attributesKey(returnAttributes);
+        User user = users.get(key + attributes);
+        if ((user == null) && !attributes.equals(FULL_ENTRY)) {
+            user = users.get(key);
+        }
+
+        return user;
+    }
+
+    private static String userDnKey(String dn) {
+        return "dn:" + normalize(dn);
+    }
+
+    private static String userUidKey(String uid) {
+        return "uid:" + uid;
+    }
+
+    private static String attributesKey(String... returnAttributes) {
+        if ((returnAttributes == null) || (returnAttributes.length == 0)) {
+            return FULL_ENTRY;
+        }
+
+        return "|" + Arrays.toString(returnAttributes);
+    }
+
+    private static String normalize(String dn) {
+        return StringHelper.toLowerCase(dn);
+    }
+
+}
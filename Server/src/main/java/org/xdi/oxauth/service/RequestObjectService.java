@@ -0,0 +1,329 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.authorize.JwtAuthorizationRequest;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.exception.InvalidJweException;
+import org.xdi.oxauth.model.exception.InvalidJwtException;
+import org.xdi.oxauth.model.registration.Client;
+import org.xdi.oxauth.model.util.Base64Util;
+import org.xdi.oxauth.model.util.JwtUtil;
+import org.xdi.oxauth.service.net.OutboundHttpClient.Response;
+import org.xdi.oxauth.service.net.OutboundHttpService;
+
+/**
+ * Cache of request objects fetched via request_uri.
+ * <p/>
+ * Entries are keyed by the full request_uri (including sha256 fragment) and live as long as
+ * Cache-Control/Expires headers of the response allow (bounded by configuration). Request objects are
+ * verified once per client and reused while client keys stay the same. Keys published on client's jwks_uri may be
+ * rotated without client update, so such verification is reused only while keys fetched for it are not older than
+ * requestUriJwksLifetime. Every caller gets own copy of verified request object.
+ */
+@ApplicationScoped
+@Named
+public class RequestObjectService {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private OutboundHttpService outboundHttpService;
+
+    private Map<String, CacheEntry> cache;
+
+    private Executor prefetchExecutor;
+
+    public RequestObjectService() {
+    }
+
+    RequestObjectService(Logger log, AppConfiguration appConfiguration, OutboundHttpService outboundHttpService, Executor prefetchExecutor) {
+        this.log = log;
+        this.appConfiguration = appConfiguration;
+        this.outboundHttpService = outboundHttpService;
+        this.prefetchExecutor = prefetchExecutor;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        final int maxSize = appConfiguration.getRequestUriCacheMaxSize();
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        if (prefetchExecutor == null) {
+            this.prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable p_r) {
+                    Thread thread = new Thread(p_r, "request-object-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (prefetchExecutor instanceof ExecutorService) {
+            ((ExecutorService) prefetchExecutor).shutdownNow();
+        }
+    }
+
+    /**
+     * Returns request object referenced by request_uri.
+     *
+     * @param requestUri request_uri parameter, sha256 fragment is validated if present
+     * @return Request object or null if it can't be retrieved or hash is not valid
+     */
+    public String getRequestObject(String requestUri) {
+        CacheEntry entry = getEntry(requestUri);
+        return entry != null ? entry.request : null;
+    }
+
+    /**
+     * Parses and verifies request object. If request object was retrieved via request_uri the verified request
+     * object is cached together with the fetched request object.
+     *
+     * @return new instance on each call, it may be modified by caller
+     */
+    public JwtAuthorizationRequest getJwtAuthorizationRequest(String request, String requestUri, Client client) throws InvalidJwtException, InvalidJweException {
+        CacheEntry entry = StringUtils.isNotBlank(requestUri) ? get(requestUri) : null;
+        final long now = System.currentTimeMillis();
+        if (entry == null || !StringUtils.equals(entry.request, request) || entry.isExpired(now)) {
+            return verify(request, client);
+        }
+
+        final String clientKeys = getClientKeys(client);
+
+        VerifiedRequest verified = entry.verified.get(client.getClientId());
+        if (verified != null && verified.isValidFor(clientKeys, now)) {
+            return new JwtAuthorizationRequest(verified.jwtAuthorizationRequest);
+        }
+
+        // Keys from jwks_uri are fetched during verification
+        final long keysExpireAt = StringUtils.isBlank(client.getJwks()) && StringUtils.isNotBlank(client.getJwksUri()) ?
+                now + appConfiguration.getRequestUriJwksLifetime() * 1000L : Long.MAX_VALUE;
+        JwtAuthorizationRequest jwtAuthorizationRequest = verify(request, client);
+        entry.verified.put(client.getClientId(), new VerifiedRequest(jwtAuthorizationRequest, clientKeys, keysExpireAt));
+
+        return new JwtAuthorizationRequest(jwtAuthorizationRequest);
+    }
+
+    /**
+     * Fetches pre-registered request_uris of the client in background so first authorization request doesn't wait
+     * for them.
+     */
+    public void prefetch(final Client client) {
+        if (client == null || client.getRequestUris() == null || client.getRequestUris().length == 0) {
+            return;
+        }
+
+        try {
+            prefetchExecutor.execute(new Runnable() {
+                public void run() {
+                    prefetchRequestUris(client);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Request objects are not prefetched, client: {}", client.getClientId());
+        }
+    }
+
+    public void remove(String requestUri) {
+        if (StringUtils.isNotBlank(requestUri)) {
+            synchronized (cache) {
+                cache.remove(requestUri);
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Parses, decrypts and verifies request object
+     */
+    JwtAuthorizationRequest verify(String request, Client client) throws InvalidJwtException, InvalidJweException {
+        return new JwtAuthorizationRequest(appConfiguration, request, client);
+    }
+
+    private void prefetchRequestUris(Client client) {
+        for (String requestUri : client.getRequestUris()) {
+            CacheEntry entry = getEntry(requestUri);
+            if (entry == null) {
+                continue;
+            }
+
+            try {
+                getJwtAuthorizationRequest(entry.request, requestUri, client);
+            } catch (Exception e) {
+                log.debug("Failed to verify prefetched request object, request_uri: {}, message: {}", requestUri, e.getMessage());
+            }
+        }
+    }
+
+    private CacheEntry get(String requestUri) {
+        synchronized (cache) {
+            return cache.get(requestUri);
+        }
+    }
+
+    private CacheEntry getEntry(String requestUri) {
+        if (StringUtils.isBlank(requestUri)) {
+            return null;
+        }
+
+        final long now = System.currentTimeMillis();
+        CacheEntry entry = get(requestUri);
+        if (entry != null && !entry.isExpired(now)) {
+            return entry;
+        }
+
+        try {
+            entry = fetch(requestUri);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            entry = null;
+        }
+
+        synchronized (cache) {
+            if (entry == null || entry.isExpired(now)) {
+                cache.remove(requestUri);
+            } else {
+                cache.put(requestUri, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    private CacheEntry fetch(String requestUri) throws Exception {
+        URI reqUri = new URI(requestUri);
+        String reqUriHash = reqUri.getFragment();
+        String reqUriWithoutFragment = reqUri.getScheme() + ":" + reqUri.getSchemeSpecificPart();
+
+        Response response = outboundHttpService.get(reqUriWithoutFragment);
+        int status = response.getStatus();
+        if (status != 200) {
+            log.debug("Failed to retrieve request object, request_uri: {}, status: {}", requestUri, status);
+            return null;
+        }
+
+        String request = response.getBody();
+
+        if (StringUtils.isNotBlank(reqUriHash)) {
+            String hash = Base64Util.base64urlencode(JwtUtil.getMessageDigestSHA256(request));
+            if (!StringUtils.equals(reqUriHash, hash)) {
+                log.debug("Request object hash doesn't match request_uri fragment, request_uri: {}", requestUri);
+                return null;
+            }
+        }
+
+        long lifetime = getLifetime(response.getFirstHeader(HttpHeaders.CACHE_CONTROL), response.getFirstHeader(HttpHeaders.EXPIRES));
+
+        return new CacheEntry(request, System.currentTimeMillis() + lifetime * 1000L);
+    }
+
+    /**
+     * @return lifetime in seconds calculated from response caching headers
+     */
+    private long getLifetime(String cacheControl, String expires) {
+        long lifetime = appConfiguration.getRequestUriCacheLifetime();
+
+        if (StringUtils.isNotBlank(cacheControl)) {
+            for (String directive : StringUtils.split(cacheControl.toLowerCase(), ',')) {
+                directive = directive.trim();
+                if (directive.equals("no-store") || directive.equals("no-cache")) {
+                    return 0;
+                }
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        lifetime = Long.parseLong(StringUtils.remove(directive.substring("max-age=".length()), '"'));
+                    } catch (NumberFormatException e) {
+                        log.trace("Invalid max-age directive: {}", directive);
+                    }
+                }
+            }
+        } else if (StringUtils.isNotBlank(expires)) {
+            Date expiresDate = DateUtils.parseDate(expires);
+            if (expiresDate != null) {
+                lifetime = (expiresDate.getTime() - System.currentTimeMillis()) / 1000L;
+            }
+        }
+
+        return Math.max(0, Math.min(lifetime, appConfiguration.getRequestUriCacheMaxLifetime()));
+    }
+
+    private static String getClientKeys(Client client) {
+        return client.getClientSecret() + "|" + client.getJwksUri() + "|" + client.getJwks();
+    }
+
+    private static class CacheEntry {
+        private final String request;
+        private final long expiresAt;
+        private final ConcurrentMap<String, VerifiedRequest> verified = new ConcurrentHashMap<String, VerifiedRequest>();
+
+        CacheEntry(String request, long expiresAt) {
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private static class VerifiedRequest {
+        private final JwtAuthorizationRequest jwtAuthorizationRequest;
+        private final String clientKeys;
+        private final long keysExpireAt;
+
+        VerifiedRequest(JwtAuthorizationRequest jwtAuthorizationRequest, String clientKeys, long keysExpireAt) {
+            this.jwtAuthorizationRequest = jwtAuthorizationRequest;
+            this.clientKeys = clientKeys;
+            this.keysExpireAt = keysExpireAt;
+        }
+
+        boolean isValidFor(String clientKeys, long now) {
+            return StringUtils.equals(this.clientKeys, clientKeys) && now < keysExpireAt;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.gluu.site.ldap.persistence.LdapEntryManager;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.common.Scope;
+import org.xdi.oxauth.model.config.StaticConfiguration;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.util.StringHelper;
+
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Immutable in-memory snapshot of all scopes indexed by DN, display name and claim DN.
+ */
+@ApplicationScoped
+@Named
+public class ScopeCatalogueService extends AbstractCatalogueService<ScopeCatalogueService.Snapshot> {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private LdapEntryManager ldapEntryManager;
+
+    @Inject
+    private StaticConfiguration staticConfiguration;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    public List<Scope> getAllScopes() {
+        return getSnapshot().scopes;
+    }
+
+    public List<String> getDefaultScopesDn() {
+        return getSnapshot().defaultScopesDn;
+    }
+
+    public Scope getScopeByDn(String dn) {
+        return getSnapshot().byDn.get(StringHelper.toLowerCase(dn));
+    }
+
+    public Scope getScopeByDisplayName(String displayName) {
+        return getSnapshot().byDisplayName.get(StringHelper.toLowerCase(displayName));
+    }
+
+    public List<Scope> getScopesByClaim(String claimDn) {
+        List<Scope> scopes = getSnapshot().byClaimDn.get(StringHelper.toLowerCase(claimDn));
+        if (scopes == null) {
+            return Collections.emptyList();
+        }
+
+        return scopes;
+    }
+
+    /**
+     * @return hash of scope fields published in discovery documents, the same while reloads find the same scopes
+     */
+    public String getContentHash() {
+        return getSnapshot().contentHash;
+    }
+
+    @Override
+    protected int getRefreshInterval() {
+        return appConfiguration.getScopeCacheRefreshInterval();
+    }
+
+    @Override
+    protected Snapshot load(long revision) {
+        final String scopesBaseDN = staticConfiguration.getBaseDn().getScopes();
+
+        List<Scope> scopes = ldapEntryManager.findEntries(scopesBaseDN, Scope.class, Filter.createPresenceFilter("inum"));
+        log.debug("Loaded {} scopes", scopes.size());
+
+        return new Snapshot(scopes, revision);
+    }
+
+    static class Snapshot extends AbstractCatalogueService.Snapshot {
+
+        private final List<Scope> scopes;
+        private final List<String> defaultScopesDn;
+        private final Map<String, Scope> byDn;
+        private final Map<String, Scope> byDisplayName;
+        private final Map<String, List<Scope>> byClaimDn;
+        private final String contentHash;
+
+        Snapshot(List<Scope> scopes, long revision) {
+            super(revision, System.currentTimeMillis());
+
+            List<String> defaultScopesDn = new ArrayList<String>();
+            Map<String, Scope> byDn = new HashMap<String, Scope>();
+            Map<String, Scope> byDisplayName = new HashMap<String, Scope>();
+            Map<String, List<Scope>> byClaimDn = new HashMap<String, List<Scope>>();
+            StringBuilder content = new StringBuilder();
+
+            for (Scope scope : scopes) {
+                content.append(scope.getDn()).append('\u0000').append(scope.getDisplayName()).append('\u0000')
+                        .append(scope.getScopeType()).append('\u0000').append(scope.getOxAuthClaims()).append('\n');
+                if (scope.getIsDefault()) {
+                    defaultScopesDn.add(scope.getDn());
+                }
+                if (scope.getDn() != null) {
+                    byDn.put(StringHelper.toLowerCase(scope.getDn()), scope);
+                }
+                // First entry wins, the same as it was with LDAP search
+                final String displayNameKey = StringHelper.toLowerCase(scope.getDisplayName());
+                if (displayNameKey != null && !byDisplayName.containsKey(displayNameKey)) {
+                    byDisplayName.put(displayNameKey, scope);
+                }
+                if (scope.getOxAuthClaims() != null) {
+                    for (String claimDn : scope.getOxAuthClaims()) {
+                        final String claimDnKey = StringHelper.toLowerCase(claimDn);
+                        List<Scope> claimScopes = byClaimDn.get(claimDnKey);
+                        if (claimScopes == null) {
+                            claimScopes = new ArrayList<Scope>();
+                            byClaimDn.put(claimDnKey, claimScopes);
+                        }
+                        claimScopes.add(scope);
+                    }
+                }
+            }
+
+            for (Map.Entry<String, List<Scope>> entry : byClaimDn.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+
+            this.scopes = Collections.unmodifiableList(scopes);
+            this.defaultScopesDn = Collections.unmodifiableList(defaultScopesDn);
+            this.byDn = byDn;
+            this.byDisplayName = byDisplayName;
+            this.byClaimDn = byClaimDn;
+            this.contentHash = DigestUtils.sha256Hex(content.toString());
+        }
+    }
+
+}
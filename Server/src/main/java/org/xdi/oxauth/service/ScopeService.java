@@ -15,12 +15,9 @@ import javax.inject.Named;
 
 import org.gluu.site.ldap.persistence.LdapEntryManager;
 import org.slf4j.Logger;
-import org.xdi.oxauth.model.config.StaticConfiguration;
 import org.xdi.service.CacheService;
 import org.xdi.util.StringHelper;
 
-import com.unboundid.ldap.sdk.Filter;
-
 /**
  * @author Javier Rojas Blum Date: 07.05.2012
  * @author Yuriy Movchan Date: 2016/04/26
@@ -41,7 +38,7 @@ public class ScopeService {
     private LdapEntryManager ldapEntryManager;
 
     @Inject
-    private StaticConfiguration staticConfiguration;
+    private ScopeCatalogueService scopeCatalogueService;
 
     /**
      * returns a list of all scopes
@@ -49,23 +46,11 @@ public class ScopeService {
      * @return list of scopes
      */
     public List<org.xdi.oxauth.model.common.Scope> getAllScopesList() {
-        String scopesBaseDN = staticConfiguration.getBaseDn().getScopes();
-
-        return ldapEntryManager.findEntries(scopesBaseDN,
-                org.xdi.oxauth.model.common.Scope.class,
-                Filter.createPresenceFilter("inum"));
+        return scopeCatalogueService.getAllScopes();
     }
 
     public List<String> getDefaultScopesDn() {
-        List<String> defaultScopes = new ArrayList<String>();
-
-        for (org.xdi.oxauth.model.common.Scope scope : getAllScopesList()) {
-            if (scope.getIsDefault()) {
-                defaultScopes.add(scope.getDn());
-            }
-        }
-
-        return defaultScopes;
+        return scopeCatalogueService.getDefaultScopesDn();
     }
 
     public List<String> getScopesDn(List<String> scopeNames) {
@@ -87,7 +72,10 @@ public class ScopeService {
      * @return Scope
      */
     public org.xdi.oxauth.model.common.Scope getScopeByDn(String dn) {
-        org.xdi.oxauth.model.common.Scope scope = fromCacheByDn(dn);
+        org.xdi.oxauth.model.common.Scope scope = scopeCatalogueService.getScopeByDn(dn);
+        if (scope == null) {
+            scope = fromCacheByDn(dn);
+        }
         if (scope == null) {
         	scope = ldapEntryManager.find(org.xdi.oxauth.model.common.Scope.class, dn);
         	putInCache(scope);
@@ -117,23 +105,7 @@ public class ScopeService {
      * @return scope
      */
     public org.xdi.oxauth.model.common.Scope getScopeByDisplayName(String displayName) {
-        org.xdi.oxauth.model.common.Scope scope = fromCacheByName(displayName);
-        if (scope == null) {
-	        String scopesBaseDN = staticConfiguration.getBaseDn().getScopes();
-	
-	        org.xdi.oxauth.model.common.Scope scopeExample = new org.xdi.oxauth.model.common.Scope();
-	        scopeExample.setDn(scopesBaseDN);
-	        scopeExample.setDisplayName(displayName);
-	
-	        List<org.xdi.oxauth.model.common.Scope> scopes = ldapEntryManager.findEntries(scopeExample);
-	        if ((scopes != null) && (scopes.size() > 0)) {
-	        	scope = scopes.get(0);
-	        }
-	        
-	        putInCache(scope);
-        }
-
-        return scope;
+        return scopeCatalogueService.getScopeByDisplayName(displayName);
     }    
     
     /**
@@ -143,17 +115,7 @@ public class ScopeService {
      * @return List of scope
      */
     public List<org.xdi.oxauth.model.common.Scope> getScopeByClaim(String claimDn) {
-    	List<org.xdi.oxauth.model.common.Scope> scopes = fromCacheByClaimDn(claimDn);
-    	if (scopes == null) {
-	        Filter filter = Filter.createEqualityFilter("oxAuthClaim", claimDn);
-	        
-	    	String scopesBaseDN = staticConfiguration.getBaseDn().getScopes();
-	        scopes = ldapEntryManager.findEntries(scopesBaseDN, org.xdi.oxauth.model.common.Scope.class, filter);  
-	
-	        putInCache(claimDn, scopes);
-    	}
-
-        return scopes;
+        return scopeCatalogueService.getScopesByClaim(claimDn);
     }
 
 	public List<org.xdi.oxauth.model.common.Scope> getScopesByClaim(List<org.xdi.oxauth.model.common.Scope> scopes, String claimDn) {
@@ -175,25 +137,11 @@ public class ScopeService {
     	}
 
     	try {
-            cacheService.put(CACHE_SCOPE_NAME, getScopeNameCacheKey(scope.getDisplayName()), scope);
             cacheService.put(CACHE_SCOPE_NAME, getScopeDnCacheKey(scope.getDn()), scope);
         } catch (Exception ex) {
             log.error("Failed to put scope in cache, scope: '{}'", scope, ex);
         }
     }
-    private void putInCache(String claimDn, List<org.xdi.oxauth.model.common.Scope> scopes) {
-    	if (scopes == null) {
-    		return;
-    	}
-
-    	try {
-        	String key = getClaimDnCacheKey(claimDn);
-            cacheService.put(CACHE_SCOPE_NAME, key, scopes);
-        } catch (Exception ex) {
-            log.error("Failed to put scopes in cache, claimDn: '{}'", claimDn, ex);
-        }
-    }
-
     private org.xdi.oxauth.model.common.Scope fromCacheByDn(String dn) {
         try {
             String key = getScopeDnCacheKey(dn);
@@ -204,34 +152,6 @@ public class ScopeService {
         }
     }
 
-    private org.xdi.oxauth.model.common.Scope fromCacheByName(String name) {
-        try {
-            String key = getScopeNameCacheKey(name);
-            return (org.xdi.oxauth.model.common.Scope) cacheService.get(CACHE_SCOPE_NAME, key);
-        } catch (Exception ex) {
-            log.error("Failed to get scope from cache, name: '{}'", name, ex);
-            return null;
-        }
-    }
-
-    private List<org.xdi.oxauth.model.common.Scope> fromCacheByClaimDn(String claimDn) {
-        try {
-        	String key = getClaimDnCacheKey(claimDn);
-            return (List<org.xdi.oxauth.model.common.Scope>) cacheService.get(CACHE_SCOPE_NAME, key);
-        } catch (Exception ex) {
-            log.error("Failed to get scopes from cache, claimDn: '{}'", claimDn, ex);
-            return null;
-        }
-    }
-
-    private static String getClaimDnCacheKey(String claimDn) {
-        return "claim_dn" + StringHelper.toLowerCase(claimDn);
-    }
-
-    private static String getScopeNameCacheKey(String name) {
-        return "scope_name_" + StringHelper.toLowerCase(name);
-    }
-
     private static String getScopeDnCacheKey(String dn) {
         return "scope_dn_" + StringHelper.toLowerCase(dn);
     }
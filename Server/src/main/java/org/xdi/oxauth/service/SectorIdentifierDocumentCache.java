@@ -0,0 +1,256 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xdi.oxauth.model.registration.SectorIdentifierDocument;
+
+/**
+ * Bounded cache of sector_identifier_uri documents.
+ * <p/>
+ * Least recently used entries are evicted when cache is full. Entry which can't be loaded and has no usable stale
+ * copy is removed, so URIs which never worked are not fetched again in background. Failing entries are retried
+ * with growing interval and removed after {@link #MAX_FAILURES} failures in a row.
+ */
+public class SectorIdentifierDocumentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SectorIdentifierDocumentCache.class);
+
+    static final int MAX_FAILURES = 10;
+    private static final long RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_RETRY_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    public interface DocumentLoader {
+
+        /**
+         * @param previous cached document which should be revalidated or null
+         * @return loaded document, revalidated previous document, or null if server didn't return document
+         */
+        SectorIdentifierDocument load(String sectorIdentifierUri, SectorIdentifierDocument previous) throws Exception;
+    }
+
+    private final DocumentLoader loader;
+    private final long staleIfErrorLifetime;
+
+    private final Map<String, CacheEntry> entries;
+
+    /**
+     * @param staleIfErrorLifetime time in milliseconds after expiration during which document is used if server fails
+     */
+    public SectorIdentifierDocumentCache(DocumentLoader loader, final int maxSize, long staleIfErrorLifetime) {
+        this.loader = loader;
+        this.staleIfErrorLifetime = staleIfErrorLifetime;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns document of registered client, document is loaded if it's not in cache yet.
+     *
+     * @return document or null if it can't be loaded and there is no usable stale copy
+     */
+    public SectorIdentifierDocument get(String sectorIdentifierUri) {
+        final long now = System.currentTimeMillis();
+
+        CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(sectorIdentifierUri);
+            if (entry == null) {
+                entry = new CacheEntry();
+                entries.put(sectorIdentifierUri, entry);
+            }
+        }
+        entry.lastAccessedAt = now;
+
+        SectorIdentifierDocument document = entry.document;
+        if (isUsable(entry, document, now)) {
+            return document;
+        }
+
+        // Only one thread loads the same uri, others wait for it instead of issuing own requests
+        synchronized (entry) {
+            document = entry.document;
+            if (isUsable(entry, document, now)) {
+                return document;
+            }
+
+            return load(sectorIdentifierUri, entry);
+        }
+    }
+
+    /**
+     * Loads document with conditional request if it's cached. New entry is not created, because client with this
+     * document may be not registered.
+     *
+     * @return document or null if it can't be loaded and there is no usable stale copy
+     */
+    public SectorIdentifierDocument revalidate(String sectorIdentifierUri) {
+        final long now = System.currentTimeMillis();
+
+        CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(sectorIdentifierUri);
+        }
+
+        if (entry == null) {
+            try {
+                return loader.load(sectorIdentifierUri, null);
+            } catch (Exception e) {
+                log.debug("Failed to load sector identifier document: " + sectorIdentifierUri, e);
+                return null;
+            }
+        }
+
+        synchronized (entry) {
+            SectorIdentifierDocument document = entry.document;
+            if ((document != null) && (document.getFetchedAt() > now)) {
+                // Revalidated by another thread
+                return document;
+            }
+
+            return load(sectorIdentifierUri, entry);
+        }
+    }
+
+    /**
+     * Revalidates documents which expire soon and removes entries which are not used anymore.
+     *
+     * @param refreshAhead time in milliseconds before expiration when document is revalidated
+     * @param idleLifetime time in milliseconds after last access when entry is removed
+     */
+    public void refresh(long refreshAhead, long idleLifetime) {
+        final long now = System.currentTimeMillis();
+
+        List<Map.Entry<String, CacheEntry>> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<Map.Entry<String, CacheEntry>>(entries.size());
+            for (Map.Entry<String, CacheEntry> mapEntry : entries.entrySet()) {
+                snapshot.add(new AbstractMap.SimpleImmutableEntry<String, CacheEntry>(mapEntry));
+            }
+        }
+
+        for (Map.Entry<String, CacheEntry> mapEntry : snapshot) {
+            final String sectorIdentifierUri = mapEntry.getKey();
+            final CacheEntry entry = mapEntry.getValue();
+            SectorIdentifierDocument document = entry.document;
+
+            // Don't keep refreshing documents of clients which don't login anymore
+            if (now - entry.lastAccessedAt > idleLifetime) {
+                log.trace("Removing idle sector identifier document: {}", sectorIdentifierUri);
+                remove(sectorIdentifierUri, entry);
+                continue;
+            }
+
+            // Document is loaded by request thread right now
+            if (document == null) {
+                continue;
+            }
+
+            if (!document.isExpired(now + refreshAhead) || (now < entry.nextAttemptAt)) {
+                continue;
+            }
+
+            synchronized (entry) {
+                if (entry.document == document) {
+                    load(sectorIdentifierUri, entry);
+                }
+            }
+        }
+    }
+
+    public void remove(String sectorIdentifierUri) {
+        synchronized (entries) {
+            entries.remove(sectorIdentifierUri);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private SectorIdentifierDocument load(String sectorIdentifierUri, CacheEntry entry) {
+        SectorIdentifierDocument previous = entry.document;
+        SectorIdentifierDocument loaded = null;
+        try {
+            loaded = loader.load(sectorIdentifierUri, previous);
+        } catch (Exception e) {
+            log.debug("Failed to load sector identifier document: " + sectorIdentifierUri, e);
+        }
+
+        final long now = System.currentTimeMillis();
+        if (loaded != null) {
+            entry.document = loaded;
+            entry.failures = 0;
+            entry.nextAttemptAt = 0;
+            return loaded;
+        }
+
+        entry.failures++;
+        entry.nextAttemptAt = now + Math.min(RETRY_INTERVAL << Math.min(entry.failures - 1, 30), MAX_RETRY_INTERVAL);
+
+        // stale-if-error
+        if (entry.failures < MAX_FAILURES && isStaleUsable(previous, now)) {
+            log.warn("Using stale sector identifier document, uri: {}, expired at: {}", sectorIdentifierUri, previous.getExpiresAt());
+            return previous;
+        }
+
+        entry.document = null;
+        remove(sectorIdentifierUri, entry);
+        return null;
+    }
+
+    private boolean isUsable(CacheEntry entry, SectorIdentifierDocument document, long now) {
+        if (document == null) {
+            return false;
+        }
+
+        // Expired document is not loaded on every request while server is failing
+        return !document.isExpired(now) || ((now < entry.nextAttemptAt) && isStaleUsable(document, now));
+    }
+
+    private boolean isStaleUsable(SectorIdentifierDocument document, long now) {
+        return (document != null) && (now - document.getExpiresAt() < staleIfErrorLifetime);
+    }
+
+    private void remove(String sectorIdentifierUri, CacheEntry entry) {
+        synchronized (entries) {
+            CacheEntry current = entries.remove(sectorIdentifierUri);
+            if ((current != null) && (current != entry)) {
+                // Entry was replaced meanwhile
+                entries.put(sectorIdentifierUri, current);
+            }
+        }
+    }
+
+    private static class CacheEntry {
+        private volatile SectorIdentifierDocument document;
+        private volatile long lastAccessedAt;
+        private volatile int failures;
+        private volatile long nextAttemptAt;
+    }
+
+}
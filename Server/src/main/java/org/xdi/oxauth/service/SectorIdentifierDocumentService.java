@@ -0,0 +1,221 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Asynchronous;
+import javax.ejb.DependsOn;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jettison.json.JSONArray;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.registration.SectorIdentifierDocument;
+import org.xdi.oxauth.service.job.quartz.JobShedule;
+import org.xdi.oxauth.service.net.OutboundHttpClient.Response;
+import org.xdi.oxauth.service.net.OutboundHttpService;
+
+/**
+ * Shared cache of sector_identifier_uri documents.
+ * <p/>
+ * Entries are revalidated with conditional requests (If-None-Match/If-Modified-Since) by a background job
+ * shortly before they expire, so authorization requests normally never wait for the RP web server.
+ * If the RP web server is not available the last good document is served until stale-if-error lifetime ends.
+ * Only documents of registered clients are kept, registration requests don't add entries.
+ */
+@ApplicationScoped
+@DependsOn("appInitializer")
+@Named
+public class SectorIdentifierDocumentService implements Job {
+
+    private final static int DEFAULT_INTERVAL = 60; // 1 minute
+    private final static int DEFAULT_IDLE_LIFETIME = 86400; // 1 day
+    private final static int MAX_SIZE = 10000;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private OutboundHttpService outboundHttpService;
+
+    private SectorIdentifierDocumentCache cache;
+
+    private final AtomicBoolean isActive = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void init() {
+        this.cache = new SectorIdentifierDocumentCache(new SectorIdentifierDocumentCache.DocumentLoader() {
+            public SectorIdentifierDocument load(String sectorIdentifierUri, SectorIdentifierDocument previous) throws Exception {
+                return fetch(sectorIdentifierUri, previous);
+            }
+        }, MAX_SIZE, getStaleIfErrorLifetime() * 1000L);
+    }
+
+    public JobShedule getJobShedule() {
+        log.debug("Initializing SectorIdentifierDocumentService refresh job");
+
+        int interval = getRefreshInterval();
+
+        JobDetail job = JobBuilder.newJob(SectorIdentifierDocumentService.class).withIdentity(
+                "oxAuthSectorIdentifierRefreshJob").build();
+        Trigger trigger = TriggerBuilder.newTrigger()
+                .withIdentity("oxAuthSectorIdentifierRefreshTrigger")
+                .startNow()
+                .withSchedule(SimpleScheduleBuilder.repeatSecondlyForever(interval))
+                .build();
+
+        return new JobShedule(job, trigger);
+    }
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        process();
+    }
+
+    @Asynchronous
+    public void process() {
+        if (this.isActive.get()) {
+            return;
+        }
+
+        if (!this.isActive.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            cache.refresh(getRefreshInterval() * 1000L, getIdleLifetime() * 1000L);
+        } finally {
+            this.isActive.set(false);
+        }
+    }
+
+    /**
+     * Returns the redirect URIs published in the sector identifier document of registered client.
+     *
+     * @param sectorIdentifierUri Sector identifier URI.
+     * @return Parsed document or null if it can't be loaded and there is no usable stale copy.
+     */
+    public SectorIdentifierDocument getDocument(String sectorIdentifierUri) {
+        return getDocument(sectorIdentifierUri, false);
+    }
+
+    /**
+     * Returns the redirect URIs published in the sector identifier document.
+     *
+     * @param sectorIdentifierUri Sector identifier URI.
+     * @param revalidate          Revalidate cached entry even if it's still fresh (conditional request, used at registration).
+     *                            Document which is not cached yet is loaded without adding it to cache.
+     * @return Parsed document or null if it can't be loaded and there is no usable stale copy.
+     */
+    public SectorIdentifierDocument getDocument(String sectorIdentifierUri, boolean revalidate) {
+        if (StringUtils.isBlank(sectorIdentifierUri)) {
+            return null;
+        }
+
+        return revalidate ? cache.revalidate(sectorIdentifierUri) : cache.get(sectorIdentifierUri);
+    }
+
+    public void remove(String sectorIdentifierUri) {
+        if (StringUtils.isNotBlank(sectorIdentifierUri)) {
+            cache.remove(sectorIdentifierUri);
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private SectorIdentifierDocument fetch(String sectorIdentifierUri, SectorIdentifierDocument previous) throws Exception {
+        Map<String, String> headers = new HashMap<String, String>();
+        if (previous != null) {
+            if (StringUtils.isNotBlank(previous.getEtag())) {
+                headers.put(HttpHeaders.IF_NONE_MATCH, previous.getEtag());
+            }
+            if (StringUtils.isNotBlank(previous.getLastModified())) {
+                headers.put(HttpHeaders.IF_MODIFIED_SINCE, previous.getLastModified());
+            }
+        }
+
+        Response response = outboundHttpService.get(sectorIdentifierUri, headers);
+        int status = response.getStatus();
+        final long now = System.currentTimeMillis();
+        final long expiresAt = now + getLifetime() * 1000L;
+
+        if (status == 304 && previous != null) {
+            log.trace("Sector identifier document is not modified: {}", sectorIdentifierUri);
+            return previous.revalidated(now, expiresAt);
+        }
+
+        if (status != 200) {
+            log.debug("Failed to load sector identifier document, uri: {}, status: {}", sectorIdentifierUri, status);
+            return null;
+        }
+
+        JSONArray sectorIdentifierJsonArray = new JSONArray(response.getBody());
+        List<String> redirectUris = new ArrayList<String>(sectorIdentifierJsonArray.length());
+        for (int i = 0; i < sectorIdentifierJsonArray.length(); i++) {
+            redirectUris.add(sectorIdentifierJsonArray.getString(i));
+        }
+
+        String etag = response.getFirstHeader(HttpHeaders.ETAG);
+        String lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+
+        return new SectorIdentifierDocument(sectorIdentifierUri, redirectUris, etag, lastModified, now, expiresAt);
+    }
+
+    private int getLifetime() {
+        return Math.max(appConfiguration.getSectorIdentifierCacheLifetime(), 0);
+    }
+
+    private int getStaleIfErrorLifetime() {
+        return Math.max(appConfiguration.getSectorIdentifierCacheStaleIfErrorLifetime(), 0);
+    }
+
+    /**
+     * Entry of client which didn't login during this time is removed. It's never shorter than document lifetime
+     * plus refresh interval.
+     */
+    private int getIdleLifetime() {
+        int idleLifetime = appConfiguration.getSectorIdentifierCacheIdleLifetime();
+        if (idleLifetime <= 0) {
+            idleLifetime = DEFAULT_IDLE_LIFETIME;
+        }
+
+        return Math.max(idleLifetime, getLifetime() + getRefreshInterval());
+    }
+
+    private int getRefreshInterval() {
+        int interval = appConfiguration.getSectorIdentifierCacheRefreshInterval();
+        if (interval <= 0) {
+            interval = DEFAULT_INTERVAL;
+        }
+
+        return interval;
+    }
+
+}
@@ -12,7 +12,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import javax.ejb.Stateless;
@@ -42,6 +41,7 @@ import org.xdi.oxauth.model.exception.AcrChangedException;
 import org.xdi.oxauth.model.jwt.Jwt;
 import org.xdi.oxauth.model.jwt.JwtClaimName;
 import org.xdi.oxauth.model.jwt.JwtSubClaimObject;
+import org.xdi.oxauth.model.token.HandleTokenFactory;
 import org.xdi.oxauth.model.token.JwtSigner;
 import org.xdi.oxauth.model.util.Util;
 import org.xdi.oxauth.service.external.ExternalAuthenticationService;
@@ -327,7 +327,7 @@ public class SessionStateService  {
     }
 
     private SessionState generateSessionState(String userDn, Date authenticationDate, SessionIdState state, Map<String, String> sessionIdAttributes, boolean persist) {
-        final String uuid = UUID.randomUUID().toString();
+        final String uuid = HandleTokenFactory.generateHandleToken();
         final String dn = dn(uuid);
 
         if (StringUtils.isBlank(dn)) {
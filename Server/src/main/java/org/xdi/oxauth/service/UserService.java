@@ -13,6 +13,7 @@ import java.util.List;
 
 import javax.annotation.Nullable;
 import javax.ejb.Stateless;
+import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
 import javax.inject.Named;
 
@@ -52,6 +53,12 @@ public class UserService {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private BeanManager beanManager;
+
+    @Inject
+    private RequestIdentityContext identityContext;
+
     /**
      * returns User by Dn
      *
@@ -62,7 +69,20 @@ public class UserService {
         if (Util.isNullOrEmpty(dn)) {
             return null;
         }
-        return ldapEntryManager.find(User.class, dn, returnAttributes);
+
+        final RequestIdentityContext context = getIdentityContext();
+        if (context == null) {
+            return ldapEntryManager.find(User.class, dn, returnAttributes);
+        }
+
+        User user = context.getUserByDn(dn, returnAttributes);
+        if (user == null) {
+            context.incrementBackendCallCount();
+            user = ldapEntryManager.find(User.class, dn, returnAttributes);
+            context.putUser(user, returnAttributes);
+        }
+
+        return user;
     }
 
 	public User getUserByInum(String inum, String... returnAttributes) {
@@ -86,18 +106,36 @@ public class UserService {
 			return null;
 		}
 
+		final RequestIdentityContext context = getIdentityContext();
+		if (context != null) {
+			User user = context.getUserByUid(userId, returnAttributes);
+			if (user != null) {
+				return user;
+			}
+			context.incrementBackendCallCount();
+		}
+
 		Filter userUidFilter = Filter.createEqualityFilter("uid", userId);
 
 		List<User> entries = ldapEntryManager.findEntries(staticConfiguration.getBaseDn().getPeople(), User.class, returnAttributes, userUidFilter);
 		log.debug("Found {} entries for user id = {}", entries.size(), userId);
 
 		if (entries.size() > 0) {
-			return entries.get(0);
+			User user = entries.get(0);
+			if (context != null) {
+				context.putUser(user, returnAttributes);
+			}
+
+			return user;
 		} else {
 			return null;
 		}
 	}
 
+	private RequestIdentityContext getIdentityContext() {
+		return RequestIdentityContext.isActive(beanManager) ? identityContext : null;
+	}
+
 	public String getUserInum(User user) {
 		if (user == null) {
 			return null;
@@ -129,6 +167,11 @@ public class UserService {
 	}
 
     public User updateUser(User user) {
+		final RequestIdentityContext context = getIdentityContext();
+		if (context != null) {
+			context.removeUser(user);
+		}
+
 		return ldapEntryManager.merge(user);
 	}
 
@@ -353,7 +396,7 @@ public class UserService {
             persistentJwts[nTokens - 1] = longLivedToken.toString();
 
             user.setOxAuthPersistentJwt(persistentJwts);
-            ldapEntryManager.merge(user);
+            updateUser(user);
             succeed = true;
         }
 
@@ -58,6 +58,8 @@ public class ExternalAuthenticationService extends ExternalScriptService {
 	private Map<AuthenticationScriptUsageType, List<CustomScriptConfiguration>> customScriptConfigurationsMapByUsageType;
 	private Map<AuthenticationScriptUsageType, CustomScriptConfiguration> defaultExternalAuthenticators;
 
+	private volatile long revision;
+
 	public ExternalAuthenticationService() {
 		super(CustomScriptType.PERSON_AUTHENTICATION);
 	}
@@ -79,6 +81,15 @@ public class ExternalAuthenticationService extends ExternalScriptService {
 
 		// Determine default authenticator for every usage type
 		this.defaultExternalAuthenticators = determineDefaultCustomScriptConfigurationsMap(this.customScriptConfigurationsNameMap);
+
+		this.revision++;
+	}
+
+	/**
+	 * @return revision of the loaded authentication scripts, changes every time scripts are reloaded
+	 */
+	public long getRevision() {
+		return revision;
 	}
 
 	@Override
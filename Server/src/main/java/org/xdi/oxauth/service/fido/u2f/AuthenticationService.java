@@ -38,8 +38,6 @@ import org.xdi.oxauth.model.util.Base64Util;
 import org.xdi.oxauth.service.UserService;
 import org.xdi.util.StringHelper;
 
-import com.unboundid.ldap.sdk.Filter;
-
 /**
  * Provides operations with U2F authentication request
  *
@@ -192,7 +190,7 @@ public class AuthenticationService extends RequestService {
 		AuthenticateRequestMessageLdap authenticateRequestMessageLdap = new AuthenticateRequestMessageLdap(getDnForAuthenticateRequestMessage(authenticateRequestMessageId),
 				authenticateRequestMessageId, now, sessionState, userInum, requestMessage);
 
-		ldapEntryManager.persist(authenticateRequestMessageLdap);
+		storeRequestMessage(authenticateRequestMessageLdap);
 	}
 
 	public AuthenticateRequestMessage getAuthenticationRequestMessage(String oxId) {
@@ -206,17 +204,11 @@ public class AuthenticationService extends RequestService {
 		return authenticateRequestMessageLdap.getAuthenticateRequestMessage();
 	}
 
-	public AuthenticateRequestMessageLdap getAuthenticationRequestMessageByRequestId(String requestId) {
-		String baseDn = getDnForAuthenticateRequestMessage(null);
-		Filter requestIdFilter = Filter.createEqualityFilter("oxRequestId", requestId);
-
-		List<AuthenticateRequestMessageLdap> authenticateRequestMessagesLdap = ldapEntryManager.findEntries(baseDn, AuthenticateRequestMessageLdap.class,
-				requestIdFilter);
-		if ((authenticateRequestMessagesLdap == null) || authenticateRequestMessagesLdap.isEmpty()) {
-			return null;
-		}
-
-		return authenticateRequestMessagesLdap.get(0);
+	/**
+	 * Returns authentication request and removes it from storage
+	 */
+	public AuthenticateRequestMessageLdap takeAuthenticationRequestMessageByRequestId(String requestId) {
+		return takeRequestMessage(AuthenticateRequestMessageLdap.class, getDnForAuthenticateRequestMessage(null), requestId);
 	}
 
 	public void removeAuthenticationRequestMessage(AuthenticateRequestMessageLdap authenticateRequestMessageLdap) {
@@ -0,0 +1,106 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.fido.u2f;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.fido.u2f.RequestMessageLdap;
+import org.xdi.service.CacheService;
+import org.xdi.util.StringHelper;
+
+/**
+ * Keeps U2F request messages in cache with request expiration instead of LDAP
+ * <p/>
+ * Cache has no atomic remove which tells if entry was removed, so callers claim request id before they read
+ * and remove entry. Only the caller which got the claim can get request.
+ */
+@Stateless
+@Named("u2fCacheRequestMessageStorage")
+public class CacheRequestMessageStorage implements RequestMessageStorage {
+
+	private static final int DEFAULT_EXPIRATION = 90; // 90 seconds
+
+	// Shared by pooled instances, claim is kept only while entry is read and removed
+	private static final ConcurrentMap<String, Object> claims = new ConcurrentHashMap<String, Object>();
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private CacheService cacheService;
+
+	@Inject
+	private AppConfiguration appConfiguration;
+
+	@Inject
+	private LdapRequestMessageStorage ldapRequestMessageStorage;
+
+	public CacheRequestMessageStorage() {
+	}
+
+	CacheRequestMessageStorage(Logger log, CacheService cacheService, AppConfiguration appConfiguration,
+			LdapRequestMessageStorage ldapRequestMessageStorage) {
+		this.log = log;
+		this.cacheService = cacheService;
+		this.appConfiguration = appConfiguration;
+		this.ldapRequestMessageStorage = ldapRequestMessageStorage;
+	}
+
+	@Override
+	public void persist(RequestMessageLdap requestMessage) {
+		int expiration = appConfiguration.getU2fRequestExpiration();
+		if (expiration <= 0) {
+			expiration = DEFAULT_EXPIRATION;
+		}
+
+		// first parameter is expiration instead of region for memcached
+		cacheService.put(Integer.toString(expiration), getCacheKey(requestMessage.getClass(), requestMessage.getRequestId()), requestMessage);
+	}
+
+	@Override
+	public <T extends RequestMessageLdap> T take(Class<T> entryClass, String baseDn, String requestId) {
+		if (StringHelper.isEmpty(requestId)) {
+			return null;
+		}
+
+		final String key = getCacheKey(entryClass, requestId);
+		final Object claim = new Object();
+		if (claims.putIfAbsent(key, claim) != null) {
+			// Other caller is taking the same request
+			return null;
+		}
+
+		try {
+			final Object cached = cacheService.get(null, key);
+			if (cached != null) {
+				cacheService.remove(null, key);
+				if (entryClass.isInstance(cached)) {
+					return entryClass.cast(cached);
+				}
+			}
+		} catch (Exception e) {
+			log.error("Failed to get U2F request from cache, requestId: " + requestId, e);
+		} finally {
+			claims.remove(key, claim);
+		}
+
+		// Request could be stored in LDAP before requests were moved to cache
+		return ldapRequestMessageStorage.take(entryClass, baseDn, requestId);
+	}
+
+	private static String getCacheKey(Class<?> entryClass, String requestId) {
+		return "u2f_" + entryClass.getSimpleName() + "_" + requestId;
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.fido.u2f;
+
+import java.security.PublicKey;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.util.Base64Util;
+import org.xdi.util.StringHelper;
+
+/**
+ * Local caches used by U2F device lookups: keyHandle to device DN index, decoded device public keys and
+ * U2F user branches which are known to exist
+ * <p/>
+ * Users are removed outside of oxAuth, so index and branch entries expire after u2fDeviceCacheLifetime and
+ * entries of a user are evicted when LDAP reports that they are gone.
+ */
+@ApplicationScoped
+@Named
+public class DeviceRegistrationCache {
+
+	private static final int MAX_SIZE = 10000;
+
+	@Inject
+	private AppConfiguration appConfiguration;
+
+	private final ConcurrentMap<String, CacheEntry> deviceDnByKeyHandle = new ConcurrentHashMap<String, CacheEntry>();
+
+	private final ConcurrentMap<String, PublicKey> publicKeys = new ConcurrentHashMap<String, PublicKey>();
+
+	private final ConcurrentMap<String, CacheEntry> knownBranches = new ConcurrentHashMap<String, CacheEntry>();
+
+	public DeviceRegistrationCache() {
+	}
+
+	DeviceRegistrationCache(AppConfiguration appConfiguration) {
+		this.appConfiguration = appConfiguration;
+	}
+
+	public String getDeviceDn(String appId, String keyHandle) {
+		return get(deviceDnByKeyHandle, getKeyHandleKey(appId, keyHandle));
+	}
+
+	public void putDeviceDn(String appId, String keyHandle, String deviceDn) {
+		if (StringHelper.isNotEmpty(deviceDn)) {
+			put(deviceDnByKeyHandle, getKeyHandleKey(appId, keyHandle), deviceDn);
+		}
+	}
+
+	public void removeDeviceDn(String appId, String keyHandle) {
+		deviceDnByKeyHandle.remove(getKeyHandleKey(appId, keyHandle));
+	}
+
+	/**
+	 * Decoded key depends only on encoded bytes, so entries don't need expiration
+	 */
+	public PublicKey getPublicKey(byte[] encodedPublicKey) {
+		return publicKeys.get(Base64Util.base64urlencode(encodedPublicKey));
+	}
+
+	public void putPublicKey(byte[] encodedPublicKey, PublicKey publicKey) {
+		if (publicKeys.size() >= MAX_SIZE) {
+			publicKeys.clear();
+		}
+
+		publicKeys.put(Base64Util.base64urlencode(encodedPublicKey), publicKey);
+	}
+
+	public boolean isKnownBranch(String branchDn) {
+		return get(knownBranches, StringHelper.toLowerCase(branchDn)) != null;
+	}
+
+	public void addKnownBranch(String branchDn) {
+		put(knownBranches, StringHelper.toLowerCase(branchDn), branchDn);
+	}
+
+	/**
+	 * Removes known branch and indexed devices of the user
+	 */
+	public void removeUser(String userDn) {
+		if (StringHelper.isEmpty(userDn)) {
+			return;
+		}
+
+		final String suffix = "," + StringHelper.toLowerCase(userDn);
+		removeBySuffix(knownBranches, suffix);
+		removeBySuffix(deviceDnByKeyHandle, suffix);
+	}
+
+	public void clear() {
+		deviceDnByKeyHandle.clear();
+		publicKeys.clear();
+		knownBranches.clear();
+	}
+
+	private String get(ConcurrentMap<String, CacheEntry> cache, String key) {
+		CacheEntry entry = cache.get(key);
+		if (entry == null) {
+			return null;
+		}
+
+		if (entry.isExpired(System.currentTimeMillis())) {
+			cache.remove(key, entry);
+			return null;
+		}
+
+		return entry.dn;
+	}
+
+	private void put(ConcurrentMap<String, CacheEntry> cache, String key, String dn) {
+		final int lifetime = appConfiguration.getU2fDeviceCacheLifetime();
+		if (lifetime <= 0) {
+			return;
+		}
+
+		final long now = System.currentTimeMillis();
+		if (cache.size() >= MAX_SIZE) {
+			for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext(); ) {
+				if (it.next().isExpired(now)) {
+					it.remove();
+				}
+			}
+
+			if (cache.size() >= MAX_SIZE) {
+				return;
+			}
+		}
+
+		cache.put(key, new CacheEntry(dn, now + lifetime * 1000L));
+	}
+
+	private static void removeBySuffix(ConcurrentMap<String, CacheEntry> cache, String suffix) {
+		for (Iterator<Map.Entry<String, CacheEntry>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+			if (StringHelper.toLowerCase(it.next().getValue().dn).endsWith(suffix)) {
+				it.remove();
+			}
+		}
+	}
+
+	private static String getKeyHandleKey(String appId, String keyHandle) {
+		return appId + "|" + keyHandle;
+	}
+
+	private static class CacheEntry {
+		private final String dn;
+		private final long expiresAt;
+
+		CacheEntry(String dn, long expiresAt) {
+			this.dn = dn;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
+	}
+
+}
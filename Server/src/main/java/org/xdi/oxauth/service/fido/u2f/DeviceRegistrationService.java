@@ -7,6 +7,7 @@
 package org.xdi.oxauth.service.fido.u2f;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -16,6 +17,7 @@ import javax.inject.Named;
 
 import org.gluu.site.ldap.persistence.BatchOperation;
 import org.gluu.site.ldap.persistence.LdapEntryManager;
+import org.gluu.site.ldap.persistence.exception.EntryPersistenceException;
 import org.slf4j.Logger;
 import org.xdi.ldap.model.SearchScope;
 import org.xdi.ldap.model.SimpleBranch;
@@ -50,6 +52,18 @@ public class DeviceRegistrationService {
 	@Inject
 	private StaticConfiguration staticConfiguration;
 
+	@Inject
+	private DeviceRegistrationCache deviceRegistrationCache;
+
+	public DeviceRegistrationService() {
+	}
+
+	DeviceRegistrationService(Logger log, UserService userService, DeviceRegistrationCache deviceRegistrationCache) {
+		this.log = log;
+		this.userService = userService;
+		this.deviceRegistrationCache = deviceRegistrationCache;
+	}
+
 	public void addBranch(final String userInum) {
 		SimpleBranch branch = new SimpleBranch();
 		branch.setOrganizationalUnitName("fido");
@@ -63,10 +77,16 @@ public class DeviceRegistrationService {
 	}
 
 	public void prepareBranch(final String userInum) {
+		final String branchDn = getBaseDnForU2fUserDevices(userInum);
+		if (deviceRegistrationCache.isKnownBranch(branchDn)) {
+			return;
+		}
+
 		// Create U2F user device registrations branch if needed
 		if (!containsBranch(userInum)) {
 			addBranch(userInum);
 		}
+		deviceRegistrationCache.addKnownBranch(branchDn);
 	}
 
 	public DeviceRegistration findUserDeviceRegistration(String userInum, String deviceId, String... returnAttributes) {
@@ -91,6 +111,38 @@ public class DeviceRegistrationService {
 			return new ArrayList<DeviceRegistration>(0);
 		}
 
+		// Device found recently is loaded by DN instead of subtree search. Cached DN may point to entry which was
+		// removed or replaced in the meantime, so loaded entry should still match appId and keyHandle
+		final String deviceDn = deviceRegistrationCache.getDeviceDn(appId, keyHandle);
+		if (deviceDn != null) {
+			try {
+				DeviceRegistration deviceRegistration = findDeviceRegistration(deviceDn, withKeyAttributes(returnAttributes));
+				if ((deviceRegistration != null) && appId.equals(deviceRegistration.getApplication())
+						&& keyHandle.equals(deviceRegistration.getKeyHandle())) {
+					List<DeviceRegistration> result = new ArrayList<DeviceRegistration>(1);
+					result.add(deviceRegistration);
+					return result;
+				}
+				log.debug("Device '{}' doesn't match keyHandle anymore", deviceDn);
+			} catch (EntryPersistenceException ex) {
+				log.debug("Device '{}' is not in LDAP anymore", deviceDn);
+			}
+			deviceRegistrationCache.removeDeviceDn(appId, keyHandle);
+		}
+
+		List<DeviceRegistration> deviceRegistrations = searchDeviceRegistrationsByKeyHandle(appId, keyHandle, returnAttributes);
+		if (deviceRegistrations.size() == 1) {
+			deviceRegistrationCache.putDeviceDn(appId, keyHandle, deviceRegistrations.get(0).getDn());
+		}
+
+		return deviceRegistrations;
+	}
+
+	DeviceRegistration findDeviceRegistration(String deviceDn, String... returnAttributes) {
+		return ldapEntryManager.find(DeviceRegistration.class, deviceDn, returnAttributes);
+	}
+
+	List<DeviceRegistration> searchDeviceRegistrationsByKeyHandle(String appId, String keyHandle, String... returnAttributes) {
 		byte[] keyHandleDecoded = Base64Util.base64urldecode(keyHandle);
 
 		String baseDn = userService.getDnForUser(null);
@@ -105,6 +157,24 @@ public class DeviceRegistrationService {
 		return ldapEntryManager.findEntries(baseDn, DeviceRegistration.class, returnAttributes, filter);
 	}
 
+	/*
+	 * Empty list means all attributes. Otherwise add attributes needed to check loaded device
+	 */
+	private static String[] withKeyAttributes(String... returnAttributes) {
+		if ((returnAttributes == null) || (returnAttributes.length == 0)) {
+			return returnAttributes;
+		}
+
+		List<String> attributes = new ArrayList<String>(Arrays.asList(returnAttributes));
+		for (String attribute : new String[] { "oxApplication", "oxDeviceKeyHandle" }) {
+			if (!attributes.contains(attribute)) {
+				attributes.add(attribute);
+			}
+		}
+
+		return attributes.toArray(new String[attributes.size()]);
+	}
+
 	public DeviceRegistration findOneStepUserDeviceRegistration(String deviceId, String... returnAttributes) {
 		String deviceDn = getDnForOneStepU2fDevice(deviceId);
 
@@ -114,7 +184,16 @@ public class DeviceRegistrationService {
 	public void addUserDeviceRegistration(String userInum, DeviceRegistration deviceRegistration) {
 		prepareBranch(userInum);
 
-		ldapEntryManager.persist(deviceRegistration);
+		try {
+			ldapEntryManager.persist(deviceRegistration);
+		} catch (EntryPersistenceException ex) {
+			// Cached branch may belong to user which was removed and added again
+			log.debug("Failed to persist device '{}', checking user branch again", deviceRegistration.getDn());
+			deviceRegistrationCache.removeUser(userService.getDnForUser(userInum));
+			prepareBranch(userInum);
+
+			ldapEntryManager.persist(deviceRegistration);
+		}
 	}
 
 	public boolean attachUserDeviceRegistration(String userInum, String oneStepDeviceId) {
@@ -150,11 +229,13 @@ public class DeviceRegistrationService {
 
 	public void disableUserDeviceRegistration(DeviceRegistration deviceRegistration) {
 		deviceRegistration.setStatus(DeviceRegistrationStatus.COMPROMISED);
+		deviceRegistrationCache.removeDeviceDn(deviceRegistration.getApplication(), deviceRegistration.getKeyHandle());
 
 		ldapEntryManager.merge(deviceRegistration);
 	}
 
 	public void removeUserDeviceRegistration(DeviceRegistration deviceRegistration) {
+		deviceRegistrationCache.removeDeviceDn(deviceRegistration.getApplication(), deviceRegistration.getKeyHandle());
 		ldapEntryManager.remove(deviceRegistration);
 	}
 
@@ -0,0 +1,79 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.fido.u2f;
+
+import java.util.List;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.gluu.site.ldap.persistence.LdapEntryManager;
+import org.gluu.site.ldap.persistence.exception.EntryPersistenceException;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.fido.u2f.RequestMessageLdap;
+
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Keeps U2F request messages in LDAP. Expired entries are removed by CleanerTimer
+ */
+@Stateless
+@Named("u2fLdapRequestMessageStorage")
+public class LdapRequestMessageStorage implements RequestMessageStorage {
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private LdapEntryManager ldapEntryManager;
+
+	public LdapRequestMessageStorage() {
+	}
+
+	LdapRequestMessageStorage(Logger log) {
+		this.log = log;
+	}
+
+	@Override
+	public void persist(RequestMessageLdap requestMessage) {
+		ldapEntryManager.persist(requestMessage);
+	}
+
+	/**
+	 * Concurrent requests may find the same entry, but LDAP deletes it only once. Only the caller whose
+	 * delete succeeded gets the request message.
+	 */
+	@Override
+	public <T extends RequestMessageLdap> T take(Class<T> entryClass, String baseDn, String requestId) {
+		Filter requestIdFilter = Filter.createEqualityFilter("oxRequestId", requestId);
+
+		List<T> requestMessagesLdap = find(entryClass, baseDn, requestIdFilter);
+		if ((requestMessagesLdap == null) || requestMessagesLdap.isEmpty()) {
+			return null;
+		}
+
+		T requestMessageLdap = requestMessagesLdap.get(0);
+		try {
+			remove(requestMessageLdap);
+		} catch (EntryPersistenceException ex) {
+			log.debug("U2F request '{}' is already used", requestId);
+			return null;
+		}
+
+		return requestMessageLdap;
+	}
+
+	<T extends RequestMessageLdap> List<T> find(Class<T> entryClass, String baseDn, Filter filter) {
+		return ldapEntryManager.findEntries(baseDn, entryClass, filter);
+	}
+
+	void remove(RequestMessageLdap requestMessage) {
+		ldapEntryManager.remove(requestMessage);
+	}
+
+}
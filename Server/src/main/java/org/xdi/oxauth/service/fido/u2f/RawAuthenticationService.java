@@ -7,6 +7,7 @@
 package org.xdi.oxauth.service.fido.u2f;
 
 import java.io.IOException;
+import java.security.PublicKey;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -44,6 +45,9 @@ public class RawAuthenticationService {
 	@Inject @Named(value = "sha256withECDSASignatureVerification")
 	private SHA256withECDSASignatureVerification signatureVerification;
 
+	@Inject
+	private DeviceRegistrationCache deviceRegistrationCache;
+
 	public RawAuthenticateResponse parseRawAuthenticateResponse(String rawDataBase64) {
 		ByteDataInputStream bis = new ByteDataInputStream(Base64Util.base64urldecode(rawDataBase64));
 		try {
@@ -61,12 +65,22 @@ public class RawAuthenticationService {
 		byte[] signedBytes = packBytesToSign(signatureVerification.hash(appId), rawAuthenticateResponse.getUserPresence(),
 				rawAuthenticateResponse.getCounter(), signatureVerification.hash(rawClientData));
 		try {
-			signatureVerification.checkSignature(signatureVerification.decodePublicKey(publicKey), signedBytes, rawAuthenticateResponse.getSignature());
+			signatureVerification.checkSignature(getPublicKey(publicKey), signedBytes, rawAuthenticateResponse.getSignature());
 		} catch (SignatureException ex) {
 			throw new BadInputException("Failed to checkSignature", ex);
 		}
 	}
 
+	private PublicKey getPublicKey(byte[] encodedPublicKey) throws SignatureException {
+		PublicKey publicKey = deviceRegistrationCache.getPublicKey(encodedPublicKey);
+		if (publicKey == null) {
+			publicKey = signatureVerification.decodePublicKey(encodedPublicKey);
+			deviceRegistrationCache.putPublicKey(encodedPublicKey, publicKey);
+		}
+
+		return publicKey;
+	}
+
 	private byte[] packBytesToSign(byte[] appIdHash, byte userPresence, long counter, byte[] challengeHash) {
 		ByteArrayDataOutput encoded = ByteStreams.newDataOutput();
 		encoded.write(appIdHash);
@@ -41,8 +41,6 @@ import org.xdi.oxauth.service.UserService;
 import org.xdi.oxauth.util.ServerUtil;
 import org.xdi.util.StringHelper;
 
-import com.unboundid.ldap.sdk.Filter;
-
 /**
  * Provides operations with U2F registration requests
  *
@@ -151,7 +149,7 @@ public class RegistrationService extends RequestService {
 		if (StringHelper.isNotEmpty(responseDeviceData)) {
 			try {
 				String responseDeviceDataDecoded = new String(Base64Util.base64urldecode(responseDeviceData));
-				DeviceData deviceData = ServerUtil.jsonMapperWithWrapRoot().readValue(responseDeviceDataDecoded, DeviceData.class);
+				DeviceData deviceData = ServerUtil.jsonReaderWithWrapRoot(DeviceData.class).readValue(responseDeviceDataDecoded);
 				deviceRegistration.setDeviceData(deviceData);
 			} catch (Exception ex) {
 				throw new BadInputException(String.format("Device data is invalid: %s", responseDeviceData), ex);
@@ -191,7 +189,7 @@ public class RegistrationService extends RequestService {
 		RequestMessageLdap registerRequestMessageLdap = new RegisterRequestMessageLdap(getDnForRegisterRequestMessage(registerRequestMessageId),
 				registerRequestMessageId, now, sessionState, userInum, requestMessage);
 
-		ldapEntryManager.persist(registerRequestMessageLdap);
+		storeRequestMessage(registerRequestMessageLdap);
 	}
 
 	public RegisterRequestMessage getRegisterRequestMessage(String oxId) {
@@ -205,17 +203,11 @@ public class RegistrationService extends RequestService {
 		return registerRequestMessageLdap.getRegisterRequestMessage();
 	}
 
-	public RegisterRequestMessageLdap getRegisterRequestMessageByRequestId(String requestId) {
-		String baseDn = getDnForRegisterRequestMessage(null);
-		Filter requestIdFilter = Filter.createEqualityFilter("oxRequestId", requestId);
-
-		List<RegisterRequestMessageLdap> registerRequestMessagesLdap = ldapEntryManager.findEntries(baseDn, RegisterRequestMessageLdap.class,
-				requestIdFilter);
-		if ((registerRequestMessagesLdap == null) || registerRequestMessagesLdap.isEmpty()) {
-			return null;
-		}
-
-		return registerRequestMessagesLdap.get(0);
+	/**
+	 * Returns register request and removes it from storage
+	 */
+	public RegisterRequestMessageLdap takeRegisterRequestMessageByRequestId(String requestId) {
+		return takeRequestMessage(RegisterRequestMessageLdap.class, getDnForRegisterRequestMessage(null), requestId);
 	}
 
 	public void removeRegisterRequestMessage(RequestMessageLdap registerRequestMessageLdap) {
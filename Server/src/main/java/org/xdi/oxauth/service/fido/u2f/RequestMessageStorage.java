@@ -0,0 +1,25 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.fido.u2f;
+
+import org.xdi.oxauth.model.fido.u2f.RequestMessageLdap;
+
+/**
+ * Storage of short living U2F request messages
+ */
+public interface RequestMessageStorage {
+
+	void persist(RequestMessageLdap requestMessage);
+
+	/**
+	 * Returns request message and removes it from storage, so it can be used only once
+	 *
+	 * @return request message or null if there is no such request or it's expired
+	 */
+	<T extends RequestMessageLdap> T take(Class<T> entryClass, String baseDn, String requestId);
+
+}
@@ -18,13 +18,15 @@ import org.gluu.site.ldap.persistence.LdapEntryManager;
 import org.slf4j.Logger;
 import org.xdi.ldap.model.SearchScope;
 import org.xdi.oxauth.model.config.StaticConfiguration;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
 import org.xdi.oxauth.model.fido.u2f.RequestMessageLdap;
 import org.xdi.oxauth.service.CleanerTimer;
 
 import com.unboundid.ldap.sdk.Filter;
 
 /**
- * Provides generic operations with U2F requests
+ * Provides generic operations with U2F requests. Requests are kept in LDAP or in cache
+ * according to u2fRequestsInCache configuration
  *
  * @author Yuriy Movchan Date: 05/19/2015
  */
@@ -41,6 +43,31 @@ public class RequestService {
 	@Inject
 	private StaticConfiguration staticConfiguration;
 
+	@Inject
+	private AppConfiguration appConfiguration;
+
+	@Inject
+	private LdapRequestMessageStorage ldapRequestMessageStorage;
+
+	@Inject
+	private CacheRequestMessageStorage cacheRequestMessageStorage;
+
+	public RequestMessageStorage getRequestMessageStorage() {
+		if (Boolean.TRUE.equals(appConfiguration.getU2fRequestsInCache())) {
+			return cacheRequestMessageStorage;
+		}
+
+		return ldapRequestMessageStorage;
+	}
+
+	public void storeRequestMessage(RequestMessageLdap requestMessageLdap) {
+		getRequestMessageStorage().persist(requestMessageLdap);
+	}
+
+	public <T extends RequestMessageLdap> T takeRequestMessage(Class<T> entryClass, String baseDn, String requestId) {
+		return getRequestMessageStorage().take(entryClass, baseDn, requestId);
+	}
+
 	public List<RequestMessageLdap> getExpiredRequestMessages(BatchOperation<RequestMessageLdap> batchOperation, Date expirationDate) {
 		final String u2fBaseDn = staticConfiguration.getBaseDn().getU2fBase(); // ou=u2f,o=@!1111,o=gluu
 		Filter expirationFilter = Filter.createLessOrEqualFilter("creationDate", ldapEntryManager.encodeGeneralizedTime(expirationDate));
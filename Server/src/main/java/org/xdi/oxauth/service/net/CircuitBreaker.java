@@ -0,0 +1,65 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.net;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker of single remote host
+ * <p/>
+ * Circuit opens after number of consecutive failures. While it's open requests fail immediately. After open
+ * interval one probe request is allowed, its success closes circuit and failure keeps it open for next interval.
+ */
+public class CircuitBreaker {
+
+	private final int failureThreshold;
+	private final long openInterval;
+
+	private final AtomicInteger failures = new AtomicInteger();
+	private final AtomicBoolean probing = new AtomicBoolean();
+	private volatile long openedAt;
+
+	/**
+	 * @param failureThreshold number of consecutive failures which opens circuit, 0 disables circuit breaker
+	 * @param openInterval time in milliseconds during which requests are rejected
+	 */
+	public CircuitBreaker(int failureThreshold, long openInterval) {
+		this.failureThreshold = failureThreshold;
+		this.openInterval = openInterval;
+	}
+
+	public boolean allowRequest() {
+		if (!isOpen()) {
+			return true;
+		}
+
+		if (System.currentTimeMillis() - openedAt < openInterval) {
+			return false;
+		}
+
+		// Only one request probes host, others keep failing fast
+		return probing.compareAndSet(false, true);
+	}
+
+	public void onSuccess() {
+		failures.set(0);
+		probing.set(false);
+	}
+
+	public void onFailure() {
+		if (failures.incrementAndGet() >= failureThreshold) {
+			openedAt = System.currentTimeMillis();
+		}
+		probing.set(false);
+	}
+
+	public boolean isOpen() {
+		return (failureThreshold > 0) && (failures.get() >= failureThreshold);
+	}
+
+}
@@ -0,0 +1,22 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.net;
+
+import java.io.IOException;
+
+/**
+ * Request was rejected without sending because circuit breaker of host is open
+ */
+public class CircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = -6047226312853245911L;
+
+	public CircuitOpenException(String host) {
+		super("Circuit breaker is open for host '" + host + "'");
+	}
+
+}
@@ -0,0 +1,307 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP client shared by all outbound calls of server
+ * <p/>
+ * Connections are pooled and kept alive per route. All connections use one SSL context, so TLS sessions
+ * are resumed when new connection to the same host is opened. Every request is bounded by connect, read
+ * and total deadlines. Response body is limited by {@link #MAX_RESPONSE_SIZE}. Hosts which keep failing are
+ * isolated by per-host circuit breakers.
+ */
+public class OutboundHttpClient {
+
+	private static final Logger log = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+	private static final long IDLE_CONNECTION_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+	private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+	private static final int MAX_CIRCUIT_BREAKERS = 1000;
+
+	public static final int MAX_RESPONSE_SIZE = 1024 * 1024; // 1 MB
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final long requestTimeout;
+	private final int failureThreshold;
+	private final long openInterval;
+
+	private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private final ScheduledExecutorService deadlineScheduler;
+
+	/**
+	 * @param connectTimeout connect timeout in milliseconds
+	 * @param readTimeout socket read timeout in milliseconds
+	 * @param requestTimeout total time in milliseconds of request including waiting for pooled connection
+	 * @param failureThreshold consecutive failures which open circuit of host, 0 disables circuit breakers
+	 * @param openInterval time in milliseconds during which circuit stays open
+	 */
+	public OutboundHttpClient(int maxConnections, int maxConnectionsPerRoute, int connectTimeout, int readTimeout,
+			int requestTimeout, int failureThreshold, long openInterval) {
+		this.requestTimeout = requestTimeout;
+		this.failureThreshold = failureThreshold;
+		this.openInterval = openInterval;
+
+		Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(SSLContexts.createSystemDefault()))
+				.build();
+
+		this.connectionManager = new PoolingHttpClientConnectionManager(registry);
+		this.connectionManager.setMaxTotal(maxConnections);
+		this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		this.connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(readTimeout)
+				.setConnectionRequestTimeout(requestTimeout)
+				.build();
+
+		this.httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.disableCookieManagement()
+				.evictExpiredConnections()
+				.evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS)
+				.build();
+
+		this.deadlineScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "outbound-http-deadline");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public Response get(String uri) throws IOException {
+		return get(uri, null);
+	}
+
+	public Response get(String uri, Map<String, String> headers) throws IOException {
+		HttpGet httpGet = new HttpGet(uri);
+		if (headers != null) {
+			for (Entry<String, String> header : headers.entrySet()) {
+				httpGet.setHeader(header.getKey(), header.getValue());
+			}
+		}
+
+		return execute(httpGet);
+	}
+
+	/**
+	 * Executes request and reads whole response. Connection is returned to pool before method returns.
+	 *
+	 * @throws CircuitOpenException if circuit breaker of host is open
+	 */
+	public Response execute(final HttpRequestBase request) throws IOException {
+		final URI uri = request.getURI();
+		final String host = getHostKey(uri);
+		final CircuitBreaker circuitBreaker = getCircuitBreaker(host);
+		if (!circuitBreaker.allowRequest()) {
+			throw new CircuitOpenException(host);
+		}
+
+		ScheduledFuture<?> deadline = null;
+		if (requestTimeout > 0) {
+			deadline = deadlineScheduler.schedule(new Runnable() {
+				public void run() {
+					log.debug("Request to '{}' exceeded deadline of {} ms and is aborted", uri, requestTimeout);
+					request.abort();
+				}
+			}, requestTimeout, TimeUnit.MILLISECONDS);
+		}
+
+		boolean success = false;
+		try {
+			HttpResponse httpResponse = httpClient.execute(request);
+
+			HttpEntity entity = httpResponse.getEntity();
+			String body = entity == null ? null : readBody(entity);
+
+			int status = httpResponse.getStatusLine().getStatusCode();
+			success = status < 500;
+
+			return new Response(status, body, httpResponse.getAllHeaders());
+		} finally {
+			// Outcome is recorded on any exit, so probe of open circuit can't stay in progress forever
+			if (success) {
+				circuitBreaker.onSuccess();
+			} else {
+				circuitBreaker.onFailure();
+			}
+
+			if (deadline != null) {
+				deadline.cancel(false);
+			}
+			request.releaseConnection();
+		}
+	}
+
+	/**
+	 * @return true if circuit breaker of host of given uri is open
+	 */
+	public boolean isCircuitOpen(String uri) {
+		CircuitBreaker circuitBreaker = circuitBreakers.get(getHostKey(URI.create(uri)));
+
+		return (circuitBreaker != null) && circuitBreaker.isOpen();
+	}
+
+	public void close() {
+		deadlineScheduler.shutdownNow();
+		try {
+			httpClient.close();
+		} catch (IOException ex) {
+			log.error("Failed to close outbound HTTP client", ex);
+		}
+	}
+
+	private CircuitBreaker getCircuitBreaker(String host) {
+		CircuitBreaker circuitBreaker = circuitBreakers.get(host);
+		if (circuitBreaker == null) {
+			CircuitBreaker newCircuitBreaker = new CircuitBreaker(failureThreshold, openInterval);
+			if (circuitBreakers.size() >= MAX_CIRCUIT_BREAKERS) {
+				removeClosedCircuitBreakers();
+				if (circuitBreakers.size() >= MAX_CIRCUIT_BREAKERS) {
+					// Too many failing hosts, request is not tracked
+					return newCircuitBreaker;
+				}
+			}
+
+			circuitBreaker = circuitBreakers.putIfAbsent(host, newCircuitBreaker);
+			if (circuitBreaker == null) {
+				circuitBreaker = newCircuitBreaker;
+			}
+		}
+
+		return circuitBreaker;
+	}
+
+	/**
+	 * Closed circuit breaker keeps only count of recent failures, so it's cheap to forget it
+	 */
+	private void removeClosedCircuitBreakers() {
+		for (Iterator<CircuitBreaker> it = circuitBreakers.values().iterator(); it.hasNext(); ) {
+			if (!it.next().isOpen()) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Reads whole body, fails if it's larger than {@link #MAX_RESPONSE_SIZE}
+	 */
+	private static String readBody(HttpEntity entity) throws IOException {
+		if (entity.getContentLength() > MAX_RESPONSE_SIZE) {
+			throw new IOException("Response size " + entity.getContentLength() + " exceeds limit of " + MAX_RESPONSE_SIZE + " bytes");
+		}
+
+		InputStream input = entity.getContent();
+		if (input == null) {
+			return null;
+		}
+
+		try {
+			ByteArrayOutputStream output = new ByteArrayOutputStream(entity.getContentLength() > 0 ? (int) entity.getContentLength() : 4096);
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				if (output.size() + read > MAX_RESPONSE_SIZE) {
+					throw new IOException("Response size exceeds limit of " + MAX_RESPONSE_SIZE + " bytes");
+				}
+				output.write(buffer, 0, read);
+			}
+
+			ContentType contentType = ContentType.get(entity);
+			Charset charset = (contentType != null) && (contentType.getCharset() != null) ? contentType.getCharset() : Consts.UTF_8;
+
+			return new String(output.toByteArray(), charset);
+		} finally {
+			input.close();
+		}
+	}
+
+	private static String getHostKey(URI uri) {
+		return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+	}
+
+	/**
+	 * Fully read response
+	 */
+	public static class Response {
+
+		private final int status;
+		private final String body;
+		private final Header[] headers;
+
+		public Response(int status, String body, Header[] headers) {
+			this.status = status;
+			this.body = body;
+			this.headers = headers;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		/**
+		 * @return value of first header with given name or null
+		 */
+		public String getFirstHeader(String name) {
+			for (Header header : headers) {
+				if (header.getName().equalsIgnoreCase(name)) {
+					return header.getValue();
+				}
+			}
+
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.net;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.service.net.OutboundHttpClient.Response;
+import org.xdi.util.StringHelper;
+
+/**
+ * Provides shared pooled HTTP client for requests to RP and other remote servers
+ */
+@ApplicationScoped
+@Named
+public class OutboundHttpService {
+
+	@Inject
+	private Logger log;
+
+	@Inject
+	private AppConfiguration appConfiguration;
+
+	private OutboundHttpClient client;
+
+	@PostConstruct
+	public void init() {
+		this.client = new OutboundHttpClient(appConfiguration.getHttpClientMaxConnections(),
+				appConfiguration.getHttpClientMaxConnectionsPerRoute(), appConfiguration.getHttpClientConnectTimeout(),
+				appConfiguration.getHttpClientReadTimeout(), appConfiguration.getHttpClientRequestTimeout(),
+				appConfiguration.getHttpClientCircuitBreakerFailureThreshold(),
+				TimeUnit.SECONDS.toMillis(appConfiguration.getHttpClientCircuitBreakerOpenInterval()));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		client.close();
+	}
+
+	public Response get(String uri) throws IOException {
+		return client.get(uri);
+	}
+
+	public Response get(String uri, Map<String, String> headers) throws IOException {
+		return client.get(uri, headers);
+	}
+
+	public JSONObject getJSONWebKeys(String jwksUri) {
+		log.debug("Retrieving jwks...");
+
+		JSONObject jwks = null;
+		try {
+			if (!StringHelper.isEmpty(jwksUri)) {
+				Response response = client.get(jwksUri);
+
+				int status = response.getStatus();
+				log.debug(String.format("Status: %n%d", status));
+
+				if (status == 200) {
+					jwks = new JSONObject(response.getBody());
+					log.debug(String.format("JWK: %s", jwks));
+				}
+			}
+		} catch (Exception ex) {
+			log.error(ex.getMessage(), ex);
+		}
+
+		return jwks;
+	}
+
+}
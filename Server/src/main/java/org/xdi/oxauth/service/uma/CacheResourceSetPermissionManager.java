@@ -0,0 +1,200 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import java.util.Date;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
+import org.xdi.service.CacheService;
+
+import com.unboundid.ldap.sdk.DN;
+
+/**
+ * Keeps resource set permission tickets in cache with expiration of the ticket instead of LDAP.
+ * <p/>
+ * RPT references permissions by DN, so permission is written to LDAP only when its ticket is redeemed.
+ * Redeemed permissions are removed by the same cleanup as in {@link ResourceSetPermissionManager}.
+ */
+@Stateless
+@Named
+public class CacheResourceSetPermissionManager extends AbstractResourceSetPermissionManager {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private CacheService cacheService;
+
+    @Inject
+    private ResourceSetPermissionManager ldapResourceSetPermissionManager;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    public CacheResourceSetPermissionManager() {
+    }
+
+    CacheResourceSetPermissionManager(Logger log, CacheService cacheService, ResourceSetPermissionManager ldapResourceSetPermissionManager,
+                                      AppConfiguration appConfiguration) {
+        this.log = log;
+        this.cacheService = cacheService;
+        this.ldapResourceSetPermissionManager = ldapResourceSetPermissionManager;
+        this.appConfiguration = appConfiguration;
+    }
+
+    @Override
+    public void addResourceSetPermission(ResourceSetPermission resourceSetPermission, String clientDn) {
+        try {
+            resourceSetPermission.setDn(ResourceSetPermissionManager.getDn(clientDn, resourceSetPermission.getTicket()));
+
+            final String expiration = Integer.toString(getExpiresIn(resourceSetPermission));
+            // first parameter is expiration instead of region for memcached
+            cacheService.put(expiration, getTicketCacheKey(resourceSetPermission.getTicket()), resourceSetPermission);
+            if (StringUtils.isNotBlank(resourceSetPermission.getConfigurationCode())) {
+                cacheService.put(expiration, getConfigurationCodeCacheKey(resourceSetPermission.getConfigurationCode()), resourceSetPermission.getTicket());
+            }
+        } catch (Exception e) {
+            log.error("Failed to put permission in cache, ticket: " + resourceSetPermission.getTicket(), e);
+        }
+    }
+
+    @Override
+    public ResourceSetPermission getResourceSetPermissionByTicket(String ticket) {
+        if (StringUtils.isBlank(ticket)) {
+            return null;
+        }
+
+        final ResourceSetPermission cached = getCached(ticket);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Ticket is already redeemed or was issued before tickets were moved to cache
+        return ldapResourceSetPermissionManager.getResourceSetPermissionByTicket(ticket);
+    }
+
+    @Override
+    public String getResourceSetPermissionTicketByConfigurationCode(String configurationCode, String clientDn) {
+        if (StringUtils.isBlank(configurationCode)) {
+            return null;
+        }
+
+        try {
+            final Object ticket = cacheService.get(null, getConfigurationCodeCacheKey(configurationCode));
+            if (ticket != null) {
+                return ticket.toString();
+            }
+        } catch (Exception e) {
+            log.error("Failed to get ticket from cache, configuration code: " + configurationCode, e);
+        }
+
+        return ldapResourceSetPermissionManager.getResourceSetPermissionTicketByConfigurationCode(configurationCode, clientDn);
+    }
+
+    @Override
+    public void deleteResourceSetPermission(String ticket) {
+        final ResourceSetPermission permission = getCached(ticket);
+        if (permission != null) {
+            remove(permission);
+        } else {
+            ldapResourceSetPermissionManager.deleteResourceSetPermission(ticket);
+        }
+    }
+
+    /**
+     * Ticket is claimed by adding redeemed permission to LDAP under DN of the ticket. LDAP add is atomic, so
+     * when several requests (possibly on different nodes) redeem the same ticket only one of them succeeds.
+     * Ticket is removed from cache only after permission is persisted, so a request which doesn't find ticket
+     * in cache finds redeemed permission in LDAP.
+     */
+    @Override
+    public boolean redeemResourceSetPermission(ResourceSetPermission resourceSetPermission) {
+        final String ticket = resourceSetPermission.getTicket();
+        final ResourceSetPermission cached = getCached(ticket);
+        if (cached == null) {
+            // Not in cache, it's either redeemed already or was issued before tickets were moved to cache
+            final ResourceSetPermission persisted = ldapResourceSetPermissionManager.getResourceSetPermissionByTicket(ticket);
+            return persisted != null && ldapResourceSetPermissionManager.redeemResourceSetPermission(persisted);
+        }
+
+        final String clientDn;
+        try {
+            clientDn = new DN(cached.getDn()).getParent().getParentString();
+        } catch (Exception e) {
+            log.error("Failed to parse permission dn: " + cached.getDn(), e);
+            return false;
+        }
+
+        if (!ldapResourceSetPermissionManager.addRedeemedResourceSetPermission(resourceSetPermission, clientDn)) {
+            return false;
+        }
+
+        remove(cached);
+        return true;
+    }
+
+    @Override
+    public void cleanupResourceSetPermissions(Date now) {
+        // Tickets in cache expire by themselves, only redeemed permissions are in LDAP
+        ldapResourceSetPermissionManager.cleanupResourceSetPermissions(now);
+    }
+
+    private ResourceSetPermission getCached(String ticket) {
+        if (StringUtils.isBlank(ticket)) {
+            return null;
+        }
+
+        try {
+            final Object cached = cacheService.get(null, getTicketCacheKey(ticket));
+            if (cached instanceof ResourceSetPermission) {
+                return (ResourceSetPermission) cached;
+            }
+        } catch (Exception e) {
+            log.error("Failed to get permission from cache, ticket: " + ticket, e);
+        }
+        return null;
+    }
+
+    private void remove(ResourceSetPermission permission) {
+        try {
+            cacheService.remove(null, getTicketCacheKey(permission.getTicket()));
+            if (StringUtils.isNotBlank(permission.getConfigurationCode())) {
+                cacheService.remove(null, getConfigurationCodeCacheKey(permission.getConfigurationCode()));
+            }
+        } catch (Exception e) {
+            log.error("Failed to remove permission from cache, ticket: " + permission.getTicket(), e);
+        }
+    }
+
+    /**
+     * memcached treats zero expiration as never expiring, so permission without expiration date gets
+     * lifetime of a new ticket.
+     */
+    int getExpiresIn(ResourceSetPermission permission) {
+        if (permission.getExpirationDate() == null) {
+            return Math.max(1, appConfiguration.getUmaRequesterPermissionTokenLifetime());
+        }
+        final long expiresIn = (permission.getExpirationDate().getTime() - System.currentTimeMillis()) / 1000L;
+        return (int) Math.max(1, expiresIn);
+    }
+
+    private static String getTicketCacheKey(String ticket) {
+        return "uma_ticket_" + ticket;
+    }
+
+    private static String getConfigurationCodeCacheKey(String configurationCode) {
+        return "uma_configuration_code_" + configurationCode;
+    }
+
+}
@@ -28,5 +28,12 @@ public interface IResourceSetPermissionManager {
 
     public void deleteResourceSetPermission(String resourceSetPermissionTicket);
 
+    /**
+     * Invalidates ticket of the permission so it can't be used again.
+     *
+     * @return false if ticket was already redeemed
+     */
+    public boolean redeemResourceSetPermission(ResourceSetPermission resourceSetPermission);
+
     public void cleanupResourceSetPermissions(Date now);
 }
@@ -0,0 +1,110 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
+import org.xdi.util.StringHelper;
+
+/**
+ * Short living cache of resource set permissions keyed by DN.
+ * <p/>
+ * Lifetime is kept short because permissions may be invalidated or removed by other nodes. Local changes
+ * remove entries explicitly.
+ */
+@ApplicationScoped
+@Named
+public class ResourceSetPermissionCache {
+
+    private static final int MAX_SIZE = 10000;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    public ResourceSetPermissionCache() {
+    }
+
+    ResourceSetPermissionCache(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+    }
+
+    public ResourceSetPermission get(String dn) {
+        if (dn == null) {
+            return null;
+        }
+
+        final String key = StringHelper.toLowerCase(dn);
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            cache.remove(key, entry);
+            return null;
+        }
+
+        return entry.permission;
+    }
+
+    public void put(ResourceSetPermission permission) {
+        final int lifetime = appConfiguration.getUmaRptPermissionCacheLifetime();
+        if (permission == null || permission.getDn() == null || lifetime <= 0) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (cache.size() >= MAX_SIZE) {
+            for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext(); ) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                }
+            }
+
+            if (cache.size() >= MAX_SIZE) {
+                return;
+            }
+        }
+
+        cache.put(StringHelper.toLowerCase(permission.getDn()), new CacheEntry(permission, now + lifetime * 1000L));
+    }
+
+    public void remove(String dn) {
+        if (dn != null) {
+            cache.remove(StringHelper.toLowerCase(dn));
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static class CacheEntry {
+        private final ResourceSetPermission permission;
+        private final long expiresAt;
+
+        CacheEntry(ResourceSetPermission permission, long expiresAt) {
+            this.permission = permission;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+}
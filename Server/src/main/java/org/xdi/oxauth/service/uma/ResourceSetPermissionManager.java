@@ -39,6 +39,8 @@ public class ResourceSetPermissionManager extends AbstractResourceSetPermissionM
 
     private static final String ORGUNIT_OF_RESOURCE_SET_PERMISSION = "uma_resource_set_permission";
 
+    public static final String INVALIDATED_AM_HOST = "invalidated";
+
     @Inject
     private Logger log;
 
@@ -48,6 +50,9 @@ public class ResourceSetPermissionManager extends AbstractResourceSetPermissionM
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private ResourceSetPermissionCache resourceSetPermissionCache;
+
     public static String getDn(String clientDn, String ticket) {
         return String.format("oxTicket=%s,%s", ticket, getBranchDn(clientDn));
     }
@@ -110,12 +115,51 @@ public class ResourceSetPermissionManager extends AbstractResourceSetPermissionM
             final ResourceSetPermission permission = getResourceSetPermissionByTicket(p_ticket);
             if (permission != null) {
                 ldapEntryManager.remove(permission);
+                resourceSetPermissionCache.remove(permission.getDn());
             }
         } catch (Exception e) {
             log.trace(e.getMessage(), e);
         }
     }
 
+    @Override
+    public boolean redeemResourceSetPermission(ResourceSetPermission resourceSetPermission) {
+        if (INVALIDATED_AM_HOST.equalsIgnoreCase(resourceSetPermission.getAmHost())) {
+            return false;
+        }
+
+        try {
+            resourceSetPermission.setAmHost(INVALIDATED_AM_HOST); // invalidate ticket and persist
+            ldapEntryManager.merge(resourceSetPermission);
+            resourceSetPermissionCache.remove(resourceSetPermission.getDn());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to invalidate ticket: " + resourceSetPermission.getTicket() + ". " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Persists permission with already invalidated ticket. Adding entry is atomic, so only one caller can
+     * persist permission under DN of the ticket.
+     *
+     * @return false if entry with the same ticket already exists or persist failed
+     */
+    public boolean addRedeemedResourceSetPermission(ResourceSetPermission resourceSetPermission, String clientDn) {
+        final String amHost = resourceSetPermission.getAmHost();
+        try {
+            addBranchIfNeeded(clientDn);
+            resourceSetPermission.setAmHost(INVALIDATED_AM_HOST);
+            resourceSetPermission.setDn(getDn(clientDn, resourceSetPermission.getTicket()));
+            ldapEntryManager.persist(resourceSetPermission);
+            return true;
+        } catch (Exception e) {
+            resourceSetPermission.setAmHost(amHost);
+            log.error("Failed to persist redeemed permission, ticket: " + resourceSetPermission.getTicket() + ". " + e.getMessage(), e);
+            return false;
+        }
+    }
+
     @Override
     public void cleanupResourceSetPermissions(final Date now) {
         BatchOperation<ResourceSetPermission> resourceSetPermissionBatchService = new BatchOperation<ResourceSetPermission>(ldapEntryManager) {
@@ -129,6 +173,7 @@ public class ResourceSetPermissionManager extends AbstractResourceSetPermissionM
                 for (ResourceSetPermission p : entries) {
                     try {
                         ldapEntryManager.remove(p);
+                        resourceSetPermissionCache.remove(p.getDn());
                     } catch (Exception e) {
                         log.error("Failed to remove entry", e);
                     }
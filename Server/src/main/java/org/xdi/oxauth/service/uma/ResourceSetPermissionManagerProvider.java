@@ -0,0 +1,39 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+
+/**
+ * Selects storage of resource set permission tickets according to umaPermissionTicketsInCache configuration.
+ */
+@Stateless
+@Named
+public class ResourceSetPermissionManagerProvider {
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private ResourceSetPermissionManager ldapResourceSetPermissionManager;
+
+    @Inject
+    private CacheResourceSetPermissionManager cacheResourceSetPermissionManager;
+
+    public IResourceSetPermissionManager getResourceSetPermissionManager() {
+        if (Boolean.TRUE.equals(appConfiguration.getUmaPermissionTicketsInCache())) {
+            return cacheResourceSetPermissionManager;
+        }
+
+        return ldapResourceSetPermissionManager;
+    }
+
+}
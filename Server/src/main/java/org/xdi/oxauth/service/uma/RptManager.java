@@ -8,13 +8,16 @@ package org.xdi.oxauth.service.uma;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.commons.lang.StringUtils;
 import org.gluu.site.ldap.persistence.BatchOperation;
 import org.gluu.site.ldap.persistence.LdapEntryManager;
 import org.slf4j.Logger;
@@ -29,9 +32,13 @@ import org.xdi.oxauth.model.util.Util;
 import org.xdi.oxauth.service.CleanerTimer;
 import org.xdi.oxauth.service.token.TokenService;
 import org.xdi.oxauth.util.ServerUtil;
+import org.xdi.oxauth.util.TokenHashUtil;
+import org.xdi.util.StringHelper;
 
+import com.unboundid.ldap.sdk.DN;
 import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RDN;
 import com.unboundid.util.StaticUtils;
 
 /**
@@ -44,6 +51,7 @@ import com.unboundid.util.StaticUtils;
 public class RptManager extends AbstractRPTManager {
 
     private static final String ORGUNIT_OF_RPT = "uma_requester_permission_token";
+    private static final String RPT_OBJECT_CLASS = "oxAuthUmaRPT";
 
     @Inject
     private Logger log;
@@ -60,10 +68,21 @@ public class RptManager extends AbstractRPTManager {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private ResourceSetPermissionCache resourceSetPermissionCache;
+
+    @Inject
+    private RptStatusCache rptStatusCache;
+
     public RptManager() {
         ldapEntryManager = ServerUtil.getLdapManager();
     }
 
+    RptManager(Logger log, ResourceSetPermissionCache resourceSetPermissionCache) {
+        this.log = log;
+        this.resourceSetPermissionCache = resourceSetPermissionCache;
+    }
+
     public static String getDn(String clientDn, String uniqueIdentifier) {
         return String.format("uniqueIdentifier=%s,%s", uniqueIdentifier, branchDn(clientDn));
     }
@@ -79,7 +98,15 @@ public class RptManager extends AbstractRPTManager {
             String id = UUID.randomUUID().toString();
             p_rpt.setId(id);
             p_rpt.setDn(getDn(p_clientDn, id));
-            ldapEntryManager.persist(p_rpt);
+
+            // Store only hash of the code, caller keeps plain code
+            final String code = p_rpt.getCode();
+            p_rpt.setCode(TokenHashUtil.getHashedToken(code));
+            try {
+                ldapEntryManager.persist(p_rpt);
+            } finally {
+                p_rpt.setCode(code);
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
@@ -88,11 +115,21 @@ public class RptManager extends AbstractRPTManager {
     @Override
     public UmaRPT getRPTByCode(String p_code) {
         try {
-            final Filter filter = Filter.create(String.format("&(oxAuthTokenCode=%s)", p_code));
+            final String hashedCode = TokenHashUtil.getHashedToken(p_code);
+
+            // RPTs issued before codes were hashed are stored with plain code
+            Filter codeFilter = Filter.createEqualityFilter("oxAuthTokenCode", hashedCode);
+            if (!StringUtils.equals(hashedCode, p_code)) {
+                codeFilter = Filter.createORFilter(codeFilter, Filter.createEqualityFilter("oxAuthTokenCode", p_code));
+            }
+
+            final Filter filter = Filter.createANDFilter(Filter.createEqualityFilter("objectClass", RPT_OBJECT_CLASS), codeFilter);
             final String baseDn = staticConfiguration.getBaseDn().getClients();
             final List<UmaRPT> entries = ldapEntryManager.findEntries(baseDn, UmaRPT.class, filter);
             if (entries != null && !entries.isEmpty()) {
-                return entries.get(0);
+                final UmaRPT rpt = entries.get(0);
+                rpt.setCode(p_code);
+                return rpt;
             }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -109,6 +146,8 @@ public class RptManager extends AbstractRPTManager {
             }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
+        } finally {
+            rptStatusCache.remove(rptCode);
         }
     }
 
@@ -125,6 +164,7 @@ public class RptManager extends AbstractRPTManager {
                 for (UmaRPT p : entries) {
                     try {
                         ldapEntryManager.remove(p);
+                        rptStatusCache.remove(p.getCode());
                     } catch (Exception e) {
                         log.error("Failed to remove entry", e);
                     }
@@ -152,10 +192,15 @@ public class RptManager extends AbstractRPTManager {
         permissions.add(p_permission.getDn());
         p_rpt.setPermissions(permissions);
 
+        final String code = p_rpt.getCode();
+        p_rpt.setCode(TokenHashUtil.getHashedToken(code));
         try {
             ldapEntryManager.merge(p_rpt);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
+        } finally {
+            p_rpt.setCode(code);
+            rptStatusCache.remove(code);
         }
     }
 
@@ -165,8 +210,9 @@ public class RptManager extends AbstractRPTManager {
         try {
             if (p_rpt != null && p_rpt.getPermissions() != null) {
                 final List<String> permissionDns = p_rpt.getPermissions();
+                final Map<String, ResourceSetPermission> permissions = loadPermissions(permissionDns);
                 for (String permissionDn : permissionDns) {
-                    final ResourceSetPermission permissionObject = ldapEntryManager.find(ResourceSetPermission.class, permissionDn);
+                    final ResourceSetPermission permissionObject = permissions.get(StringHelper.toLowerCase(permissionDn));
                     if (permissionObject != null) {
                         result.add(permissionObject);
                     }
@@ -178,6 +224,78 @@ public class RptManager extends AbstractRPTManager {
         return result;
     }
 
+    /**
+     * Loads permissions with one search per permission branch instead of one read per permission.
+     *
+     * @return permissions mapped by lower cased DN
+     */
+    private Map<String, ResourceSetPermission> loadPermissions(List<String> permissionDns) {
+        final Map<String, ResourceSetPermission> result = new HashMap<String, ResourceSetPermission>();
+        final Map<String, List<Filter>> filtersByBranch = new HashMap<String, List<Filter>>();
+
+        for (String permissionDn : permissionDns) {
+            final String key = StringHelper.toLowerCase(permissionDn);
+            if (result.containsKey(key)) {
+                continue;
+            }
+
+            final ResourceSetPermission cached = resourceSetPermissionCache.get(permissionDn);
+            if (cached != null) {
+                result.put(key, cached);
+                continue;
+            }
+
+            try {
+                final DN dn = new DN(permissionDn);
+                final RDN rdn = dn.getRDN();
+                final String branchDn = dn.getParentString();
+
+                List<Filter> filters = filtersByBranch.get(branchDn);
+                if (filters == null) {
+                    filters = new ArrayList<Filter>();
+                    filtersByBranch.put(branchDn, filters);
+                }
+                filters.add(Filter.createEqualityFilter(rdn.getAttributeNames()[0], rdn.getAttributeValues()[0]));
+            } catch (LDAPException e) {
+                log.trace("Failed to parse permission dn: {}", permissionDn);
+                putInResult(result, findPermission(permissionDn));
+            }
+        }
+
+        for (Map.Entry<String, List<Filter>> entry : filtersByBranch.entrySet()) {
+            final List<Filter> filters = entry.getValue();
+            final Filter filter = filters.size() == 1 ? filters.get(0) : Filter.createORFilter(filters);
+
+            try {
+                final List<ResourceSetPermission> entries = findPermissions(entry.getKey(), filter);
+                if (entries != null) {
+                    for (ResourceSetPermission permission : entries) {
+                        putInResult(result, permission);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Failed to load permissions from branch: " + entry.getKey(), e);
+            }
+        }
+
+        return result;
+    }
+
+    ResourceSetPermission findPermission(String permissionDn) {
+        return ldapEntryManager.find(ResourceSetPermission.class, permissionDn);
+    }
+
+    List<ResourceSetPermission> findPermissions(String branchDn, Filter filter) {
+        return ldapEntryManager.findEntries(branchDn, ResourceSetPermission.class, filter);
+    }
+
+    private void putInResult(Map<String, ResourceSetPermission> result, ResourceSetPermission permission) {
+        if (permission != null && permission.getDn() != null) {
+            result.put(StringHelper.toLowerCase(permission.getDn()), permission);
+            resourceSetPermissionCache.put(permission);
+        }
+    }
+
     @Override
     public UmaRPT createRPT(String authorization, String amHost, boolean isGat) {
         String aatToken = tokenService.getTokenFromAuthorizationParameter(authorization);
@@ -193,10 +311,8 @@ public class RptManager extends AbstractRPTManager {
     public ResourceSetPermission getPermissionFromRPTByResourceSetId(UmaRPT p_rpt, String p_resourceSetId) {
         try {
             if (p_rpt != null && p_rpt.getPermissions() != null && Util.allNotBlank(p_resourceSetId)) {
-                final List<String> permissionDns = p_rpt.getPermissions();
-                for (String permissionDn : permissionDns) {
-                    final ResourceSetPermission permissionObject = ldapEntryManager.find(ResourceSetPermission.class, permissionDn);
-                    if (permissionObject != null && p_resourceSetId.equals(permissionObject.getResourceSetId())) {
+                for (ResourceSetPermission permissionObject : getRptPermissions(p_rpt)) {
+                    if (p_resourceSetId.equals(permissionObject.getResourceSetId())) {
                         return permissionObject;
                     }
                 }
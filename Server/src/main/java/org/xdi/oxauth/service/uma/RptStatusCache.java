@@ -0,0 +1,149 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang.StringUtils;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.util.TokenHashUtil;
+
+/**
+ * Near-cache of serialized active RPT introspection responses keyed by hashed RPT code.
+ * <p/>
+ * Entry never outlives RPT or any of its permissions. Entries are removed when RPT is deleted, cleaned up
+ * or gets new permission. Entry keeps only serialized response and its expiration time, so a hit doesn't
+ * touch RPT objects shared with other requests.
+ */
+@ApplicationScoped
+@Named
+public class RptStatusCache {
+
+    private static final int MAX_SIZE = 10000;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    public RptStatusCache() {
+    }
+
+    RptStatusCache(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+    }
+
+    public Status get(String rptCode) {
+        if (StringUtils.isBlank(rptCode)) {
+            return null;
+        }
+
+        final String key = TokenHashUtil.getHashedToken(rptCode);
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(currentTimeMillis())) {
+            cache.remove(key, entry);
+            return null;
+        }
+
+        return entry.status;
+    }
+
+    /**
+     * @param entity    serialized active introspection response of validated RPT
+     * @param expiresAt the earliest expiration date of RPT and its permissions
+     */
+    public void put(String rptCode, String entity, Date expiresAt) {
+        final int lifetime = appConfiguration.getUmaRptStatusCacheLifetime();
+        if (StringUtils.isBlank(rptCode) || entity == null || expiresAt == null || lifetime <= 0) {
+            return;
+        }
+
+        final long now = currentTimeMillis();
+        final long entryExpiresAt = Math.min(now + lifetime * 1000L, expiresAt.getTime());
+        if (entryExpiresAt <= now) {
+            return;
+        }
+
+        if (cache.size() >= MAX_SIZE) {
+            for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext(); ) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                }
+            }
+
+            if (cache.size() >= MAX_SIZE) {
+                return;
+            }
+        }
+
+        cache.put(TokenHashUtil.getHashedToken(rptCode), new CacheEntry(new Status(entity, expiresAt), entryExpiresAt));
+    }
+
+    /**
+     * @param rptCode plain or hashed RPT code
+     */
+    public void remove(String rptCode) {
+        if (StringUtils.isNotBlank(rptCode)) {
+            cache.remove(TokenHashUtil.getHashedToken(rptCode));
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    public static class Status {
+        private final String entity;
+        private final Date expiresAt;
+
+        Status(String entity, Date expiresAt) {
+            this.entity = entity;
+            this.expiresAt = new Date(expiresAt.getTime());
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        /**
+         * @return the earliest expiration date of RPT and its permissions
+         */
+        public Date getExpiresAt() {
+            return new Date(expiresAt.getTime());
+        }
+    }
+
+    private static class CacheEntry {
+        private final Status status;
+        private final long expiresAt;
+
+        CacheEntry(Status status, long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+}
@@ -30,7 +30,6 @@ import org.xdi.oxauth.service.InumService;
 import org.xdi.oxauth.uma.ws.rs.UmaConfigurationWS;
 
 import com.unboundid.ldap.sdk.Filter;
-import com.unboundid.ldap.sdk.LDAPException;
 
 /**
  * @author Yuriy Zabrovarnyy
@@ -59,6 +58,9 @@ public class ScopeService {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private UmaScopeCatalogueService umaScopeCatalogueService;
+
     public List<ScopeDescription> getAllScopes() {
         try {
             return ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, Filter.createPresenceFilter("inum"));
@@ -82,19 +84,7 @@ public class ScopeService {
 
     public ScopeDescription getInternalScope(String p_scopeId) {
         try {
-            final Filter filter = Filter.create(String.format("&(oxType=%s)(oxId=%s)", UmaScopeType.INTERNAL.getValue(), p_scopeId));
-            final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, filter);
-            if (entries != null && !entries.isEmpty()) {
-
-                // if more then one scope then it's problem, non-deterministic behavior, id must be unique
-                if (entries.size() > 1) {
-                    log.error("Found more then one internal uma scope by input id: {}" + p_scopeId);
-                    for (ScopeDescription s : entries) {
-                        log.error("Scope, Id: {}, dn: {}", s.getId(), s.getDn());
-                    }
-                }
-                return entries.get(0);
-            }
+            return findInternalById(p_scopeId);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
@@ -133,49 +123,37 @@ public class ScopeService {
     }
 
     private List<String> handleInternalScopes(List<String> p_scopeUrls, List<String> result) {
-    	List<String> notProcessedScopeUrls = new ArrayList<String>(p_scopeUrls);
-        try {
-            final Filter filter = Filter.create(String.format("&(oxType=%s)", InternalExternal.INTERNAL.getValue()));
-            final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, filter);
-            if (entries != null && !entries.isEmpty()) {
-                for (String scopeUrl : p_scopeUrls) {
-                    for (ScopeDescription scopeDescription : entries) {
-                        final String internalScopeUrl = getInternalScopeUrl(scopeDescription);
-                        if (internalScopeUrl.equals(scopeUrl) && !result.contains(internalScopeUrl)) {
-                            result.add(scopeDescription.getDn());
-                            notProcessedScopeUrls.remove(scopeUrl);
-                        }
-                    }
+        List<String> notProcessedScopeUrls = new ArrayList<String>();
+        for (String scopeUrl : p_scopeUrls) {
+            final ScopeDescription internalScope = findInternalByUrl(scopeUrl);
+            if (internalScope != null) {
+                if (!result.contains(internalScope.getDn())) {
+                    result.add(internalScope.getDn());
                 }
+            } else {
+                notProcessedScopeUrls.add(scopeUrl);
             }
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
         }
-        
+
         return notProcessedScopeUrls;
     }
 
-    private void handleExternalScopes(List<String> scopeUrls, List<String> result) throws LDAPException {
+    private void handleExternalScopes(List<String> scopeUrls, List<String> result) {
         for (String scopeUrl : scopeUrls) {
-            final Filter filter = Filter.create(String.format("&(oxUrl=%s)", scopeUrl));
-            final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, filter);
-            if (entries != null && !entries.isEmpty()) {
-                result.add(entries.get(0).getDn());
+            final ScopeDescription scope = findByUrl(scopeUrl);
+            if (scope != null) {
+                result.add(scope.getDn());
             } else { // scope is not in ldap, add it dynamically
 
                 final Boolean addAutomatically = appConfiguration.getUmaAddScopesAutomatically();
 
                 if (addAutomatically != null && addAutomatically) {
-                    final String inum = inumService.generateInum();
-                    final ScopeDescription newScope = new ScopeDescription();
-                    newScope.setInum(inum);
-                    newScope.setUrl(scopeUrl);
-                    newScope.setDisplayName(scopeUrl); // temp solution : need extract info from scope description on resource server
-                    newScope.setId(UmaScopeType.EXTERNAL_AUTO.getValue());  // dummy id : not sure what to put right now as id is required by @NotNull annotation
-                    newScope.setType(InternalExternal.EXTERNAL_AUTO);
-
-                    final boolean persisted = persist(newScope);
-                    if (persisted) {
+                    final ScopeDescription newScope = umaScopeCatalogueService.getOrAdd(scopeUrl, new UmaScopeCatalogueService.ScopeFactory() {
+                        public ScopeDescription create(String url) {
+                            return createExternalAutoScope(url);
+                        }
+                    });
+                    if (newScope != null) {
                         result.add(newScope.getDn());
                     }
                 } else {
@@ -186,28 +164,135 @@ public class ScopeService {
         }
     }
 
+    private ScopeDescription createExternalAutoScope(String scopeUrl) {
+        // Scope could be added by other server after index was loaded
+        final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, Filter.createEqualityFilter("oxUrl", scopeUrl));
+        if (entries != null && !entries.isEmpty()) {
+            return entries.get(0);
+        }
+
+        final String inum = inumService.generateInum();
+        final ScopeDescription newScope = new ScopeDescription();
+        newScope.setInum(inum);
+        newScope.setUrl(scopeUrl);
+        newScope.setDisplayName(scopeUrl); // temp solution : need extract info from scope description on resource server
+        newScope.setId(UmaScopeType.EXTERNAL_AUTO.getValue());  // dummy id : not sure what to put right now as id is required by @NotNull annotation
+        newScope.setType(InternalExternal.EXTERNAL_AUTO);
+
+        final boolean persisted = persist(newScope);
+        return persisted ? newScope : null;
+    }
+
+    /**
+     * Looks up internal scope in index, falls back to LDAP search if URL points to UMA scopes endpoint.
+     */
+    private ScopeDescription findInternalByUrl(String scopeUrl) {
+        final ScopeDescription scope = umaScopeCatalogueService.getInternalByUrl(scopeUrl);
+        if (scope != null) {
+            return scope;
+        }
+
+        final String prefix = getScopeEndpoint() + "/";
+        if (scopeUrl == null || !scopeUrl.startsWith(prefix) || scopeUrl.length() == prefix.length()) {
+            return null;
+        }
+
+        return findInternalById(scopeUrl.substring(prefix.length()));
+    }
+
+    /**
+     * Looks up internal scope in index, falls back to LDAP search because scope could be added by other server
+     * after index was loaded.
+     */
+    private ScopeDescription findInternalById(String p_scopeId) {
+        ScopeDescription scope = umaScopeCatalogueService.getInternalById(p_scopeId);
+        if (scope != null || StringUtils.isBlank(p_scopeId)) {
+            return scope;
+        }
+
+        final Filter filter = Filter.createANDFilter(Filter.createEqualityFilter("oxType", InternalExternal.INTERNAL.getValue()),
+                Filter.createEqualityFilter("oxId", p_scopeId));
+        final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, filter);
+        if (entries == null || entries.isEmpty()) {
+            return null;
+        }
+
+        // if more then one scope then it's problem, non-deterministic behavior, id must be unique
+        if (entries.size() > 1) {
+            log.error("Found more then one internal uma scope by input id: {}", p_scopeId);
+        }
+        scope = entries.get(0);
+        umaScopeCatalogueService.add(scope);
+        return scope;
+    }
+
+    /**
+     * Looks up scope in index, falls back to LDAP search unless URL is known to be missing.
+     */
+    private ScopeDescription findByUrl(String scopeUrl) {
+        ScopeDescription scope = umaScopeCatalogueService.getByUrl(scopeUrl);
+        if (scope != null || umaScopeCatalogueService.isUnknownUrl(scopeUrl)) {
+            return scope;
+        }
+
+        final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, Filter.createEqualityFilter("oxUrl", scopeUrl));
+        if (entries != null && !entries.isEmpty()) {
+            scope = entries.get(0);
+            umaScopeCatalogueService.add(scope);
+            return scope;
+        }
+
+        umaScopeCatalogueService.markUnknownUrl(scopeUrl);
+        return null;
+    }
+
     public List<ScopeDescription> getScopesByUrls(List<String> p_scopeUrls) {
+        final List<ScopeDescription> result = new ArrayList<ScopeDescription>();
         try {
-            final Filter filter = createAnyFilterByUrls(p_scopeUrls);
-            if (filter != null) {
-                final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, filter);
-                if (entries != null) {
-                    return entries;
+            if (p_scopeUrls != null && !p_scopeUrls.isEmpty()) {
+                final List<String> notIndexedUrls = new ArrayList<String>();
+                for (String url : p_scopeUrls) {
+                    final ScopeDescription scope = umaScopeCatalogueService.getByUrl(url);
+                    if (scope != null) {
+                        if (!result.contains(scope)) {
+                            result.add(scope);
+                        }
+                    } else if (!umaScopeCatalogueService.isUnknownUrl(url)) {
+                        notIndexedUrls.add(url);
+                    }
+                }
+
+                final Filter filter = createAnyFilterByUrls(notIndexedUrls);
+                if (filter != null) {
+                    final List<ScopeDescription> entries = ldapEntryManager.findEntries(baseDn(), ScopeDescription.class, filter);
+                    if (entries != null) {
+                        for (ScopeDescription entry : entries) {
+                            umaScopeCatalogueService.add(entry);
+                            notIndexedUrls.remove(entry.getUrl());
+                            result.add(entry);
+                        }
+                    }
+                    for (String url : notIndexedUrls) {
+                        umaScopeCatalogueService.markUnknownUrl(url);
+                    }
                 }
             }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
-        return Collections.emptyList();
+        return result;
     }
 
-    // TODO: Optimize scopes loading. It's possible to loads all scope in one request.
     public List<ScopeDescription> getScopesByDns(List<String> p_scopeDns) {
         final List<ScopeDescription> result = new ArrayList<ScopeDescription>();
         try {
             if (p_scopeDns != null && !p_scopeDns.isEmpty()) {
                 for (String dn : p_scopeDns) {
-                    final ScopeDescription scopeDescription = ldapEntryManager.find(ScopeDescription.class, dn);
+                    ScopeDescription scopeDescription = umaScopeCatalogueService.getByDn(dn);
+                    if (scopeDescription == null) {
+                        scopeDescription = ldapEntryManager.find(ScopeDescription.class, dn);
+                        umaScopeCatalogueService.add(scopeDescription);
+                    }
                     if (scopeDescription != null) {
                         result.add(scopeDescription);
                     }
@@ -268,22 +353,14 @@ public class ScopeService {
     }
 
     private Filter createAnyFilterByUrls(List<String> p_scopeUrls) {
-        try {
-            if (p_scopeUrls != null && !p_scopeUrls.isEmpty()) {
-                final StringBuilder sb = new StringBuilder("(|");
-                for (String url : p_scopeUrls) {
-                    sb.append("(");
-                    sb.append("oxUrl=");
-                    sb.append(url);
-                    sb.append(")");
-                }
-                sb.append(")");
-                final String filterAsString = sb.toString();
-                log.trace("Uma scope urls: " + p_scopeUrls + ", ldapFilter: " + filterAsString);
-                return Filter.create(filterAsString);
+        if (p_scopeUrls != null && !p_scopeUrls.isEmpty()) {
+            final List<Filter> filters = new ArrayList<Filter>(p_scopeUrls.size());
+            for (String url : p_scopeUrls) {
+                filters.add(Filter.createEqualityFilter("oxUrl", url));
             }
-        } catch (LDAPException e) {
-            log.error(e.getMessage(), e);
+            final Filter filter = Filter.createORFilter(filters);
+            log.trace("Uma scope urls: " + p_scopeUrls + ", ldapFilter: " + filter);
+            return filter;
         }
         return null;
     }
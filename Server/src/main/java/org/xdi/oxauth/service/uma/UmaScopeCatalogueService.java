@@ -0,0 +1,336 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.gluu.site.ldap.persistence.LdapEntryManager;
+import org.slf4j.Logger;
+import org.xdi.oxauth.model.config.StaticConfiguration;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.persistence.InternalExternal;
+import org.xdi.oxauth.model.uma.persistence.ScopeDescription;
+import org.xdi.oxauth.service.AbstractCatalogueService;
+import org.xdi.oxauth.uma.ws.rs.UmaConfigurationWS;
+import org.xdi.util.StringHelper;
+
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * In-memory index of UMA scope descriptions by DN, URL and internal scope id.
+ * <p/>
+ * Scopes found in LDAP after load or added automatically are put into current index by copy on write. Reload which
+ * started before scope was added keeps it, so scope isn't created twice. URLs which are not in LDAP are remembered
+ * for a short time to avoid repeated searches.
+ */
+@ApplicationScoped
+@Named
+public class UmaScopeCatalogueService extends AbstractCatalogueService<UmaScopeCatalogueService.Snapshot> {
+
+    private static final int MAX_UNKNOWN_URLS = 10000;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private LdapEntryManager ldapEntryManager;
+
+    @Inject
+    private StaticConfiguration staticConfiguration;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    private final AtomicLong addSequence = new AtomicLong();
+
+    private final ConcurrentMap<String, AddedScope> addedScopes = new ConcurrentHashMap<String, AddedScope>();
+
+    private final ConcurrentMap<String, Long> unknownUrls = new ConcurrentHashMap<String, Long>();
+
+    private final ConcurrentMap<String, FutureTask<ScopeDescription>> pendingScopes = new ConcurrentHashMap<String, FutureTask<ScopeDescription>>();
+
+    public UmaScopeCatalogueService() {
+    }
+
+    UmaScopeCatalogueService(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+    }
+
+    public interface ScopeFactory {
+
+        /**
+         * @return persisted scope or null if scope was not created
+         */
+        ScopeDescription create(String url);
+    }
+
+    public ScopeDescription getByDn(String dn) {
+        return getSnapshot().byDn.get(StringHelper.toLowerCase(dn));
+    }
+
+    /**
+     * @return scope by its oxUrl attribute
+     */
+    public ScopeDescription getByUrl(String url) {
+        return getSnapshot().byUrl.get(url);
+    }
+
+    /**
+     * @return internal scope by URL of UMA scopes endpoint
+     */
+    public ScopeDescription getInternalByUrl(String url) {
+        return getSnapshot().internalByUrl.get(url);
+    }
+
+    public ScopeDescription getInternalById(String id) {
+        return getSnapshot().internalById.get(id);
+    }
+
+    /**
+     * @return true if recent LDAP search didn't find scope with this URL
+     */
+    public boolean isUnknownUrl(String url) {
+        final Long expiresAt = unknownUrls.get(url);
+        if (expiresAt == null) {
+            return false;
+        }
+
+        if (System.currentTimeMillis() >= expiresAt) {
+            unknownUrls.remove(url, expiresAt);
+            return false;
+        }
+
+        return true;
+    }
+
+    public void markUnknownUrl(String url) {
+        final int lifetime = appConfiguration.getUmaScopeNegativeCacheLifetime();
+        if (url == null || lifetime <= 0) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (unknownUrls.size() >= MAX_UNKNOWN_URLS) {
+            for (Iterator<Long> it = unknownUrls.values().iterator(); it.hasNext(); ) {
+                if (now >= it.next()) {
+                    it.remove();
+                }
+            }
+
+            if (unknownUrls.size() >= MAX_UNKNOWN_URLS) {
+                return;
+            }
+        }
+
+        unknownUrls.put(url, now + lifetime * 1000L);
+    }
+
+    /**
+     * Adds scope loaded from LDAP after snapshot was built.
+     */
+    public void add(ScopeDescription scope) {
+        if (scope == null || scope.getDn() == null) {
+            return;
+        }
+
+        final String dn = StringHelper.toLowerCase(scope.getDn());
+        // Remembered before index is updated, so reload which is in progress doesn't drop it
+        addedScopes.put(dn, new AddedScope(scope, addSequence.incrementAndGet()));
+
+        while (true) {
+            final Snapshot current = getSnapshot();
+            if (current.byDn.containsKey(dn) || replaceSnapshot(current, current.with(scope))) {
+                break;
+            }
+        }
+
+        if (scope.getUrl() != null) {
+            unknownUrls.remove(scope.getUrl());
+        }
+    }
+
+    /**
+     * Returns scope by URL or creates it with factory. Concurrent requests for the same URL wait for the first one
+     * instead of creating several scopes, creation for other URLs is not blocked.
+     */
+    public ScopeDescription getOrAdd(final String url, final ScopeFactory factory) {
+        ScopeDescription scope = getByUrl(url);
+        if (scope != null) {
+            return scope;
+        }
+
+        FutureTask<ScopeDescription> task = new FutureTask<ScopeDescription>(new Callable<ScopeDescription>() {
+            public ScopeDescription call() {
+                // Scope could be added while this task was registered
+                ScopeDescription scope = getByUrl(url);
+                if (scope != null) {
+                    return scope;
+                }
+
+                scope = factory.create(url);
+                add(scope);
+
+                return scope;
+            }
+        });
+
+        FutureTask<ScopeDescription> pending = pendingScopes.putIfAbsent(url, task);
+        if (pending == null) {
+            pending = task;
+            try {
+                task.run();
+            } finally {
+                pendingScopes.remove(url, task);
+            }
+        }
+
+        try {
+            return pending.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Forces reload of index on next access.
+     */
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        unknownUrls.clear();
+    }
+
+    @Override
+    protected int getRefreshInterval() {
+        return appConfiguration.getUmaScopeCacheRefreshInterval();
+    }
+
+    @Override
+    protected void onReload(Snapshot snapshot) {
+        unknownUrls.clear();
+    }
+
+    /**
+     * Puts back scopes added after LDAP search of loaded snapshot started. Scopes added earlier and not found
+     * by search were removed from LDAP.
+     */
+    @Override
+    protected Snapshot merge(Snapshot loaded) {
+        Snapshot result = loaded;
+        for (Iterator<Map.Entry<String, AddedScope>> it = addedScopes.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<String, AddedScope> entry = it.next();
+            final AddedScope added = entry.getValue();
+            if (loaded.byDn.containsKey(entry.getKey()) || added.sequence <= loaded.addSequence) {
+                addedScopes.remove(entry.getKey(), added);
+            } else if (!result.byDn.containsKey(entry.getKey())) {
+                result = result.with(added.scope);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return sequence of the last added scope, snapshot keeps it to know which scopes its search could miss
+     */
+    long getAddSequence() {
+        return addSequence.get();
+    }
+
+    @Override
+    protected Snapshot load(long revision) {
+        final long sequence = getAddSequence();
+        final String baseDn = String.format("ou=scopes,%s", staticConfiguration.getBaseDn().getUmaBase());
+
+        List<ScopeDescription> scopes = ldapEntryManager.findEntries(baseDn, ScopeDescription.class, Filter.createPresenceFilter("inum"));
+        log.debug("Loaded {} UMA scopes", scopes.size());
+
+        final String scopeEndpoint = appConfiguration.getBaseEndpoint() + UmaConfigurationWS.UMA_SCOPES_SUFFIX;
+        return new Snapshot(scopes, scopeEndpoint, sequence, revision, System.currentTimeMillis());
+    }
+
+    private static class AddedScope {
+        private final ScopeDescription scope;
+        private final long sequence;
+
+        AddedScope(ScopeDescription scope, long sequence) {
+            this.scope = scope;
+            this.sequence = sequence;
+        }
+    }
+
+    static class Snapshot extends AbstractCatalogueService.Snapshot {
+
+        private final List<ScopeDescription> scopes;
+        private final String scopeEndpoint;
+        private final long addSequence;
+        private final Map<String, ScopeDescription> byDn;
+        private final Map<String, ScopeDescription> byUrl;
+        private final Map<String, ScopeDescription> internalByUrl;
+        private final Map<String, ScopeDescription> internalById;
+
+        Snapshot(List<ScopeDescription> scopes, String scopeEndpoint, long addSequence, long revision, long loadedAt) {
+            super(revision, loadedAt);
+
+            Map<String, ScopeDescription> byDn = new HashMap<String, ScopeDescription>();
+            Map<String, ScopeDescription> byUrl = new HashMap<String, ScopeDescription>();
+            Map<String, ScopeDescription> internalByUrl = new HashMap<String, ScopeDescription>();
+            Map<String, ScopeDescription> internalById = new HashMap<String, ScopeDescription>();
+
+            for (ScopeDescription scope : scopes) {
+                if (scope.getDn() != null) {
+                    byDn.put(StringHelper.toLowerCase(scope.getDn()), scope);
+                }
+                // First entry wins, the same as it was with LDAP search
+                if (scope.getUrl() != null && !byUrl.containsKey(scope.getUrl())) {
+                    byUrl.put(scope.getUrl(), scope);
+                }
+                if (scope.getType() == InternalExternal.INTERNAL && scope.getId() != null && !internalById.containsKey(scope.getId())) {
+                    internalById.put(scope.getId(), scope);
+                    internalByUrl.put(scopeEndpoint + "/" + scope.getId(), scope);
+                }
+            }
+
+            this.scopes = Collections.unmodifiableList(scopes);
+            this.scopeEndpoint = scopeEndpoint;
+            this.addSequence = addSequence;
+            this.byDn = byDn;
+            this.byUrl = byUrl;
+            this.internalByUrl = internalByUrl;
+            this.internalById = internalById;
+        }
+
+        Snapshot with(ScopeDescription scope) {
+            List<ScopeDescription> scopes = new ArrayList<ScopeDescription>(this.scopes.size() + 1);
+            scopes.addAll(this.scopes);
+            scopes.add(scope);
+
+            return new Snapshot(scopes, scopeEndpoint, addSequence, getRevision(), getLoadedAt());
+        }
+    }
+
+}
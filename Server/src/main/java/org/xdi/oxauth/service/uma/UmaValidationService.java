@@ -184,7 +184,7 @@ public class UmaValidationService {
    	}
 
     public void validateResourceSetPermission(ResourceSetPermission resourceSetPermission) {
-   		if (resourceSetPermission == null || "invalidated".equalsIgnoreCase(resourceSetPermission.getAmHost())) {
+   		if (resourceSetPermission == null || ResourceSetPermissionManager.INVALIDATED_AM_HOST.equalsIgnoreCase(resourceSetPermission.getAmHost())) {
    			throw new WebApplicationException(Response.status(BAD_REQUEST)
    					.entity(errorResponseFactory.getUmaJsonErrorResponse(UmaErrorResponseType.INVALID_TICKET)).build());
    		}
@@ -6,9 +6,14 @@
 
 package org.xdi.oxauth.service.uma.authorization;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -22,6 +27,7 @@ import org.xdi.model.custom.script.conf.CustomScriptConfiguration;
 import org.xdi.oxauth.model.common.AuthorizationGrant;
 import org.xdi.oxauth.model.common.UnmodifiableAuthorizationGrant;
 import org.xdi.oxauth.model.common.uma.UmaRPT;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
 import org.xdi.oxauth.model.uma.ClaimTokenList;
 import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
 import org.xdi.oxauth.model.uma.persistence.ScopeDescription;
@@ -45,6 +51,15 @@ public class AuthorizationService {
     @Inject
     private ExternalUmaAuthorizationPolicyService externalUmaAuthorizationPolicyService;
 
+    @Inject
+    private PolicyEvaluationExecutor policyEvaluationExecutor;
+
+    @Inject
+    private PolicyDecisionCache policyDecisionCache;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
     public boolean allowToAddPermission(AuthorizationGrant grant, UmaRPT rpt, ResourceSetPermission permission, HttpServletRequest httpRequest, ClaimTokenList claims) {
         log.trace("Check policies for permission, id: '{}'", permission.getDn());
         List<ScopeDescription> scopes = umaScopeService.getScopesByDns(permission.getScopeDns());
@@ -65,24 +80,92 @@ public class AuthorizationService {
         if (authorizationPolicies == null || authorizationPolicies.isEmpty()) {
             log.trace("No policies protection, allowed to grant permission.");
             return true;
-        } else {
-            final UnmodifiableAuthorizationGrant unmodifiableAuthorizationGrant = new UnmodifiableAuthorizationGrant(grant);
+        }
+
+        final UnmodifiableAuthorizationGrant unmodifiableAuthorizationGrant = new UnmodifiableAuthorizationGrant(grant);
+        if (authorizationPolicies.size() == 1) {
+            final String authorizationPolicy = authorizationPolicies.iterator().next();
             final AuthorizationContext context = new AuthorizationContext(rpt, permission, unmodifiableAuthorizationGrant, httpRequest, claims);
-            for (String authorizationPolicy : authorizationPolicies) {
+            final PolicyResult result = applyPolicy(authorizationPolicy, context, scopes, claims);
+            return isAllowed(authorizationPolicy, result);
+        }
+
+        return applyPolicies(authorizationPolicies, rpt, permission, unmodifiableAuthorizationGrant, httpRequest, scopes, claims);
+    }
+
+    /**
+     * Evaluates policies concurrently. Each policy gets its own context because scripts set "need_info" on it.
+     * First rejection cancels remaining evaluations, policies which didn't finish in time are treated as rejection.
+     * Evaluation may outlive the request after timeout, so workers get a copy of request values instead of the request.
+     */
+    private boolean applyPolicies(Set<String> authorizationPolicies, final UmaRPT rpt, final ResourceSetPermission permission,
+                                  final UnmodifiableAuthorizationGrant grant, HttpServletRequest httpRequest,
+                                  final List<ScopeDescription> scopes, final ClaimTokenList claims) {
+        final HttpServletRequest requestSnapshot = HttpServletRequestSnapshot.copyOf(httpRequest);
+        final LinkedBlockingQueue<PolicyResult> completed = new LinkedBlockingQueue<PolicyResult>();
+        final List<Future<PolicyResult>> futures = new ArrayList<Future<PolicyResult>>();
+        try {
+            for (final String authorizationPolicy : authorizationPolicies) {
+                futures.add(policyEvaluationExecutor.submit(new Callable<PolicyResult>() {
+                    public PolicyResult call() throws Exception {
+                        PolicyResult result;
+                        try {
+                            final AuthorizationContext context = new AuthorizationContext(rpt, permission, grant, requestSnapshot, claims);
+                            result = applyPolicy(authorizationPolicy, context, scopes, claims);
+                        } catch (RuntimeException e) {
+                            log.error("Failed to apply policy dn: '" + authorizationPolicy + "'", e);
+                            result = new PolicyResult(authorizationPolicy, false, null);
+                        }
+                        completed.add(result);
+                        return result;
+                    }
+                }));
+            }
+
+            final long deadline = System.currentTimeMillis() + Math.max(0, appConfiguration.getUmaPolicyEvaluationTimeout());
+            for (int i = 0; i < futures.size(); i++) {
+                final long remaining = deadline - System.currentTimeMillis();
+                final PolicyResult result = remaining > 0 ? completed.poll(remaining, TimeUnit.MILLISECONDS) : completed.poll();
+                if (result == null) {
+                    log.error("Policies evaluation timed out, reject access.");
+                    return false;
+                }
+
                 // if at least one policy returns false then whole result is false
-                if (!applyPolicy(authorizationPolicy, context)) {
-                    log.trace("Reject access. Policy dn: '{}'", authorizationPolicy);
+                if (!isAllowed(result.policyDn, result)) {
                     return false;
                 }
             }
 
             log.trace("All policies are ok, grant access.");
             return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted during policies evaluation, reject access.");
+            return false;
+        } finally {
+            for (Future<PolicyResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private boolean isAllowed(String authorizationPolicyDn, PolicyResult result) {
+        if (result.allowed) {
+            return true;
+        }
+
+        log.trace("Reject access. Policy dn: '{}'", authorizationPolicyDn);
+
+        // if false check whether "need_info" objects are set, if yes then throw WebApplicationException directly here
+        if (result.needInfo != null) {
+            throwForbiddenException(result.needInfo);
         }
+        return false;
     }
 
     private Set<String> getAuthorizationPolicies(List<ScopeDescription> scopes) {
-        HashSet<String> result = new HashSet<String>();
+        Set<String> result = new LinkedHashSet<String>();
 
         for (ScopeDescription scope : scopes) {
             List<String> authorizationPolicies = scope.getAuthorizationPolicies();
@@ -94,29 +177,42 @@ public class AuthorizationService {
         return result;
     }
 
-    private boolean applyPolicy(String authorizationPolicyDn, AuthorizationContext authorizationContext) {
+    private PolicyResult applyPolicy(String authorizationPolicyDn, AuthorizationContext authorizationContext,
+                                     List<ScopeDescription> scopes, ClaimTokenList claims) {
         log.trace("Apply policy dn: '{}' ...", authorizationPolicyDn);
 
         final CustomScriptConfiguration customScriptConfiguration = externalUmaAuthorizationPolicyService.getAuthorizationPolicyByDn(authorizationPolicyDn);
-        if (customScriptConfiguration != null) {
-            final boolean result = externalUmaAuthorizationPolicyService.executeExternalAuthorizeMethod(customScriptConfiguration, authorizationContext);
-            log.trace("Policy '{}' result: {}", authorizationPolicyDn, result);
-
-            // if false check whether "need_info" objects are set, if yes then throw WebApplicationException directly here
-            if (!result) {
-                if (authorizationContext.getNeedInfoAuthenticationContext() != null || authorizationContext.getNeedInfoRequestingPartyClaims() != null) {
-                    final String jsonEntity = NeedInfoResponseBuilder.entityForResponse(
-                            authorizationContext.getNeedInfoAuthenticationContext(), authorizationContext.getNeedInfoRequestingPartyClaims());
-                    throwForbiddenException(jsonEntity);
-                }
+        if (customScriptConfiguration == null) {
+            log.error("Unable to load custom script dn: '{}'", authorizationPolicyDn);
+            return new PolicyResult(authorizationPolicyDn, false, null);
+        }
 
+        final int cacheLifetime = policyDecisionCache.getLifetime(customScriptConfiguration);
+        String cacheKey = null;
+        if (cacheLifetime > 0) {
+            cacheKey = PolicyDecisionCache.getKey(authorizationPolicyDn, authorizationContext.getGrant(), scopes, claims);
+            final Boolean cached = policyDecisionCache.get(cacheKey);
+            if (cached != null) {
+                log.trace("Policy '{}' cached result: {}", authorizationPolicyDn, cached);
+                return new PolicyResult(authorizationPolicyDn, cached, null);
             }
-            return result;
-        } else {
-            log.error("Unable to load custom script dn: '{}'", authorizationPolicyDn);
         }
 
-        return false;
+        final boolean result = externalUmaAuthorizationPolicyService.executeExternalAuthorizeMethod(customScriptConfiguration, authorizationContext);
+        log.trace("Policy '{}' result: {}", authorizationPolicyDn, result);
+
+        String needInfo = null;
+        if (!result && (authorizationContext.getNeedInfoAuthenticationContext() != null || authorizationContext.getNeedInfoRequestingPartyClaims() != null)) {
+            needInfo = NeedInfoResponseBuilder.entityForResponse(
+                    authorizationContext.getNeedInfoAuthenticationContext(), authorizationContext.getNeedInfoRequestingPartyClaims());
+        }
+
+        // "need_info" asks requester for more data, such decision is not cached
+        if (cacheKey != null && needInfo == null) {
+            policyDecisionCache.put(cacheKey, result, cacheLifetime);
+        }
+
+        return new PolicyResult(authorizationPolicyDn, result, needInfo);
     }
 
     private static void throwForbiddenException(String entity) {
@@ -124,4 +220,16 @@ public class AuthorizationService {
                 .entity(entity).build());
     }
 
+    private static class PolicyResult {
+        private final String policyDn;
+        private final boolean allowed;
+        private final String needInfo;
+
+        PolicyResult(String policyDn, boolean allowed, String needInfo) {
+            this.policyDn = policyDn;
+            this.allowed = allowed;
+            this.needInfo = needInfo;
+        }
+    }
+
 }
@@ -0,0 +1,260 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma.authorization;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Read-only copy of request values which policy scripts use. Container may recycle request object once the
+ * request is completed, so policies evaluated on worker threads get this copy instead of the request.
+ * <p/>
+ * Headers, parameters, cookies, addresses, URL parts, request attributes and session attributes are copied.
+ * Attributes set by policies stay in the copy and are not visible to the request. Body is already read by the
+ * endpoint when policies run, so body accessors return empty content as the live request would. The rest of
+ * methods which need live request (dispatching, authentication, async) throw {@link UnsupportedOperationException}.
+ */
+final class HttpServletRequestSnapshot implements InvocationHandler {
+
+    private final Map<String, Object> values = new HashMap<String, Object>();
+    private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+    private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    private final Cookie[] cookies;
+    private HttpSession session;
+
+    private HttpServletRequestSnapshot(HttpServletRequest request) {
+        values.put("getRemoteAddr", request.getRemoteAddr());
+        values.put("getRemoteHost", request.getRemoteHost());
+        values.put("getRemotePort", request.getRemotePort());
+        values.put("getMethod", request.getMethod());
+        values.put("getScheme", request.getScheme());
+        values.put("getServerName", request.getServerName());
+        values.put("getServerPort", request.getServerPort());
+        values.put("isSecure", request.isSecure());
+        values.put("getContextPath", request.getContextPath());
+        values.put("getServletPath", request.getServletPath());
+        values.put("getPathInfo", request.getPathInfo());
+        values.put("getRequestURI", request.getRequestURI());
+        values.put("getRequestURL", request.getRequestURL() != null ? request.getRequestURL().toString() : null);
+        values.put("getQueryString", request.getQueryString());
+        values.put("getContentType", request.getContentType());
+        values.put("getCharacterEncoding", request.getCharacterEncoding());
+        values.put("getLocale", request.getLocale());
+        values.put("getRemoteUser", request.getRemoteUser());
+        values.put("getUserPrincipal", request.getUserPrincipal());
+        values.put("getAuthType", request.getAuthType());
+        values.put("getProtocol", request.getProtocol());
+        values.put("getLocalAddr", request.getLocalAddr());
+        values.put("getLocalName", request.getLocalName());
+        values.put("getLocalPort", request.getLocalPort());
+        values.put("getContentLength", request.getContentLength());
+        values.put("getRequestedSessionId", request.getRequestedSessionId());
+        values.put("getServletContext", request.getServletContext());
+
+        final Enumeration<String> headerNames = request.getHeaderNames();
+        if (headerNames != null) {
+            while (headerNames.hasMoreElements()) {
+                final String name = headerNames.nextElement();
+                final Enumeration<String> headerValues = request.getHeaders(name);
+                headers.put(name, headerValues != null ? Collections.list(headerValues) : new ArrayList<String>());
+            }
+        }
+
+        final Map<String, String[]> parameterMap = request.getParameterMap();
+        if (parameterMap != null) {
+            for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
+                parameters.put(entry.getKey(), entry.getValue() != null ? entry.getValue().clone() : new String[0]);
+            }
+        }
+
+        final Enumeration<String> attributeNames = request.getAttributeNames();
+        if (attributeNames != null) {
+            while (attributeNames.hasMoreElements()) {
+                final String name = attributeNames.nextElement();
+                attributes.put(name, request.getAttribute(name));
+            }
+        }
+
+        final Cookie[] requestCookies = request.getCookies();
+        if (requestCookies != null) {
+            cookies = new Cookie[requestCookies.length];
+            for (int i = 0; i < requestCookies.length; i++) {
+                cookies[i] = (Cookie) requestCookies[i].clone();
+            }
+        } else {
+            cookies = null;
+        }
+
+        final HttpSession requestSession = request.getSession(false);
+        if (requestSession != null) {
+            session = HttpSessionSnapshot.copyOf(requestSession);
+        }
+    }
+
+    /**
+     * @return copy of the request or null if request is null
+     */
+    public static HttpServletRequest copyOf(HttpServletRequest request) {
+        if (request == null) {
+            return null;
+        }
+
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequestSnapshot.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new HttpServletRequestSnapshot(request));
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        final String name = method.getName();
+        final int argCount = args != null ? args.length : 0;
+
+        if (argCount == 0 && values.containsKey(name)) {
+            final Object value = values.get(name);
+            return "getRequestURL".equals(name) && value != null ? new StringBuffer((String) value) : value;
+        }
+
+        if (argCount == 0 && "getHeaderNames".equals(name)) {
+            return Collections.enumeration(new ArrayList<String>(headers.keySet()));
+        }
+        if (argCount == 1 && "getHeader".equals(name)) {
+            final List<String> headerValues = headers.get((String) args[0]);
+            return headerValues != null && !headerValues.isEmpty() ? headerValues.get(0) : null;
+        }
+        if (argCount == 1 && "getHeaders".equals(name)) {
+            final List<String> headerValues = headers.get((String) args[0]);
+            return Collections.enumeration(headerValues != null ? headerValues : Collections.<String>emptyList());
+        }
+
+        if (argCount == 0 && "getParameterMap".equals(name)) {
+            return Collections.unmodifiableMap(parameters);
+        }
+        if (argCount == 0 && "getParameterNames".equals(name)) {
+            return Collections.enumeration(new ArrayList<String>(parameters.keySet()));
+        }
+        if (argCount == 1 && "getParameter".equals(name)) {
+            final String[] parameterValues = parameters.get((String) args[0]);
+            return parameterValues != null && parameterValues.length > 0 ? parameterValues[0] : null;
+        }
+        if (argCount == 1 && "getParameterValues".equals(name)) {
+            final String[] parameterValues = parameters.get((String) args[0]);
+            return parameterValues != null ? parameterValues.clone() : null;
+        }
+
+        if (argCount == 0 && "getAttributeNames".equals(name)) {
+            synchronized (attributes) {
+                return Collections.enumeration(new ArrayList<String>(attributes.keySet()));
+            }
+        }
+        if (argCount == 1 && "getAttribute".equals(name)) {
+            synchronized (attributes) {
+                return attributes.get((String) args[0]);
+            }
+        }
+        if (argCount == 2 && "setAttribute".equals(name)) {
+            synchronized (attributes) {
+                if (args[1] == null) {
+                    attributes.remove((String) args[0]);
+                } else {
+                    attributes.put((String) args[0], args[1]);
+                }
+            }
+            return null;
+        }
+        if (argCount == 1 && "removeAttribute".equals(name)) {
+            synchronized (attributes) {
+                attributes.remove((String) args[0]);
+            }
+            return null;
+        }
+
+        if (argCount == 0 && "getCookies".equals(name)) {
+            if (cookies == null) {
+                return null;
+            }
+            final Cookie[] result = new Cookie[cookies.length];
+            for (int i = 0; i < cookies.length; i++) {
+                result[i] = (Cookie) cookies[i].clone();
+            }
+            return result;
+        }
+
+        if ("getSession".equals(name)) {
+            final boolean create = argCount == 0 || Boolean.TRUE.equals(args[0]);
+            synchronized (this) {
+                if (session == null && create) {
+                    // new session can't be attached to the request anymore, so policy gets detached one
+                    session = HttpSessionSnapshot.newSession((ServletContext) values.get("getServletContext"));
+                }
+                return session;
+            }
+        }
+
+        if (argCount == 0 && "getInputStream".equals(name)) {
+            return new EmptyServletInputStream();
+        }
+        if (argCount == 0 && "getReader".equals(name)) {
+            return new BufferedReader(new StringReader(""));
+        }
+        if (argCount == 0 && "getContentLengthLong".equals(name)) {
+            return ((Integer) values.get("getContentLength")).longValue();
+        }
+
+        if (argCount == 0 && "toString".equals(name)) {
+            return "HttpServletRequestSnapshot[" + values.get("getMethod") + " " + values.get("getRequestURI") + "]";
+        }
+        if (argCount == 0 && "hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        }
+        if (argCount == 1 && "equals".equals(name)) {
+            return proxy == args[0];
+        }
+
+        throw new UnsupportedOperationException("Request is not available during parallel policy evaluation: " + name);
+    }
+
+    private static class EmptyServletInputStream extends ServletInputStream {
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return true;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("Request is not available during parallel policy evaluation: setReadListener");
+        }
+    }
+
+}
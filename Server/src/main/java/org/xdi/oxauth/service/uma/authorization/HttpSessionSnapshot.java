@@ -0,0 +1,128 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma.authorization;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Copy of session id, timestamps and attributes made for {@link HttpServletRequestSnapshot}. Changes made by
+ * policies stay in the copy and are not written back to the session.
+ */
+final class HttpSessionSnapshot implements InvocationHandler {
+
+    private final Map<String, Object> values = new HashMap<String, Object>();
+    private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+
+    private HttpSessionSnapshot(ServletContext servletContext) {
+        final long now = System.currentTimeMillis();
+        values.put("getId", null);
+        values.put("getCreationTime", now);
+        values.put("getLastAccessedTime", now);
+        values.put("getMaxInactiveInterval", 0);
+        values.put("isNew", true);
+        values.put("getServletContext", servletContext);
+    }
+
+    private HttpSessionSnapshot(HttpSession session) {
+        values.put("getId", session.getId());
+        values.put("getCreationTime", session.getCreationTime());
+        values.put("getLastAccessedTime", session.getLastAccessedTime());
+        values.put("getMaxInactiveInterval", session.getMaxInactiveInterval());
+        values.put("isNew", session.isNew());
+        values.put("getServletContext", session.getServletContext());
+
+        final Enumeration<String> attributeNames = session.getAttributeNames();
+        if (attributeNames != null) {
+            while (attributeNames.hasMoreElements()) {
+                final String name = attributeNames.nextElement();
+                attributes.put(name, session.getAttribute(name));
+            }
+        }
+    }
+
+    /**
+     * @return copy of the session
+     */
+    public static HttpSession copyOf(HttpSession session) {
+        return newProxy(new HttpSessionSnapshot(session));
+    }
+
+    /**
+     * @return empty session which isn't attached to any request
+     */
+    public static HttpSession newSession(ServletContext servletContext) {
+        return newProxy(new HttpSessionSnapshot(servletContext));
+    }
+
+    private static HttpSession newProxy(HttpSessionSnapshot snapshot) {
+        return (HttpSession) Proxy.newProxyInstance(HttpSessionSnapshot.class.getClassLoader(),
+                new Class<?>[]{HttpSession.class}, snapshot);
+    }
+
+    public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+        final String name = method.getName();
+        final int argCount = args != null ? args.length : 0;
+
+        if (argCount == 0 && values.containsKey(name)) {
+            return values.get(name);
+        }
+        if (argCount == 1 && "setMaxInactiveInterval".equals(name)) {
+            values.put("getMaxInactiveInterval", args[0]);
+            return null;
+        }
+
+        if (argCount == 0 && "getAttributeNames".equals(name)) {
+            return Collections.enumeration(new ArrayList<String>(attributes.keySet()));
+        }
+        if (argCount == 0 && "getValueNames".equals(name)) {
+            return attributes.keySet().toArray(new String[attributes.size()]);
+        }
+        if (argCount == 1 && ("getAttribute".equals(name) || "getValue".equals(name))) {
+            return attributes.get((String) args[0]);
+        }
+        if (argCount == 2 && ("setAttribute".equals(name) || "putValue".equals(name))) {
+            if (args[1] == null) {
+                attributes.remove((String) args[0]);
+            } else {
+                attributes.put((String) args[0], args[1]);
+            }
+            return null;
+        }
+        if (argCount == 1 && ("removeAttribute".equals(name) || "removeValue".equals(name))) {
+            attributes.remove((String) args[0]);
+            return null;
+        }
+        if (argCount == 0 && "invalidate".equals(name)) {
+            attributes.clear();
+            return null;
+        }
+
+        if (argCount == 0 && "toString".equals(name)) {
+            return "HttpSessionSnapshot[" + values.get("getId") + "]";
+        }
+        if (argCount == 0 && "hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        }
+        if (argCount == 1 && "equals".equals(name)) {
+            return proxy == args[0];
+        }
+
+        throw new UnsupportedOperationException("Session is not available during parallel policy evaluation: " + name);
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma.authorization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.xdi.model.SimpleCustomProperty;
+import org.xdi.model.custom.script.conf.CustomScriptConfiguration;
+import org.xdi.oxauth.model.common.IAuthorizationGrant;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.ClaimToken;
+import org.xdi.oxauth.model.uma.persistence.ScopeDescription;
+
+/**
+ * Cache of decisions of deterministic UMA authorization policies.
+ * <p/>
+ * Policy opts in by setting "deterministic" configuration property to "true". Optional "decision_cache_lifetime"
+ * property sets lifetime in seconds, it is bounded by umaPolicyDecisionCacheMaxLifetime.
+ */
+@ApplicationScoped
+@Named
+public class PolicyDecisionCache {
+
+    public static final String DETERMINISTIC_PROPERTY = "deterministic";
+    public static final String LIFETIME_PROPERTY = "decision_cache_lifetime";
+
+    private static final int MAX_SIZE = 10000;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    public PolicyDecisionCache() {
+    }
+
+    PolicyDecisionCache(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+    }
+
+    /**
+     * @return lifetime of cached decision in seconds, 0 if decisions of the policy can't be cached
+     */
+    public int getLifetime(CustomScriptConfiguration customScriptConfiguration) {
+        final int maxLifetime = appConfiguration.getUmaPolicyDecisionCacheMaxLifetime();
+        final Map<String, SimpleCustomProperty> attributes = customScriptConfiguration.getConfigurationAttributes();
+        if (maxLifetime <= 0 || attributes == null) {
+            return 0;
+        }
+
+        final SimpleCustomProperty deterministic = attributes.get(DETERMINISTIC_PROPERTY);
+        if (deterministic == null || !Boolean.parseBoolean(StringUtils.trim(deterministic.getValue2()))) {
+            return 0;
+        }
+
+        final SimpleCustomProperty lifetime = attributes.get(LIFETIME_PROPERTY);
+        if (lifetime != null && StringUtils.isNotBlank(lifetime.getValue2())) {
+            try {
+                return Math.max(0, Math.min(maxLifetime, Integer.parseInt(lifetime.getValue2().trim())));
+            } catch (NumberFormatException e) {
+                return maxLifetime;
+            }
+        }
+
+        return maxLifetime;
+    }
+
+    public Boolean get(String key) {
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            cache.remove(key, entry);
+            return null;
+        }
+
+        return entry.decision;
+    }
+
+    public void put(String key, boolean decision, int lifetime) {
+        if (lifetime <= 0) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (cache.size() >= MAX_SIZE) {
+            for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext(); ) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                }
+            }
+
+            if (cache.size() >= MAX_SIZE) {
+                return;
+            }
+        }
+
+        cache.put(key, new CacheEntry(decision, now + lifetime * 1000L));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Key is built from policy, client, user, requested scopes and claims. Claims are hashed to keep key short.
+     */
+    public static String getKey(String policyDn, IAuthorizationGrant grant, List<ScopeDescription> scopes, List<ClaimToken> claims) {
+        final List<String> scopeDns = new ArrayList<String>();
+        for (ScopeDescription scope : scopes) {
+            scopeDns.add(scope.getDn());
+        }
+        Collections.sort(scopeDns);
+
+        final List<String> claimValues = new ArrayList<String>();
+        if (claims != null) {
+            for (ClaimToken claim : claims) {
+                claimValues.add(claim.getFormat() + "=" + claim.getToken());
+            }
+            Collections.sort(claimValues);
+        }
+
+        return policyDn + "|" + grant.getClientId() + "|" + grant.getUserId() + "|" + StringUtils.join(scopeDns, ',')
+                + "|" + DigestUtils.sha256Hex(StringUtils.join(claimValues, '\n'));
+    }
+
+    private static class CacheEntry {
+        private final boolean decision;
+        private final long expiresAt;
+
+        CacheEntry(boolean decision, long expiresAt) {
+            this.decision = decision;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma.authorization;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+
+/**
+ * Thread pool used to evaluate UMA authorization policies concurrently.
+ * <p/>
+ * Queue is bounded. When pool and queue are full, policy is evaluated on the calling request thread,
+ * which slows down callers instead of piling up work nobody waits for anymore.
+ */
+@ApplicationScoped
+@Named
+public class PolicyEvaluationExecutor {
+
+    private static final int DEFAULT_THREADS = 8;
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    private ExecutorService executorService;
+
+    @PostConstruct
+    public void init() {
+        int threads = appConfiguration.getUmaPolicyEvaluationThreads();
+        if (threads <= 0) {
+            threads = DEFAULT_THREADS;
+        }
+
+        int queueSize = appConfiguration.getUmaPolicyEvaluationQueueSize();
+        if (queueSize <= 0) {
+            queueSize = DEFAULT_QUEUE_SIZE;
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        this.executorService = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            public Thread newThread(Runnable p_r) {
+                Thread thread = new Thread(p_r, "uma-policy-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return executorService.submit(task);
+    }
+
+}
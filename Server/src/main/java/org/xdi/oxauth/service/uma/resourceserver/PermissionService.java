@@ -26,7 +26,8 @@ import org.xdi.oxauth.model.uma.persistence.ResourceSet;
 import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
 import org.xdi.oxauth.service.ClientService;
 import org.xdi.oxauth.service.token.TokenService;
-import org.xdi.oxauth.service.uma.ResourceSetPermissionManager;
+import org.xdi.oxauth.service.uma.IResourceSetPermissionManager;
+import org.xdi.oxauth.service.uma.ResourceSetPermissionManagerProvider;
 import org.xdi.oxauth.util.ServerUtil;
 import org.xdi.util.Pair;
 
@@ -50,7 +51,7 @@ public class PermissionService {
     private TokenService tokenService;
 
     @Inject
-    private ResourceSetPermissionManager resourceSetPermissionManager;
+    private ResourceSetPermissionManagerProvider resourceSetPermissionManagerProvider;
 
     @Inject
     private AppConfiguration appConfiguration;
@@ -140,6 +141,7 @@ public class PermissionService {
         r.setExpiresAt(expirationDate);
 
         final String host = appConfiguration.getIssuer();
+        final IResourceSetPermissionManager resourceSetPermissionManager = resourceSetPermissionManagerProvider.getResourceSetPermissionManager();
         final ResourceSetPermission permission = resourceSetPermissionManager.createResourceSetPermission(
                 host, r, expirationDate);
         // IMPORTANT : set scope dns before persistence
@@ -14,7 +14,6 @@ import static org.xdi.oxauth.model.discovery.WebFingerParam.RESOURCE;
 import static org.xdi.oxauth.model.discovery.WebFingerParam.SUBJECT;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 
 import javax.inject.Inject;
 import javax.servlet.ServletException;
@@ -27,8 +26,11 @@ import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
+import org.xdi.oxauth.model.config.ConfigurationFactory;
 import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.discovery.DiscoveryDocument;
 import org.xdi.oxauth.model.discovery.OpenIdConnectDiscoveryParamsValidator;
+import org.xdi.oxauth.service.DiscoveryDocumentService;
 
 /**
  * @author Javier Rojas Blum Date: 01.28.2013
@@ -44,6 +46,12 @@ public class WebFinger extends HttpServlet {
 	@Inject
 	private AppConfiguration appConfiguration;
 
+	@Inject
+	private ConfigurationFactory configurationFactory;
+
+	@Inject
+	private DiscoveryDocumentService discoveryDocumentService;
+
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code> methods.
      *
@@ -57,36 +65,46 @@ public class WebFinger extends HttpServlet {
         final HttpServletRequest httpRequest = request;
         final HttpServletResponse httpResponse = response;
 
-        httpResponse.setContentType("application/jrd+json");
-        PrintWriter out = httpResponse.getWriter();
-
-        String resource = httpRequest.getParameter(RESOURCE);
-        String rel = httpRequest.getParameter(REL);
+        final String resource = httpRequest.getParameter(RESOURCE);
+        final String rel = httpRequest.getParameter(REL);
 
         log.debug("Attempting to request OpenID Connect Discovery: " + resource + ", " + rel + ", Is Secure = " + httpRequest.isSecure());
 
         try {
             if (OpenIdConnectDiscoveryParamsValidator.validateParams(resource, rel)) {
                 if (rel == null || rel.equals(REL_VALUE)) {
-                    JSONObject jsonObj = new JSONObject();
-                    jsonObj.put(SUBJECT, resource);
-
-                    JSONArray linksJsonArray = new JSONArray();
-                    JSONObject linkJsonObject = new JSONObject();
-                    linkJsonObject.put(REL, REL_VALUE);
-                    linkJsonObject.put(HREF, appConfiguration.getIssuer());
-
-                    linksJsonArray.put(linkJsonObject);
-                    jsonObj.put(LINKS, linksJsonArray);
-
-                    out.println(jsonObj.toString(4).replace("\\/", "/"));
+                    DiscoveryDocument document = discoveryDocumentService.getWebFingerDocument(resource,
+                            String.valueOf(configurationFactory.getLoadedRevision()), new DiscoveryDocumentService.DocumentBuilder() {
+                                @Override
+                                public String build() throws JSONException {
+                                    return buildDocument(resource);
+                                }
+                            });
+
+                    discoveryDocumentService.write(document, httpRequest, httpResponse, "application/jrd+json");
+                    return;
                 }
             }
-        } catch (JSONException e) {
+        } catch (Exception e) {
         	log.error(e.getMessage(), e);
         }
 
-        out.close();
+        httpResponse.setContentType("application/jrd+json");
+    }
+
+    private String buildDocument(String resource) throws JSONException {
+        JSONObject jsonObj = new JSONObject();
+        jsonObj.put(SUBJECT, resource);
+
+        JSONArray linksJsonArray = new JSONArray();
+        JSONObject linkJsonObject = new JSONObject();
+        linkJsonObject.put(REL, REL_VALUE);
+        linkJsonObject.put(HREF, appConfiguration.getIssuer());
+
+        linksJsonArray.put(linkJsonObject);
+        jsonObj.put(LINKS, linksJsonArray);
+
+        return jsonObj.toString(4).replace("\\/", "/");
     }
 
     /**
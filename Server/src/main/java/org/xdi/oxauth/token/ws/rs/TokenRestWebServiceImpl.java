@@ -6,6 +6,8 @@
 
 package org.xdi.oxauth.token.ws.rs;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.security.SignatureException;
 
 import javax.inject.Inject;
@@ -17,8 +19,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.SecurityContext;
 
-import org.codehaus.jettison.json.JSONException;
-import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jackson.JsonGenerator;
 import org.slf4j.Logger;
 import org.xdi.oxauth.audit.ApplicationAuditLogger;
 import org.xdi.oxauth.model.audit.Action;
@@ -369,26 +370,30 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
     public String getJSonResponse(AccessToken accessToken, TokenType tokenType,
                                   Integer expiresIn, RefreshToken refreshToken, String scope,
                                   IdToken idToken) {
-        JSONObject jsonObj = new JSONObject();
+        StringWriter writer = new StringWriter(512);
         try {
-            jsonObj.put("access_token", accessToken.getCode()); // Required
-            jsonObj.put("token_type", tokenType.toString()); // Required
+            JsonGenerator generator = ServerUtil.createJsonGenerator(writer);
+            generator.writeStartObject();
+            generator.writeStringField("access_token", accessToken.getCode()); // Required
+            generator.writeStringField("token_type", tokenType.toString()); // Required
             if (expiresIn != null) { // Optional
-                jsonObj.put("expires_in", expiresIn);
+                generator.writeNumberField("expires_in", expiresIn);
             }
             if (refreshToken != null) { // Optional
-                jsonObj.put("refresh_token", refreshToken.getCode());
+                generator.writeStringField("refresh_token", refreshToken.getCode());
             }
             if (scope != null) { // Optional
-                jsonObj.put("scope", scope);
+                generator.writeStringField("scope", scope);
             }
             if (idToken != null) {
-                jsonObj.put("id_token", idToken.getCode());
+                generator.writeStringField("id_token", idToken.getCode());
             }
-        } catch (JSONException e) {
+            generator.writeEndObject();
+            generator.close();
+        } catch (IOException e) {
             log.error(e.getMessage(), e);
         }
 
-        return jsonObj.toString();
+        return writer.toString();
     }
 }
\ No newline at end of file
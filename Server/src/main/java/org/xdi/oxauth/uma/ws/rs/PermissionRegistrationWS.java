@@ -26,7 +26,8 @@ import org.xdi.oxauth.model.uma.UmaErrorResponseType;
 import org.xdi.oxauth.model.uma.UmaPermission;
 import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
 import org.xdi.oxauth.service.token.TokenService;
-import org.xdi.oxauth.service.uma.ResourceSetPermissionManager;
+import org.xdi.oxauth.service.uma.IResourceSetPermissionManager;
+import org.xdi.oxauth.service.uma.ResourceSetPermissionManagerProvider;
 import org.xdi.oxauth.service.uma.UmaValidationService;
 import org.xdi.oxauth.service.uma.resourceserver.PermissionService;
 
@@ -64,7 +65,7 @@ public class PermissionRegistrationWS {
     private TokenService tokenService;
 
     @Inject
-    private ResourceSetPermissionManager resourceSetPermissionManager;
+    private ResourceSetPermissionManagerProvider resourceSetPermissionManagerProvider;
 
     @Inject
     private ErrorResponseFactory errorResponseFactory;
@@ -99,6 +100,7 @@ public class PermissionRegistrationWS {
             String validatedAmHost = umaValidationService.validateAmHost(amHost);
             umaValidationService.validateResourceSet(resourceSetPermissionRequest);
 
+            final IResourceSetPermissionManager resourceSetPermissionManager = resourceSetPermissionManagerProvider.getResourceSetPermissionManager();
             final ResourceSetPermission resourceSetPermissions = resourceSetPermissionManager.createResourceSetPermission(validatedAmHost, resourceSetPermissionRequest, umaRsPermissionService.rptExpirationDate());
             resourceSetPermissionManager.addResourceSetPermission(resourceSetPermissions, tokenService.getClientDn(authorization));
 
@@ -17,7 +17,6 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 
-import org.gluu.site.ldap.persistence.LdapEntryManager;
 import org.slf4j.Logger;
 import org.xdi.oxauth.model.common.AuthorizationGrant;
 import org.xdi.oxauth.model.common.uma.UmaRPT;
@@ -29,7 +28,8 @@ import org.xdi.oxauth.model.uma.UmaErrorResponseType;
 import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
 import org.xdi.oxauth.model.util.Util;
 import org.xdi.oxauth.service.ClientService;
-import org.xdi.oxauth.service.uma.ResourceSetPermissionManager;
+import org.xdi.oxauth.service.uma.IResourceSetPermissionManager;
+import org.xdi.oxauth.service.uma.ResourceSetPermissionManagerProvider;
 import org.xdi.oxauth.service.uma.RptManager;
 import org.xdi.oxauth.service.uma.UmaValidationService;
 import org.xdi.oxauth.service.uma.authorization.AuthorizationService;
@@ -54,7 +54,7 @@ public class RptPermissionAuthorizationWS {
     private RptManager rptManager;
 
     @Inject
-    private ResourceSetPermissionManager resourceSetPermissionManager;
+    private ResourceSetPermissionManagerProvider resourceSetPermissionManagerProvider;
 
     @Inject
     private UmaValidationService umaValidationService;
@@ -65,9 +65,6 @@ public class RptPermissionAuthorizationWS {
     @Inject
     private ClientService clientService;
 
-    @Inject
-    private LdapEntryManager ldapEntryManager;
-
     @POST
     @Consumes({UmaConstants.JSON_MEDIA_TYPE})
     @Produces({UmaConstants.JSON_MEDIA_TYPE})
@@ -117,6 +114,7 @@ public class RptPermissionAuthorizationWS {
             rpt = rptManager.getRPTByCode(rptAuthorizationRequest.getRpt());
         }
 
+        final IResourceSetPermissionManager resourceSetPermissionManager = resourceSetPermissionManagerProvider.getResourceSetPermissionManager();
         final ResourceSetPermission resourceSetPermission = resourceSetPermissionManager.getResourceSetPermissionByTicket(rptAuthorizationRequest.getTicket());
 
         // Validate resource set permission
@@ -124,8 +122,13 @@ public class RptPermissionAuthorizationWS {
 
         // Add permission to RPT
         if (umaAuthorizationService.allowToAddPermission(grant, rpt, resourceSetPermission, httpRequest, rptAuthorizationRequest.getClaims())) {
+            // Ticket can be redeemed only once, concurrent request with the same ticket gets invalid ticket error
+            if (!resourceSetPermissionManager.redeemResourceSetPermission(resourceSetPermission)) {
+                throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                        .entity(errorResponseFactory.getUmaJsonErrorResponse(UmaErrorResponseType.INVALID_TICKET)).build());
+            }
+
             rptManager.addPermissionToRPT(rpt, resourceSetPermission);
-            invalidateTicket(resourceSetPermission);
             return rpt;
         }
 
@@ -133,13 +136,4 @@ public class RptPermissionAuthorizationWS {
         throw new WebApplicationException(Response.status(Response.Status.FORBIDDEN)
                 .entity(errorResponseFactory.getUmaJsonErrorResponse(UmaErrorResponseType.NOT_AUTHORIZED_PERMISSION)).build());
     }
-
-    private void invalidateTicket(ResourceSetPermission resourceSetPermission) {
-        try {
-            resourceSetPermission.setAmHost("invalidated"); // invalidate ticket and persist
-            ldapEntryManager.merge(resourceSetPermission);
-        } catch (Exception e) {
-            log.error("Failed to invalidate ticket: " + resourceSetPermission.getTicket() + ". " + e.getMessage(), e);
-        }
-    }
 }
@@ -32,6 +32,7 @@ import org.xdi.oxauth.model.uma.UmaPermission;
 import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
 import org.xdi.oxauth.service.uma.AbstractRPTManager;
 import org.xdi.oxauth.service.uma.RptManager;
+import org.xdi.oxauth.service.uma.RptStatusCache;
 import org.xdi.oxauth.service.uma.ScopeService;
 import org.xdi.oxauth.service.uma.UmaValidationService;
 import org.xdi.oxauth.util.ServerUtil;
@@ -70,6 +71,9 @@ public class RptStatusWS {
     @Inject
     private ScopeService umaScopeService;
 
+    @Inject
+    private RptStatusCache rptStatusCache;
+
     @POST
     @Produces({UmaConstants.JSON_MEDIA_TYPE})
     @ApiOperation(value = "The resource server MUST determine a received RPT's status, including both whether it is active and, if so, its associated authorization data, before giving or refusing access to the client. An RPT is associated with a set of authorization data that governs whether the client is authorized for access. The token's nature and format are dictated by its profile; the profile might allow it to be self-contained, such that the resource server is able to determine its status locally, or might require or allow the resource server to make a run-time introspection request of the authorization server that issued the token.",
@@ -113,6 +117,12 @@ public class RptStatusWS {
         try {
             umaValidationService.assertHasProtectionScope(authorization);
 
+            // cache returns only entries which didn't reach expiration of RPT or its permissions
+            final RptStatusCache.Status cachedStatus = rptStatusCache.get(rptAsString);
+            if (cachedStatus != null) {
+                return Response.status(Response.Status.OK).entity(cachedStatus.getEntity()).cacheControl(ServerUtil.cacheControl(true)).build();
+            }
+
             final UmaRPT rpt = rptManager.getRPTByCode(rptAsString);
 
             if (rpt != null && AbstractRPTManager.isGat(rpt.getCode())) {
@@ -136,6 +146,7 @@ public class RptStatusWS {
 
             // convert manually to avoid possible conflict between resteasy providers, e.g. jettison, jackson
             final String entity = ServerUtil.asJson(statusResponse);
+            rptStatusCache.put(rptAsString, entity, getExpiresAt(rpt, permissions));
 
             return Response.status(Response.Status.OK).entity(entity).cacheControl(ServerUtil.cacheControl(true)).build();
         } catch (Exception ex) {
@@ -177,6 +188,20 @@ public class RptStatusWS {
                 build();
     }
 
+    /**
+     * @return the earliest expiration date of RPT and its permissions
+     */
+    private static Date getExpiresAt(UmaRPT rpt, List<UmaPermission> permissions) {
+        Date expiresAt = rpt.getExpirationDate();
+        for (UmaPermission permission : permissions) {
+            final Date permissionExpiresAt = permission.getExpiresAt();
+            if (permissionExpiresAt != null && (expiresAt == null || permissionExpiresAt.before(expiresAt))) {
+                expiresAt = permissionExpiresAt;
+            }
+        }
+        return expiresAt;
+    }
+
     private boolean isValid(UmaRPT p_rpt) {
         if (p_rpt != null) {
             p_rpt.checkExpired();
@@ -8,11 +8,14 @@ package org.xdi.oxauth.util;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -28,9 +31,12 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.CacheControl;
 
 import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.AnnotationIntrospector;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.map.introspect.JacksonAnnotationIntrospector;
 import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
@@ -56,6 +62,15 @@ public class ServerUtil {
 
     private final static Logger log = LoggerFactory.getLogger(ServerUtil.class);
 
+    // Mappers are thread-safe once configured, writers and readers are immutable
+    private final static ObjectMapper JSON_MAPPER = createJsonMapper().configure(SerializationConfig.Feature.WRAP_ROOT_VALUE, false);
+    private final static ObjectMapper JSON_MAPPER_WITH_WRAP_ROOT = jsonMapperWithWrapRoot();
+    private final static ObjectWriter JSON_WRITER = JSON_MAPPER.writer();
+    private final static ObjectWriter PRETTY_JSON_WRITER = JSON_MAPPER.writerWithDefaultPrettyPrinter();
+
+    private final static ConcurrentMap<Class<?>, ObjectReader> JSON_READERS = new ConcurrentHashMap<Class<?>, ObjectReader>();
+    private final static ConcurrentMap<Class<?>, ObjectReader> JSON_READERS_WITH_WRAP_ROOT = new ConcurrentHashMap<Class<?>, ObjectReader>();
+
     private ServerUtil() {
     }
 
@@ -69,13 +84,42 @@ public class ServerUtil {
     }
 
     public static String asPrettyJson(Object p_object) throws IOException {
-        final ObjectMapper mapper = ServerUtil.createJsonMapper().configure(SerializationConfig.Feature.WRAP_ROOT_VALUE, false);
-        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(p_object);
+        return PRETTY_JSON_WRITER.writeValueAsString(p_object);
     }
 
     public static String asJson(Object p_object) throws IOException {
-        final ObjectMapper mapper = ServerUtil.createJsonMapper().configure(SerializationConfig.Feature.WRAP_ROOT_VALUE, false);
-        return mapper.writeValueAsString(p_object);
+        return JSON_WRITER.writeValueAsString(p_object);
+    }
+
+    /**
+     * Creates generator for writing JSON response directly, without building intermediate objects.
+     */
+    public static JsonGenerator createJsonGenerator(Writer p_writer) throws IOException {
+        return JSON_MAPPER.getJsonFactory().createJsonGenerator(p_writer);
+    }
+
+    /**
+     * @return shared reader, it's thread-safe
+     */
+    public static ObjectReader jsonReader(Class<?> p_type) {
+        return getReader(JSON_READERS, JSON_MAPPER, p_type);
+    }
+
+    /**
+     * @return shared reader configured as {@link #jsonMapperWithWrapRoot()}, it's thread-safe
+     */
+    public static ObjectReader jsonReaderWithWrapRoot(Class<?> p_type) {
+        return getReader(JSON_READERS_WITH_WRAP_ROOT, JSON_MAPPER_WITH_WRAP_ROOT, p_type);
+    }
+
+    private static ObjectReader getReader(ConcurrentMap<Class<?>, ObjectReader> p_readers, ObjectMapper p_mapper, Class<?> p_type) {
+        ObjectReader reader = p_readers.get(p_type);
+        if (reader == null) {
+            reader = p_mapper.reader(p_type);
+            p_readers.putIfAbsent(p_type, reader);
+        }
+
+        return reader;
     }
 
     public static CacheControl cacheControl(boolean p_noStore) {
@@ -0,0 +1,79 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * SecureRandom instance per thread.
+ * <p/>
+ * Shared SecureRandom (used by UUID.randomUUID) and NativePRNG serialize all threads on one lock. Each thread
+ * gets own SHA1PRNG instance, seeded from shared system SecureRandom, so threads never contend while generating tokens.
+ * Instance is reseeded after every {@link #RESEED_INTERVAL} uses.
+ */
+public class ThreadLocalSecureRandom {
+
+    public static final int RESEED_INTERVAL = 100000;
+
+    private static final String ALGORITHM = "SHA1PRNG";
+    private static final int SEED_LENGTH = 32;
+
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+    private static final ThreadLocal<Holder> HOLDER = new ThreadLocal<Holder>() {
+        @Override
+        protected Holder initialValue() {
+            return new Holder(create());
+        }
+    };
+
+    private ThreadLocalSecureRandom() {
+    }
+
+    /**
+     * @return SecureRandom of current thread, it must not be passed to other threads
+     */
+    public static SecureRandom current() {
+        final Holder holder = HOLDER.get();
+        if (++holder.uses >= RESEED_INTERVAL) {
+            holder.uses = 0;
+            holder.random.setSeed(seed());
+        }
+
+        return holder.random;
+    }
+
+    private static SecureRandom create() {
+        SecureRandom random;
+        try {
+            random = SecureRandom.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            random = new SecureRandom();
+        }
+        random.setSeed(seed());
+
+        return random;
+    }
+
+    private static byte[] seed() {
+        final byte[] seed = new byte[SEED_LENGTH];
+        SEED_SOURCE.nextBytes(seed);
+
+        return seed;
+    }
+
+    private static class Holder {
+        private final SecureRandom random;
+        private int uses;
+
+        Holder(SecureRandom random) {
+            this.random = random;
+        }
+    }
+
+}
@@ -135,16 +135,15 @@ public class U2fAuthenticationWS {
 		try {
 			log.debug("Finishing authentication for username '{}' with response '{}'", userName, authenticateResponseString);
 
-			AuthenticateResponse authenticateResponse = ServerUtil.jsonMapperWithWrapRoot().readValue(authenticateResponseString, AuthenticateResponse.class);
+			AuthenticateResponse authenticateResponse = ServerUtil.jsonReaderWithWrapRoot(AuthenticateResponse.class).readValue(authenticateResponseString);
 
 			String requestId = authenticateResponse.getRequestId();
-			AuthenticateRequestMessageLdap authenticateRequestMessageLdap = u2fAuthenticationService.getAuthenticationRequestMessageByRequestId(requestId);
+			AuthenticateRequestMessageLdap authenticateRequestMessageLdap = u2fAuthenticationService.takeAuthenticationRequestMessageByRequestId(requestId);
 			if (authenticateRequestMessageLdap == null) {
 				throw new WebApplicationException(Response.status(Response.Status.FORBIDDEN)
 						.entity(errorResponseFactory.getJsonErrorResponse(U2fErrorResponseType.SESSION_EXPIRED)).build());
 			}
 			sessionState = authenticateRequestMessageLdap.getSessionState();
-			u2fAuthenticationService.removeAuthenticationRequestMessage(authenticateRequestMessageLdap);
 
 			AuthenticateRequestMessage authenticateRequestMessage = authenticateRequestMessageLdap.getAuthenticateRequestMessage();
 
@@ -161,15 +161,14 @@ public class U2fRegistrationWS {
 		try {
 			log.debug("Finishing registration for username '{}' with response '{}'", userName, registerResponseString);
 
-			RegisterResponse registerResponse = ServerUtil.jsonMapperWithWrapRoot().readValue(registerResponseString, RegisterResponse.class);
+			RegisterResponse registerResponse = ServerUtil.jsonReaderWithWrapRoot(RegisterResponse.class).readValue(registerResponseString);
 
 			String requestId = registerResponse.getRequestId();
-			RegisterRequestMessageLdap registerRequestMessageLdap = u2fRegistrationService.getRegisterRequestMessageByRequestId(requestId);
+			RegisterRequestMessageLdap registerRequestMessageLdap = u2fRegistrationService.takeRegisterRequestMessageByRequestId(requestId);
 			if (registerRequestMessageLdap == null) {
 				throw new WebApplicationException(Response.status(Response.Status.FORBIDDEN)
 						.entity(errorResponseFactory.getJsonErrorResponse(U2fErrorResponseType.SESSION_EXPIRED)).build());
 			}
-			u2fRegistrationService.removeRegisterRequestMessage(registerRequestMessageLdap);
 
 			String foundUserInum = registerRequestMessageLdap.getUserInum();
 
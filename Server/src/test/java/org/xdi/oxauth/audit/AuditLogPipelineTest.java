@@ -0,0 +1,266 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.audit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AuditLogPipelineTest {
+
+    private File dir;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        dir = File.createTempFile("audit", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdirs());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void eventsAreWrittenToFile() throws Exception {
+        File file = new File(dir, "audit.log");
+        AuditLogPipeline pipeline = new AuditLogPipeline(new FileAuditSink(file.getPath(), 10485760), new LoggerAuditSink(), 1000, 100, false);
+
+        for (int i = 0; i < 250; i++) {
+            assertTrue(pipeline.offer("{\"action\":\"TOKEN_REQUEST\",\"n\":" + i + "}"));
+        }
+        pipeline.stop(10000);
+
+        List<String> lines = FileUtils.readLines(file, "UTF-8");
+        assertEquals(lines.size(), 250);
+        assertEquals(lines.get(249), "{\"action\":\"TOKEN_REQUEST\",\"n\":249}");
+        assertEquals(pipeline.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void fileIsRolledOver() throws Exception {
+        File file = new File(dir, "audit.log");
+        AuditLogPipeline pipeline = new AuditLogPipeline(new FileAuditSink(file.getPath(), 100), new LoggerAuditSink(), 1000, 1, false);
+
+        for (int i = 0; i < 20; i++) {
+            pipeline.offer("{\"action\":\"SESSION_DESTROYED\",\"n\":" + i + "}");
+        }
+        pipeline.stop(10000);
+
+        assertTrue(new File(dir, "audit.log.1").exists());
+        assertFalse(new File(dir, "audit.log." + (FileAuditSink.MAX_BACKUP_FILES + 1)).exists());
+    }
+
+    @Test
+    public void eventsAreDroppedWhenQueueIsFull() throws Exception {
+        BlockingSink sink = new BlockingSink();
+        AuditLogPipeline pipeline = new AuditLogPipeline(sink, new LoggerAuditSink(), 10, 1, false);
+
+        // First event blocks drain thread in sink
+        assertTrue(pipeline.offer("first"));
+        assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(pipeline.offer("queued" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertFalse(pipeline.offer("dropped" + i));
+        }
+        assertEquals(pipeline.getDroppedCount(), 5);
+
+        sink.release.countDown();
+        pipeline.stop(10000);
+
+        assertEquals(sink.messages.size(), 11);
+    }
+
+    @Test
+    public void producerWaitsForFreeSpaceOnOverflow() throws Exception {
+        final BlockingSink sink = new BlockingSink();
+        AuditLogPipeline pipeline = new AuditLogPipeline(sink, new LoggerAuditSink(), 2, 1, true, 10000);
+
+        assertTrue(pipeline.offer("first"));
+        assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+        assertTrue(pipeline.offer("queued0"));
+        assertTrue(pipeline.offer("queued1"));
+
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                sink.release.countDown();
+            }
+        };
+        releaser.start();
+
+        long start = System.currentTimeMillis();
+        assertTrue(pipeline.offer("blocked"));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        releaser.join();
+
+        pipeline.stop(10000);
+
+        assertEquals(pipeline.getDroppedCount(), 0);
+        assertEquals(sink.messages.size(), 4);
+    }
+
+    @Test
+    public void producerWaitIsBounded() throws Exception {
+        BlockingSink sink = new BlockingSink();
+        AuditLogPipeline pipeline = new AuditLogPipeline(sink, new LoggerAuditSink(), 1, 1, true, 100);
+
+        assertTrue(pipeline.offer("first"));
+        assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+        assertTrue(pipeline.offer("queued"));
+
+        long start = System.currentTimeMillis();
+        assertFalse(pipeline.offer("dropped"));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(pipeline.getDroppedCount(), 1);
+
+        sink.release.countDown();
+        pipeline.stop(10000);
+
+        assertEquals(sink.messages.size(), 2);
+    }
+
+    @Test
+    public void sinkIsClosedAfterLastBatch() throws Exception {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        AuditSink sink = new AuditSink() {
+            public void send(List<String> batch) throws Exception {
+                Thread.sleep(50);
+                events.add("send");
+            }
+
+            public void close() {
+                events.add("close");
+            }
+        };
+        AuditLogPipeline pipeline = new AuditLogPipeline(sink, new LoggerAuditSink(), 100, 1, false);
+
+        for (int i = 0; i < 5; i++) {
+            pipeline.offer("event" + i);
+        }
+        // Timeout expires before queued events are delivered
+        pipeline.stop(10);
+
+        for (int i = 0; (i < 100) && !events.contains("close"); i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(events.size(), 6);
+        assertEquals(events.get(5), "close");
+    }
+
+    @Test
+    public void eventsOfferedDuringStopAreDeliveredOrCounted() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final CollectingSink sink = new CollectingSink() {
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        final AuditLogPipeline pipeline = new AuditLogPipeline(sink, new LoggerAuditSink(), 100000, 10, false);
+
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread producer = new Thread(new Runnable() {
+                public void run() {
+                    for (int n = 0; producing.get(); n++) {
+                        if (pipeline.offer("event" + n)) {
+                            accepted.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+
+        Thread.sleep(50);
+        pipeline.stop(10000);
+        producing.set(false);
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        assertEquals(sink.messages.size(), accepted.get());
+        assertEquals(pipeline.getDroppedCount(), rejected.get());
+    }
+
+    @Test
+    public void failedBatchGoesToFallbackSink() throws Exception {
+        CollectingSink fallbackSink = new CollectingSink();
+        AuditLogPipeline pipeline = new AuditLogPipeline(new FailingSink(), fallbackSink, 100, 10, false);
+
+        for (int i = 0; i < 15; i++) {
+            pipeline.offer("event" + i);
+        }
+        pipeline.stop(10000);
+
+        assertEquals(fallbackSink.messages.size(), 15);
+    }
+
+    private static class CollectingSink implements AuditSink {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        public void send(List<String> batch) throws Exception {
+            messages.addAll(batch);
+        }
+
+        public void close() {
+        }
+    }
+
+    private static class BlockingSink extends CollectingSink {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(List<String> batch) throws Exception {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            super.send(batch);
+        }
+    }
+
+    private static class FailingSink implements AuditSink {
+        public void send(List<String> batch) throws Exception {
+            throw new IllegalStateException("Broker is not available");
+        }
+
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.cert.validation;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509CRL;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.cert.validation.CRLStore.CRLEntry;
+import org.xdi.oxauth.model.util.SecurityProviderUtility;
+
+public class CRLStoreTest {
+
+	private static final String CRL_URL = "http://localhost/ca.crl";
+	private static final String DELTA_URL = "http://localhost/ca-delta.crl";
+	private static final X500Name ISSUER_NAME = new X500Name("CN=Test CA");
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	private KeyPair issuerKeyPair;
+
+	@BeforeClass
+	public void setUp() throws Exception {
+		SecurityProviderUtility.installBCProvider(true);
+
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		issuerKeyPair = generator.generateKeyPair();
+	}
+
+	@Test
+	public void revokedSerialsAreFound() throws Exception {
+		final BigInteger bigSerial = BigInteger.ONE.shiftLeft(100);
+		final Date revoked = new Date(System.currentTimeMillis() - HOUR);
+
+		X509v2CRLBuilder builder = builder(new Date(), new Date(System.currentTimeMillis() + HOUR), 1);
+		builder.addCRLEntry(BigInteger.valueOf(7), revoked, CRLReason.keyCompromise);
+		builder.addCRLEntry(BigInteger.valueOf(3), revoked, CRLReason.superseded);
+		builder.addCRLEntry(bigSerial, revoked, CRLReason.removeFromCRL);
+
+		RevokedSerials serials = RevokedSerials.build(build(builder));
+		assertEquals(serials.size(), 3);
+
+		assertEquals(serials.find(BigInteger.valueOf(7)).getRevocationDate().getTime() / 1000, revoked.getTime() / 1000);
+		assertFalse(serials.find(BigInteger.valueOf(3)).isRemovedFromCrl());
+		assertTrue(serials.find(bigSerial).isRemovedFromCrl());
+		assertNull(serials.find(BigInteger.valueOf(5)));
+		assertNull(serials.find(bigSerial.add(BigInteger.ONE)));
+	}
+
+	@Test
+	public void deltaCrlIsApplied() throws Exception {
+		final Date now = new Date();
+		final Date revoked = new Date(now.getTime() - HOUR);
+
+		X509v2CRLBuilder baseBuilder = builder(now, new Date(now.getTime() + 24 * HOUR), 5);
+		baseBuilder.addCRLEntry(BigInteger.valueOf(10), revoked, CRLReason.certificateHold);
+		baseBuilder.addCRLEntry(BigInteger.valueOf(12), revoked, CRLReason.keyCompromise);
+		baseBuilder.addExtension(Extension.freshestCRL, false, distributionPoint(DELTA_URL));
+
+		X509v2CRLBuilder deltaBuilder = builder(now, new Date(now.getTime() + HOUR), 6);
+		deltaBuilder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.valueOf(5)));
+		deltaBuilder.addCRLEntry(BigInteger.valueOf(10), revoked, CRLReason.removeFromCRL);
+		deltaBuilder.addCRLEntry(BigInteger.valueOf(11), revoked, CRLReason.keyCompromise);
+
+		LocalCRLStore store = new LocalCRLStore(null, 10);
+		try {
+			store.crls.put(CRL_URL, build(baseBuilder));
+			store.crls.put(DELTA_URL, build(deltaBuilder));
+
+			CRLEntry entry = store.getCrl(CRL_URL);
+			assertNotNull(entry.getDelta());
+			assertTrue(entry.verify(issuerKeyPair.getPublic()));
+
+			assertNull(entry.getRevocationDate(BigInteger.valueOf(10)));
+			assertNotNull(entry.getRevocationDate(BigInteger.valueOf(11)));
+			assertNotNull(entry.getRevocationDate(BigInteger.valueOf(12)));
+			assertNull(entry.getRevocationDate(BigInteger.valueOf(13)));
+		} finally {
+			store.destroy();
+		}
+	}
+
+	@Test
+	public void deltaCrlForNewerBaseIsIgnored() throws Exception {
+		final Date now = new Date();
+
+		X509v2CRLBuilder deltaBuilder = builder(now, new Date(now.getTime() + HOUR), 8);
+		deltaBuilder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.valueOf(7)));
+		deltaBuilder.addCRLEntry(BigInteger.valueOf(11), now, CRLReason.keyCompromise);
+
+		CRLEntry entry = new CRLEntry(build(builder(now, new Date(now.getTime() + HOUR), 5)), build(deltaBuilder), 0);
+		assertNull(entry.getDelta());
+		assertNull(entry.getRevocationDate(BigInteger.valueOf(11)));
+	}
+
+	@Test
+	public void lastGoodCrlIsLoadedFromDisk() throws Exception {
+		final File storeDir = new File(System.getProperty("java.io.tmpdir"), "crl-store-test-" + System.nanoTime());
+		try {
+			final Date now = new Date();
+			X509v2CRLBuilder builder = builder(now, new Date(now.getTime() + HOUR), 1);
+			builder.addCRLEntry(BigInteger.valueOf(10), now, CRLReason.keyCompromise);
+
+			LocalCRLStore store = new LocalCRLStore(storeDir, 10);
+			try {
+				store.crls.put(CRL_URL, build(builder));
+				assertNotNull(store.getCrl(CRL_URL));
+			} finally {
+				store.destroy();
+			}
+
+			// CRL server is not available after restart
+			LocalCRLStore restarted = new LocalCRLStore(storeDir, 10);
+			try {
+				CRLEntry entry = restarted.getCrl(CRL_URL);
+				assertNotNull(entry);
+				assertNotNull(entry.getRevocationDate(BigInteger.valueOf(10)));
+				assertEquals(restarted.requests, 0);
+			} finally {
+				restarted.destroy();
+			}
+		} finally {
+			FileUtils.deleteQuietly(storeDir);
+		}
+	}
+
+	@Test
+	public void leastRecentlyUsedCrlIsEvicted() throws Exception {
+		final Date now = new Date();
+		LocalCRLStore store = new LocalCRLStore(null, 2);
+		try {
+			for (String url : new String[] { "http://localhost/1.crl", "http://localhost/2.crl", "http://localhost/3.crl" }) {
+				store.crls.put(url, build(builder(now, new Date(now.getTime() + HOUR), 1)));
+			}
+
+			assertNotNull(store.getCrl("http://localhost/1.crl"));
+			Thread.sleep(5);
+			assertNotNull(store.getCrl("http://localhost/2.crl"));
+			Thread.sleep(5);
+			assertNotNull(store.getCrl("http://localhost/3.crl"));
+
+			assertFalse(store.contains("http://localhost/1.crl"));
+			assertTrue(store.contains("http://localhost/2.crl"));
+			assertTrue(store.contains("http://localhost/3.crl"));
+		} finally {
+			store.destroy();
+		}
+	}
+
+	@Test
+	public void refreshIsNotRepeatedBeforeNextUpdate() throws Exception {
+		// CRL dates have seconds precision
+		final long now = System.currentTimeMillis() / 1000 * 1000;
+
+		// 80% of validity hasn't passed yet, refresh at least hourly
+		CRLEntry fresh = new CRLEntry(build(builder(new Date(now), new Date(now + 24 * HOUR), 1)), null, 0);
+		assertEquals(CRLStore.getRefreshDelay(fresh, now), HOUR);
+
+		// 80% of validity passed, CA publishes new CRL at nextUpdate
+		CRLEntry old = new CRLEntry(build(builder(new Date(now - 9 * HOUR), new Date(now + HOUR / 2), 1)), null, 0);
+		assertEquals(CRLStore.getRefreshDelay(old, now), HOUR / 2);
+
+		CRLEntry expired = new CRLEntry(build(builder(new Date(now - 2 * HOUR), new Date(now - HOUR), 1)), null, 0);
+		assertEquals(CRLStore.getRefreshDelay(expired, now), TimeUnit.MINUTES.toMillis(5));
+	}
+
+	private static X509v2CRLBuilder builder(Date thisUpdate, Date nextUpdate, long crlNumber) throws Exception {
+		X509v2CRLBuilder builder = new X509v2CRLBuilder(ISSUER_NAME, thisUpdate);
+		builder.setNextUpdate(nextUpdate);
+		builder.addExtension(Extension.cRLNumber, false, new CRLNumber(BigInteger.valueOf(crlNumber)));
+		return builder;
+	}
+
+	private X509CRL build(X509v2CRLBuilder builder) throws Exception {
+		ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(issuerKeyPair.getPrivate());
+		return new JcaX509CRLConverter().setProvider("BC").getCRL(builder.build(signer));
+	}
+
+	private static CRLDistPoint distributionPoint(String url) {
+		GeneralNames names = new GeneralNames(new GeneralName(GeneralName.uniformResourceIdentifier, url));
+		return new CRLDistPoint(new DistributionPoint[] { new DistributionPoint(new DistributionPointName(names), null, null) });
+	}
+
+	/**
+	 * Serves CRLs from memory instead of HTTP
+	 */
+	private static class LocalCRLStore extends CRLStore {
+
+		private final Map<String, X509CRL> crls = new HashMap<String, X509CRL>();
+		private volatile int requests;
+
+		LocalCRLStore(File storeDir, int maxCrls) {
+			super(1024 * 1024, storeDir, maxCrls);
+		}
+
+		@Override
+		Download requestCRL(String url, long ifModifiedSince) {
+			requests++;
+			return new Download(crls.get(url), 0, false);
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.cert.validation;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.X509ObjectIdentifiers;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.cert.validation.model.ValidationStatus.CertificateValidity;
+import org.xdi.oxauth.model.util.SecurityProviderUtility;
+
+public class OCSPCertificateVerifierTest {
+
+	private static final String OCSP_URL = "http://localhost/ocsp";
+	private static final X500Name ISSUER_NAME = new X500Name("CN=Test CA");
+	private static final X500Name RESPONDER_NAME = new X500Name("CN=Test OCSP Responder");
+
+	private KeyPair issuerKeyPair;
+	private KeyPair responderKeyPair;
+	private X509Certificate issuerCertificate;
+	private X509Certificate certificate;
+
+	@BeforeClass
+	public void setUp() throws Exception {
+		SecurityProviderUtility.installBCProvider(true);
+
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		issuerKeyPair = generator.generateKeyPair();
+		responderKeyPair = generator.generateKeyPair();
+
+		issuerCertificate = buildCertificate(ISSUER_NAME, issuerKeyPair.getPublic(), BigInteger.ONE, false, false);
+		certificate = buildCertificate(new X500Name("CN=Test Client"), generator.generateKeyPair().getPublic(), BigInteger.valueOf(1000), true, false);
+	}
+
+	@Test
+	public void responseIsReusedUntilNextUpdate() {
+		LocalResponder verifier = new LocalResponder(CertificateStatus.GOOD, 3600000L, issuerKeyPair.getPrivate());
+		try {
+			assertEquals(validate(verifier), CertificateValidity.VALID);
+			assertEquals(validate(verifier), CertificateValidity.VALID);
+			assertEquals(verifier.requests, 1);
+		} finally {
+			verifier.destroy();
+		}
+	}
+
+	@Test
+	public void revokedResponseIsReused() {
+		RevokedStatus revoked = new RevokedStatus(new Date(System.currentTimeMillis() - 60000L), CRLReason.keyCompromise);
+		LocalResponder verifier = new LocalResponder(revoked, 3600000L, issuerKeyPair.getPrivate());
+		try {
+			assertEquals(validate(verifier), CertificateValidity.REVOKED);
+			assertEquals(validate(verifier), CertificateValidity.REVOKED);
+			assertEquals(verifier.requests, 1);
+		} finally {
+			verifier.destroy();
+		}
+	}
+
+	@Test
+	public void expiredResponseIsNotRequestedOnEveryValidation() {
+		LocalResponder verifier = new LocalResponder(CertificateStatus.GOOD, -1000L, issuerKeyPair.getPrivate());
+		try {
+			assertEquals(validate(verifier), CertificateValidity.VALID);
+			assertEquals(validate(verifier), CertificateValidity.VALID);
+			assertEquals(verifier.requests, 1);
+		} finally {
+			verifier.destroy();
+		}
+	}
+
+	@Test
+	public void responseSignedByOtherKeyIsRejected() {
+		LocalResponder verifier = new LocalResponder(CertificateStatus.GOOD, 3600000L, responderKeyPair.getPrivate());
+		try {
+			assertEquals(validate(verifier), CertificateValidity.INVALID);
+		} finally {
+			verifier.destroy();
+		}
+	}
+
+	@Test
+	public void responseSignedByDelegatedResponderIsAccepted() throws Exception {
+		LocalResponder verifier = new LocalResponder(CertificateStatus.GOOD, 3600000L, responderKeyPair.getPrivate());
+		verifier.responderCertificate = new JcaX509CertificateHolder(buildCertificate(RESPONDER_NAME, responderKeyPair.getPublic(), BigInteger.valueOf(2), false, true));
+		try {
+			assertEquals(validate(verifier), CertificateValidity.VALID);
+		} finally {
+			verifier.destroy();
+		}
+	}
+
+	@Test
+	public void responderWithoutOcspSigningPurposeIsRejected() throws Exception {
+		LocalResponder verifier = new LocalResponder(CertificateStatus.GOOD, 3600000L, responderKeyPair.getPrivate());
+		verifier.responderCertificate = new JcaX509CertificateHolder(buildCertificate(RESPONDER_NAME, responderKeyPair.getPublic(), BigInteger.valueOf(3), false, false));
+		try {
+			assertEquals(validate(verifier), CertificateValidity.INVALID);
+		} finally {
+			verifier.destroy();
+		}
+	}
+
+	private CertificateValidity validate(OCSPCertificateVerifier verifier) {
+		return verifier.validate(certificate, Arrays.asList(issuerCertificate), new Date()).getValidity();
+	}
+
+	private X509Certificate buildCertificate(X500Name subject, PublicKey publicKey, BigInteger serial, boolean withOcspUrl, boolean ocspSigning) throws Exception {
+		Date notBefore = new Date(System.currentTimeMillis() - 60000L);
+		Date notAfter = new Date(System.currentTimeMillis() + 3600000L);
+
+		X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(ISSUER_NAME, serial, notBefore, notAfter, subject, publicKey);
+		if (withOcspUrl) {
+			builder.addExtension(Extension.authorityInfoAccess, false, new AuthorityInformationAccess(X509ObjectIdentifiers.ocspAccessMethod,
+					new GeneralName(GeneralName.uniformResourceIdentifier, OCSP_URL)));
+		}
+		if (ocspSigning) {
+			builder.addExtension(Extension.extendedKeyUsage, false, new ExtendedKeyUsage(KeyPurposeId.id_kp_OCSPSigning));
+		}
+
+		ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(issuerKeyPair.getPrivate());
+		return new JcaX509CertificateConverter().setProvider("BC").getCertificate(builder.build(signer));
+	}
+
+	/**
+	 * Answers OCSP requests locally instead of HTTP call
+	 */
+	private static class LocalResponder extends OCSPCertificateVerifier {
+
+		private final CertificateStatus status;
+		private final long nextUpdateOffset;
+		private final PrivateKey signingKey;
+		private volatile X509CertificateHolder responderCertificate;
+		private volatile int requests;
+
+		LocalResponder(CertificateStatus status, long nextUpdateOffset, PrivateKey signingKey) {
+			this.status = status;
+			this.nextUpdateOffset = nextUpdateOffset;
+			this.signingKey = signingKey;
+		}
+
+		@Override
+		public OCSPResp requestOCSPResponse(String url, OCSPReq ocspReq) throws IOException {
+			requests++;
+
+			try {
+				CertificateID certificateId = ocspReq.getRequestList()[0].getCertID();
+				Date now = new Date();
+
+				BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(new RespID(responderCertificate == null ? ISSUER_NAME : RESPONDER_NAME));
+				builder.addResponse(certificateId, status, now, new Date(now.getTime() + nextUpdateOffset), null);
+
+				ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(signingKey);
+				X509CertificateHolder[] chain = (responderCertificate == null) ? null : new X509CertificateHolder[] { responderCertificate };
+				BasicOCSPResp basicOCSPResp = builder.build(signer, chain, now);
+
+				return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicOCSPResp);
+			} catch (Exception ex) {
+				throw new IOException(ex);
+			}
+		}
+	}
+
+}
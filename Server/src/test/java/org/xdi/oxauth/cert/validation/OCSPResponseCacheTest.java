@@ -0,0 +1,179 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.cert.validation;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.cert.validation.OCSPResponseCache.CachedResponse;
+
+public class OCSPResponseCacheTest {
+
+	private static final String OCSP_URL = "http://localhost/ocsp";
+	private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+	private static final CertificateID CERTIFICATE_ID = new CertificateID(new CertID(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1),
+			new DEROctetString(new byte[20]), new DEROctetString(new byte[20]), new ASN1Integer(1000)));
+
+	@Test
+	public void expiredResponseIsUsedWithinSoftFailWindow() throws Exception {
+		TestLoader loader = new TestLoader();
+		TestCache cache = new TestCache(loader, 60 * MINUTE);
+		try {
+			loader.response = response(cache.now + 10 * MINUTE);
+			CachedResponse response = cache.get(OCSP_URL, CERTIFICATE_ID, null);
+
+			cache.now += 11 * MINUTE;
+			loader.available = false;
+			assertSame(cache.get(OCSP_URL, CERTIFICATE_ID, null), response);
+			assertEquals(loader.calls.get(), 2);
+
+			// Failed responder is asked again only after retry interval
+			assertSame(cache.get(OCSP_URL, CERTIFICATE_ID, null), response);
+			assertEquals(loader.calls.get(), 2);
+
+			cache.now += MINUTE + 1;
+			assertSame(cache.get(OCSP_URL, CERTIFICATE_ID, null), response);
+			assertEquals(loader.calls.get(), 3);
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void expiredResponseIsNotUsedWithoutSoftFailWindow() throws Exception {
+		TestLoader loader = new TestLoader();
+		TestCache cache = new TestCache(loader, 0);
+		try {
+			loader.response = response(cache.now + 10 * MINUTE);
+			cache.get(OCSP_URL, CERTIFICATE_ID, null);
+
+			cache.now += 11 * MINUTE;
+			loader.available = false;
+			try {
+				cache.get(OCSP_URL, CERTIFICATE_ID, null);
+				fail("Responder failure is expected");
+			} catch (IOException ex) {
+				assertEquals(loader.calls.get(), 2);
+			}
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void expiredResponseFromResponderIsReusedForMinute() throws Exception {
+		TestLoader loader = new TestLoader();
+		TestCache cache = new TestCache(loader, 0);
+		try {
+			loader.response = response(cache.now - 1000);
+			cache.get(OCSP_URL, CERTIFICATE_ID, null);
+			cache.get(OCSP_URL, CERTIFICATE_ID, null);
+			assertEquals(loader.calls.get(), 1);
+
+			cache.now += MINUTE;
+			cache.get(OCSP_URL, CERTIFICATE_ID, null);
+			assertEquals(loader.calls.get(), 2);
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void concurrentMissesShareOneRequest() throws Exception {
+		final TestLoader loader = new TestLoader();
+		final TestCache cache = new TestCache(loader, 0);
+		try {
+			loader.response = response(cache.now + 10 * MINUTE);
+			loader.release = new CountDownLatch(1);
+
+			final AtomicInteger loaded = new AtomicInteger();
+			Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							if (cache.get(OCSP_URL, CERTIFICATE_ID, null) != null) {
+								loaded.incrementAndGet();
+							}
+						} catch (Exception ex) {
+							// Counted as not loaded
+						}
+					}
+				};
+				threads[i].start();
+			}
+
+			Thread.sleep(200);
+			loader.release.countDown();
+			for (Thread thread : threads) {
+				thread.join(5000);
+			}
+
+			assertEquals(loaded.get(), threads.length);
+			assertEquals(loader.calls.get(), 1);
+		} finally {
+			cache.destroy();
+		}
+	}
+
+	private static CachedResponse response(long nextUpdate) {
+		return new CachedResponse(true, null, new Date(nextUpdate - 60 * MINUTE), new Date(nextUpdate), new Date());
+	}
+
+	private static class TestLoader implements OCSPResponseCache.ResponseLoader {
+
+		private final AtomicInteger calls = new AtomicInteger();
+		private volatile CachedResponse response;
+		private volatile boolean available = true;
+		private volatile CountDownLatch release;
+
+		public CachedResponse load(String ocspUrl, CertificateID certificateId, X509Certificate issuer) throws Exception {
+			calls.incrementAndGet();
+			if (release != null) {
+				release.await(5, TimeUnit.SECONDS);
+			}
+			if (!available) {
+				throw new IOException("OCSP responder is not available");
+			}
+
+			return new CachedResponse(response.isGood(), response.getRevocationTime(), response.getThisUpdate(), response.getNextUpdate(),
+					response.getProducedAt());
+		}
+	}
+
+	private static class TestCache extends OCSPResponseCache {
+
+		private volatile long now = System.currentTimeMillis();
+
+		TestCache(ResponseLoader loader, long softFailWindow) {
+			super(loader, 5 * MINUTE, softFailWindow);
+		}
+
+		@Override
+		long currentTimeMillis() {
+			return now;
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.cert.validation;
+
+import static org.testng.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.cert.validation.model.ValidationStatus.CertificateValidity;
+import org.xdi.oxauth.model.util.SecurityProviderUtility;
+
+public class PathCertificateVerifierTest {
+
+	private X509Certificate rootCertificate;
+	private X509Certificate intermediateCertificate;
+	private X509Certificate certificate;
+
+	private X509Certificate otherRootCertificate;
+	private X509Certificate otherCertificate;
+
+	@BeforeClass
+	public void setUp() throws Exception {
+		SecurityProviderUtility.installBCProvider(true);
+
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+
+		KeyPair rootKeyPair = generator.generateKeyPair();
+		KeyPair intermediateKeyPair = generator.generateKeyPair();
+		rootCertificate = buildCertificate("CN=Test Root CA", rootKeyPair.getPublic(), "CN=Test Root CA", rootKeyPair.getPrivate(), 1, true);
+		intermediateCertificate = buildCertificate("CN=Test Intermediate CA", intermediateKeyPair.getPublic(), "CN=Test Root CA", rootKeyPair.getPrivate(), 2, true);
+		certificate = buildCertificate("CN=Test Client", generator.generateKeyPair().getPublic(), "CN=Test Intermediate CA", intermediateKeyPair.getPrivate(), 3, false);
+
+		KeyPair otherRootKeyPair = generator.generateKeyPair();
+		otherRootCertificate = buildCertificate("CN=Other Root CA", otherRootKeyPair.getPublic(), "CN=Other Root CA", otherRootKeyPair.getPrivate(), 4, true);
+		otherCertificate = buildCertificate("CN=Other Client", generator.generateKeyPair().getPublic(), "CN=Other Root CA", otherRootKeyPair.getPrivate(), 5, false);
+	}
+
+	@Test
+	public void certificateIssuedByIntermediateIsValid() {
+		PathCertificateVerifier verifier = new PathCertificateVerifier(false);
+
+		assertEquals(validate(verifier, certificate, intermediateCertificate, rootCertificate), CertificateValidity.VALID);
+		assertEquals(validate(verifier, certificate, intermediateCertificate, rootCertificate), CertificateValidity.VALID);
+	}
+
+	@Test
+	public void certificateWithoutIntermediateIsInvalid() {
+		PathCertificateVerifier verifier = new PathCertificateVerifier(false);
+
+		assertEquals(validate(verifier, certificate, rootCertificate), CertificateValidity.INVALID);
+		assertEquals(validate(verifier, certificate, intermediateCertificate, otherRootCertificate), CertificateValidity.INVALID);
+	}
+
+	@Test
+	public void caCertificateIsNotAccepted() {
+		PathCertificateVerifier verifier = new PathCertificateVerifier(false);
+
+		assertEquals(validate(verifier, intermediateCertificate, rootCertificate), CertificateValidity.INVALID);
+	}
+
+	@Test
+	public void alternatingChainsAreVerified() {
+		PathCertificateVerifier verifier = new PathCertificateVerifier(false);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(validate(verifier, certificate, intermediateCertificate, rootCertificate), CertificateValidity.VALID);
+			assertEquals(validate(verifier, otherCertificate, otherRootCertificate), CertificateValidity.VALID);
+			assertEquals(validate(verifier, otherCertificate, intermediateCertificate, rootCertificate), CertificateValidity.INVALID);
+		}
+	}
+
+	@Test
+	public void chainWithCertificateIsVerified() {
+		PathCertificateVerifier verifier = new PathCertificateVerifier(false);
+		List<X509Certificate> chain = Arrays.asList(certificate, intermediateCertificate, rootCertificate);
+
+		assertEquals(verifier.verifyCertificate(certificate, chain).getCertPath().getCertificates().size(), 2);
+	}
+
+	private static CertificateValidity validate(PathCertificateVerifier verifier, X509Certificate certificate, X509Certificate... issuers) {
+		return verifier.validate(certificate, Arrays.asList(issuers), new Date()).getValidity();
+	}
+
+	private static X509Certificate buildCertificate(String subject, PublicKey publicKey, String issuer, PrivateKey issuerKey, long serial, boolean ca)
+			throws Exception {
+		Date notBefore = new Date(System.currentTimeMillis() - 60000L);
+		Date notAfter = new Date(System.currentTimeMillis() + 3600000L);
+
+		X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(new X500Name(issuer), BigInteger.valueOf(serial), notBefore, notAfter,
+				new X500Name(subject), publicKey);
+		if (ca) {
+			builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+			builder.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+		} else {
+			builder.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature));
+		}
+
+		ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(issuerKey);
+		return new JcaX509CertificateConverter().setProvider("BC").getCertificate(builder.build(signer));
+	}
+
+}
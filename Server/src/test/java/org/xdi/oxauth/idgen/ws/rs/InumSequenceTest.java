@@ -0,0 +1,118 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.idgen.ws.rs;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+public class InumSequenceTest {
+
+    private static final int THREADS = 64;
+    private static final int IDS_PER_THREAD = 20000;
+
+    @Test
+    public void format() {
+        assertEquals(InumSequence.format(0x0A1F5F3C8B200001L), "0A1F.5F3C.8B20.0001");
+        assertEquals(InumSequence.format(0L), "0000.0000.0000.0000");
+        assertEquals(InumSequence.format(-1L), "FFFF.FFFF.FFFF.FFFF");
+    }
+
+    @Test
+    public void nodeIdIsInHighBits() {
+        assertTrue(new InumSequence(0x0A1F).nextInum().startsWith("0A1F."));
+        assertTrue(new InumSequence(0x10001).nextInum().startsWith("0001."));
+    }
+
+    /**
+     * Generates ids at 64 threads, ids must be unique even if counter of one second overflows
+     */
+    @Test
+    public void uniqueAtConcurrentGeneration() throws Exception {
+        final InumSequence sequence = new InumSequence(1);
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>(THREADS * IDS_PER_THREAD));
+
+        run(THREADS, new Runnable() {
+            public void run() {
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    ids.add(sequence.next());
+                }
+            }
+        });
+
+        assertEquals(ids.size(), THREADS * IDS_PER_THREAD);
+    }
+
+    @Test
+    public void restartedSequenceDoesNotRepeatValues() {
+        TestSequence first = new TestSequence(1000L);
+        first.next();
+        first.now = 1001L;
+        long previous = 0;
+        for (int i = 0; i < 10; i++) {
+            previous = first.next();
+        }
+
+        // Node restarted within the same second as last value was generated
+        TestSequence second = new TestSequence(1001L);
+        assertTrue(second.next() > previous);
+    }
+
+    @Test
+    public void clockGoingBackDoesNotRepeatValues() {
+        TestSequence sequence = new TestSequence(1000L);
+        sequence.now = 1005L;
+        long previous = sequence.next();
+
+        sequence.now = 1002L;
+        assertTrue(sequence.next() > previous);
+    }
+
+    private static void run(int threads, final Runnable task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        task.run();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+    }
+
+    private static class TestSequence extends InumSequence {
+
+        private long now;
+
+        TestSequence(long startTimeSeconds) {
+            super(1, startTimeSeconds);
+            now = startTimeSeconds;
+        }
+
+        @Override
+        long currentTimeSeconds() {
+            return now;
+        }
+    }
+
+}
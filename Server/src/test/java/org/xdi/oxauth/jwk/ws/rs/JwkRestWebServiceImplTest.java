@@ -0,0 +1,125 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.jwk.ws.rs;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.config.ConfigurationFactory;
+import org.xdi.oxauth.model.config.WebKeysConfiguration;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.service.DiscoveryDocumentService;
+
+public class JwkRestWebServiceImplTest {
+
+    private static final SecurityContext SECURITY_CONTEXT = (SecurityContext) Proxy.newProxyInstance(
+            JwkRestWebServiceImplTest.class.getClassLoader(), new Class<?>[] {SecurityContext.class}, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return method.getName().equals("isSecure") ? Boolean.TRUE : null;
+                }
+            });
+
+    @Test
+    public void keysAreSerializedOncePerRevision() {
+        TestConfigurationFactory configurationFactory = new TestConfigurationFactory();
+        TestWebKeysConfiguration keys = new TestWebKeysConfiguration();
+        JwkRestWebServiceImpl service = service(keys, configuration(3600, false, 0), configurationFactory);
+
+        assertEquals(service.requestJwk(SECURITY_CONTEXT, request(null)).getStatus(), 200);
+        assertEquals(service.requestJwk(SECURITY_CONTEXT, request(null)).getStatus(), 200);
+        assertEquals(keys.serializations, 1);
+
+        configurationFactory.revision = 2;
+        service.requestJwk(SECURITY_CONTEXT, request(null));
+        assertEquals(keys.serializations, 2);
+    }
+
+    @Test
+    public void notModifiedIsReturnedForCurrentEtag() {
+        JwkRestWebServiceImpl service = service(new TestWebKeysConfiguration(), configuration(3600, false, 0), new TestConfigurationFactory());
+
+        Response response = service.requestJwk(SECURITY_CONTEXT, request(null));
+        EntityTag entityTag = response.getEntityTag();
+        assertNotNull(entityTag);
+
+        assertEquals(service.requestJwk(SECURITY_CONTEXT, request(entityTag)).getStatus(), 304);
+        assertEquals(service.requestJwk(SECURITY_CONTEXT, request(new EntityTag("other"))).getStatus(), 200);
+    }
+
+    @Test
+    public void maxAgeIsCappedByKeyRegenerationInterval() {
+        JwkRestWebServiceImpl service = service(new TestWebKeysConfiguration(), configuration(3600, true, 1), new TestConfigurationFactory());
+
+        Response response = service.requestJwk(SECURITY_CONTEXT, request(null));
+        assertEquals(((CacheControl) response.getMetadata().getFirst(HttpHeaders.CACHE_CONTROL)).getMaxAge(), 360);
+    }
+
+    private static JwkRestWebServiceImpl service(WebKeysConfiguration keys, AppConfiguration appConfiguration, ConfigurationFactory configurationFactory) {
+        return new JwkRestWebServiceImpl(LoggerFactory.getLogger(JwkRestWebServiceImpl.class), keys, appConfiguration,
+                configurationFactory, new DiscoveryDocumentService());
+    }
+
+    private static AppConfiguration configuration(int jwksCacheLifetime, boolean keyRegenerationEnabled, int keyRegenerationInterval) {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setJwksCacheLifetime(jwksCacheLifetime);
+        appConfiguration.setKeyRegenerationEnabled(keyRegenerationEnabled);
+        appConfiguration.setKeyRegenerationInterval(keyRegenerationInterval);
+        return appConfiguration;
+    }
+
+    /**
+     * Request which evaluates only If-None-Match precondition
+     */
+    private static Request request(final EntityTag ifNoneMatch) {
+        return (Request) Proxy.newProxyInstance(JwkRestWebServiceImplTest.class.getClassLoader(),
+                new Class<?>[] {Request.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("evaluatePreconditions") && args != null && args.length == 2) {
+                            if (ifNoneMatch != null && ifNoneMatch.equals(args[1])) {
+                                return Response.notModified((EntityTag) args[1]);
+                            }
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static class TestWebKeysConfiguration extends WebKeysConfiguration {
+
+        private int serializations;
+
+        @Override
+        public String toString() {
+            serializations++;
+            return "{\"keys\":[]}";
+        }
+    }
+
+    private static class TestConfigurationFactory extends ConfigurationFactory {
+
+        private long revision = 1;
+
+        @Override
+        public long getLoadedRevision() {
+            return revision;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.error;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.token.TokenErrorResponseType;
+import org.xdi.oxauth.model.uma.UmaErrorResponseType;
+
+public class ErrorResponseFactoryTest {
+
+    private ErrorResponseFactory factory;
+
+    @BeforeClass
+    public void setUp() {
+        ErrorMessages messages = new ErrorMessages();
+        messages.setToken(Arrays.asList(errorMessage("invalid_request", "The request is missing a required parameter.", "https://localhost/errors")));
+        messages.setUma(Arrays.asList(errorMessage("not_found", "The resource doesn't exist.", null)));
+
+        factory = new ErrorResponseFactory(messages);
+    }
+
+    @Test
+    public void renderedErrorIsReused() throws Exception {
+        String json = factory.getErrorAsJson(TokenErrorResponseType.INVALID_REQUEST);
+
+        assertSame(factory.getErrorAsJson(TokenErrorResponseType.INVALID_REQUEST), json);
+        assertEquals(new JSONObject(json).toString(), new JSONObject(factory.getErrorResponse(TokenErrorResponseType.INVALID_REQUEST).toJSonString()).toString());
+    }
+
+    @Test
+    public void stateIsAppendedToRenderedError() throws Exception {
+        String state = "af0ifjsldkj\"}";
+
+        JSONObject json = new JSONObject(factory.getErrorAsJson(TokenErrorResponseType.INVALID_REQUEST, state));
+        assertEquals(json.getString("state"), state);
+        assertEquals(json.getString("error"), "invalid_request");
+
+        assertEquals(factory.getErrorAsQueryString(TokenErrorResponseType.INVALID_REQUEST, "xyz"),
+                factory.getErrorResponse(TokenErrorResponseType.INVALID_REQUEST, "xyz").toQueryString());
+    }
+
+    @Test
+    public void errorWithoutMessageHasNoDescription() throws Exception {
+        JSONObject json = new JSONObject(factory.getErrorAsJson(TokenErrorResponseType.INVALID_GRANT));
+
+        assertEquals(json.length(), 1);
+        assertEquals(json.getString("error"), "invalid_grant");
+    }
+
+    @Test
+    public void umaErrorIsRendered() throws Exception {
+        JSONObject json = new JSONObject(factory.getUmaJsonErrorResponse(UmaErrorResponseType.NOT_FOUND));
+
+        assertEquals(json.getString("error"), "not_found");
+        assertEquals(json.getString("error_description"), "The resource doesn't exist.");
+    }
+
+    private static ErrorMessage errorMessage(String id, String description, String uri) {
+        ErrorMessage errorMessage = new ErrorMessage();
+        errorMessage.setId(id);
+        errorMessage.setDescription(description);
+        errorMessage.setUri(uri);
+
+        return errorMessage;
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.registration;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.client.QueryStringDecoder;
+
+public class RedirectUriMatcherTest {
+
+    private final RedirectUriMatcher matcher = new RedirectUriMatcher(new String[]{
+            "https://client.example.com/cb",
+            "https://client.example.com/cb2?tenant=a&lang=en",
+            "https://client.example.com/cb2?tenant=b"
+    });
+
+    @Test
+    public void exactMatch() {
+        assertTrue(matcher.matches("https://client.example.com/cb"));
+        assertTrue(matcher.matches("https://client.example.com/cb2?tenant=b"));
+    }
+
+    @Test
+    public void paramsInDifferentOrder() {
+        assertTrue(matcher.matches("https://client.example.com/cb2?lang=en&tenant=a"));
+        assertFalse(matcher.matches("https://client.example.com/cb2?tenant=a"));
+        assertFalse(matcher.matches("https://client.example.com/cb2?tenant=c"));
+    }
+
+    @Test
+    public void paramsAreNotAllowedIfNotRegistered() {
+        assertFalse(matcher.matches("https://client.example.com/cb?tenant=a"));
+        assertFalse(matcher.matches("https://client.example.com/cb2"));
+    }
+
+    @Test
+    public void notRegistered() {
+        assertFalse(matcher.matches("https://client.example.com/other"));
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    public void emptyQuery() {
+        assertTrue(matcher.matches("https://client.example.com/cb?"));
+        assertTrue(matcher.matches("https://client.example.com/cb?&"));
+        assertFalse(matcher.matches("https://client.example.com/cb2?"));
+    }
+
+    @Test
+    public void repeatedParamLastValueWins() {
+        assertTrue(matcher.matches("https://client.example.com/cb2?tenant=a&tenant=b"));
+        assertFalse(matcher.matches("https://client.example.com/cb2?tenant=b&tenant=a"));
+    }
+
+    /**
+     * Matcher compares query in place, result must be the same as comparison of decoded parameters
+     */
+    @Test
+    public void sameResultAsDecodedParams() {
+        String[] registered = {
+                "https://client.example.com/cb",
+                "https://client.example.com/cb?a=1&b=2",
+                "https://client.example.com/cb?c=",
+                "https://client.example.com/x?a=1=2"
+        };
+        String[] queries = {"", "a=1&b=2", "b=2&a=1", "a=1", "a=1&b=2&c=3", "c=", "c", "c=&", "&&c=", " =1&c=",
+                "a=1&b=2&a=1", "a=2&b=2&a=1", "a==1&b=2", "a=1=2", "a=1=3", "=&a=1&b=2", "A=1&b=2"};
+
+        RedirectUriMatcher compiled = new RedirectUriMatcher(registered);
+        for (String base : new String[]{"https://client.example.com/cb", "https://client.example.com/x"}) {
+            for (String query : queries) {
+                String uri = base + "?" + query;
+                assertEquals(compiled.matches(uri), matchesDecoded(registered, uri), uri);
+            }
+        }
+    }
+
+    @Test
+    public void manyRedirectUris() {
+        String[] registered = new String[500];
+        for (int i = 0; i < registered.length; i++) {
+            registered[i] = "https://tenant" + i + ".example.com/cb?tenant=" + i;
+        }
+
+        RedirectUriMatcher compiled = new RedirectUriMatcher(registered);
+        for (int i = 0; i < registered.length; i++) {
+            assertTrue(compiled.matches("https://tenant" + i + ".example.com/cb?tenant=" + i));
+            assertFalse(compiled.matches("https://tenant" + i + ".example.com/cb?tenant=" + (i + 1)));
+        }
+    }
+
+    @Test
+    public void compiledFrom() {
+        assertTrue(matcher.isCompiledFrom(matcher.getSource()));
+        assertTrue(matcher.isCompiledFrom(matcher.getSource().clone()));
+        assertFalse(matcher.isCompiledFrom(new String[]{"https://client.example.com/cb"}));
+    }
+
+    private static boolean matchesDecoded(String[] registered, String uri) {
+        for (String registeredUri : registered) {
+            if (registeredUri.equals(uri)) {
+                return true;
+            }
+
+            if (uriWithoutParams(registeredUri).equals(uriWithoutParams(uri))) {
+                Map<String, String> registeredParams = params(registeredUri);
+                Map<String, String> params = params(uri);
+                if (registeredParams.equals(params)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static String uriWithoutParams(String uri) {
+        int index = uri.indexOf("?");
+        return index == -1 ? uri : uri.substring(0, index);
+    }
+
+    private static Map<String, String> params(String uri) {
+        int index = uri.indexOf("?");
+        return index == -1 ? new HashMap<String, String>() : QueryStringDecoder.decode(uri.substring(index + 1));
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.registration;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.common.SubjectType;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.register.ApplicationType;
+import org.xdi.oxauth.service.SectorIdentifierDocumentService;
+
+/**
+ * Validation of redirect URIs against sector identifier document
+ */
+public class RegisterParamsValidatorTest {
+
+    private static final String SECTOR_IDENTIFIER_URI = "https://rp.example.com/sector";
+    private static final List<String> REDIRECT_URIS = Arrays.asList("https://rp.example.com/cb");
+
+    @Test
+    public void staleDocumentIsAccepted() {
+        final long now = System.currentTimeMillis();
+        TestDocumentService documentService = new TestDocumentService(document(now - 120000, now - 60000, REDIRECT_URIS));
+
+        assertTrue(validator(documentService).validateRedirectUris(ApplicationType.WEB, SubjectType.PAIRWISE, REDIRECT_URIS, SECTOR_IDENTIFIER_URI));
+        assertEquals(documentService.calls, 1);
+        assertTrue(documentService.revalidated);
+    }
+
+    @Test
+    public void redirectUriMissingInDocumentIsRejected() {
+        final long now = System.currentTimeMillis();
+        TestDocumentService documentService = new TestDocumentService(document(now, now + 60000, Arrays.asList("https://rp.example.com/other")));
+
+        assertFalse(validator(documentService).validateRedirectUris(ApplicationType.WEB, SubjectType.PAIRWISE, REDIRECT_URIS, SECTOR_IDENTIFIER_URI));
+    }
+
+    @Test
+    public void unavailableDocumentIsRejected() {
+        TestDocumentService documentService = new TestDocumentService(null);
+
+        assertFalse(validator(documentService).validateRedirectUris(ApplicationType.WEB, SubjectType.PAIRWISE, REDIRECT_URIS, SECTOR_IDENTIFIER_URI));
+        assertEquals(documentService.calls, 1);
+    }
+
+    @Test
+    public void documentIsNotFetchedFromHttpUri() {
+        final long now = System.currentTimeMillis();
+        TestDocumentService documentService = new TestDocumentService(document(now, now + 60000, REDIRECT_URIS));
+
+        assertFalse(validator(documentService).validateRedirectUris(ApplicationType.WEB, SubjectType.PAIRWISE, REDIRECT_URIS, "http://rp.example.com/sector"));
+        assertEquals(documentService.calls, 0);
+    }
+
+    private static RegisterParamsValidator validator(SectorIdentifierDocumentService documentService) {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setClientWhiteList(Arrays.asList("*"));
+        appConfiguration.setClientBlackList(new ArrayList<String>());
+
+        return new RegisterParamsValidator(LoggerFactory.getLogger(RegisterParamsValidator.class), appConfiguration, documentService);
+    }
+
+    private static SectorIdentifierDocument document(long fetchedAt, long expiresAt, List<String> redirectUris) {
+        return new SectorIdentifierDocument(SECTOR_IDENTIFIER_URI, redirectUris, null, null, fetchedAt, expiresAt);
+    }
+
+    private static class TestDocumentService extends SectorIdentifierDocumentService {
+
+        private final SectorIdentifierDocument document;
+        private int calls;
+        private boolean revalidated;
+
+        TestDocumentService(SectorIdentifierDocument document) {
+            this.document = document;
+        }
+
+        @Override
+        public SectorIdentifierDocument getDocument(String sectorIdentifierUri, boolean revalidate) {
+            calls++;
+            revalidated = revalidate;
+            return document;
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.model.token;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class HandleTokenFactoryTest {
+
+    private static final int THREADS = 64;
+    private static final int TOKENS_PER_THREAD = 20000;
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void tokenIsRandomUuid() {
+        UUID uuid = UUID.fromString(HandleTokenFactory.generateHandleToken());
+
+        assertEquals(uuid.version(), 4);
+        assertEquals(uuid.variant(), 2);
+    }
+
+    @Test
+    public void tokensAreUnique() throws Exception {
+        final Set<String> tokens = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(THREADS * TOKENS_PER_THREAD));
+
+        run(new Runnable() {
+            public void run() {
+                for (int i = 0; i < TOKENS_PER_THREAD; i++) {
+                    tokens.add(HandleTokenFactory.generateHandleToken());
+                }
+            }
+        });
+
+        assertEquals(tokens.size(), THREADS * TOKENS_PER_THREAD);
+    }
+
+    /**
+     * Runs task at every thread of pool, threads are reused like in application server
+     */
+    private void run(final Runnable task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        task.run();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        done.await();
+    }
+
+}
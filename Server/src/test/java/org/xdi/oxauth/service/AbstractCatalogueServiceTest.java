@@ -0,0 +1,149 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class AbstractCatalogueServiceTest {
+
+    @Test
+    public void snapshotIsLoadedOnce() {
+        TestCatalogueService service = new TestCatalogueService();
+
+        TestSnapshot snapshot = service.getSnapshot();
+        assertSame(service.getSnapshot(), snapshot);
+        assertEquals(service.loads.get(), 1);
+    }
+
+    @Test
+    public void snapshotIsReloadedWhenRevisionChanges() {
+        TestCatalogueService service = new TestCatalogueService();
+
+        TestSnapshot snapshot = service.getSnapshot();
+        service.revision = 2;
+
+        assertEquals(service.getSnapshot().number, snapshot.number + 1);
+        assertEquals(service.getSnapshot().getRevision(), 2);
+        assertEquals(service.loads.get(), 2);
+    }
+
+    @Test
+    public void snapshotIsReloadedWhenRefreshIntervalElapses() {
+        TestCatalogueService service = new TestCatalogueService();
+        service.loadedAt = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(61);
+
+        service.getSnapshot();
+        service.getSnapshot();
+        assertEquals(service.loads.get(), 2);
+    }
+
+    @Test
+    public void snapshotIsReloadedAfterInvalidate() {
+        TestCatalogueService service = new TestCatalogueService();
+
+        service.getSnapshot();
+        service.invalidate();
+        service.getSnapshot();
+        assertEquals(service.loads.get(), 2);
+    }
+
+    @Test
+    public void previousSnapshotIsUsedWhenReloadFails() {
+        TestCatalogueService service = new TestCatalogueService();
+
+        TestSnapshot snapshot = service.getSnapshot();
+        service.revision = 2;
+        service.failing = true;
+
+        assertSame(service.getSnapshot(), snapshot);
+
+        // Next access tries again
+        service.failing = false;
+        assertEquals(service.getSnapshot().getRevision(), 2);
+    }
+
+    @Test
+    public void previousSnapshotIsUsedWhileOtherThreadReloads() throws Exception {
+        final TestCatalogueService service = new TestCatalogueService();
+
+        TestSnapshot snapshot = service.getSnapshot();
+        service.revision = 2;
+        service.loading = new CountDownLatch(1);
+        service.release = new CountDownLatch(1);
+
+        Thread loader = new Thread(new Runnable() {
+            public void run() {
+                service.getSnapshot();
+            }
+        });
+        loader.start();
+        assertTrue(service.loading.await(10, TimeUnit.SECONDS));
+
+        assertSame(service.getSnapshot(), snapshot);
+
+        service.release.countDown();
+        loader.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(service.getSnapshot().getRevision(), 2);
+        assertEquals(service.loads.get(), 2);
+    }
+
+    private static class TestSnapshot extends AbstractCatalogueService.Snapshot {
+
+        private final int number;
+
+        TestSnapshot(int number, long revision, long loadedAt) {
+            super(revision, loadedAt);
+            this.number = number;
+        }
+    }
+
+    private static class TestCatalogueService extends AbstractCatalogueService<TestSnapshot> {
+
+        private final AtomicInteger loads = new AtomicInteger();
+        private volatile long revision = 1;
+        private volatile long loadedAt;
+        private volatile boolean failing;
+        private volatile CountDownLatch loading;
+        private volatile CountDownLatch release;
+
+        @Override
+        protected TestSnapshot load(long revision) {
+            if (loading != null) {
+                loading.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing) {
+                throw new IllegalStateException("LDAP server is not available");
+            }
+
+            return new TestSnapshot(loads.incrementAndGet(), revision, loadedAt > 0 ? loadedAt : System.currentTimeMillis());
+        }
+
+        @Override
+        protected int getRefreshInterval() {
+            return 60;
+        }
+
+        @Override
+        protected long getLoadedRevision() {
+            return revision;
+        }
+    }
+
+}
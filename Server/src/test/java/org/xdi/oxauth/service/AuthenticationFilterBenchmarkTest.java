@@ -0,0 +1,90 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.configuration.BaseFilter;
+import org.xdi.oxauth.service.BaseAuthFilterService.AuthenticationFilterWithParameters;
+
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Compares building of authentication filter from precompiled template with substitution of values into
+ * filter text and its parsing.
+ */
+public class AuthenticationFilterBenchmarkTest {
+
+    private static final String FILTER = "(&(mail=*{0}*)(inum={1}))";
+    private static final int ITERATIONS = 200000;
+    private static final int ROUNDS = 3;
+
+    private AuthenticationFilterWithParameters filter;
+
+    @BeforeClass
+    public void setUp() {
+        BaseFilter baseFilter = new BaseFilter();
+        baseFilter.setFilter(FILTER);
+        baseFilter.setBaseDn("o=gluu");
+
+        BaseAuthFilterService service = new BaseAuthFilterService() {
+            @Override
+            public String processAuthenticationFilter(AuthenticationFilterWithParameters p_allowed, Map<?, ?> p_attributeValues) {
+                return null;
+            }
+        };
+        service.log = LoggerFactory.getLogger(BaseAuthFilterService.class);
+        service.init(Arrays.asList(baseFilter), true, true);
+
+        List<AuthenticationFilterWithParameters> filters = service.getFilterWithParameters();
+        assertEquals(filters.size(), 1);
+
+        filter = filters.get(0);
+        assertNotNull(filter.getFilterTemplate());
+    }
+
+    @Test
+    public void buildFilter() throws Exception {
+        long parseTime = 0;
+        long templateTime = 0;
+        // First rounds are warm up
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Filter.create(BaseAuthFilterService.buildFilter(filter, values(i)));
+            }
+            parseTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                BaseAuthFilterService.buildLdapFilter(filter, values(i));
+            }
+            templateTime = System.nanoTime() - start;
+        }
+
+        System.out.println(String.format("Authentication filter: parse %d ns/op, template %d ns/op",
+                parseTime / ITERATIONS, templateTime / ITERATIONS));
+    }
+
+    private static Map<String, String> values(int i) {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("mail", "user" + i + "@example.com");
+        values.put("inum", "@!" + i);
+
+        return values;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.configuration.BaseFilter;
+import org.xdi.oxauth.service.BaseAuthFilterService.AuthenticationFilterWithParameters;
+
+import com.unboundid.ldap.sdk.Filter;
+
+public class AuthenticationFilterTemplateTest {
+
+	private static final String FILTER = "(&(mail=*{0}*)(inum={1}))";
+
+	@Test
+	public void buildsSameFilterAsParsedText() throws Exception {
+		AuthenticationFilterWithParameters filter = prepare(FILTER);
+		assertNotNull(filter.getFilterTemplate());
+
+		Map<String, String> values = values("test@example.com", "@!1111");
+
+		assertEquals(BaseAuthFilterService.buildLdapFilter(filter, values), Filter.create(BaseAuthFilterService.buildFilter(filter, values)));
+		assertEquals(BaseAuthFilterService.buildLdapFilter(filter, values).toString(), "(&(mail=*test@example.com*)(inum=@!1111))");
+	}
+
+	@Test
+	public void valuesAreNotParsedAsFilter() throws Exception {
+		AuthenticationFilterWithParameters filter = prepare("uid={0}");
+		assertNotNull(filter.getFilterTemplate());
+
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("uid", "*)(uid=admin");
+
+		Filter ldapFilter = BaseAuthFilterService.buildLdapFilter(filter, values);
+		assertEquals(ldapFilter.getFilterType(), Filter.FILTER_TYPE_EQUALITY);
+		assertEquals(ldapFilter.getAssertionValue(), "*)(uid=admin");
+		assertEquals(ldapFilter.toString(), "(uid=\\2a\\29\\28uid=admin)");
+	}
+
+	@Test
+	public void parameterWithoutValueIsKept() throws Exception {
+		AuthenticationFilterWithParameters filter = prepare(FILTER);
+
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("mail", "test@example.com");
+
+		assertEquals(BaseAuthFilterService.buildLdapFilter(filter, values).toString(), "(&(mail=*test@example.com*)(inum={1}))");
+	}
+
+	@Test
+	public void filterWithoutTemplateIsParsed() throws Exception {
+		AuthenticationFilterWithParameters filter = prepare(FILTER);
+		Map<String, String> values = values("test@example.com", "@!1111");
+		Filter expected = BaseAuthFilterService.buildLdapFilter(filter, values);
+
+		filter.setFilterTemplate(null);
+		assertEquals(BaseAuthFilterService.buildLdapFilter(filter, values), expected);
+	}
+
+	@Test
+	public void invalidFilterIsNotPrecompiled() throws Exception {
+		AuthenticationFilterWithParameters filter = prepare("(&(uid={0})");
+		assertNull(filter.getFilterTemplate());
+		assertEquals(filter.getVariableNames(), Arrays.asList("uid"));
+	}
+
+	private static Map<String, String> values(String mail, String inum) {
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("mail", mail);
+		values.put("inum", inum);
+
+		return values;
+	}
+
+	private static AuthenticationFilterWithParameters prepare(String filterText) {
+		BaseFilter baseFilter = new BaseFilter();
+		baseFilter.setFilter(filterText);
+		baseFilter.setBaseDn("o=gluu");
+
+		BaseAuthFilterService service = new BaseAuthFilterService() {
+			@Override
+			public String processAuthenticationFilter(AuthenticationFilterWithParameters p_allowed, Map<?, ?> p_attributeValues) {
+				return null;
+			}
+		};
+		service.log = LoggerFactory.getLogger(BaseAuthFilterService.class);
+		service.init(Arrays.asList(baseFilter), true, true);
+
+		List<AuthenticationFilterWithParameters> filters = service.getFilterWithParameters();
+		assertEquals(filters.size(), 1);
+
+		return filters.get(0);
+	}
+
+}
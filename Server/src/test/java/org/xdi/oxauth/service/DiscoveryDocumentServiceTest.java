@@ -0,0 +1,175 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.discovery.DiscoveryDocument;
+
+public class DiscoveryDocumentServiceTest {
+
+    @Test
+    public void gzipIsAcceptedOnlyWithPositiveQuality() {
+        assertTrue(DiscoveryDocumentService.acceptsGzip("gzip"));
+        assertTrue(DiscoveryDocumentService.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(DiscoveryDocumentService.acceptsGzip("x-gzip"));
+        assertTrue(DiscoveryDocumentService.acceptsGzip("*"));
+        assertFalse(DiscoveryDocumentService.acceptsGzip(null));
+        assertFalse(DiscoveryDocumentService.acceptsGzip("identity"));
+        assertFalse(DiscoveryDocumentService.acceptsGzip("gzip;q=0"));
+        assertFalse(DiscoveryDocumentService.acceptsGzip("gzip; q=0.0, identity"));
+        assertFalse(DiscoveryDocumentService.acceptsGzip("*, gzip;q=0"));
+        assertFalse(DiscoveryDocumentService.acceptsGzip("*;q=0"));
+        assertFalse(DiscoveryDocumentService.acceptsGzip("gzipped"));
+    }
+
+    @Test
+    public void documentIsBuiltOncePerVersion() throws Exception {
+        DiscoveryDocumentService service = new DiscoveryDocumentService(10, 10);
+        CountingBuilder builder = new CountingBuilder("{}");
+
+        DiscoveryDocument document = service.getDocument("openid-configuration", "1", builder);
+        assertSame(service.getDocument("openid-configuration", "1", builder), document);
+        assertEquals(builder.calls.get(), 1);
+
+        assertEquals(service.getDocument("openid-configuration", "2", builder).getVersion(), "2");
+        assertEquals(builder.calls.get(), 2);
+    }
+
+    @Test
+    public void leastRecentlyUsedDocumentIsEvicted() throws Exception {
+        DiscoveryDocumentService service = new DiscoveryDocumentService(2, 2);
+        CountingBuilder builder = new CountingBuilder("{}");
+
+        service.getDocument("webfinger:a", "1", builder);
+        service.getDocument("webfinger:b", "1", builder);
+        service.getDocument("webfinger:a", "1", builder);
+        service.getDocument("webfinger:c", "1", builder);
+        assertEquals(builder.calls.get(), 3);
+
+        service.getDocument("webfinger:a", "1", builder);
+        assertEquals(builder.calls.get(), 3);
+
+        service.getDocument("webfinger:b", "1", builder);
+        assertEquals(builder.calls.get(), 4);
+    }
+
+    @Test
+    public void missingDocumentIsNotCached() throws Exception {
+        DiscoveryDocumentService service = new DiscoveryDocumentService(10, 10);
+        CountingBuilder builder = new CountingBuilder(null);
+
+        assertNull(service.getDocument("gluu-configuration", "1", builder));
+        assertNull(service.getDocument("gluu-configuration", "1", builder));
+        assertEquals(builder.calls.get(), 2);
+    }
+
+    @Test
+    public void variantsHaveDifferentEtags() throws Exception {
+        DiscoveryDocumentService service = new DiscoveryDocumentService(10, 10);
+        DiscoveryDocument document = service.getDocument("openid-configuration", "1", new CountingBuilder("{\"issuer\":\"https://as.example.com\"}"));
+
+        Map<String, Object> identityHeaders = new HashMap<String, Object>();
+        service.write(document, request("HEAD", "identity", null), response(identityHeaders), "application/json");
+        Map<String, Object> gzipHeaders = new HashMap<String, Object>();
+        service.write(document, request("HEAD", "gzip", null), response(gzipHeaders), "application/json");
+
+        assertEquals(identityHeaders.get("ETag"), document.getEtag());
+        assertNotEquals(gzipHeaders.get("ETag"), identityHeaders.get("ETag"));
+        assertEquals(gzipHeaders.get("Content-Encoding"), "gzip");
+        assertNull(identityHeaders.get("Content-Encoding"));
+    }
+
+    @Test
+    public void notModifiedOnlyForMatchingVariant() throws Exception {
+        DiscoveryDocumentService service = new DiscoveryDocumentService(10, 10);
+        DiscoveryDocument document = service.getDocument("openid-configuration", "1", new CountingBuilder("{}"));
+
+        Map<String, Object> headers = new HashMap<String, Object>();
+        service.write(document, request("GET", "gzip", document.getEtag(true)), response(headers), "application/json");
+        assertEquals(headers.get("status"), HttpServletResponse.SC_NOT_MODIFIED);
+
+        headers = new HashMap<String, Object>();
+        service.write(document, request("HEAD", "gzip", document.getEtag(false)), response(headers), "application/json");
+        assertNull(headers.get("status"));
+        assertEquals(headers.get("Content-Length"), document.getGzippedContent().length);
+    }
+
+    private static HttpServletRequest request(final String method, final String acceptEncoding, final String ifNoneMatch) {
+        return (HttpServletRequest) Proxy.newProxyInstance(DiscoveryDocumentServiceTest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (m.getName().equals("getMethod")) {
+                            return method;
+                        }
+                        if (m.getName().equals("getHeader")) {
+                            if ("Accept-Encoding".equals(args[0])) {
+                                return acceptEncoding;
+                            }
+                            if ("If-None-Match".equals(args[0])) {
+                                return ifNoneMatch;
+                            }
+                            return null;
+                        }
+                        if (m.getName().equals("getDateHeader")) {
+                            return -1L;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static HttpServletResponse response(final Map<String, Object> headers) {
+        return (HttpServletResponse) Proxy.newProxyInstance(DiscoveryDocumentServiceTest.class.getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (m.getName().equals("setHeader")) {
+                            headers.put((String) args[0], args[1]);
+                        } else if (m.getName().equals("setStatus")) {
+                            headers.put("status", args[0]);
+                        } else if (m.getName().equals("setContentLength")) {
+                            headers.put("Content-Length", args[0]);
+                        } else if (m.getName().equals("getOutputStream")) {
+                            throw new UnsupportedOperationException("Body is not expected");
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static class CountingBuilder implements DiscoveryDocumentService.DocumentBuilder {
+
+        private final String content;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingBuilder(String content) {
+            this.content = content;
+        }
+
+        public String build() {
+            calls.incrementAndGet();
+            return content;
+        }
+    }
+
+}
@@ -0,0 +1,372 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.spi.Context;
+import javax.enterprise.inject.spi.BeanManager;
+
+import org.gluu.site.ldap.OperationsFacade;
+import org.gluu.site.ldap.persistence.LdapEntryManager;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.common.AuthorizationGrant;
+import org.xdi.oxauth.model.common.AuthorizationGrantList;
+import org.xdi.oxauth.model.common.AuthorizationGrantType;
+import org.xdi.oxauth.model.common.User;
+import org.xdi.oxauth.model.config.BaseDnConfiguration;
+import org.xdi.oxauth.model.config.StaticConfiguration;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.ldap.Grant;
+import org.xdi.oxauth.model.ldap.TokenLdap;
+import org.xdi.oxauth.model.ldap.TokenType;
+import org.xdi.oxauth.model.registration.Client;
+import org.xdi.oxauth.util.TokenHashUtil;
+import org.xdi.service.CacheService;
+
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Drives client, user and grant lookups in the order /token and /userinfo requests make them and checks how
+ * many of them go to cache or LDAP.
+ */
+public class IdentityLookupFlowTest {
+
+    private static final String CLIENTS_DN = "ou=clients,o=@!1111,o=gluu";
+    private static final String PEOPLE_DN = "ou=people,o=@!1111,o=gluu";
+    private static final String CLIENT_ID = "@!1111!0008!AAAA";
+    private static final String CLIENT_DN = "inum=" + CLIENT_ID + "," + CLIENTS_DN;
+    private static final String USER_DN = "inum=@!1111!0000!D4E7," + PEOPLE_DN;
+    private static final String GRANT_ID = "f4a5b8e2-1b5c-4a3e-9f5e-2a1d7c3b6e90";
+    private static final String ACCESS_TOKEN = "a3d8f1c2-7b4e-4c1a-8d2f-5e6b9a0c3d71";
+    private static final String REFRESH_TOKEN = "b7e2c9d4-3a1f-4e8b-9c6d-0f2a5b8e1c34";
+
+    private final Map<String, TokenLdap> tokens = new HashMap<String, TokenLdap>();
+
+    private InMemoryCacheService cacheService;
+    private InMemoryLdapEntryManager ldapEntryManager;
+    private InMemoryGrantService grantService;
+    private ClientService clientService;
+    private UserService userService;
+    private AuthorizationGrantList authorizationGrantList;
+    private RequestIdentityContext context;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        BaseDnConfiguration baseDn = new BaseDnConfiguration();
+        baseDn.setClients(CLIENTS_DN);
+        baseDn.setPeople(PEOPLE_DN);
+        StaticConfiguration staticConfiguration = new StaticConfiguration();
+        staticConfiguration.setBaseDn(baseDn);
+
+        cacheService = new InMemoryCacheService();
+        ldapEntryManager = new InMemoryLdapEntryManager();
+        ldapEntryManager.entries.put(CLIENT_DN, client("Test client"));
+        ldapEntryManager.entries.put(USER_DN, user());
+
+        tokens.clear();
+        tokens.put(TokenHashUtil.getHashedToken(ACCESS_TOKEN), token(ACCESS_TOKEN, TokenType.ACCESS_TOKEN));
+        tokens.put(TokenHashUtil.getHashedToken(REFRESH_TOKEN), token(REFRESH_TOKEN, TokenType.REFRESH_TOKEN));
+
+        BeanManager beanManager = activeRequestScope();
+
+        clientService = new ClientService();
+        inject(clientService, "log", LoggerFactory.getLogger(ClientService.class));
+        inject(clientService, "ldapEntryManager", ldapEntryManager);
+        inject(clientService, "cacheService", cacheService);
+        inject(clientService, "staticConfiguration", staticConfiguration);
+        inject(clientService, "redirectUriMatcherService", new RedirectUriMatcherService());
+        inject(clientService, "beanManager", beanManager);
+
+        userService = new UserService();
+        inject(userService, "log", LoggerFactory.getLogger(UserService.class));
+        inject(userService, "ldapEntryManager", ldapEntryManager);
+        inject(userService, "staticConfiguration", staticConfiguration);
+        inject(userService, "beanManager", beanManager);
+
+        grantService = new InMemoryGrantService();
+        inject(grantService, "log", LoggerFactory.getLogger(GrantService.class));
+        inject(grantService, "ldapEntryManager", ldapEntryManager);
+        inject(grantService, "beanManager", beanManager);
+
+        authorizationGrantList = new AuthorizationGrantList();
+        inject(authorizationGrantList, "log", LoggerFactory.getLogger(AuthorizationGrantList.class));
+        inject(authorizationGrantList, "grantService", grantService);
+        inject(authorizationGrantList, "userService", userService);
+        inject(authorizationGrantList, "clientService", clientService);
+        inject(authorizationGrantList, "appConfiguration", new AppConfiguration());
+        inject(authorizationGrantList, "cacheService", cacheService);
+        inject(authorizationGrantList, "beanManager", beanManager);
+
+        startRequest();
+    }
+
+    @Test
+    public void tokenRequestLoadsClientAndUserOnce() {
+        // AuthenticationFilter authenticates client by id and then resolves it by DN
+        assertNotNull(clientService.getClient(CLIENT_ID));
+        Client client = clientService.getClientByDn(CLIENT_DN);
+
+        // TokenRestWebServiceImpl resolves refresh token grant, IdTokenFactory reads user claims
+        AuthorizationGrant grant = authorizationGrantList.getAuthorizationGrantByRefreshToken(CLIENT_ID, REFRESH_TOKEN);
+        assertNotNull(grant);
+        assertSame(grant.getClient(), client);
+        assertSame(userService.getUserByDn(grant.getUserDn()), grant.getUser());
+
+        // One client lookup and one user lookup, refresh token is always read from LDAP
+        assertEquals(context.getBackendCallCount(), 2);
+        assertEquals(ldapEntryManager.finds, 2);
+        assertEquals(grantService.loads, 1);
+    }
+
+    @Test
+    public void userInfoRequestLoadsGrantOnce() {
+        // AuthenticationFilter and UserInfoRestWebServiceImpl both resolve access token
+        AuthorizationGrant grant = authorizationGrantList.getAuthorizationGrantByAccessToken(ACCESS_TOKEN);
+        assertNotNull(grant);
+        assertSame(authorizationGrantList.getAuthorizationGrantByAccessToken(ACCESS_TOKEN), grant);
+        assertSame(userService.getUserByDn(grant.getUserDn()), grant.getUser());
+
+        // Grant, user and client
+        assertEquals(context.getBackendCallCount(), 3);
+        assertEquals(grantService.loads, 1);
+
+        startRequest();
+        assertNotNull(authorizationGrantList.getAuthorizationGrantByAccessToken(ACCESS_TOKEN));
+        assertEquals(context.getBackendCallCount(), 3);
+        assertEquals(grantService.loads, 2);
+    }
+
+    @Test
+    public void removedGrantIsNotReturned() {
+        assertNotNull(authorizationGrantList.getAuthorizationGrantByAccessToken(ACCESS_TOKEN));
+
+        Grant grant = new Grant();
+        grant.setDn("oxAuthGrantId=" + GRANT_ID + "," + CLIENT_DN);
+        grant.setId(GRANT_ID);
+        grantService.remove(grant);
+
+        assertNull(authorizationGrantList.getAuthorizationGrantByAccessToken(ACCESS_TOKEN));
+        assertEquals(grantService.loads, 2);
+    }
+
+    @Test
+    public void mergedClientIsReturnedInSameRequest() {
+        assertNotNull(clientService.getClientByDn(CLIENT_DN));
+
+        Client client = client("Updated client");
+        clientService.merge(client);
+
+        assertSame(clientService.getClientByDn(CLIENT_DN), client);
+        assertEquals(context.getBackendCallCount(), 1);
+
+        // Next request doesn't get stale client from cache
+        startRequest();
+        assertEquals(clientService.getClientByDn(CLIENT_DN).getClientName(), "Updated client");
+        assertEquals(context.getBackendCallCount(), 1);
+    }
+
+    @Test
+    public void updatedUserIsReloaded() {
+        User user = userService.getUserByDn(USER_DN);
+        userService.updateUser(user);
+
+        assertNotNull(userService.getUserByDn(USER_DN));
+        assertEquals(context.getBackendCallCount(), 2);
+    }
+
+    /**
+     * Every request gets new context, as request scoped bean does
+     */
+    private void startRequest() {
+        context = new RequestIdentityContext();
+        try {
+            inject(clientService, "identityContext", context);
+            inject(userService, "identityContext", context);
+            inject(grantService, "identityContext", context);
+            inject(authorizationGrantList, "identityContext", context);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void inject(Object bean, String fieldName, Object value) throws Exception {
+        Class<?> beanClass = bean.getClass();
+        while (true) {
+            try {
+                Field field = beanClass.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(bean, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                beanClass = beanClass.getSuperclass();
+                if (beanClass == null) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static BeanManager activeRequestScope() {
+        final Context requestContext = (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] {Context.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("isActive".equals(method.getName())) {
+                            return Boolean.TRUE;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        return (BeanManager) Proxy.newProxyInstance(BeanManager.class.getClassLoader(), new Class<?>[] {BeanManager.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getContext".equals(method.getName())) {
+                            return requestContext;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Client client(String clientName) {
+        Client client = new Client();
+        client.setDn(CLIENT_DN);
+        client.setClientId(CLIENT_ID);
+        client.setClientName(clientName);
+        return client;
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setDn(USER_DN);
+        user.setUserId("admin");
+        return user;
+    }
+
+    private static TokenLdap token(String code, TokenType tokenType) {
+        TokenLdap token = new TokenLdap();
+        token.setDn("uniqueIdentifier=" + code + ",oxAuthGrantId=" + GRANT_ID + "," + CLIENT_DN);
+        token.setGrantId(GRANT_ID);
+        token.setGrantType(AuthorizationGrantType.AUTHORIZATION_CODE.getParamName());
+        token.setTokenTypeEnum(tokenType);
+        token.setTokenCode(TokenHashUtil.getHashedToken(code));
+        token.setUserId("admin");
+        token.setClientId(CLIENT_ID);
+        token.setCreationDate(new Date());
+        token.setExpirationDate(new Date(System.currentTimeMillis() + 3600000L));
+        return token;
+    }
+
+    private static class InMemoryCacheService extends CacheService {
+
+        private final Map<String, Object> entries = new HashMap<String, Object>();
+
+        @Override
+        public Object get(String region, String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public void put(String expirationInSeconds, String key, Object object) {
+            entries.put(key, object);
+        }
+
+        @Override
+        public void remove(String region, String key) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Keeps clients and users by DN, removing of grant removes its tokens as subtree removal in LDAP
+     */
+    private class InMemoryLdapEntryManager extends LdapEntryManager {
+
+        private final Map<String, Object> entries = new HashMap<String, Object>();
+        private int finds;
+
+        InMemoryLdapEntryManager() {
+            super((OperationsFacade) null);
+        }
+
+        @Override
+        public <T> T find(Class<T> entryClass, Object primaryKey) {
+            return find(entryClass, primaryKey, null);
+        }
+
+        @Override
+        public <T> T find(Class<T> entryClass, Object primaryKey, String[] ldapReturnAttributes) {
+            finds++;
+            return entryClass.cast(entries.get(primaryKey));
+        }
+
+        @Override
+        public <T> List<T> findEntries(String baseDN, Class<T> entryClass, String[] ldapReturnAttributes, Filter filter) {
+            finds++;
+            List<T> result = new ArrayList<T>();
+            for (Object entry : entries.values()) {
+                if ((entry instanceof User) && filter.getAssertionValue().equals(((User) entry).getUserId())) {
+                    result.add(entryClass.cast(entry));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public <T> T merge(T entry) {
+            if (entry instanceof Client) {
+                entries.put(((Client) entry).getDn(), entry);
+            }
+            return entry;
+        }
+
+        @Override
+        public void remove(Object entry) {
+            if (entry instanceof Grant) {
+                for (Iterator<TokenLdap> it = tokens.values().iterator(); it.hasNext(); ) {
+                    if (((Grant) entry).getId().equals(it.next().getGrantId())) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private class InMemoryGrantService extends GrantService {
+
+        private int loads;
+
+        @Override
+        public TokenLdap getGrantsByCode(String p_code) {
+            loads++;
+            return tokens.get(TokenHashUtil.getHashedToken(p_code));
+        }
+
+        @Override
+        public TokenLdap getGrantsByCodeAndClient(String p_code, String p_clientId) {
+            return getGrantsByCode(p_code);
+        }
+    }
+
+}
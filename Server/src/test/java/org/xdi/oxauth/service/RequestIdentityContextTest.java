@@ -0,0 +1,91 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.common.User;
+import org.xdi.oxauth.model.registration.Client;
+
+public class RequestIdentityContextTest {
+
+    private static final String USER_DN = "inum=@!1111!0000!D4E7,ou=people,o=@!1111,o=gluu";
+    private static final String CLIENT_DN = "inum=@!1111!0008!AAAA,ou=clients,o=@!1111,o=gluu";
+
+    @Test
+    public void userIsFoundByDnAndUid() {
+        RequestIdentityContext context = new RequestIdentityContext();
+        User user = user();
+        context.putUser(user);
+
+        assertSame(context.getUserByDn(USER_DN), user);
+        assertSame(context.getUserByUid("admin"), user);
+        // Full entry is used for lookup of some attributes
+        assertSame(context.getUserByDn(USER_DN, "uid", "mail"), user);
+        assertSame(context.getUserByUid("admin", "uid"), user);
+    }
+
+    @Test
+    public void partialUserIsNotUsedForOtherAttributes() {
+        RequestIdentityContext context = new RequestIdentityContext();
+        User user = user();
+        context.putUser(user, "uid");
+
+        assertSame(context.getUserByDn(USER_DN, "uid"), user);
+        assertNull(context.getUserByDn(USER_DN));
+        assertNull(context.getUserByDn(USER_DN, "mail"));
+        assertNull(context.getUserByUid("admin"));
+    }
+
+    @Test
+    public void removeUserRemovesAllCopies() {
+        RequestIdentityContext context = new RequestIdentityContext();
+        User user = user();
+        context.putUser(user);
+        context.putUser(user(), "uid");
+
+        context.removeUser(user);
+
+        assertNull(context.getUserByDn(USER_DN));
+        assertNull(context.getUserByDn(USER_DN, "uid"));
+        assertNull(context.getUserByUid("admin"));
+    }
+
+    @Test
+    public void clientDnIsCaseInsensitive() {
+        RequestIdentityContext context = new RequestIdentityContext();
+        Client client = new Client();
+        client.setDn(CLIENT_DN);
+        context.putClient(client);
+
+        assertSame(context.getClient(CLIENT_DN.toUpperCase()), client);
+
+        context.removeClient(CLIENT_DN);
+        assertNull(context.getClient(CLIENT_DN));
+    }
+
+    @Test
+    public void backendCallsAreCounted() {
+        RequestIdentityContext context = new RequestIdentityContext();
+        assertEquals(context.getBackendCallCount(), 0);
+
+        context.incrementBackendCallCount();
+        context.incrementBackendCallCount();
+        assertEquals(context.getBackendCallCount(), 2);
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setDn(USER_DN);
+        user.setUserId("admin");
+        return user;
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.authorize.JwtAuthorizationRequest;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.exception.InvalidJwtException;
+import org.xdi.oxauth.model.registration.Client;
+import org.xdi.oxauth.model.util.Base64Util;
+import org.xdi.oxauth.model.util.Util;
+import org.xdi.oxauth.service.net.OutboundHttpClient.Response;
+import org.xdi.oxauth.service.net.OutboundHttpService;
+
+public class RequestObjectServiceTest {
+
+    private static final String REQUEST_URI = "https://rp.example.com/request.jwt";
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void requestObjectIsFetchedOnce() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "max-age=60");
+        TestRequestObjectService service = new TestRequestObjectService(configuration(10), httpService);
+
+        assertEquals(service.getRequestObject(REQUEST_URI), requestObject("state1"));
+        assertEquals(service.getRequestObject(REQUEST_URI), requestObject("state1"));
+        assertEquals(httpService.calls, 1);
+    }
+
+    @Test
+    public void noStoreRequestObjectIsNotCached() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "no-store");
+        TestRequestObjectService service = new TestRequestObjectService(configuration(10), httpService);
+
+        service.getRequestObject(REQUEST_URI);
+        service.getRequestObject(REQUEST_URI);
+        assertEquals(httpService.calls, 2);
+    }
+
+    @Test
+    public void requestObjectWithWrongHashIsRejected() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "max-age=60");
+        TestRequestObjectService service = new TestRequestObjectService(configuration(10), httpService);
+
+        assertNull(service.getRequestObject(REQUEST_URI + "#ZXaKMqc3iVeUkXqrRJ6Q3YkGaj0"));
+    }
+
+    @Test
+    public void leastRecentlyUsedRequestObjectIsEvicted() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "max-age=60");
+        TestRequestObjectService service = new TestRequestObjectService(configuration(2), httpService);
+
+        service.getRequestObject(REQUEST_URI + "?1");
+        service.getRequestObject(REQUEST_URI + "?2");
+        service.getRequestObject(REQUEST_URI + "?1");
+        service.getRequestObject(REQUEST_URI + "?3");
+        assertEquals(httpService.calls, 3);
+
+        service.getRequestObject(REQUEST_URI + "?1");
+        assertEquals(httpService.calls, 3);
+
+        service.getRequestObject(REQUEST_URI + "?2");
+        assertEquals(httpService.calls, 4);
+    }
+
+    @Test
+    public void verifiedRequestObjectIsNotShared() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "max-age=60");
+        TestRequestObjectService service = new TestRequestObjectService(configuration(10), httpService);
+        Client client = client();
+
+        String request = service.getRequestObject(REQUEST_URI);
+        JwtAuthorizationRequest first = service.getJwtAuthorizationRequest(request, REQUEST_URI, client);
+        first.setState("modified");
+        first.getScopes().add("profile");
+
+        JwtAuthorizationRequest second = service.getJwtAuthorizationRequest(request, REQUEST_URI, client);
+        assertNotSame(second, first);
+        assertEquals(second.getState(), "state1");
+        assertEquals(second.getScopes().size(), 1);
+        assertEquals(service.verifications, 1);
+    }
+
+    @Test
+    public void requestObjectIsVerifiedAgainWhenClientKeysChange() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "max-age=60");
+        TestRequestObjectService service = new TestRequestObjectService(configuration(10), httpService);
+        Client client = client();
+
+        String request = service.getRequestObject(REQUEST_URI);
+        service.getJwtAuthorizationRequest(request, REQUEST_URI, client);
+        client.setJwks("{\"keys\":[]}");
+        service.getJwtAuthorizationRequest(request, REQUEST_URI, client);
+
+        assertEquals(service.verifications, 2);
+    }
+
+    @Test
+    public void requestObjectIsVerifiedAgainWhenJwksUriKeysAreTooOld() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "max-age=60");
+        AppConfiguration appConfiguration = configuration(10);
+        appConfiguration.setRequestUriJwksLifetime(0);
+        TestRequestObjectService service = new TestRequestObjectService(appConfiguration, httpService);
+        Client client = client();
+        client.setJwksUri("https://rp.example.com/jwks");
+
+        String request = service.getRequestObject(REQUEST_URI);
+        service.getJwtAuthorizationRequest(request, REQUEST_URI, client);
+        service.getJwtAuthorizationRequest(request, REQUEST_URI, client);
+
+        assertEquals(service.verifications, 2);
+    }
+
+    @Test
+    public void requestUrisAreVerifiedOnPrefetch() throws Exception {
+        TestHttpService httpService = new TestHttpService(requestObject("state1"), "max-age=60");
+        TestRequestObjectService service = new TestRequestObjectService(configuration(10), httpService);
+        Client client = client();
+        client.setRequestUris(new String[] {REQUEST_URI});
+
+        service.prefetch(client);
+        assertEquals(httpService.calls, 1);
+        assertEquals(service.verifications, 1);
+
+        service.getJwtAuthorizationRequest(service.getRequestObject(REQUEST_URI), REQUEST_URI, client);
+        assertEquals(httpService.calls, 1);
+        assertEquals(service.verifications, 1);
+    }
+
+    private static AppConfiguration configuration(int maxSize) {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setRequestUriCacheMaxSize(maxSize);
+        return appConfiguration;
+    }
+
+    private static Client client() {
+        Client client = new Client();
+        client.setClientId("@!1111!0008!0001");
+        client.setClientSecret("secret");
+        return client;
+    }
+
+    private static String requestObject(String state) throws Exception {
+        return Base64Util.base64urlencode("{\"alg\":\"none\"}".getBytes(Util.UTF8_STRING_ENCODING)) + "."
+                + Base64Util.base64urlencode(("{\"response_type\":\"code\",\"client_id\":\"@!1111!0008!0001\","
+                + "\"scope\":\"openid\",\"state\":\"" + state + "\"}").getBytes(Util.UTF8_STRING_ENCODING)) + ".";
+    }
+
+    private static class TestRequestObjectService extends RequestObjectService {
+
+        private int verifications;
+
+        TestRequestObjectService(AppConfiguration appConfiguration, OutboundHttpService outboundHttpService) {
+            super(LoggerFactory.getLogger(RequestObjectService.class), appConfiguration, outboundHttpService, DIRECT_EXECUTOR);
+        }
+
+        @Override
+        JwtAuthorizationRequest verify(String request, Client client) throws InvalidJwtException {
+            verifications++;
+
+            // Signature of unsecured request object isn't verified here
+            final String[] parts = request.split("\\.");
+            try {
+                return new JwtAuthorizationRequest(new AppConfiguration(), request,
+                        new String(Base64Util.base64urldecode(parts[0]), Util.UTF8_STRING_ENCODING),
+                        new String(Base64Util.base64urldecode(parts[1]), Util.UTF8_STRING_ENCODING)) {
+                };
+            } catch (IOException e) {
+                throw new InvalidJwtException(e);
+            }
+        }
+    }
+
+    private static class TestHttpService extends OutboundHttpService {
+
+        private final String body;
+        private final String cacheControl;
+        private int calls;
+
+        TestHttpService(String body, String cacheControl) {
+            this.body = body;
+            this.cacheControl = cacheControl;
+        }
+
+        @Override
+        public Response get(String uri) throws IOException {
+            calls++;
+            return new Response(200, body, new Header[] {new BasicHeader("Cache-Control", cacheControl)});
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.common.Scope;
+
+public class ScopeCatalogueServiceTest {
+
+    @Test
+    public void scopesAreIndexedCaseInsensitive() {
+        ScopeCatalogueService service = new TestScopeCatalogueService(
+                scope("inum=1,ou=scopes", "openid", "true", "inum=a1,ou=attributes"),
+                scope("inum=2,ou=scopes", "profile", "false", "inum=a1,ou=attributes", "inum=a2,ou=attributes"));
+
+        assertEquals(service.getScopeByDn("INUM=1,OU=SCOPES").getDisplayName(), "openid");
+        assertEquals(service.getScopeByDisplayName("Profile").getDn(), "inum=2,ou=scopes");
+        assertEquals(service.getDefaultScopesDn(), Arrays.asList("inum=1,ou=scopes"));
+        assertEquals(service.getScopesByClaim("inum=a1,ou=attributes").size(), 2);
+        assertEquals(service.getScopesByClaim("INUM=A2,OU=ATTRIBUTES").size(), 1);
+        assertTrue(service.getScopesByClaim("inum=a3,ou=attributes").isEmpty());
+    }
+
+    @Test
+    public void firstScopeWithDisplayNameWins() {
+        ScopeCatalogueService service = new TestScopeCatalogueService(
+                scope("inum=1,ou=scopes", "email", "false"),
+                scope("inum=2,ou=scopes", "email", "false"));
+
+        assertEquals(service.getScopeByDisplayName("email").getDn(), "inum=1,ou=scopes");
+        assertEquals(service.getAllScopes().size(), 2);
+    }
+
+    private static Scope scope(String dn, String displayName, String defaultScope, String... claims) {
+        Scope scope = new Scope();
+        scope.setDn(dn);
+        scope.setDisplayName(displayName);
+        scope.setDefaultScope(defaultScope);
+        scope.setOxAuthClaims(Arrays.asList(claims));
+        return scope;
+    }
+
+    private static class TestScopeCatalogueService extends ScopeCatalogueService {
+
+        private final List<Scope> scopes;
+
+        TestScopeCatalogueService(Scope... scopes) {
+            this.scopes = Arrays.asList(scopes);
+        }
+
+        @Override
+        protected Snapshot load(long revision) {
+            return new Snapshot(new ArrayList<Scope>(scopes), revision);
+        }
+
+        @Override
+        protected int getRefreshInterval() {
+            return 300;
+        }
+
+        @Override
+        protected long getLoadedRevision() {
+            return 1;
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.registration.SectorIdentifierDocument;
+
+public class SectorIdentifierDocumentCacheTest {
+
+    private static final long STALE_IF_ERROR_LIFETIME = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void documentIsLoadedOnce() {
+        TestLoader loader = new TestLoader(TimeUnit.MINUTES.toMillis(5));
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, STALE_IF_ERROR_LIFETIME);
+
+        SectorIdentifierDocument document = cache.get("https://rp.example.com/sector");
+
+        assertNotNull(document);
+        assertSame(cache.get("https://rp.example.com/sector"), document);
+        assertEquals(loader.calls.get(), 1);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        TestLoader loader = new TestLoader(TimeUnit.MINUTES.toMillis(5));
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 2, STALE_IF_ERROR_LIFETIME);
+
+        cache.get("https://a.example.com/sector");
+        cache.get("https://b.example.com/sector");
+        cache.get("https://a.example.com/sector");
+        cache.get("https://c.example.com/sector");
+        assertEquals(cache.size(), 2);
+        assertEquals(loader.calls.get(), 3);
+
+        cache.get("https://a.example.com/sector");
+        assertEquals(loader.calls.get(), 3);
+
+        cache.get("https://b.example.com/sector");
+        assertEquals(loader.calls.get(), 4);
+    }
+
+    @Test
+    public void revalidationDoesNotAddEntry() {
+        TestLoader loader = new TestLoader(TimeUnit.MINUTES.toMillis(5));
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, STALE_IF_ERROR_LIFETIME);
+
+        assertNotNull(cache.revalidate("https://rp.example.com/sector"));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void failedEntryIsRemoved() {
+        TestLoader loader = new TestLoader(TimeUnit.MINUTES.toMillis(5));
+        loader.failing = true;
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, STALE_IF_ERROR_LIFETIME);
+
+        assertNull(cache.get("https://rp.example.com/sector"));
+        assertEquals(cache.size(), 0);
+
+        cache.refresh(0, STALE_IF_ERROR_LIFETIME);
+        assertEquals(loader.calls.get(), 1);
+    }
+
+    @Test
+    public void staleDocumentIsUsedWhileServerFails() {
+        TestLoader loader = new TestLoader(-1);
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, STALE_IF_ERROR_LIFETIME);
+
+        SectorIdentifierDocument document = cache.get("https://rp.example.com/sector");
+        loader.failing = true;
+
+        assertSame(cache.revalidate("https://rp.example.com/sector"), document);
+        assertEquals(loader.calls.get(), 2);
+
+        // Next attempt is postponed, so requests don't wait for failing server
+        assertSame(cache.get("https://rp.example.com/sector"), document);
+        cache.refresh(0, STALE_IF_ERROR_LIFETIME);
+        assertEquals(loader.calls.get(), 2);
+    }
+
+    @Test
+    public void staleDocumentIsNotUsedAfterStaleIfErrorLifetime() {
+        TestLoader loader = new TestLoader(-1);
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, 0);
+
+        cache.get("https://rp.example.com/sector");
+        loader.failing = true;
+
+        assertNull(cache.revalidate("https://rp.example.com/sector"));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void failingEntryIsRemovedAfterMaxFailures() {
+        TestLoader loader = new TestLoader(-1);
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, STALE_IF_ERROR_LIFETIME);
+
+        cache.get("https://rp.example.com/sector");
+        loader.failing = true;
+
+        for (int i = 1; i < SectorIdentifierDocumentCache.MAX_FAILURES; i++) {
+            assertNotNull(cache.revalidate("https://rp.example.com/sector"));
+        }
+        assertNull(cache.revalidate("https://rp.example.com/sector"));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void idleEntryIsRemoved() {
+        TestLoader loader = new TestLoader(TimeUnit.MINUTES.toMillis(5));
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, STALE_IF_ERROR_LIFETIME);
+
+        cache.get("https://rp.example.com/sector");
+        cache.refresh(0, -1);
+
+        assertEquals(cache.size(), 0);
+        assertEquals(loader.calls.get(), 1);
+    }
+
+    @Test
+    public void expiringDocumentIsRefreshed() {
+        TestLoader loader = new TestLoader(TimeUnit.MINUTES.toMillis(5));
+        SectorIdentifierDocumentCache cache = new SectorIdentifierDocumentCache(loader, 10, STALE_IF_ERROR_LIFETIME);
+
+        SectorIdentifierDocument document = cache.get("https://rp.example.com/sector");
+        cache.refresh(TimeUnit.MINUTES.toMillis(10), STALE_IF_ERROR_LIFETIME);
+
+        assertEquals(loader.calls.get(), 2);
+        assertNotSame(cache.get("https://rp.example.com/sector"), document);
+    }
+
+    private static class TestLoader implements SectorIdentifierDocumentCache.DocumentLoader {
+
+        private final long lifetime;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean failing;
+
+        TestLoader(long lifetime) {
+            this.lifetime = lifetime;
+        }
+
+        public SectorIdentifierDocument load(String sectorIdentifierUri, SectorIdentifierDocument previous) throws Exception {
+            calls.incrementAndGet();
+            if (failing) {
+                throw new Exception("Server is not available");
+            }
+
+            final long now = System.currentTimeMillis();
+            return new SectorIdentifierDocument(sectorIdentifierUri, Arrays.asList("https://rp.example.com/cb"), null, null,
+                    now, now + lifetime);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.fido.u2f;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gluu.site.ldap.persistence.exception.EntryPersistenceException;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.fido.u2f.DeviceRegistration;
+import org.xdi.oxauth.service.UserService;
+
+public class DeviceRegistrationCacheTest {
+
+	private static final String APP_ID = "https://rp.example.com";
+	private static final String PEOPLE_DN = "ou=people,o=@!1111,o=gluu";
+
+	@Test
+	public void userEntriesAreEvicted() {
+		DeviceRegistrationCache cache = new DeviceRegistrationCache(configuration(300));
+		cache.addKnownBranch("ou=fido,inum=1," + PEOPLE_DN);
+		cache.addKnownBranch("ou=fido,inum=2," + PEOPLE_DN);
+		cache.putDeviceDn(APP_ID, "kh1", "oxId=d1,ou=fido,inum=1," + PEOPLE_DN);
+		cache.putDeviceDn(APP_ID, "kh2", "oxId=d2,ou=fido,inum=2," + PEOPLE_DN);
+
+		cache.removeUser("INUM=1," + PEOPLE_DN);
+
+		assertFalse(cache.isKnownBranch("ou=fido,inum=1," + PEOPLE_DN));
+		assertNull(cache.getDeviceDn(APP_ID, "kh1"));
+		assertTrue(cache.isKnownBranch("OU=FIDO,INUM=2," + PEOPLE_DN));
+		assertEquals(cache.getDeviceDn(APP_ID, "kh2"), "oxId=d2,ou=fido,inum=2," + PEOPLE_DN);
+	}
+
+	@Test
+	public void nothingIsCachedWithoutLifetime() {
+		DeviceRegistrationCache cache = new DeviceRegistrationCache(configuration(0));
+		cache.addKnownBranch("ou=fido,inum=1," + PEOPLE_DN);
+		cache.putDeviceDn(APP_ID, "kh1", "oxId=d1,ou=fido,inum=1," + PEOPLE_DN);
+
+		assertFalse(cache.isKnownBranch("ou=fido,inum=1," + PEOPLE_DN));
+		assertNull(cache.getDeviceDn(APP_ID, "kh1"));
+	}
+
+	@Test
+	public void cachedDeviceIsLoadedByDn() {
+		TestDeviceRegistrationService service = new TestDeviceRegistrationService();
+		service.add(device("oxId=d1,ou=fido,inum=1," + PEOPLE_DN, APP_ID, "kh1"));
+
+		assertEquals(service.findDeviceRegistrationsByKeyHandle(APP_ID, "kh1").size(), 1);
+		assertEquals(service.findDeviceRegistrationsByKeyHandle(APP_ID, "kh1").size(), 1);
+		assertEquals(service.searches, 1);
+	}
+
+	@Test
+	public void removedDeviceFallsBackToSearch() {
+		TestDeviceRegistrationService service = new TestDeviceRegistrationService();
+		service.add(device("oxId=d1,ou=fido,inum=1," + PEOPLE_DN, APP_ID, "kh1"));
+		service.findDeviceRegistrationsByKeyHandle(APP_ID, "kh1");
+
+		// Device is registered again under other user
+		service.devices.clear();
+		service.add(device("oxId=d1,ou=fido,inum=2," + PEOPLE_DN, APP_ID, "kh1"));
+
+		List<DeviceRegistration> result = service.findDeviceRegistrationsByKeyHandle(APP_ID, "kh1");
+		assertEquals(result.size(), 1);
+		assertEquals(result.get(0).getDn(), "oxId=d1,ou=fido,inum=2," + PEOPLE_DN);
+		assertEquals(service.searches, 2);
+	}
+
+	@Test
+	public void replacedDeviceFallsBackToSearch() {
+		TestDeviceRegistrationService service = new TestDeviceRegistrationService();
+		service.add(device("oxId=d1,ou=fido,inum=1," + PEOPLE_DN, APP_ID, "kh1"));
+		service.findDeviceRegistrationsByKeyHandle(APP_ID, "kh1");
+
+		// Entry with the same DN now holds other key
+		service.add(device("oxId=d1,ou=fido,inum=1," + PEOPLE_DN, APP_ID, "kh2"));
+
+		assertTrue(service.findDeviceRegistrationsByKeyHandle(APP_ID, "kh1").isEmpty());
+		assertEquals(service.searches, 2);
+	}
+
+	private static AppConfiguration configuration(int u2fDeviceCacheLifetime) {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setU2fDeviceCacheLifetime(u2fDeviceCacheLifetime);
+		return appConfiguration;
+	}
+
+	private static DeviceRegistration device(String dn, String appId, String keyHandle) {
+		DeviceRegistration deviceRegistration = new DeviceRegistration();
+		deviceRegistration.setDn(dn);
+		deviceRegistration.setApplication(appId);
+		deviceRegistration.setKeyHandle(keyHandle);
+		return deviceRegistration;
+	}
+
+	private static class TestDeviceRegistrationService extends DeviceRegistrationService {
+
+		private final Map<String, DeviceRegistration> devices = new HashMap<String, DeviceRegistration>();
+		private int searches;
+
+		TestDeviceRegistrationService() {
+			super(LoggerFactory.getLogger(DeviceRegistrationService.class), new UserService() {
+				@Override
+				public String getDnForUser(String inum) {
+					return inum == null ? PEOPLE_DN : String.format("inum=%s,%s", inum, PEOPLE_DN);
+				}
+			}, new DeviceRegistrationCache(configuration(300)));
+		}
+
+		void add(DeviceRegistration deviceRegistration) {
+			devices.put(deviceRegistration.getDn(), deviceRegistration);
+		}
+
+		@Override
+		DeviceRegistration findDeviceRegistration(String deviceDn, String... returnAttributes) {
+			DeviceRegistration deviceRegistration = devices.get(deviceDn);
+			if (deviceRegistration == null) {
+				throw new EntryPersistenceException("Entry not found: " + deviceDn);
+			}
+
+			return deviceRegistration;
+		}
+
+		@Override
+		List<DeviceRegistration> searchDeviceRegistrationsByKeyHandle(String appId, String keyHandle, String... returnAttributes) {
+			searches++;
+
+			List<DeviceRegistration> result = new ArrayList<DeviceRegistration>();
+			for (DeviceRegistration deviceRegistration : devices.values()) {
+				if (appId.equals(deviceRegistration.getApplication()) && keyHandle.equals(deviceRegistration.getKeyHandle())) {
+					result.add(deviceRegistration);
+				}
+			}
+
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.fido.u2f;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.gluu.site.ldap.persistence.exception.EntryPersistenceException;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.fido.u2f.AuthenticateRequestMessageLdap;
+import org.xdi.oxauth.model.fido.u2f.RegisterRequestMessageLdap;
+import org.xdi.oxauth.model.fido.u2f.RequestMessageLdap;
+import org.xdi.service.CacheService;
+
+import com.unboundid.ldap.sdk.Filter;
+
+public class RequestMessageStorageTest {
+
+	private static final String BASE_DN = "ou=registration_requests,ou=u2f,o=@!1111,o=gluu";
+
+	@Test
+	public void ldapRequestIsTakenOnce() {
+		InMemoryLdapRequestMessageStorage storage = new InMemoryLdapRequestMessageStorage();
+		storage.persist(request("r1"));
+
+		assertEquals(storage.take(RegisterRequestMessageLdap.class, BASE_DN, "r1").getRequestId(), "r1");
+		assertNull(storage.take(RegisterRequestMessageLdap.class, BASE_DN, "r1"));
+	}
+
+	@Test
+	public void ldapRequestRemovedByOtherCallerIsNotReturned() {
+		InMemoryLdapRequestMessageStorage storage = new InMemoryLdapRequestMessageStorage();
+		storage.persist(request("r1"));
+
+		// Other node deletes entry between search and delete
+		storage.removeBeforeDelete = true;
+		assertNull(storage.take(RegisterRequestMessageLdap.class, BASE_DN, "r1"));
+	}
+
+	@Test
+	public void cachedRequestIsTakenOnce() {
+		InMemoryLdapRequestMessageStorage ldapStorage = new InMemoryLdapRequestMessageStorage();
+		InMemoryCacheService cacheService = new InMemoryCacheService();
+		CacheRequestMessageStorage storage = cacheStorage(cacheService, ldapStorage, 30);
+
+		storage.persist(request("r1"));
+		assertEquals(cacheService.expirations.get("u2f_RegisterRequestMessageLdap_r1"), "30");
+		assertEquals(ldapStorage.entries.size(), 0);
+
+		assertEquals(storage.take(RegisterRequestMessageLdap.class, BASE_DN, "r1").getRequestId(), "r1");
+		assertNull(storage.take(RegisterRequestMessageLdap.class, BASE_DN, "r1"));
+	}
+
+	@Test
+	public void concurrentCallersTakeCachedRequestOnce() throws Exception {
+		InMemoryCacheService cacheService = new InMemoryCacheService();
+		cacheService.getDelay = 20;
+		final CacheRequestMessageStorage storage = cacheStorage(cacheService, new InMemoryLdapRequestMessageStorage(), 30);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int i = 0; i < 10; i++) {
+				final String requestId = "r" + i;
+				storage.persist(request(requestId));
+
+				final CountDownLatch start = new CountDownLatch(1);
+				List<Future<RegisterRequestMessageLdap>> results = new ArrayList<Future<RegisterRequestMessageLdap>>();
+				for (int j = 0; j < 8; j++) {
+					results.add(executor.submit(new Callable<RegisterRequestMessageLdap>() {
+						public RegisterRequestMessageLdap call() throws Exception {
+							start.await();
+							return storage.take(RegisterRequestMessageLdap.class, BASE_DN, requestId);
+						}
+					}));
+				}
+				start.countDown();
+
+				int taken = 0;
+				for (Future<RegisterRequestMessageLdap> result : results) {
+					if (result.get(10, TimeUnit.SECONDS) != null) {
+						taken++;
+					}
+				}
+				assertEquals(taken, 1, "Request " + requestId + " was taken by several callers");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void cachedRequestOfOtherTypeIsNotReturned() {
+		CacheRequestMessageStorage storage = cacheStorage(new InMemoryCacheService(), new InMemoryLdapRequestMessageStorage(), 30);
+
+		storage.persist(request("r1"));
+		assertNull(storage.take(AuthenticateRequestMessageLdap.class, BASE_DN, "r1"));
+	}
+
+	@Test
+	public void requestStoredInLdapBeforeSwitchIsFound() {
+		InMemoryLdapRequestMessageStorage ldapStorage = new InMemoryLdapRequestMessageStorage();
+		ldapStorage.persist(request("r1"));
+		CacheRequestMessageStorage storage = cacheStorage(new InMemoryCacheService(), ldapStorage, 0);
+
+		assertEquals(storage.take(RegisterRequestMessageLdap.class, BASE_DN, "r1").getRequestId(), "r1");
+		assertEquals(ldapStorage.entries.size(), 0);
+	}
+
+	@Test
+	public void defaultExpirationIsUsed() {
+		InMemoryCacheService cacheService = new InMemoryCacheService();
+		CacheRequestMessageStorage storage = cacheStorage(cacheService, new InMemoryLdapRequestMessageStorage(), 0);
+
+		storage.persist(request("r1"));
+		assertEquals(cacheService.expirations.get("u2f_RegisterRequestMessageLdap_r1"), "90");
+	}
+
+	private static CacheRequestMessageStorage cacheStorage(CacheService cacheService, LdapRequestMessageStorage ldapStorage, int expiration) {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setU2fRequestExpiration(expiration);
+		return new CacheRequestMessageStorage(LoggerFactory.getLogger(CacheRequestMessageStorage.class), cacheService, appConfiguration, ldapStorage);
+	}
+
+	private static RegisterRequestMessageLdap request(String requestId) {
+		RegisterRequestMessageLdap request = new RegisterRequestMessageLdap();
+		request.setDn("oxId=" + requestId + "," + BASE_DN);
+		request.setRequestId(requestId);
+		return request;
+	}
+
+	private static class InMemoryCacheService extends CacheService {
+
+		private final Map<String, Object> entries = new ConcurrentHashMap<String, Object>();
+		private final Map<String, String> expirations = new ConcurrentHashMap<String, String>();
+		private volatile long getDelay;
+
+		@Override
+		public Object get(String region, String key) {
+			final Object entry = entries.get(key);
+			if (getDelay > 0) {
+				// Widen window between get and remove as with remote cache
+				try {
+					Thread.sleep(getDelay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return entry;
+		}
+
+		@Override
+		public void put(String expirationInSeconds, String key, Object object) {
+			entries.put(key, object);
+			expirations.put(key, expirationInSeconds);
+		}
+
+		@Override
+		public void remove(String region, String key) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Deleting missing entry fails as in LDAP
+	 */
+	private static class InMemoryLdapRequestMessageStorage extends LdapRequestMessageStorage {
+
+		private final List<RequestMessageLdap> entries = new CopyOnWriteArrayList<RequestMessageLdap>();
+		private boolean removeBeforeDelete;
+
+		InMemoryLdapRequestMessageStorage() {
+			super(LoggerFactory.getLogger(LdapRequestMessageStorage.class));
+		}
+
+		@Override
+		public void persist(RequestMessageLdap requestMessage) {
+			entries.add(requestMessage);
+		}
+
+		@Override
+		<T extends RequestMessageLdap> List<T> find(Class<T> entryClass, String baseDn, Filter filter) {
+			List<T> result = new ArrayList<T>();
+			for (RequestMessageLdap entry : entries) {
+				if (entryClass.isInstance(entry) && filter.getAssertionValue().equals(entry.getRequestId())) {
+					result.add(entryClass.cast(entry));
+				}
+			}
+			return result;
+		}
+
+		@Override
+		void remove(RequestMessageLdap requestMessage) {
+			if (removeBeforeDelete) {
+				entries.remove(requestMessage);
+			}
+			if (!entries.remove(requestMessage)) {
+				throw new EntryPersistenceException("Failed to remove entry: " + requestMessage.getDn());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.net;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.service.net.OutboundHttpClient.Response;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs outbound client against embedded HTTP server
+ */
+public class OutboundHttpClientTest {
+
+    private HttpServer server;
+    private String baseUri;
+
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final AtomicInteger failingRequests = new AtomicInteger();
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/jwks", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                send(exchange, 200, "{\"keys\":[]}");
+            }
+        });
+        server.createContext("/slow", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                send(exchange, 200, "[]");
+            }
+        });
+        server.createContext("/failing", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                failingRequests.incrementAndGet();
+                send(exchange, 503, "");
+            }
+        });
+        server.createContext("/large", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream os = exchange.getResponseBody();
+                byte[] chunk = new byte[64 * 1024];
+                try {
+                    for (int i = 0; i <= OutboundHttpClient.MAX_RESPONSE_SIZE / chunk.length; i++) {
+                        os.write(chunk);
+                    }
+                } finally {
+                    os.close();
+                }
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        baseUri = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void connectionsAreReused() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(10, 2, 1000, 1000, 2000, 3, 60000);
+        try {
+            clientPorts.clear();
+            for (int i = 0; i < 20; i++) {
+                Response response = client.get(baseUri + "/jwks");
+                assertEquals(response.getStatus(), 200);
+                assertEquals(response.getBody(), "{\"keys\":[]}");
+                assertEquals(response.getFirstHeader("etag"), "\"v1\"");
+            }
+
+            assertEquals(clientPorts.size(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void requestIsAbortedAfterDeadline() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(10, 2, 1000, 10000, 500, 3, 60000);
+        try {
+            long start = System.currentTimeMillis();
+            try {
+                client.get(baseUri + "/slow");
+                fail("Request should be aborted");
+            } catch (IOException ex) {
+                assertTrue(System.currentTimeMillis() - start < 2500);
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void circuitOpensForFailingHost() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(10, 2, 1000, 1000, 2000, 3, 300);
+        try {
+            failingRequests.set(0);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(client.get(baseUri + "/failing").getStatus(), 503);
+            }
+            assertTrue(client.isCircuitOpen(baseUri + "/jwks"));
+
+            try {
+                client.get(baseUri + "/jwks");
+                fail("Circuit should be open");
+            } catch (CircuitOpenException ex) {
+                assertEquals(failingRequests.get(), 3);
+            }
+
+            // Probe request after open interval closes circuit
+            Thread.sleep(400);
+            assertEquals(client.get(baseUri + "/jwks").getStatus(), 200);
+            assertFalse(client.isCircuitOpen(baseUri + "/jwks"));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void failedProbeAllowsNextProbe() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(10, 2, 1000, 1000, 2000, 1, 300);
+        try {
+            assertEquals(client.get(baseUri + "/failing").getStatus(), 503);
+            assertTrue(client.isCircuitOpen(baseUri + "/failing"));
+
+            Thread.sleep(400);
+            assertEquals(client.get(baseUri + "/failing").getStatus(), 503);
+            assertTrue(client.isCircuitOpen(baseUri + "/failing"));
+
+            Thread.sleep(400);
+            assertEquals(client.get(baseUri + "/jwks").getStatus(), 200);
+            assertFalse(client.isCircuitOpen(baseUri + "/jwks"));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void largeResponseIsRejected() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(10, 2, 1000, 1000, 5000, 0, 300);
+        try {
+            client.get(baseUri + "/large");
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(bytes);
+        os.close();
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
+import org.xdi.service.CacheService;
+
+public class CacheResourceSetPermissionManagerTest {
+
+    private static final String CLIENT_DN = "inum=@!1111,ou=clients,o=@!1111,o=gluu";
+
+    @Test
+    public void ticketIsRedeemedOnce() {
+        InMemoryLdapManager ldap = new InMemoryLdapManager();
+        CacheResourceSetPermissionManager manager = manager(new InMemoryCacheService(), ldap);
+        manager.addResourceSetPermission(permission("t1", 60), CLIENT_DN);
+
+        ResourceSetPermission permission = manager.getResourceSetPermissionByTicket("t1");
+        assertTrue(manager.redeemResourceSetPermission(permission));
+        assertFalse(manager.redeemResourceSetPermission(permission));
+        assertFalse(manager.redeemResourceSetPermission(manager.getResourceSetPermissionByTicket("t1")));
+
+        assertEquals(ldap.entries.size(), 1);
+        assertEquals(ldap.entries.get("t1").getAmHost(), ResourceSetPermissionManager.INVALIDATED_AM_HOST);
+    }
+
+    @Test
+    public void concurrentRedemptionsHaveSingleWinner() throws Exception {
+        final InMemoryLdapManager ldap = new InMemoryLdapManager();
+        final CacheResourceSetPermissionManager manager = manager(new InMemoryCacheService(), ldap);
+        manager.addResourceSetPermission(permission("t1", 60), CLIENT_DN);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        // Every request loads its own copy of the permission, as with memcached
+                        ResourceSetPermission permission = copy(manager.getResourceSetPermissionByTicket("t1"));
+                        start.await();
+                        return manager.redeemResourceSetPermission(permission);
+                    }
+                }));
+            }
+            start.countDown();
+
+            int redeemed = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    redeemed++;
+                }
+            }
+            assertEquals(redeemed, 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void redemptionFailsWhenPermissionIsNotPersisted() {
+        InMemoryLdapManager ldap = new InMemoryLdapManager();
+        ldap.failing = true;
+        CacheResourceSetPermissionManager manager = manager(new InMemoryCacheService(), ldap);
+        manager.addResourceSetPermission(permission("t1", 60), CLIENT_DN);
+
+        ResourceSetPermission permission = manager.getResourceSetPermissionByTicket("t1");
+        assertFalse(manager.redeemResourceSetPermission(permission));
+
+        // Ticket stays usable
+        ldap.failing = false;
+        assertTrue(manager.redeemResourceSetPermission(manager.getResourceSetPermissionByTicket("t1")));
+    }
+
+    @Test
+    public void unknownTicketIsNotRedeemed() {
+        CacheResourceSetPermissionManager manager = manager(new InMemoryCacheService(), new InMemoryLdapManager());
+
+        assertFalse(manager.redeemResourceSetPermission(permission("unknown", 60)));
+    }
+
+    @Test
+    public void deletedTicketIsNotFound() {
+        CacheResourceSetPermissionManager manager = manager(new InMemoryCacheService(), new InMemoryLdapManager());
+        manager.addResourceSetPermission(permission("t1", 60), CLIENT_DN);
+
+        manager.deleteResourceSetPermission("t1");
+        assertNull(manager.getResourceSetPermissionByTicket("t1"));
+    }
+
+    @Test
+    public void permissionWithoutExpirationGetsTicketLifetime() {
+        CacheResourceSetPermissionManager manager = manager(new InMemoryCacheService(), new InMemoryLdapManager());
+
+        assertEquals(manager.getExpiresIn(permission("t1", 0)), 3600);
+        int expiresIn = manager.getExpiresIn(permission("t2", 60));
+        assertTrue(expiresIn > 0 && expiresIn <= 60);
+    }
+
+    private static CacheResourceSetPermissionManager manager(CacheService cacheService, ResourceSetPermissionManager ldap) {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setUmaRequesterPermissionTokenLifetime(3600);
+        return new CacheResourceSetPermissionManager(LoggerFactory.getLogger(CacheResourceSetPermissionManager.class), cacheService, ldap, appConfiguration);
+    }
+
+    private static ResourceSetPermission permission(String ticket, int lifetimeInSeconds) {
+        Date expirationDate = lifetimeInSeconds > 0 ? new Date(System.currentTimeMillis() + lifetimeInSeconds * 1000L) : null;
+        return new ResourceSetPermission("rs1", new ArrayList<String>(), "as.example.com", "", ticket, "c" + ticket, expirationDate);
+    }
+
+    private static ResourceSetPermission copy(ResourceSetPermission permission) {
+        ResourceSetPermission copy = new ResourceSetPermission(permission.getResourceSetId(), permission.getScopeDns(), permission.getAmHost(),
+                permission.getHost(), permission.getTicket(), permission.getConfigurationCode(), permission.getExpirationDate());
+        copy.setDn(permission.getDn());
+        return copy;
+    }
+
+    private static class InMemoryCacheService extends CacheService {
+
+        private final Map<String, Object> entries = new ConcurrentHashMap<String, Object>();
+
+        @Override
+        public Object get(String region, String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public void put(String expirationInSeconds, String key, Object object) {
+            entries.put(key, object);
+        }
+
+        @Override
+        public void remove(String region, String key) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Keeps permissions by ticket, adding existing entry fails as in LDAP
+     */
+    private static class InMemoryLdapManager extends ResourceSetPermissionManager {
+
+        private final ConcurrentHashMap<String, ResourceSetPermission> entries = new ConcurrentHashMap<String, ResourceSetPermission>();
+        private volatile boolean failing;
+
+        @Override
+        public boolean addRedeemedResourceSetPermission(ResourceSetPermission resourceSetPermission, String clientDn) {
+            if (failing) {
+                return false;
+            }
+
+            ResourceSetPermission redeemed = copy(resourceSetPermission);
+            redeemed.setAmHost(INVALIDATED_AM_HOST);
+            return entries.putIfAbsent(redeemed.getTicket(), redeemed) == null;
+        }
+
+        @Override
+        public ResourceSetPermission getResourceSetPermissionByTicket(String ticket) {
+            ResourceSetPermission permission = entries.get(ticket);
+            return permission != null ? copy(permission) : null;
+        }
+
+        @Override
+        public boolean redeemResourceSetPermission(ResourceSetPermission resourceSetPermission) {
+            return !INVALIDATED_AM_HOST.equals(resourceSetPermission.getAmHost());
+        }
+    }
+
+}
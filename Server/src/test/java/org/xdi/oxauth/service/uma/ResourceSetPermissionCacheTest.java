@@ -0,0 +1,59 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
+
+public class ResourceSetPermissionCacheTest {
+
+    @Test
+    public void permissionIsFoundByDnIgnoringCase() {
+        ResourceSetPermissionCache cache = new ResourceSetPermissionCache(configuration(10));
+        ResourceSetPermission permission = permission("oxTicket=a1,ou=uma_resource_set_permission,inum=c1,ou=clients", "rs1");
+
+        cache.put(permission);
+        assertSame(cache.get("OXTICKET=A1,ou=uma_resource_set_permission,inum=c1,ou=clients"), permission);
+    }
+
+    @Test
+    public void removedPermissionIsNotReturned() {
+        ResourceSetPermissionCache cache = new ResourceSetPermissionCache(configuration(10));
+        ResourceSetPermission permission = permission("oxTicket=a1,ou=uma_resource_set_permission,inum=c1,ou=clients", "rs1");
+
+        cache.put(permission);
+        cache.remove(permission.getDn());
+        assertNull(cache.get(permission.getDn()));
+    }
+
+    @Test
+    public void nothingIsCachedWhenLifetimeIsZero() {
+        ResourceSetPermissionCache cache = new ResourceSetPermissionCache(configuration(0));
+        ResourceSetPermission permission = permission("oxTicket=a1,ou=uma_resource_set_permission,inum=c1,ou=clients", "rs1");
+
+        cache.put(permission);
+        assertNull(cache.get(permission.getDn()));
+    }
+
+    static ResourceSetPermission permission(String dn, String resourceSetId) {
+        ResourceSetPermission permission = new ResourceSetPermission();
+        permission.setDn(dn);
+        permission.setResourceSetId(resourceSetId);
+        return permission;
+    }
+
+    static AppConfiguration configuration(int lifetime) {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setUmaRptPermissionCacheLifetime(lifetime);
+        return appConfiguration;
+    }
+
+}
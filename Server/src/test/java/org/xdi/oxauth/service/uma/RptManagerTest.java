@@ -0,0 +1,128 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.xdi.oxauth.service.uma.ResourceSetPermissionCacheTest.configuration;
+import static org.xdi.oxauth.service.uma.ResourceSetPermissionCacheTest.permission;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.common.uma.UmaRPT;
+import org.xdi.oxauth.model.uma.persistence.ResourceSetPermission;
+
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RDN;
+
+public class RptManagerTest {
+
+    private static final String BRANCH_1 = "ou=uma_resource_set_permission,inum=c1,ou=clients,o=gluu";
+    private static final String BRANCH_2 = "ou=uma_resource_set_permission,inum=c2,ou=clients,o=gluu";
+
+    @Test
+    public void permissionsAreLoadedWithOneSearchPerBranch() {
+        TestRptManager manager = new TestRptManager(10,
+                permission("oxTicket=a1," + BRANCH_1, "rs1"),
+                permission("oxTicket=a2," + BRANCH_1, "rs2"),
+                permission("oxTicket=b1," + BRANCH_2, "rs3"));
+
+        List<ResourceSetPermission> permissions = manager.getRptPermissions(rpt(
+                "oxTicket=a1," + BRANCH_1, "oxTicket=b1," + BRANCH_2, "oxTicket=a2," + BRANCH_1, "oxTicket=missing," + BRANCH_1));
+
+        assertEquals(resourceSetIds(permissions), Arrays.asList("rs1", "rs3", "rs2"));
+        assertEquals(manager.searches, 2);
+    }
+
+    @Test
+    public void cachedPermissionsAreNotSearched() {
+        TestRptManager manager = new TestRptManager(10,
+                permission("oxTicket=a1," + BRANCH_1, "rs1"),
+                permission("oxTicket=a2," + BRANCH_1, "rs2"));
+        UmaRPT rpt = rpt("oxTicket=a1," + BRANCH_1, "oxTicket=a2," + BRANCH_1);
+
+        manager.getRptPermissions(rpt);
+        manager.getRptPermissions(rpt);
+        assertEquals(manager.searches, 1);
+    }
+
+    @Test
+    public void permissionIsFoundByResourceSetId() {
+        TestRptManager manager = new TestRptManager(0,
+                permission("oxTicket=a1," + BRANCH_1, "rs1"),
+                permission("oxTicket=b1," + BRANCH_2, "rs2"));
+        UmaRPT rpt = rpt("oxTicket=a1," + BRANCH_1, "oxTicket=b1," + BRANCH_2);
+
+        assertEquals(manager.getPermissionFromRPTByResourceSetId(rpt, "rs2").getDn(), "oxTicket=b1," + BRANCH_2);
+        assertNull(manager.getPermissionFromRPTByResourceSetId(rpt, "rs3"));
+        assertEquals(manager.searches, 4);
+    }
+
+    private static UmaRPT rpt(String... permissionDns) {
+        UmaRPT rpt = new UmaRPT();
+        rpt.setPermissions(new ArrayList<String>(Arrays.asList(permissionDns)));
+        return rpt;
+    }
+
+    private static List<String> resourceSetIds(List<ResourceSetPermission> permissions) {
+        List<String> result = new ArrayList<String>();
+        for (ResourceSetPermission permission : permissions) {
+            result.add(permission.getResourceSetId());
+        }
+        return result;
+    }
+
+    /**
+     * Serves permissions from memory, LDAP filter is evaluated against DN RDN value
+     */
+    private static class TestRptManager extends RptManager {
+
+        private final List<ResourceSetPermission> permissions;
+        private int searches;
+
+        TestRptManager(int cacheLifetime, ResourceSetPermission... permissions) {
+            super(LoggerFactory.getLogger(RptManager.class), new ResourceSetPermissionCache(configuration(cacheLifetime)));
+            this.permissions = Arrays.asList(permissions);
+        }
+
+        @Override
+        ResourceSetPermission findPermission(String permissionDn) {
+            throw new AssertionError("Permission DN is expected to be valid: " + permissionDn);
+        }
+
+        @Override
+        List<ResourceSetPermission> findPermissions(String branchDn, Filter filter) {
+            searches++;
+            List<ResourceSetPermission> result = new ArrayList<ResourceSetPermission>();
+            for (ResourceSetPermission permission : permissions) {
+                if (permission.getDn().endsWith("," + branchDn) && matches(filter, permission)) {
+                    result.add(permission);
+                }
+            }
+            return result;
+        }
+
+        private static boolean matches(Filter filter, ResourceSetPermission permission) {
+            try {
+                RDN rdn = new DN(permission.getDn()).getRDN();
+                Entry entry = new Entry(permission.getDn());
+                entry.addAttribute(rdn.getAttributeNames()[0], rdn.getAttributeValues()[0]);
+                return filter.matchesEntry(entry);
+            } catch (LDAPException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+import java.util.Date;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.common.uma.UmaRPT;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.util.TokenHashUtil;
+
+public class RptStatusCacheTest {
+
+    private static final String CODE = "e4f6a0c2-1111-2222-3333-444455556666/C2B4.2A1C";
+
+    @Test
+    public void statusIsReturnedWithExpiration() {
+        RptStatusCache cache = new RptStatusCache(configuration(30));
+        UmaRPT rpt = rpt(60);
+
+        cache.put(CODE, "{\"active\":true}", rpt.getExpirationDate());
+
+        RptStatusCache.Status status = cache.get(CODE);
+        assertEquals(status.getEntity(), "{\"active\":true}");
+        assertEquals(status.getExpiresAt(), rpt.getExpirationDate());
+    }
+
+    @Test
+    public void entryExpiresWithRptWithoutTouchingIt() {
+        final long[] now = {System.currentTimeMillis()};
+        RptStatusCache cache = new RptStatusCache(configuration(30)) {
+            @Override
+            long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        UmaRPT rpt = rpt(10);
+
+        cache.put(CODE, "{\"active\":true}", rpt.getExpirationDate());
+        now[0] = rpt.getExpirationDate().getTime();
+
+        assertNull(cache.get(CODE));
+        assertFalse(rpt.isExpired());
+    }
+
+    @Test
+    public void expiredRptIsNotCached() {
+        RptStatusCache cache = new RptStatusCache(configuration(30));
+        UmaRPT rpt = rpt(-1);
+
+        cache.put(CODE, "{\"active\":true}", rpt.getExpirationDate());
+        assertNull(cache.get(CODE));
+    }
+
+    @Test
+    public void entryIsRemovedByPlainOrHashedCode() {
+        RptStatusCache cache = new RptStatusCache(configuration(30));
+        UmaRPT rpt = rpt(60);
+
+        cache.put(CODE, "{\"active\":true}", rpt.getExpirationDate());
+        cache.remove(CODE);
+        assertNull(cache.get(CODE));
+
+        cache.put(CODE, "{\"active\":true}", rpt.getExpirationDate());
+        cache.remove(TokenHashUtil.getHashedToken(CODE));
+        assertNull(cache.get(CODE));
+    }
+
+    @Test
+    public void nothingIsCachedWhenLifetimeIsZero() {
+        RptStatusCache cache = new RptStatusCache(configuration(0));
+        UmaRPT rpt = rpt(60);
+
+        cache.put(CODE, "{\"active\":true}", rpt.getExpirationDate());
+        assertNull(cache.get(CODE));
+    }
+
+    private static UmaRPT rpt(int lifetimeInSeconds) {
+        Date now = new Date();
+        return new UmaRPT(CODE, now, new Date(now.getTime() + lifetimeInSeconds * 1000L), "user", "client", "as.example.com");
+    }
+
+    private static AppConfiguration configuration(int lifetime) {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setUmaRptStatusCacheLifetime(lifetime);
+        return appConfiguration;
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.persistence.InternalExternal;
+import org.xdi.oxauth.model.uma.persistence.ScopeDescription;
+
+public class UmaScopeCatalogueServiceTest {
+
+    private static final String SCOPE_ENDPOINT = "https://as.example.com/oxauth/seam/resource/restv1/uma/scopes";
+
+    @Test
+    public void scopesAreIndexed() {
+        TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService(
+                scope("inum=1", "https://rs.example.com/read", "read", InternalExternal.EXTERNAL),
+                scope("inum=2", SCOPE_ENDPOINT + "/modify", "modify", InternalExternal.INTERNAL));
+
+        assertEquals(service.getByUrl("https://rs.example.com/read").getDn(), "inum=1");
+        assertEquals(service.getByDn("INUM=1").getDn(), "inum=1");
+        assertEquals(service.getInternalById("modify").getDn(), "inum=2");
+        assertEquals(service.getInternalByUrl(SCOPE_ENDPOINT + "/modify").getDn(), "inum=2");
+        assertNull(service.getInternalById("read"));
+    }
+
+    @Test
+    public void addedScopeIsFoundWithoutReload() {
+        TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService();
+        service.markUnknownUrl("https://rs.example.com/write");
+        assertTrue(service.isUnknownUrl("https://rs.example.com/write"));
+
+        service.add(scope("inum=3", "https://rs.example.com/write", "write", InternalExternal.EXTERNAL));
+
+        assertEquals(service.getByUrl("https://rs.example.com/write").getDn(), "inum=3");
+        assertFalse(service.isUnknownUrl("https://rs.example.com/write"));
+        assertEquals(service.loads.get(), 1);
+    }
+
+    @Test
+    public void scopeAddedDuringReloadIsKept() throws Exception {
+        final TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService();
+        assertNull(service.getByUrl("https://rs.example.com/write"));
+
+        service.loading = new CountDownLatch(1);
+        service.release = new CountDownLatch(1);
+        service.revision = 2;
+        Thread reload = new Thread(new Runnable() {
+            public void run() {
+                service.getByUrl("https://rs.example.com/read");
+            }
+        });
+        reload.start();
+        try {
+            assertTrue(service.loading.await(10, TimeUnit.SECONDS));
+
+            // LDAP search of reload has already started, so it doesn't find new scope
+            service.add(scope("inum=3", "https://rs.example.com/write", "write", InternalExternal.EXTERNAL_AUTO));
+            assertEquals(service.getByUrl("https://rs.example.com/write").getDn(), "inum=3");
+        } finally {
+            service.release.countDown();
+            reload.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertEquals(service.loads.get(), 2);
+        assertEquals(service.getByUrl("https://rs.example.com/write").getDn(), "inum=3");
+    }
+
+    @Test
+    public void scopeRemovedFromLdapIsDroppedOnNextReload() {
+        TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService();
+        service.add(scope("inum=3", "https://rs.example.com/write", "write", InternalExternal.EXTERNAL_AUTO));
+        assertEquals(service.getByUrl("https://rs.example.com/write").getDn(), "inum=3");
+
+        // Search of this reload starts after scope was added, so scope is not in LDAP anymore
+        service.revision = 2;
+        assertNull(service.getByUrl("https://rs.example.com/write"));
+    }
+
+    @Test
+    public void unknownUrlsAreForgottenOnInvalidate() {
+        TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService();
+        service.markUnknownUrl("https://rs.example.com/write");
+
+        service.invalidate();
+        assertFalse(service.isUnknownUrl("https://rs.example.com/write"));
+    }
+
+    @Test
+    public void concurrentRequestsCreateScopeOnce() throws Exception {
+        final TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService();
+        final AtomicInteger created = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final UmaScopeCatalogueService.ScopeFactory factory = new UmaScopeCatalogueService.ScopeFactory() {
+            public ScopeDescription create(String url) {
+                sleep(50);
+                return scope("inum=" + created.incrementAndGet(), url, "auto", InternalExternal.EXTERNAL_AUTO);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ScopeDescription>> results = new ArrayList<Future<ScopeDescription>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<ScopeDescription>() {
+                    public ScopeDescription call() throws Exception {
+                        start.await();
+                        return service.getOrAdd("https://rs.example.com/auto", factory);
+                    }
+                }));
+            }
+            start.countDown();
+
+            ScopeDescription first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<ScopeDescription> result : results) {
+                assertSame(result.get(10, TimeUnit.SECONDS), first);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(created.get(), 1);
+        assertEquals(service.getByUrl("https://rs.example.com/auto").getDn(), "inum=1");
+    }
+
+    @Test
+    public void slowCreationDoesNotBlockOtherUrls() throws Exception {
+        final TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService();
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Thread slow = new Thread(new Runnable() {
+            public void run() {
+                service.getOrAdd("https://rs.example.com/slow", new UmaScopeCatalogueService.ScopeFactory() {
+                    public ScopeDescription create(String url) {
+                        creating.countDown();
+                        await(release);
+                        return scope("inum=1", url, "slow", InternalExternal.EXTERNAL_AUTO);
+                    }
+                });
+            }
+        });
+        slow.start();
+        try {
+            assertTrue(creating.await(10, TimeUnit.SECONDS));
+
+            ScopeDescription fast = service.getOrAdd("https://rs.example.com/fast", new UmaScopeCatalogueService.ScopeFactory() {
+                public ScopeDescription create(String url) {
+                    return scope("inum=2", url, "fast", InternalExternal.EXTERNAL_AUTO);
+                }
+            });
+            assertEquals(fast.getDn(), "inum=2");
+        } finally {
+            release.countDown();
+            slow.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertEquals(service.getByUrl("https://rs.example.com/slow").getDn(), "inum=1");
+        assertEquals(service.getByUrl("https://rs.example.com/fast").getDn(), "inum=2");
+    }
+
+    @Test
+    public void failedCreationIsNotCached() {
+        TestUmaScopeCatalogueService service = new TestUmaScopeCatalogueService();
+
+        assertNull(service.getOrAdd("https://rs.example.com/auto", new UmaScopeCatalogueService.ScopeFactory() {
+            public ScopeDescription create(String url) {
+                return null;
+            }
+        }));
+        assertNull(service.getByUrl("https://rs.example.com/auto"));
+    }
+
+    private static ScopeDescription scope(String dn, String url, String id, InternalExternal type) {
+        ScopeDescription scope = new ScopeDescription();
+        scope.setDn(dn);
+        scope.setUrl(url);
+        scope.setId(id);
+        scope.setType(type);
+        return scope;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestUmaScopeCatalogueService extends UmaScopeCatalogueService {
+
+        private final List<ScopeDescription> scopes;
+        private final AtomicInteger loads = new AtomicInteger();
+        private volatile long revision = 1;
+        private volatile CountDownLatch loading;
+        private volatile CountDownLatch release;
+
+        TestUmaScopeCatalogueService(ScopeDescription... scopes) {
+            super(configuration());
+            this.scopes = Arrays.asList(scopes);
+        }
+
+        private static AppConfiguration configuration() {
+            AppConfiguration appConfiguration = new AppConfiguration();
+            appConfiguration.setUmaScopeCacheRefreshInterval(300);
+            appConfiguration.setUmaScopeNegativeCacheLifetime(30);
+            return appConfiguration;
+        }
+
+        @Override
+        protected Snapshot load(long revision) {
+            loads.incrementAndGet();
+            final long sequence = getAddSequence();
+            if (loading != null) {
+                loading.countDown();
+                await(release);
+            }
+            return new Snapshot(new ArrayList<ScopeDescription>(scopes), SCOPE_ENDPOINT, sequence, revision, System.currentTimeMillis());
+        }
+
+        @Override
+        protected long getLoadedRevision() {
+            return revision;
+        }
+    }
+
+}
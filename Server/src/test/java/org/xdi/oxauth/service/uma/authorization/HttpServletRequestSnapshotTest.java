@@ -0,0 +1,161 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma.authorization;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.testng.annotations.Test;
+
+public class HttpServletRequestSnapshotTest {
+
+    @Test
+    public void valuesAreCopied() {
+        final Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("ticket", new String[]{"t1"});
+        HttpServletRequest request = request(parameters);
+
+        HttpServletRequest snapshot = HttpServletRequestSnapshot.copyOf(request);
+
+        // Original request is recycled by container
+        parameters.clear();
+
+        assertEquals(snapshot.getRemoteAddr(), "10.0.0.1");
+        assertEquals(snapshot.getRequestURL().toString(), "https://as.example.com/oxauth/rpt/authorize");
+        assertEquals(snapshot.getHeader("x-forwarded-for"), "192.168.1.1");
+        assertEquals(Collections.list(snapshot.getHeaders("Accept")), Arrays.asList("application/json", "text/plain"));
+        assertEquals(snapshot.getParameter("ticket"), "t1");
+        assertNull(snapshot.getParameter("claims"));
+    }
+
+    @Test
+    public void attributesAndSessionAreCopied() {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("acr", "basic");
+        final Map<String, Object> sessionAttributes = new HashMap<String, Object>();
+        sessionAttributes.put("user", "admin");
+        HttpServletRequest request = request(new HashMap<String, String[]>(), attributes, session(sessionAttributes));
+
+        HttpServletRequest snapshot = HttpServletRequestSnapshot.copyOf(request);
+        attributes.clear();
+        sessionAttributes.clear();
+
+        assertEquals(snapshot.getAttribute("acr"), "basic");
+        assertEquals(Collections.list(snapshot.getAttributeNames()), Arrays.asList("acr"));
+        assertEquals(snapshot.getSession(false).getId(), "s1");
+        assertEquals(snapshot.getSession().getAttribute("user"), "admin");
+
+        // changes made by policies stay in the snapshot
+        snapshot.setAttribute("policy", "p1");
+        snapshot.getSession().setAttribute("user", "other");
+        assertEquals(snapshot.getAttribute("policy"), "p1");
+        assertEquals(snapshot.getSession().getAttribute("user"), "other");
+        assertNull(attributes.get("policy"));
+        assertNull(sessionAttributes.get("user"));
+    }
+
+    @Test
+    public void detachedSessionIsCreatedOnDemand() throws Exception {
+        HttpServletRequest snapshot = HttpServletRequestSnapshot.copyOf(request(new HashMap<String, String[]>()));
+
+        assertNull(snapshot.getSession(false));
+        HttpSession session = snapshot.getSession();
+        assertNotNull(session);
+        assertEquals(snapshot.getSession(false), session);
+        assertEquals(snapshot.getInputStream().read(), -1);
+        assertNull(snapshot.getReader().readLine());
+    }
+
+    @Test
+    public void nullRequestIsNotCopied() {
+        assertNull(HttpServletRequestSnapshot.copyOf(null));
+    }
+
+    private static HttpServletRequest request(final Map<String, String[]> parameters) {
+        return request(parameters, new HashMap<String, Object>(), null);
+    }
+
+    private static HttpServletRequest request(final Map<String, String[]> parameters, final Map<String, Object> attributes,
+                                              final HttpSession session) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequestSnapshotTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getRemoteAddr")) {
+                            return "10.0.0.1";
+                        }
+                        if (name.equals("getRemotePort") || name.equals("getServerPort")) {
+                            return 443;
+                        }
+                        if (name.equals("isSecure")) {
+                            return true;
+                        }
+                        if (name.equals("getRequestURL")) {
+                            return new StringBuffer("https://as.example.com/oxauth/rpt/authorize");
+                        }
+                        if (name.equals("getHeaderNames")) {
+                            return Collections.enumeration(Arrays.asList("X-Forwarded-For", "Accept"));
+                        }
+                        if (name.equals("getHeaders")) {
+                            return "Accept".equals(args[0]) ? Collections.enumeration(Arrays.asList("application/json", "text/plain"))
+                                    : Collections.enumeration(Arrays.asList("192.168.1.1"));
+                        }
+                        if (name.equals("getParameterMap")) {
+                            return parameters;
+                        }
+                        if (name.equals("getAttributeNames")) {
+                            return Collections.enumeration(attributes.keySet());
+                        }
+                        if (name.equals("getAttribute")) {
+                            return attributes.get(args[0]);
+                        }
+                        if (name.equals("getSession")) {
+                            return session;
+                        }
+                        return method.getReturnType() == int.class ? -1 : null;
+                    }
+                });
+    }
+
+    private static HttpSession session(final Map<String, Object> attributes) {
+        return (HttpSession) Proxy.newProxyInstance(HttpServletRequestSnapshotTest.class.getClassLoader(),
+                new Class<?>[]{HttpSession.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getId")) {
+                            return "s1";
+                        }
+                        if (name.equals("getAttributeNames")) {
+                            return Collections.enumeration(attributes.keySet());
+                        }
+                        if (name.equals("getAttribute")) {
+                            return attributes.get(args[0]);
+                        }
+                        if (name.equals("isNew")) {
+                            return false;
+                        }
+                        if (method.getReturnType() == long.class) {
+                            return 0L;
+                        }
+                        return method.getReturnType() == int.class ? 0 : null;
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.service.uma.authorization;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+import org.xdi.model.SimpleCustomProperty;
+import org.xdi.model.custom.script.conf.CustomScriptConfiguration;
+import org.xdi.oxauth.model.common.IAuthorizationGrant;
+import org.xdi.oxauth.model.configuration.AppConfiguration;
+import org.xdi.oxauth.model.uma.ClaimToken;
+import org.xdi.oxauth.model.uma.persistence.ScopeDescription;
+
+public class PolicyDecisionCacheTest {
+
+    @Test
+    public void onlyDeterministicPoliciesAreCached() {
+        PolicyDecisionCache cache = new PolicyDecisionCache(configuration(60));
+
+        assertEquals(cache.getLifetime(script()), 0);
+        assertEquals(cache.getLifetime(script(PolicyDecisionCache.DETERMINISTIC_PROPERTY, "false")), 0);
+        assertEquals(cache.getLifetime(script(PolicyDecisionCache.DETERMINISTIC_PROPERTY, "true")), 60);
+    }
+
+    @Test
+    public void lifetimeIsBoundedByConfiguration() {
+        PolicyDecisionCache cache = new PolicyDecisionCache(configuration(60));
+
+        assertEquals(cache.getLifetime(script(PolicyDecisionCache.DETERMINISTIC_PROPERTY, "true", PolicyDecisionCache.LIFETIME_PROPERTY, "10")), 10);
+        assertEquals(cache.getLifetime(script(PolicyDecisionCache.DETERMINISTIC_PROPERTY, "true", PolicyDecisionCache.LIFETIME_PROPERTY, "600")), 60);
+        assertEquals(new PolicyDecisionCache(configuration(0)).getLifetime(script(PolicyDecisionCache.DETERMINISTIC_PROPERTY, "true")), 0);
+    }
+
+    @Test
+    public void keyDoesNotDependOnOrder() {
+        IAuthorizationGrant grant = grant("client1", "user1");
+
+        String key = PolicyDecisionCache.getKey("inum=p1", grant, scopes("inum=s1", "inum=s2"),
+                Arrays.asList(new ClaimToken("jwt", "a"), new ClaimToken("jwt", "b")));
+        assertEquals(PolicyDecisionCache.getKey("inum=p1", grant, scopes("inum=s2", "inum=s1"),
+                Arrays.asList(new ClaimToken("jwt", "b"), new ClaimToken("jwt", "a"))), key);
+
+        assertNotEquals(PolicyDecisionCache.getKey("inum=p1", grant("client1", "user2"), scopes("inum=s1", "inum=s2"),
+                Arrays.asList(new ClaimToken("jwt", "a"), new ClaimToken("jwt", "b"))), key);
+        assertNotEquals(PolicyDecisionCache.getKey("inum=p1", grant, scopes("inum=s1", "inum=s2"),
+                Arrays.asList(new ClaimToken("jwt", "a"))), key);
+    }
+
+    @Test
+    public void decisionIsCachedForLifetime() {
+        PolicyDecisionCache cache = new PolicyDecisionCache(configuration(60));
+
+        cache.put("k1", false, 60);
+        cache.put("k2", true, 0);
+
+        assertEquals(cache.get("k1"), Boolean.FALSE);
+        assertNull(cache.get("k2"));
+    }
+
+    private static AppConfiguration configuration(int maxLifetime) {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setUmaPolicyDecisionCacheMaxLifetime(maxLifetime);
+        return appConfiguration;
+    }
+
+    private static CustomScriptConfiguration script(String... properties) {
+        Map<String, SimpleCustomProperty> attributes = new HashMap<String, SimpleCustomProperty>();
+        for (int i = 0; i < properties.length; i += 2) {
+            attributes.put(properties[i], new SimpleCustomProperty(properties[i], properties[i + 1]));
+        }
+        return new CustomScriptConfiguration(null, null, attributes);
+    }
+
+    private static List<ScopeDescription> scopes(String... dns) {
+        ScopeDescription[] scopes = new ScopeDescription[dns.length];
+        for (int i = 0; i < dns.length; i++) {
+            scopes[i] = new ScopeDescription();
+            scopes[i].setDn(dns[i]);
+        }
+        return Arrays.asList(scopes);
+    }
+
+    private static IAuthorizationGrant grant(final String clientId, final String userId) {
+        return (IAuthorizationGrant) Proxy.newProxyInstance(PolicyDecisionCacheTest.class.getClassLoader(),
+                new Class<?>[]{IAuthorizationGrant.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getClientId")) {
+                            return clientId;
+                        }
+                        if (method.getName().equals("getUserId")) {
+                            return userId;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+}
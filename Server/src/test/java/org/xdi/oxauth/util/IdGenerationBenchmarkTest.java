@@ -0,0 +1,124 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.idgen.ws.rs.InumSequence;
+import org.xdi.oxauth.model.token.HandleTokenFactory;
+
+/**
+ * Measures throughput of inum sequence and handle tokens generated from thread local SecureRandom compared
+ * to shared SecureRandom used by UUID.randomUUID().
+ */
+public class IdGenerationBenchmarkTest {
+
+    private static final int THREADS = 64;
+    private static final int IDS_PER_THREAD = 20000;
+    private static final int ROUNDS = 3;
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void inumSequence() throws Exception {
+        final InumSequence sequence = new InumSequence(1);
+
+        long time = measure(new Runnable() {
+            public void run() {
+                sequence.next();
+            }
+        });
+
+        System.out.println(String.format("Inum sequence: %d ids/s at %d threads", throughput(time), THREADS));
+    }
+
+    @Test
+    public void handleTokens() throws Exception {
+        long sharedTime = measure(new Runnable() {
+            public void run() {
+                UUID.randomUUID().toString();
+            }
+        });
+        long threadLocalTime = measure(new Runnable() {
+            public void run() {
+                HandleTokenFactory.generateHandleToken();
+            }
+        });
+
+        System.out.println(String.format("Handle tokens at %d threads: UUID.randomUUID %d tokens/s, thread local SecureRandom %d tokens/s",
+                THREADS, throughput(sharedTime), throughput(threadLocalTime)));
+    }
+
+    private static long throughput(long time) {
+        return THREADS * IDS_PER_THREAD * 1000000000L / time;
+    }
+
+    /**
+     * Runs task IDS_PER_THREAD times at every thread of pool, first rounds are warm up
+     *
+     * @return time of last round in nanoseconds
+     */
+    private long measure(Runnable task) throws InterruptedException {
+        long time = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            time = run(task);
+        }
+
+        return time;
+    }
+
+    private long run(final Runnable task) throws InterruptedException {
+        final AtomicInteger generated = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < IDS_PER_THREAD; j++) {
+                            task.run();
+                            generated.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long time = System.nanoTime() - startTime;
+
+        assertEquals(generated.get(), THREADS * IDS_PER_THREAD);
+        return time;
+    }
+
+}
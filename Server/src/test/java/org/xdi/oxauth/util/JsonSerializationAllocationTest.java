@@ -0,0 +1,121 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.xdi.oxauth.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.codehaus.jackson.map.SerializationConfig;
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xdi.oxauth.model.jwt.JwtClaims;
+import org.xdi.oxauth.model.uma.RptIntrospectionResponse;
+
+/**
+ * Measures garbage allocated per serialization of typical responses with shared writers and streaming
+ * generator compared to mapper per call and intermediate JSON tree.
+ */
+public class JsonSerializationAllocationTest {
+
+    private static final int ITERATIONS = 10000;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @BeforeClass
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("Thread allocation counters are not available");
+        }
+
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            throw new SkipException("Thread allocation counters are not supported");
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void sharedWriterAllocatesLess() throws Exception {
+        final RptIntrospectionResponse response = new RptIntrospectionResponse(true);
+        response.setClientId("@!1111!0008!AAAA");
+        response.setExpiresAt(new Date());
+        response.setIssuedAt(new Date());
+
+        assertEquals(ServerUtil.asJson(response),
+                ServerUtil.createJsonMapper().configure(SerializationConfig.Feature.WRAP_ROOT_VALUE, false).writeValueAsString(response));
+
+        long perCallMapper = measure(new Task() {
+            public void run() throws Exception {
+                ServerUtil.createJsonMapper().configure(SerializationConfig.Feature.WRAP_ROOT_VALUE, false).writeValueAsString(response);
+            }
+        });
+        long sharedWriter = measure(new Task() {
+            public void run() throws Exception {
+                ServerUtil.asJson(response);
+            }
+        });
+
+        System.out.println(String.format("RPT status: mapper per call %d bytes/op, shared writer %d bytes/op", perCallMapper, sharedWriter));
+        assertTrue(sharedWriter < perCallMapper);
+    }
+
+    @Test
+    public void streamingClaimsAllocateLess() throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setIssuer("https://localhost");
+        claims.setSubjectIdentifier("@!1111!0000!D4E7");
+        claims.setAudience("@!1111!0008!AAAA");
+        claims.setExpirationTime(new Date());
+        claims.setIssuedAt(new Date());
+        claims.setClaim("email", "user@example.com");
+        claims.setClaim("email_verified", true);
+        claims.setClaim("groups", Arrays.asList("admin", "users"));
+
+        assertEquals(new JSONObject(claims.toJsonString()).toString(), claims.toJsonObject().toString());
+
+        long jsonTree = measure(new Task() {
+            public void run() throws Exception {
+                claims.toJsonObject().toString().replace("\\/", "/");
+            }
+        });
+        long streaming = measure(new Task() {
+            public void run() throws Exception {
+                claims.toJsonString();
+            }
+        });
+
+        System.out.println(String.format("JWT claims: JSON tree %d bytes/op, streaming %d bytes/op", jsonTree, streaming));
+        assertTrue(streaming < jsonTree);
+    }
+
+    private long measure(Task task) throws Exception {
+        // Warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+
+        return (threadBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+}